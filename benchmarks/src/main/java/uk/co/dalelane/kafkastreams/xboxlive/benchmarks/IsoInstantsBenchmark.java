@@ -0,0 +1,96 @@
+package uk.co.dalelane.kafkastreams.xboxlive.benchmarks;
+
+import java.time.Instant;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import uk.co.dalelane.kafkastreams.xboxlive.data.serdes.IsoInstants;
+
+/**
+ * Parsing and formatting event timestamps, comparing IsoInstants
+ *  with the Instant.parse and Instant.toString that it replaced.
+ *
+ *  Run with -prof gc to compare how much each one allocates.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class IsoInstantsBenchmark {
+
+    /** number of timestamps per invocation */
+    private static final int TIMESTAMPS = 1024;
+
+    /** digits after the decimal point - the xbl events use 0 or 3 */
+    @Param({ "0", "3", "9" })
+    int fractionDigits;
+
+    private Instant[] instants;
+    private String[] texts;
+
+
+    @Setup
+    public void setup() {
+        Random random = new Random(42);
+        long start = Instant.parse("2020-01-01T00:00:00Z").getEpochSecond();
+        int nanosStep = fractionDigits == 0 ? 1000_000_000 : fractionDigits == 3 ? 1000_000 : 1;
+
+        instants = new Instant[TIMESTAMPS];
+        texts = new String[TIMESTAMPS];
+        for (int i = 0; i < TIMESTAMPS; i++) {
+            // non-zero last digit, so that the fraction isn't shortened
+            int nanos = fractionDigits == 0 ? 0 : (random.nextInt(1000_000_000 / nanosStep / 10) * 10 + 1) * nanosStep;
+            instants[i] = Instant.ofEpochSecond(start + random.nextInt(5 * 365 * 86400), nanos);
+            texts[i] = instants[i].toString();
+        }
+    }
+
+
+    @Benchmark
+    @OperationsPerInvocation(TIMESTAMPS)
+    public void instantParse(Blackhole blackhole) {
+        for (String text : texts) {
+            blackhole.consume(Instant.parse(text));
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(TIMESTAMPS)
+    public void isoInstantsParse(Blackhole blackhole) {
+        for (String text : texts) {
+            blackhole.consume(IsoInstants.parse(text));
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(TIMESTAMPS)
+    public void instantToString(Blackhole blackhole) {
+        for (Instant instant : instants) {
+            blackhole.consume(instant.toString());
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(TIMESTAMPS)
+    public void isoInstantsFormat(Blackhole blackhole) {
+        for (Instant instant : instants) {
+            blackhole.consume(IsoInstants.format(instant));
+        }
+    }
+}
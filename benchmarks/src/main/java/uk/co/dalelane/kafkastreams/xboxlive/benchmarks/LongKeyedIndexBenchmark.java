@@ -0,0 +1,104 @@
+package uk.co.dalelane.kafkastreams.xboxlive.benchmarks;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import uk.co.dalelane.kafkastreams.xboxlive.data.users.XboxUsersIndex;
+import uk.co.dalelane.kafkastreams.xboxlive.utils.LongKeyedIndex;
+
+/**
+ * Looking up users by xuid, comparing the primitive long index
+ *  with the HashMap of String userids that it replaced.
+ *
+ *  Each lookup starts from a new userid string, as it would for a
+ *  deserialized event, so the HashMap has to hash the string and
+ *  the index has to parse the xuid. Creating the string is the
+ *  same for both, so differences between them are due to that.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class LongKeyedIndexBenchmark {
+
+    /** number of lookups per invocation, cycling through the userids */
+    private static final int LOOKUPS = 1024;
+
+    @Param({ "100", "10000", "1000000" })
+    int users;
+
+    /** fraction of lookups for users that aren't known */
+    @Param({ "0.1" })
+    double missRate;
+
+    private Map<String, Object> hashMap;
+    private LongKeyedIndex<Object> index;
+    private char[][] lookups;
+
+
+    @Setup
+    public void setup() {
+        Random random = new Random(42);
+        hashMap = new HashMap<>();
+        LongKeyedIndex.Builder<Object> builder = new LongKeyedIndex.Builder<>(users);
+        String[] known = new String[users];
+        for (int i = 0; i < users; i++) {
+            long xuid = 2533274790000000L + random.nextInt(Integer.MAX_VALUE);
+            known[i] = Long.toString(xuid);
+            Object user = new Object();
+            hashMap.put(known[i], user);
+            builder.put(xuid, user);
+        }
+        index = builder.build();
+
+        lookups = new char[LOOKUPS][];
+        for (int i = 0; i < LOOKUPS; i++) {
+            String userid = random.nextDouble() < missRate ?
+                Long.toString(2535000000000000L + random.nextInt(Integer.MAX_VALUE)) :
+                known[random.nextInt(users)];
+            lookups[i] = userid.toCharArray();
+        }
+    }
+
+
+    @Benchmark
+    @OperationsPerInvocation(LOOKUPS)
+    public int hashMap() {
+        int found = 0;
+        for (char[] userid : lookups) {
+            if (hashMap.get(new String(userid)) != null) {
+                found++;
+            }
+        }
+        return found;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(LOOKUPS)
+    public int longKeyedIndex() {
+        int found = 0;
+        for (char[] userid : lookups) {
+            if (index.get(XboxUsersIndex.parseXuid(new String(userid))) != null) {
+                found++;
+            }
+        }
+        return found;
+    }
+}
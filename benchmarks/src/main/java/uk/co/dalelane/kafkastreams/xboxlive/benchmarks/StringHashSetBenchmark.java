@@ -0,0 +1,111 @@
+package uk.co.dalelane.kafkastreams.xboxlive.benchmarks;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import uk.co.dalelane.kafkastreams.xboxlive.utils.StringHashSet;
+
+/**
+ * Checking whether achievements are from a known gamer, comparing
+ *  the hash set with the sorted array and binary search that it
+ *  replaced.
+ *
+ *  Each lookup starts from a new gamertag string, as it would for
+ *  a deserialized event, so neither can use a cached hash code.
+ *  Rosters of 100k or more get the Bloom filter, which is what
+ *  the missRate is there to exercise.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class StringHashSetBenchmark {
+
+    /** number of lookups per invocation, cycling through the gamertags */
+    private static final int LOOKUPS = 1024;
+
+    @Param({ "10", "1000", "100000", "1000000", "5000000" })
+    int gamers;
+
+    /** fraction of lookups for gamers that aren't known */
+    @Param({ "0.1", "0.9" })
+    double missRate;
+
+    private String[] sorted;
+    private StringHashSet hashSet;
+    private char[][] lookups;
+
+
+    @Setup
+    public void setup() {
+        Random random = new Random(42);
+        List<String> known = new ArrayList<>(gamers);
+        for (int i = 0; i < gamers; i++) {
+            known.add(gamertag(random));
+        }
+        sorted = known.toArray(new String[0]);
+        Arrays.sort(sorted);
+        hashSet = new StringHashSet(known);
+
+        lookups = new char[LOOKUPS][];
+        for (int i = 0; i < LOOKUPS; i++) {
+            String gamertag = random.nextDouble() < missRate ?
+                gamertag(random) :
+                known.get(random.nextInt(gamers));
+            lookups[i] = gamertag.toCharArray();
+        }
+    }
+
+    /** a gamertag in the usual range of lengths, sharing a prefix with the others */
+    private static String gamertag(Random random) {
+        char[] chars = new char[10 + random.nextInt(6)];
+        "Gamer".getChars(0, 5, chars, 0);
+        for (int i = 5; i < chars.length; i++) {
+            chars[i] = Character.forDigit(random.nextInt(36), 36);
+        }
+        return new String(chars);
+    }
+
+
+    @Benchmark
+    @OperationsPerInvocation(LOOKUPS)
+    public int binarySearch() {
+        int found = 0;
+        for (char[] gamertag : lookups) {
+            if (Arrays.binarySearch(sorted, new String(gamertag)) >= 0) {
+                found++;
+            }
+        }
+        return found;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(LOOKUPS)
+    public int stringHashSet() {
+        int found = 0;
+        for (char[] gamertag : lookups) {
+            if (hashSet.contains(new String(gamertag))) {
+                found++;
+            }
+        }
+        return found;
+    }
+}
@@ -0,0 +1,153 @@
+package uk.co.dalelane.kafkastreams.xboxlive.streams.matching;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Comparator;
+import java.util.Properties;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import org.apache.kafka.common.serialization.Serdes;
+import org.apache.kafka.streams.StreamsConfig;
+import org.apache.kafka.streams.processor.TaskId;
+import org.apache.kafka.streams.processor.api.MockProcessorContext;
+import org.apache.kafka.streams.processor.api.Processor;
+import org.apache.kafka.streams.processor.api.Record;
+import org.apache.kafka.streams.state.KeyValueStore;
+import org.apache.kafka.streams.state.Stores;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import uk.co.dalelane.kafkastreams.xboxlive.data.presence.EnrichedPresence;
+import uk.co.dalelane.kafkastreams.xboxlive.data.serdes.StateStoreFormat;
+import uk.co.dalelane.kafkastreams.xboxlive.data.serdes.XboxSerdes;
+import uk.co.dalelane.kafkastreams.xboxlive.data.sessions.PlaySession;
+
+/**
+ * Repeated presence events for gamers who already have an open
+ *  play session, which is most of what the xbl API sends. Each of
+ *  these is ignored, so this measures the cost of finding that out,
+ *  with and without the cache of decoded open sessions.
+ *
+ *  The processor is run directly, with the open sessions in RocksDB
+ *  stores as in the app, because the overhead of committing after
+ *  every record in a TopologyTestDriver hides the difference. It is
+ *  in the same package as the processor, so that it can create it.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RepeatedPresenceBenchmark {
+
+    private static final String PRESENCE = "{\"date\":\"2023-01-01T10:00:00Z\",\"gamertag\":\"%s\",\"state\":\"Online\",\"titleid\":\"1144039928\",\"titlename\":\"Halo\"}";
+    private static final long TIMESTAMP = 1672567200000L;
+
+    private static final String STATE_STORE_NAME = PlaySessionGenerator.class.getCanonicalName();
+    private static final String INDEX_STORE_NAME = STATE_STORE_NAME + ".bystart";
+
+    /** number of events per invocation, cycling through the gamers */
+    private static final int EVENTS = 1024;
+
+    @Param({ "1000" })
+    int gamers;
+
+    @Param({ "0", "10000" })
+    int cacheSize;
+
+    @Param({ "JSON", "BINARY" })
+    StateStoreFormat storeFormat;
+
+    private Path stateDir;
+    private KeyValueStore<String, PlaySession> sessionsStore;
+    private KeyValueStore<?, ?> indexStore;
+    private Processor<String, EnrichedPresence, String, PlaySession> processor;
+    private Record<String, EnrichedPresence>[] events;
+
+
+    @Setup
+    @SuppressWarnings("unchecked")
+    public void setup() throws IOException {
+        stateDir = Files.createTempDirectory("xbox-benchmark");
+        final Properties props = new Properties();
+        props.put(StreamsConfig.APPLICATION_ID_CONFIG, "benchmark");
+        props.put(StreamsConfig.BOOTSTRAP_SERVERS_CONFIG, "dummy:9092");
+        props.put(StreamsConfig.STATE_DIR_CONFIG, stateDir.toString());
+        final MockProcessorContext<String, PlaySession> context = new MockProcessorContext<>(props, new TaskId(0, 0), stateDir.toFile());
+
+        sessionsStore = Stores.keyValueStoreBuilder(Stores.persistentKeyValueStore(STATE_STORE_NAME),
+                                                    XboxSerdes.GAMERTAG_SERDES,
+                                                    XboxSerdes.playSessionStoreSerdes(storeFormat))
+            .withLoggingDisabled()
+            .build();
+        sessionsStore.init(context.getStateStoreContext(), sessionsStore);
+        KeyValueStore<?, ?> index = Stores.keyValueStoreBuilder(Stores.persistentKeyValueStore(INDEX_STORE_NAME),
+                                                                Serdes.Bytes(),
+                                                                XboxSerdes.GAMERTAG_SERDES)
+            .withLoggingDisabled()
+            .build();
+        index.init(context.getStateStoreContext(), index);
+        indexStore = index;
+        context.addStateStore(sessionsStore);
+        context.addStateStore(indexStore);
+
+        processor = new PlaySessionGenerator.PresenceProcessorSupplier(Duration.ofHours(8),
+                                                                       Duration.ofMinutes(10),
+                                                                       cacheSize,
+                                                                       Duration.ZERO).get();
+        processor.init(context);
+
+        // start a session for every gamer, so every event after this is a repeat
+        for (int i = 0; i < gamers; i++) {
+            processor.process(event("gamer" + i));
+        }
+
+        Random random = new Random(42);
+        events = new Record[EVENTS];
+        for (int i = 0; i < EVENTS; i++) {
+            events[i] = event("gamer" + random.nextInt(gamers));
+        }
+    }
+
+    private static Record<String, EnrichedPresence> event(String gamertag) {
+        byte[] json = String.format(PRESENCE, gamertag).getBytes(StandardCharsets.UTF_8);
+        EnrichedPresence presence = XboxSerdes.ENRICHED_PRESENCE_SERDES.deserializer().deserialize("", json);
+        return new Record<>(gamertag, presence, TIMESTAMP);
+    }
+
+    @TearDown
+    public void teardown() throws IOException {
+        processor.close();
+        sessionsStore.close();
+        indexStore.close();
+        try (Stream<Path> files = Files.walk(stateDir)) {
+            files.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+        }
+    }
+
+
+    @Benchmark
+    @OperationsPerInvocation(EVENTS)
+    public void repeatedPresence() {
+        for (Record<String, EnrichedPresence> event : events) {
+            processor.process(event);
+        }
+    }
+}
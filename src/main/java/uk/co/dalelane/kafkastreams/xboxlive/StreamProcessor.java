@@ -8,12 +8,15 @@ import org.apache.kafka.streams.Topology;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import uk.co.dalelane.kafkastreams.xboxlive.data.users.XboxUsers;
-import uk.co.dalelane.kafkastreams.xboxlive.data.users.XboxUsersFactory;
+import uk.co.dalelane.kafkastreams.xboxlive.data.games.TitleCatalogProvider;
+import uk.co.dalelane.kafkastreams.xboxlive.data.users.XboxUsersProvider;
+import uk.co.dalelane.kafkastreams.xboxlive.data.users.XboxUsersTable;
 import uk.co.dalelane.kafkastreams.xboxlive.streams.counting.GamesPlayedCounter;
+import uk.co.dalelane.kafkastreams.xboxlive.streams.counting.TitlePlayersCounter;
 import uk.co.dalelane.kafkastreams.xboxlive.streams.enriching.PresenceEnricher;
 import uk.co.dalelane.kafkastreams.xboxlive.streams.filtering.AchievementsKnownUsersFilter;
 import uk.co.dalelane.kafkastreams.xboxlive.streams.matching.PlaySessionGenerator;
+import uk.co.dalelane.kafkastreams.xboxlive.streams.ranking.GamerScoreLeaderboard;
 import uk.co.dalelane.kafkastreams.xboxlive.streams.splitting.PresenceSplitter;
 import uk.co.dalelane.kafkastreams.xboxlive.streams.summing.WeeklyGamerScoreCounter;
 import uk.co.dalelane.kafkastreams.xboxlive.streams.tracking.LongestPlayRecordTracker;
@@ -28,10 +31,26 @@ public class StreamProcessor {
         log.info("Xbox Live Kafka Streams demo");
 
         final Properties props = Config.getStreamsConfiguration();
-        final XboxUsers xboxUsers = XboxUsersFactory.getXboxUsers(props.getProperty(Config.XBOX_API_KEY));
 
         final StreamsBuilder builder = new StreamsBuilder();
 
+        // known users are either fetched from the xbl API in the background,
+        //  or read from a compacted topic that is kept up to date
+        XboxUsersProvider xboxUsers = null;
+        XboxUsersTable xboxUsersTable = null;
+        if (Config.isUsersTopicEnabled(props)) {
+            xboxUsersTable = XboxUsersTable.create(builder, props);
+        }
+        else {
+            xboxUsers = new XboxUsersProvider(props);
+            xboxUsers.start();
+        }
+
+        // types of Xbox titles are loaded from a catalog file, which
+        //  is reloaded in the background when it changes
+        final TitleCatalogProvider titles = new TitleCatalogProvider(props);
+        titles.start();
+
 
         // ==========================================================
         // FILTERING out unwanted events
@@ -40,7 +59,12 @@ public class StreamProcessor {
         // ----------------------------------------------------------
         //   XBOX.ACHIEVEMENTS     -->   XBOX.ACHIEVEMENTS.KNOWNUSERS
         // ----------------------------------------------------------
-        AchievementsKnownUsersFilter.create(builder, xboxUsers);
+        if (xboxUsersTable != null) {
+            AchievementsKnownUsersFilter.create(builder, xboxUsersTable, props);
+        }
+        else {
+            AchievementsKnownUsersFilter.create(builder, xboxUsers, props);
+        }
 
 
         // ==========================================================
@@ -52,7 +76,7 @@ public class StreamProcessor {
         //                                     XBOX.PRESENCE.MEDIA
         //                                     XBOX.PRESENCE.APP
         // ----------------------------------------------------------
-        PresenceSplitter.create(builder);
+        PresenceSplitter.create(builder, titles, props);
 
 
         // ==========================================================
@@ -61,8 +85,14 @@ public class StreamProcessor {
         //  use case:  adding info about users to presence events
         // ----------------------------------------------------------
         //   XBOX.PRESENCE               -->   XBOX.PRESENCE.ENRICHED
+        //                                     XBOX.PRESENCE.UNKNOWNUSERS
         // ----------------------------------------------------------
-        PresenceEnricher.create(builder, xboxUsers);
+        if (xboxUsersTable != null) {
+            PresenceEnricher.create(builder, xboxUsersTable.getTable(), titles, props);
+        }
+        else {
+            PresenceEnricher.create(builder, xboxUsers, titles, props);
+        }
 
 
         // ==========================================================
@@ -72,7 +102,7 @@ public class StreamProcessor {
         // ----------------------------------------------------------
         //   XBOX.PRESENCE.ENRICHED      -->   XBOX.PLAYSESSIONS
         // ----------------------------------------------------------
-        PlaySessionGenerator.create(builder);
+        PlaySessionGenerator.create(builder, titles, props);
 
 
         // ==========================================================
@@ -81,18 +111,40 @@ public class StreamProcessor {
         //  use case:  counting how many games each user has played
         // ----------------------------------------------------------
         //     XBOX.PRESENCE.GAME        -->   XBOX.GAMES.COUNTS
+        //                                   XBOX.GAMES.TITLES
         // ----------------------------------------------------------
         GamesPlayedCounter.create(builder);
 
 
+        // ==========================================================
+        // ESTIMATING how many distinct things are seen in events
+        // ==========================================================
+        //  use case:  counting how many gamers have played each game
+        // ----------------------------------------------------------
+        //     XBOX.PRESENCE.GAME        -->   XBOX.GAMES.PLAYERS
+        //                                     XBOX.GAMES.PLAYERS.DAILY
+        // ----------------------------------------------------------
+        TitlePlayersCounter.create(builder);
+
+
         // ==========================================================
         // SUMMING values from events in a time window
         // ==========================================================
-        //  use case:  calculate total game score over 7-day window
+        //  use case:  calculate total game score over last 7 days
         // ----------------------------------------------------------
         //   XBOX.ACHIEVEMENTS.KNOWNUSERS  -->   XBOX.GAMERSCORE.WEEK
         // ----------------------------------------------------------
-        WeeklyGamerScoreCounter.create(builder);
+        WeeklyGamerScoreCounter.create(builder, props);
+
+
+        // ==========================================================
+        // RANKING the top results across all partitions
+        // ==========================================================
+        //  use case:  leaderboard of the highest weekly game scores
+        // ----------------------------------------------------------
+        //   XBOX.GAMERSCORE.WEEK      -->   XBOX.GAMERSCORE.LEADERBOARD
+        // ----------------------------------------------------------
+        GamerScoreLeaderboard.create(builder, props);
 
 
         // ==========================================================
@@ -101,8 +153,10 @@ public class StreamProcessor {
         //  use case:  tracking the longest play sessions seen so far
         // ----------------------------------------------------------
         //   XBOX.PLAYSESSIONS        -->   XBOX.PLAYSESSIONS.LONGEST
+        //                                  XBOX.PLAYSESSIONS.LONGEST.TOP
+        //                                  XBOX.PLAYSESSIONS.LONGEST.TITLE
         // ----------------------------------------------------------
-        LongestPlayRecordTracker.create(builder);
+        LongestPlayRecordTracker.create(builder, props);
 
 
 
@@ -113,6 +167,13 @@ public class StreamProcessor {
         final KafkaStreams streams = new KafkaStreams(topology, props);
         streams.start();
 
-        Runtime.getRuntime().addShutdownHook(new Thread(streams::close));
+        final XboxUsersProvider usersProvider = xboxUsers;
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            streams.close();
+            titles.close();
+            if (usersProvider != null) {
+                usersProvider.close();
+            }
+        }));
     }
 }
@@ -7,51 +7,51 @@ public class Achievement {
 
     @SerializedName("date")
     @Expose
-    private String date;
+    String date;
 
     @SerializedName("gamertag")
     @Expose
-    private String gamertag;
+    String gamertag;
 
     @SerializedName("gamername")
     @Expose
-    private String gamername;
+    String gamername;
 
     @SerializedName("name")
     @Expose
-    private String name;
+    String name;
 
     @SerializedName("description")
     @Expose
-    private String description;
+    String description;
 
     @SerializedName("icon")
     @Expose
-    private String icon;
+    String icon;
 
     @SerializedName("contentname")
     @Expose
-    private String contentname;
+    String contentname;
 
     @SerializedName("contentimage")
     @Expose
-    private String contentimage;
+    String contentimage;
 
     @SerializedName("platform")
     @Expose
-    private String platform;
+    String platform;
 
     @SerializedName("gamerscore")
     @Expose
-    private Integer gamerscore;
+    Integer gamerscore;
 
     @SerializedName("rarityscore")
     @Expose
-    private Integer rarityscore;
+    Integer rarityscore;
 
     @SerializedName("raritycategory")
     @Expose
-    private String raritycategory;
+    String raritycategory;
 
 
 
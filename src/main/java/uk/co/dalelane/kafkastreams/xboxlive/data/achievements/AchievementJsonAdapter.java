@@ -0,0 +1,92 @@
+package uk.co.dalelane.kafkastreams.xboxlive.data.achievements;
+
+import java.io.IOException;
+
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+
+import uk.co.dalelane.kafkastreams.xboxlive.data.serdes.JsonFields;
+
+/**
+ * Reads and writes Achievement events without using reflection.
+ */
+public class AchievementJsonAdapter extends TypeAdapter<Achievement> {
+
+    @Override
+    public void write(JsonWriter out, Achievement value) throws IOException {
+        if (value == null) {
+            out.nullValue();
+            return;
+        }
+        out.beginObject();
+        out.name("date").value(value.date);
+        out.name("gamertag").value(value.gamertag);
+        out.name("gamername").value(value.gamername);
+        out.name("name").value(value.name);
+        out.name("description").value(value.description);
+        out.name("icon").value(value.icon);
+        out.name("contentname").value(value.contentname);
+        out.name("contentimage").value(value.contentimage);
+        out.name("platform").value(value.platform);
+        out.name("gamerscore").value(value.gamerscore);
+        out.name("rarityscore").value(value.rarityscore);
+        out.name("raritycategory").value(value.raritycategory);
+        out.endObject();
+    }
+
+    @Override
+    public Achievement read(JsonReader in) throws IOException {
+        if (in.peek() == JsonToken.NULL) {
+            in.nextNull();
+            return null;
+        }
+        Achievement value = new Achievement();
+        in.beginObject();
+        while (in.hasNext()) {
+            switch (in.nextName()) {
+                case "date":
+                    value.date = JsonFields.readString(in);
+                    break;
+                case "gamertag":
+                    value.gamertag = JsonFields.readString(in);
+                    break;
+                case "gamername":
+                    value.gamername = JsonFields.readString(in);
+                    break;
+                case "name":
+                    value.name = JsonFields.readString(in);
+                    break;
+                case "description":
+                    value.description = JsonFields.readString(in);
+                    break;
+                case "icon":
+                    value.icon = JsonFields.readString(in);
+                    break;
+                case "contentname":
+                    value.contentname = JsonFields.readString(in);
+                    break;
+                case "contentimage":
+                    value.contentimage = JsonFields.readString(in);
+                    break;
+                case "platform":
+                    value.platform = JsonFields.readString(in);
+                    break;
+                case "gamerscore":
+                    value.gamerscore = JsonFields.readInteger(in);
+                    break;
+                case "rarityscore":
+                    value.rarityscore = JsonFields.readInteger(in);
+                    break;
+                case "raritycategory":
+                    value.raritycategory = JsonFields.readString(in);
+                    break;
+                default:
+                    in.skipValue();
+            }
+        }
+        in.endObject();
+        return value;
+    }
+}
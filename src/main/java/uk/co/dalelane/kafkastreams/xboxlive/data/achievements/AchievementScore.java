@@ -0,0 +1,40 @@
+package uk.co.dalelane.kafkastreams.xboxlive.data.achievements;
+
+/**
+ * The parts of an Achievement event needed to add up gamerscores -
+ *  who earned it, and the score for it.
+ *
+ *  Read from achievement events by AchievementScoreJsonAdapter,
+ *  which skips the other fields rather than reading them.
+ */
+public class AchievementScore {
+
+    String gamertag;
+
+    int gamerscore;
+
+    /** false if the achievement event didn't include a score */
+    boolean hasGamerScore;
+
+
+    public AchievementScore() { }
+
+    public AchievementScore(String gamertag, int gamerscore) {
+        this.gamertag = gamertag;
+        this.gamerscore = gamerscore;
+        this.hasGamerScore = true;
+    }
+
+
+    public String getGamertag() {
+        return gamertag;
+    }
+
+    public int getGamerScore() {
+        return gamerscore;
+    }
+
+    public boolean hasGamerScore() {
+        return hasGamerScore;
+    }
+}
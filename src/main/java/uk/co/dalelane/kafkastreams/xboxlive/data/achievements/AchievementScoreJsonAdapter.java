@@ -0,0 +1,68 @@
+package uk.co.dalelane.kafkastreams.xboxlive.data.achievements;
+
+import java.io.IOException;
+
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+
+import uk.co.dalelane.kafkastreams.xboxlive.data.serdes.JsonFields;
+
+/**
+ * Reads the gamertag and score from Achievement events, skipping
+ *  the other fields without creating strings for them.
+ *
+ *  Writes the gamertag and score in the same format as the
+ *  AchievementJsonAdapter.
+ */
+public class AchievementScoreJsonAdapter extends TypeAdapter<AchievementScore> {
+
+    @Override
+    public void write(JsonWriter out, AchievementScore value) throws IOException {
+        if (value == null) {
+            out.nullValue();
+            return;
+        }
+        out.beginObject();
+        out.name("gamertag").value(value.gamertag);
+        if (value.hasGamerScore) {
+            out.name("gamerscore").value(value.gamerscore);
+        }
+        else {
+            out.name("gamerscore").nullValue();
+        }
+        out.endObject();
+    }
+
+    @Override
+    public AchievementScore read(JsonReader in) throws IOException {
+        if (in.peek() == JsonToken.NULL) {
+            in.nextNull();
+            return null;
+        }
+        AchievementScore value = new AchievementScore();
+        in.beginObject();
+        while (in.hasNext()) {
+            switch (in.nextName()) {
+                case "gamertag":
+                    value.gamertag = JsonFields.readString(in);
+                    break;
+                case "gamerscore":
+                    if (in.peek() == JsonToken.NULL) {
+                        in.nextNull();
+                        value.hasGamerScore = false;
+                    }
+                    else {
+                        value.gamerscore = in.nextInt();
+                        value.hasGamerScore = true;
+                    }
+                    break;
+                default:
+                    in.skipValue();
+            }
+        }
+        in.endObject();
+        return value;
+    }
+}
@@ -0,0 +1,50 @@
+package uk.co.dalelane.kafkastreams.xboxlive.data.achievements;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+import com.google.gson.annotations.Expose;
+import com.google.gson.annotations.SerializedName;
+
+public class Leaderboard {
+
+    /** highest score first, with ties ordered by gamertag */
+    public static final Comparator<WeeklyGamerScore> RANKING = Comparator
+        .comparing(WeeklyGamerScore::getScore, Comparator.nullsLast(Comparator.reverseOrder()))
+        .thenComparing(WeeklyGamerScore::getGamer, Comparator.nullsLast(Comparator.naturalOrder()));
+
+    @SerializedName("gamers")
+    @Expose
+    List<WeeklyGamerScore> gamers;
+
+
+    public Leaderboard() {
+        gamers = new ArrayList<>();
+    }
+
+    public Leaderboard(List<WeeklyGamerScore> rankedGamers) {
+        gamers = rankedGamers;
+    }
+
+
+    /**
+     * Returns the gamers, in order of their ranking.
+     */
+    public List<WeeklyGamerScore> getGamers() {
+        return gamers;
+    }
+
+    /**
+     * Returns a fingerprint of the ranking, which is different
+     *  if any gamer, score or position in the leaderboard changes.
+     */
+    public long fingerprint() {
+        long hash = gamers.size();
+        for (WeeklyGamerScore gamer : gamers) {
+            hash = 31 * hash + (gamer.getGamer() == null ? 0 : gamer.getGamer().hashCode());
+            hash = 31 * hash + (gamer.getScore() == null ? 0 : gamer.getScore());
+        }
+        return hash;
+    }
+}
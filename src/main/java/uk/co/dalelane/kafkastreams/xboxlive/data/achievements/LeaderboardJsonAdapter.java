@@ -0,0 +1,67 @@
+package uk.co.dalelane.kafkastreams.xboxlive.data.achievements;
+
+import java.io.IOException;
+
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+
+/**
+ * Reads and writes Leaderboard events without using reflection.
+ */
+public class LeaderboardJsonAdapter extends TypeAdapter<Leaderboard> {
+
+    private final WeeklyGamerScoreJsonAdapter gamerAdapter = new WeeklyGamerScoreJsonAdapter();
+
+    @Override
+    public void write(JsonWriter out, Leaderboard value) throws IOException {
+        if (value == null) {
+            out.nullValue();
+            return;
+        }
+        out.beginObject();
+        out.name("gamers");
+        if (value.gamers == null) {
+            out.nullValue();
+        }
+        else {
+            out.beginArray();
+            for (WeeklyGamerScore gamer : value.gamers) {
+                gamerAdapter.write(out, gamer);
+            }
+            out.endArray();
+        }
+        out.endObject();
+    }
+
+    @Override
+    public Leaderboard read(JsonReader in) throws IOException {
+        if (in.peek() == JsonToken.NULL) {
+            in.nextNull();
+            return null;
+        }
+        Leaderboard value = new Leaderboard();
+        in.beginObject();
+        while (in.hasNext()) {
+            switch (in.nextName()) {
+                case "gamers":
+                    if (in.peek() == JsonToken.NULL) {
+                        in.nextNull();
+                    }
+                    else {
+                        in.beginArray();
+                        while (in.hasNext()) {
+                            value.gamers.add(gamerAdapter.read(in));
+                        }
+                        in.endArray();
+                    }
+                    break;
+                default:
+                    in.skipValue();
+            }
+        }
+        in.endObject();
+        return value;
+    }
+}
@@ -7,11 +7,11 @@ public class WeeklyGamerScore {
 
     @SerializedName("gamer")
     @Expose
-    private String gamer;
+    String gamer;
 
     @SerializedName("score")
     @Expose
-    private Integer score;
+    Integer score;
 
 
     public WeeklyGamerScore() { }
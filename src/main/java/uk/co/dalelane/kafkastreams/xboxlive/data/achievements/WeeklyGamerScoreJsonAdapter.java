@@ -0,0 +1,52 @@
+package uk.co.dalelane.kafkastreams.xboxlive.data.achievements;
+
+import java.io.IOException;
+
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+
+import uk.co.dalelane.kafkastreams.xboxlive.data.serdes.JsonFields;
+
+/**
+ * Reads and writes WeeklyGamerScore events without using reflection.
+ */
+public class WeeklyGamerScoreJsonAdapter extends TypeAdapter<WeeklyGamerScore> {
+
+    @Override
+    public void write(JsonWriter out, WeeklyGamerScore value) throws IOException {
+        if (value == null) {
+            out.nullValue();
+            return;
+        }
+        out.beginObject();
+        out.name("gamer").value(value.gamer);
+        out.name("score").value(value.score);
+        out.endObject();
+    }
+
+    @Override
+    public WeeklyGamerScore read(JsonReader in) throws IOException {
+        if (in.peek() == JsonToken.NULL) {
+            in.nextNull();
+            return null;
+        }
+        WeeklyGamerScore value = new WeeklyGamerScore();
+        in.beginObject();
+        while (in.hasNext()) {
+            switch (in.nextName()) {
+                case "gamer":
+                    value.gamer = JsonFields.readString(in);
+                    break;
+                case "score":
+                    value.score = JsonFields.readInteger(in);
+                    break;
+                default:
+                    in.skipValue();
+            }
+        }
+        in.endObject();
+        return value;
+    }
+}
@@ -0,0 +1,94 @@
+package uk.co.dalelane.kafkastreams.xboxlive.data.counts;
+
+import java.util.Arrays;
+
+/**
+ * Set of the numeric ids of the titles that a gamer has played.
+ *
+ *  The ids are kept in a sorted array of primitive longs, so that
+ *  they can be stored as the (small) differences between each id
+ *  rather than as strings, and without the names of the titles.
+ */
+public class DistinctTitles {
+
+    /** returned by parseTitleId for ids that aren't numeric */
+    public static final long INVALID_TITLE_ID = -1;
+
+    private static final int INITIAL_CAPACITY = 8;
+
+    long[] titleIds;
+    int size;
+
+    public DistinctTitles() {
+        this(INITIAL_CAPACITY);
+    }
+
+    DistinctTitles(int capacity) {
+        titleIds = new long[Math.max(capacity, 1)];
+        size = 0;
+    }
+
+
+    /**
+     * Adds the title id to the set.
+     *
+     * @return true if the title hadn't been seen before
+     */
+    public boolean add(long titleId) {
+        int pos = Arrays.binarySearch(titleIds, 0, size, titleId);
+        if (pos >= 0) {
+            return false;
+        }
+        int insertAt = -(pos + 1);
+        if (size == titleIds.length) {
+            titleIds = Arrays.copyOf(titleIds, size * 2);
+        }
+        System.arraycopy(titleIds, insertAt, titleIds, insertAt + 1, size - insertAt);
+        titleIds[insertAt] = titleId;
+        size++;
+        return true;
+    }
+
+    public boolean contains(long titleId) {
+        return Arrays.binarySearch(titleIds, 0, size, titleId) >= 0;
+    }
+
+    public int size() {
+        return size;
+    }
+
+
+    /**
+     * Converts an aggregate written before titles were stored as ids.
+     *  Titles with ids that aren't numeric are skipped.
+     */
+    public static DistinctTitles fromPlayerGames(PlayerGames games) {
+        DistinctTitles titles = new DistinctTitles(games.gamesIndexedById.size());
+        for (String titleId : games.gamesIndexedById.keySet()) {
+            long id = parseTitleId(titleId);
+            if (id != INVALID_TITLE_ID) {
+                titles.add(id);
+            }
+        }
+        return titles;
+    }
+
+
+    public static long parseTitleId(String titleId) {
+        if (titleId == null) {
+            return INVALID_TITLE_ID;
+        }
+        try {
+            long id = Long.parseLong(titleId);
+            return id < 0 ? INVALID_TITLE_ID : id;
+        }
+        catch (NumberFormatException e) {
+            return INVALID_TITLE_ID;
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "DistinctTitles " + Arrays.toString(Arrays.copyOf(titleIds, size));
+    }
+}
@@ -0,0 +1,42 @@
+package uk.co.dalelane.kafkastreams.xboxlive.data.counts;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+import uk.co.dalelane.kafkastreams.xboxlive.data.serdes.BinaryCodec;
+import uk.co.dalelane.kafkastreams.xboxlive.data.serdes.BinaryFields;
+
+/**
+ * Compact binary encoding of DistinctTitles for state stores.
+ *
+ *  The ids are written as a count, followed by the first id and
+ *  then the difference between each id and the one before it, all
+ *  as variable-length integers. Title ids are usually a few bytes
+ *  each this way, rather than a string id and name.
+ */
+public class DistinctTitlesBinaryCodec implements BinaryCodec<DistinctTitles> {
+
+    @Override
+    public void write(DataOutputStream out, DistinctTitles value) throws IOException {
+        BinaryFields.writeVarLong(out, value.size);
+        long previous = 0;
+        for (int i = 0; i < value.size; i++) {
+            BinaryFields.writeVarLong(out, value.titleIds[i] - previous);
+            previous = value.titleIds[i];
+        }
+    }
+
+    @Override
+    public DistinctTitles read(ByteBuffer in) {
+        int size = BinaryFields.readSize(in);
+        DistinctTitles value = new DistinctTitles(size);
+        long previous = 0;
+        for (int i = 0; i < size; i++) {
+            previous += BinaryFields.readVarLong(in);
+            value.titleIds[i] = previous;
+        }
+        value.size = size;
+        return value;
+    }
+}
@@ -0,0 +1,105 @@
+package uk.co.dalelane.kafkastreams.xboxlive.data.counts;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Estimates the number of distinct values that have been added,
+ *  using a fixed amount of memory however many values there are.
+ *
+ *  Uses the HyperLogLog algorithm with 2^12 registers, which gives
+ *  estimates that are usually within about 2% of the real count,
+ *  using 4KB per sketch.
+ */
+public class HyperLogLog {
+
+    static final int PRECISION = 12;
+    static final int NUM_REGISTERS = 1 << PRECISION;
+
+    private static final double ALPHA = 0.7213 / (1 + 1.079 / NUM_REGISTERS);
+
+    final byte[] registers;
+
+    public HyperLogLog() {
+        registers = new byte[NUM_REGISTERS];
+    }
+
+
+    /**
+     * Adds a value to the sketch.
+     *
+     * @return true if the sketch changed - false means that the
+     *  estimate is the same as before the value was added
+     */
+    public boolean add(String value) {
+        final long hash = hash(value);
+        final int register = (int) (hash >>> (Long.SIZE - PRECISION));
+        // the remaining bits, with a guard bit so that the rank is
+        //  never more than the number of remaining bits + 1
+        final long remaining = (hash << PRECISION) | (1L << (PRECISION - 1));
+        final byte rank = (byte) (Long.numberOfLeadingZeros(remaining) + 1);
+        if (rank > registers[register]) {
+            registers[register] = rank;
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Adds all of the values from another sketch to this one, so
+     *  that it estimates the number of distinct values added to
+     *  either sketch.
+     *
+     * @return true if the sketch changed
+     */
+    public boolean merge(HyperLogLog other) {
+        boolean changed = false;
+        for (int i = 0; i < NUM_REGISTERS; i++) {
+            if (other.registers[i] > registers[i]) {
+                registers[i] = other.registers[i];
+                changed = true;
+            }
+        }
+        return changed;
+    }
+
+    /**
+     * Returns the estimated number of distinct values added.
+     */
+    public long estimate() {
+        double sum = 0;
+        int zeros = 0;
+        for (byte register : registers) {
+            sum += 1.0 / (1L << register);
+            if (register == 0) {
+                zeros++;
+            }
+        }
+
+        final double estimate = ALPHA * NUM_REGISTERS * NUM_REGISTERS / sum;
+        if (estimate <= 2.5 * NUM_REGISTERS && zeros > 0) {
+            // small numbers of values are more accurately counted
+            //  from the number of registers that haven't been used
+            return Math.round(NUM_REGISTERS * Math.log((double) NUM_REGISTERS / zeros));
+        }
+        return Math.round(estimate);
+    }
+
+
+    /**
+     * 64-bit FNV-1a hash of the UTF-8 bytes of the value, with the
+     *  bits mixed so that similar values give very different hashes.
+     */
+    static long hash(String value) {
+        long hash = 0xcbf29ce484222325L;
+        for (byte b : value.getBytes(StandardCharsets.UTF_8)) {
+            hash ^= (b & 0xff);
+            hash *= 0x100000001b3L;
+        }
+        hash ^= (hash >>> 33);
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= (hash >>> 33);
+        hash *= 0xc4ceb9fe1a85ec53L;
+        hash ^= (hash >>> 33);
+        return hash;
+    }
+}
@@ -0,0 +1,69 @@
+package uk.co.dalelane.kafkastreams.xboxlive.data.counts;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+import uk.co.dalelane.kafkastreams.xboxlive.data.serdes.BinaryCodec;
+import uk.co.dalelane.kafkastreams.xboxlive.data.serdes.BinaryFields;
+
+/**
+ * Compact binary encoding of HyperLogLog sketches for state stores.
+ *
+ *  Sketches where most registers haven't been used yet are written
+ *  as a list of the registers that have been used - the gap since
+ *  the previous used register, and its value. Otherwise, every
+ *  register is written as a single byte.
+ */
+public class HyperLogLogBinaryCodec implements BinaryCodec<HyperLogLog> {
+
+    private static final byte SPARSE = 0;
+    private static final byte DENSE = 1;
+
+    /** worst case size of each used register in the sparse format */
+    private static final int MAX_SPARSE_ENTRY_BYTES = 3;
+
+    @Override
+    public void write(DataOutputStream out, HyperLogLog value) throws IOException {
+        int used = 0;
+        for (byte register : value.registers) {
+            if (register != 0) {
+                used++;
+            }
+        }
+
+        if (used * MAX_SPARSE_ENTRY_BYTES < HyperLogLog.NUM_REGISTERS) {
+            out.writeByte(SPARSE);
+            BinaryFields.writeVarLong(out, used);
+            int previous = 0;
+            for (int i = 0; i < value.registers.length; i++) {
+                if (value.registers[i] != 0) {
+                    BinaryFields.writeVarLong(out, i - previous);
+                    out.writeByte(value.registers[i]);
+                    previous = i;
+                }
+            }
+        }
+        else {
+            out.writeByte(DENSE);
+            out.write(value.registers);
+        }
+    }
+
+    @Override
+    public HyperLogLog read(ByteBuffer in) {
+        HyperLogLog value = new HyperLogLog();
+        if (in.get() == SPARSE) {
+            int used = BinaryFields.readSize(in);
+            int register = 0;
+            for (int i = 0; i < used; i++) {
+                register += (int) BinaryFields.readVarLong(in);
+                value.registers[register] = in.get();
+            }
+        }
+        else {
+            in.get(value.registers);
+        }
+        return value;
+    }
+}
@@ -7,11 +7,11 @@ public class PlayerGame {
 
     @SerializedName("titleId")
     @Expose
-    private String titleId;
+    String titleId;
 
     @SerializedName("titleName")
     @Expose
-    private String titleName;
+    String titleName;
 
     public PlayerGame() {}
 
@@ -9,15 +9,15 @@ import com.google.gson.annotations.SerializedName;
 public class PlayerGames {
     @SerializedName("gamertag")
     @Expose
-    private String gamertag;
+    String gamertag;
 
     @SerializedName("realname")
     @Expose
-    private String realname;
+    String realname;
 
     @SerializedName("games")
     @Expose
-    private Map<String, PlayerGame> gamesIndexedById;
+    Map<String, PlayerGame> gamesIndexedById;
 
     public PlayerGames() {
         gamesIndexedById = new HashMap<>();
@@ -0,0 +1,43 @@
+package uk.co.dalelane.kafkastreams.xboxlive.data.counts;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Map;
+
+import uk.co.dalelane.kafkastreams.xboxlive.data.serdes.BinaryCodec;
+import uk.co.dalelane.kafkastreams.xboxlive.data.serdes.BinaryFields;
+
+/**
+ * Compact binary encoding of PlayerGames for state stores.
+ *
+ *  The games are written as a count followed by the id and
+ *  name of each game.
+ */
+public class PlayerGamesBinaryCodec implements BinaryCodec<PlayerGames> {
+
+    @Override
+    public void write(DataOutputStream out, PlayerGames value) throws IOException {
+        BinaryFields.writeString(out, value.gamertag);
+        BinaryFields.writeString(out, value.realname);
+        out.writeInt(value.gamesIndexedById.size());
+        for (Map.Entry<String, PlayerGame> game : value.gamesIndexedById.entrySet()) {
+            BinaryFields.writeString(out, game.getKey());
+            BinaryFields.writeString(out, game.getValue() == null ? null : game.getValue().titleName);
+        }
+    }
+
+    @Override
+    public PlayerGames read(ByteBuffer in) {
+        PlayerGames value = new PlayerGames();
+        value.gamertag = BinaryFields.readString(in);
+        value.realname = BinaryFields.readString(in);
+        int numGames = in.getInt();
+        for (int i = 0; i < numGames; i++) {
+            String titleId = BinaryFields.readString(in);
+            String titleName = BinaryFields.readString(in);
+            value.gamesIndexedById.put(titleId, new PlayerGame(titleId, titleName));
+        }
+        return value;
+    }
+}
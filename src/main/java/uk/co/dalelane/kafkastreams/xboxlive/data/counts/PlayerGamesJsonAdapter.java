@@ -0,0 +1,113 @@
+package uk.co.dalelane.kafkastreams.xboxlive.data.counts;
+
+import java.io.IOException;
+import java.util.Map;
+
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+
+import uk.co.dalelane.kafkastreams.xboxlive.data.serdes.JsonFields;
+
+/**
+ * Reads and writes PlayerGames aggregates without using reflection.
+ */
+public class PlayerGamesJsonAdapter extends TypeAdapter<PlayerGames> {
+
+    @Override
+    public void write(JsonWriter out, PlayerGames value) throws IOException {
+        if (value == null) {
+            out.nullValue();
+            return;
+        }
+        out.beginObject();
+        out.name("gamertag").value(value.gamertag);
+        out.name("realname").value(value.realname);
+        out.name("games");
+        if (value.gamesIndexedById == null) {
+            out.nullValue();
+        }
+        else {
+            out.beginObject();
+            for (Map.Entry<String, PlayerGame> game : value.gamesIndexedById.entrySet()) {
+                out.name(String.valueOf(game.getKey()));
+                writeGame(out, game.getValue());
+            }
+            out.endObject();
+        }
+        out.endObject();
+    }
+
+    @Override
+    public PlayerGames read(JsonReader in) throws IOException {
+        if (in.peek() == JsonToken.NULL) {
+            in.nextNull();
+            return null;
+        }
+        PlayerGames value = new PlayerGames();
+        in.beginObject();
+        while (in.hasNext()) {
+            switch (in.nextName()) {
+                case "gamertag":
+                    value.gamertag = JsonFields.readString(in);
+                    break;
+                case "realname":
+                    value.realname = JsonFields.readString(in);
+                    break;
+                case "games":
+                    if (in.peek() == JsonToken.NULL) {
+                        in.nextNull();
+                    }
+                    else {
+                        in.beginObject();
+                        while (in.hasNext()) {
+                            String titleId = in.nextName();
+                            value.gamesIndexedById.put(titleId, readGame(in));
+                        }
+                        in.endObject();
+                    }
+                    break;
+                default:
+                    in.skipValue();
+            }
+        }
+        in.endObject();
+        return value;
+    }
+
+
+    private static void writeGame(JsonWriter out, PlayerGame game) throws IOException {
+        if (game == null) {
+            out.nullValue();
+            return;
+        }
+        out.beginObject();
+        out.name("titleId").value(game.titleId);
+        out.name("titleName").value(game.titleName);
+        out.endObject();
+    }
+
+    private static PlayerGame readGame(JsonReader in) throws IOException {
+        if (in.peek() == JsonToken.NULL) {
+            in.nextNull();
+            return null;
+        }
+        PlayerGame game = new PlayerGame();
+        in.beginObject();
+        while (in.hasNext()) {
+            switch (in.nextName()) {
+                case "titleId":
+                    game.titleId = JsonFields.readString(in);
+                    break;
+                case "titleName":
+                    game.titleName = JsonFields.readString(in);
+                    break;
+                default:
+                    in.skipValue();
+            }
+        }
+        in.endObject();
+        return game;
+    }
+}
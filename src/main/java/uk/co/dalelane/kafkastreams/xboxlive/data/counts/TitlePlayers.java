@@ -0,0 +1,51 @@
+package uk.co.dalelane.kafkastreams.xboxlive.data.counts;
+
+import java.time.LocalDate;
+
+import com.google.gson.annotations.Expose;
+import com.google.gson.annotations.SerializedName;
+
+public class TitlePlayers {
+
+    @SerializedName("titleid")
+    @Expose
+    String titleid;
+
+    @SerializedName("day")
+    @Expose
+    LocalDate day;
+
+    @SerializedName("players")
+    @Expose
+    Long players;
+
+
+    public TitlePlayers() { }
+
+    /**
+     * @param day - the day the players were counted for, or null
+     *  if this is the count for all time
+     */
+    public TitlePlayers(String titleId, LocalDate day, long players) {
+        this.titleid = titleId;
+        this.day = day;
+        this.players = players;
+    }
+
+
+    public String getTitleId() {
+        return titleid;
+    }
+
+    public LocalDate getDay() {
+        return day;
+    }
+
+    public Long getPlayers() {
+        return players;
+    }
+
+    public boolean isDaily() {
+        return day != null;
+    }
+}
@@ -0,0 +1,62 @@
+package uk.co.dalelane.kafkastreams.xboxlive.data.counts;
+
+import java.io.IOException;
+import java.time.LocalDate;
+
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+
+import uk.co.dalelane.kafkastreams.xboxlive.data.serdes.JsonFields;
+
+/**
+ * Reads and writes TitlePlayers events without using reflection.
+ *
+ *  Days are written as ISO-8601 dates (e.g. 2023-04-01).
+ */
+public class TitlePlayersJsonAdapter extends TypeAdapter<TitlePlayers> {
+
+    @Override
+    public void write(JsonWriter out, TitlePlayers value) throws IOException {
+        if (value == null) {
+            out.nullValue();
+            return;
+        }
+        out.beginObject();
+        out.name("titleid").value(value.titleid);
+        if (value.day != null) {
+            out.name("day").value(value.day.toString());
+        }
+        out.name("players").value(value.players);
+        out.endObject();
+    }
+
+    @Override
+    public TitlePlayers read(JsonReader in) throws IOException {
+        if (in.peek() == JsonToken.NULL) {
+            in.nextNull();
+            return null;
+        }
+        TitlePlayers value = new TitlePlayers();
+        in.beginObject();
+        while (in.hasNext()) {
+            switch (in.nextName()) {
+                case "titleid":
+                    value.titleid = JsonFields.readString(in);
+                    break;
+                case "day":
+                    String day = JsonFields.readString(in);
+                    value.day = day == null ? null : LocalDate.parse(day);
+                    break;
+                case "players":
+                    value.players = JsonFields.readLong(in);
+                    break;
+                default:
+                    in.skipValue();
+            }
+        }
+        in.endObject();
+        return value;
+    }
+}
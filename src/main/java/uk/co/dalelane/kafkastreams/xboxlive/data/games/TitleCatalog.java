@@ -0,0 +1,140 @@
+package uk.co.dalelane.kafkastreams.xboxlive.data.games;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonParseException;
+import com.google.gson.annotations.Expose;
+import com.google.gson.annotations.SerializedName;
+
+import uk.co.dalelane.kafkastreams.xboxlive.data.counts.DistinctTitles;
+import uk.co.dalelane.kafkastreams.xboxlive.utils.LongKeyedIndex;
+
+/**
+ * Immutable snapshot of the known types of Xbox titles.
+ *
+ *  Only titles which aren't games need to be listed - any title
+ *  that isn't in the catalog is assumed to be a game.
+ *
+ *  Xbox title ids are numeric, so titles are indexed by the id as
+ *  a primitive long, so classifying a title is a single lookup.
+ *
+ *  A new catalog is built whenever the catalog file changes, and
+ *  swapped in to replace the previous one, so it can be read from
+ *  any stream thread without locking.
+ */
+public class TitleCatalog {
+
+    private static Logger log = LoggerFactory.getLogger(TitleCatalog.class);
+
+    /** titles known to not be games, used if there is no catalog file */
+    public static final TitleCatalog BUILT_IN = new TitleCatalog(Arrays.asList(
+        new TitleInfo("328178078",  TitleIdInfo.APP, "Xbox iOS app"),
+        new TitleInfo("1864271209", TitleIdInfo.APP, "Xbox game store"),
+        new TitleInfo("750323071",  TitleIdInfo.APP, "Xbox dashboard"),
+
+        new TitleInfo("1509068581", TitleIdInfo.MEDIA_PLAYER, "Amazon Prime Video"),
+        new TitleInfo("1749265960", TitleIdInfo.MEDIA_PLAYER, "All-4"),
+        new TitleInfo("1824269336", TitleIdInfo.MEDIA_PLAYER, "BBC iPlayer"),
+        new TitleInfo("1715639942", TitleIdInfo.MEDIA_PLAYER, "itvX"),
+        new TitleInfo("1826276761", TitleIdInfo.MEDIA_PLAYER, "Plex"),
+        new TitleInfo("1943777318", TitleIdInfo.MEDIA_PLAYER, "AppleTV"),
+        new TitleInfo("122001257",  TitleIdInfo.MEDIA_PLAYER, "YouTube"),
+        new TitleInfo("327370029",  TitleIdInfo.MEDIA_PLAYER, "Netflix")));
+
+
+    private final LongKeyedIndex<String> typesById;
+
+
+    public TitleCatalog(final List<TitleInfo> titles) {
+        LongKeyedIndex.Builder<String> byId = new LongKeyedIndex.Builder<>(titles.size());
+
+        for (TitleInfo title : titles) {
+            if (title == null) {
+                continue;
+            }
+            long titleId = DistinctTitles.parseTitleId(title.getTitleId());
+            String type = TitleIdInfo.getKnownType(title.getType());
+            if (titleId == DistinctTitles.INVALID_TITLE_ID) {
+                log.warn("Ignoring title with invalid title id {}", title.getTitleId());
+            }
+            else if (type == null) {
+                log.warn("Ignoring title {} with unknown type {}", title.getTitleId(), title.getType());
+            }
+            else {
+                byId.put(titleId, type);
+            }
+        }
+
+        typesById = byId.build();
+    }
+
+
+    /**
+     * Returns the type of the title with the given id, or null if
+     *  there is no title id.
+     */
+    public String getTitleType(String titleid) {
+        if (titleid == null) {
+            return null;
+        }
+        long titleId = DistinctTitles.parseTitleId(titleid);
+        if (titleId == DistinctTitles.INVALID_TITLE_ID) {
+            return TitleIdInfo.GAME;
+        }
+        String type = typesById.get(titleId);
+        return type == null ? TitleIdInfo.GAME : type;
+    }
+
+    public boolean isGame(String titleid) {
+        return TitleIdInfo.GAME.equals(getTitleType(titleid));
+    }
+
+    public int size() {
+        return typesById.size();
+    }
+
+
+
+    /**
+     * Parses a title catalog file, in the form:
+     *  { "titles": [ { "titleid": "327370029", "type": "MEDIA", "name": "Netflix" } ] }
+     */
+    public static TitleCatalog parse(byte[] json) throws IOException {
+        try (Reader reader = new InputStreamReader(new ByteArrayInputStream(json), StandardCharsets.UTF_8)) {
+            Gson parser = new Gson();
+
+            TitleCatalogFile file = parser.fromJson(reader, TitleCatalogFile.class);
+            if (file == null) {
+                throw new IOException("Empty title catalog");
+            }
+            return new TitleCatalog(file.getTitles());
+        }
+        catch (JsonParseException e) {
+            throw new IOException("Unable to parse title catalog", e);
+        }
+    }
+
+    private static class TitleCatalogFile {
+        @SerializedName("titles")
+        @Expose
+        private List<TitleInfo> titles;
+
+        List<TitleInfo> getTitles() {
+            if (titles == null) {
+                return Collections.emptyList();
+            }
+            return titles;
+        }
+    }
+}
@@ -0,0 +1,102 @@
+package uk.co.dalelane.kafkastreams.xboxlive.data.games;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.attribute.FileTime;
+import java.time.Duration;
+import java.util.Properties;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import uk.co.dalelane.kafkastreams.xboxlive.utils.Config;
+
+/**
+ * Provides the current catalog of Xbox title types.
+ *
+ *  The catalog is loaded from a local file, which is checked in
+ *  the background and reloaded whenever it is modified, so that
+ *  new media players and apps can be added without restarting.
+ *  If no file is configured, a built-in catalog is used.
+ *
+ *  Each reload builds a new TitleCatalog which replaces the
+ *  previous one, so readers always see a complete catalog.
+ */
+public class TitleCatalogProvider implements AutoCloseable {
+
+    private static Logger log = LoggerFactory.getLogger(TitleCatalogProvider.class);
+
+    private final Path catalogFile;
+    private final Duration refreshInterval;
+
+    private final ScheduledExecutorService scheduler;
+
+    private volatile TitleCatalog current = TitleCatalog.BUILT_IN;
+    private FileTime lastModified;
+
+
+    public TitleCatalogProvider(final Properties config) {
+        String file = config.getProperty(Config.TITLES_CATALOG_FILE, "").trim();
+        catalogFile = file.isEmpty() ? null : Paths.get(file);
+        refreshInterval = Duration.ofSeconds(Config.getLong(config, Config.TITLES_CATALOG_REFRESH_SECONDS, 60));
+
+        scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "xbox-titles-refresh");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+
+    /**
+     * Loads the catalog file, and starts checking it for changes
+     *  in the background.
+     */
+    public void start() {
+        if (catalogFile == null) {
+            log.info("Using built-in catalog of {} Xbox titles", current.size());
+            return;
+        }
+
+        refresh();
+        scheduler.scheduleWithFixedDelay(this::refresh,
+                                         refreshInterval.toMillis(), refreshInterval.toMillis(),
+                                         TimeUnit.MILLISECONDS);
+    }
+
+
+    /**
+     * Returns the most recent catalog of titles.
+     */
+    public TitleCatalog getTitles() {
+        return current;
+    }
+
+
+    private void refresh() {
+        try {
+            FileTime modified = Files.getLastModifiedTime(catalogFile);
+            if (modified.equals(lastModified)) {
+                return;
+            }
+            TitleCatalog updated = TitleCatalog.parse(Files.readAllBytes(catalogFile));
+            current = updated;
+            lastModified = modified;
+            log.info("Loaded catalog of {} Xbox titles from {}", updated.size(), catalogFile);
+        }
+        catch (IOException e) {
+            log.error("Unable to load catalog of Xbox titles from {}", catalogFile, e);
+        }
+    }
+
+
+    @Override
+    public void close() {
+        scheduler.shutdownNow();
+    }
+}
@@ -1,5 +1,10 @@
 package uk.co.dalelane.kafkastreams.xboxlive.data.games;
 
+/**
+ * Types of Xbox title.
+ *
+ *  The type of each title is looked up in a TitleCatalog.
+ */
 public class TitleIdInfo {
 
     public static final String GAME         = "GAME";
@@ -8,41 +13,25 @@ public class TitleIdInfo {
 
 
 
-    public static String getTitleType(String titleid) {
-        if (titleid == null) {
+    /**
+     * Returns the type constant matching the given name, or null
+     *  if it isn't a known type of title.
+     */
+    public static String getKnownType(String type) {
+        if (type == null) {
             return null;
         }
 
-        switch (titleid) {
-            // Xbox iOS app
-            case "328178078":
-            // Xbox game store
-            case "1864271209":
-            // Xbox dashboard
-            case "750323071":
-                return APP;
-
-            // Amazon Prime Video
-            case "1509068581":
-            // All-4
-            case "1749265960":
-            // BBC iPlayer
-            case "1824269336":
-            // itvX
-            case "1715639942":
-            // Plex
-            case "1826276761":
-            // AppleTV
-            case "1943777318":
-            // YouTube
-            case "122001257":
-            // Netflix
-            case "327370029":
+        switch (type.trim().toUpperCase()) {
+            case GAME:
+                return GAME;
+            case MEDIA_PLAYER:
                 return MEDIA_PLAYER;
-
+            case APP:
+                return APP;
 
             default:
-                return GAME;
+                return null;
         }
     }
 }
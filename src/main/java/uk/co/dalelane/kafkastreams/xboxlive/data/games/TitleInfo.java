@@ -0,0 +1,43 @@
+package uk.co.dalelane.kafkastreams.xboxlive.data.games;
+
+import com.google.gson.annotations.Expose;
+import com.google.gson.annotations.SerializedName;
+
+/**
+ * An entry in a title catalog file, identifying the type
+ *  of an Xbox title.
+ */
+public class TitleInfo {
+
+    @SerializedName("titleid")
+    @Expose
+    private String titleId;
+
+    @SerializedName("type")
+    @Expose
+    private String type;
+
+    @SerializedName("name")
+    @Expose
+    private String name;
+
+
+    public TitleInfo() {}
+
+    public TitleInfo(String titleId, String type, String name) {
+        this.titleId = titleId;
+        this.type = type;
+        this.name = name;
+    }
+
+
+    public String getTitleId() {
+        return titleId;
+    }
+    public String getType() {
+        return type;
+    }
+    public String getName() {
+        return name;
+    }
+}
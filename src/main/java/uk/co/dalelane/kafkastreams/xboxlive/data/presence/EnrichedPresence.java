@@ -11,31 +11,31 @@ public class EnrichedPresence {
 
     @SerializedName("date")
     @Expose
-    private Instant date;
+    Instant date;
 
     @SerializedName("gamertag")
     @Expose
-    private String gamertag;
+    String gamertag;
 
     @SerializedName("realName")
     @Expose
-    private String realName;
+    String realName;
 
     @SerializedName("profilePicUrl")
     @Expose
-    private String profilePicUrl;
+    String profilePicUrl;
 
     @SerializedName("state")
     @Expose
-    private String state;
+    String state;
 
     @SerializedName("titleid")
     @Expose
-    private String titleid;
+    String titleid;
 
     @SerializedName("titlename")
     @Expose
-    private String titlename;
+    String titlename;
 
 
 
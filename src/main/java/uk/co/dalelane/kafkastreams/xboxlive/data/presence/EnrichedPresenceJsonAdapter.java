@@ -0,0 +1,74 @@
+package uk.co.dalelane.kafkastreams.xboxlive.data.presence;
+
+import java.io.IOException;
+
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+
+import uk.co.dalelane.kafkastreams.xboxlive.data.serdes.InstantTypeAdapter;
+import uk.co.dalelane.kafkastreams.xboxlive.data.serdes.JsonFields;
+
+/**
+ * Reads and writes EnrichedPresence events without using reflection.
+ */
+public class EnrichedPresenceJsonAdapter extends TypeAdapter<EnrichedPresence> {
+
+    @Override
+    public void write(JsonWriter out, EnrichedPresence value) throws IOException {
+        if (value == null) {
+            out.nullValue();
+            return;
+        }
+        out.beginObject();
+        out.name("date");
+        InstantTypeAdapter.INSTANCE.write(out, value.date);
+        out.name("gamertag").value(value.gamertag);
+        out.name("realName").value(value.realName);
+        out.name("profilePicUrl").value(value.profilePicUrl);
+        out.name("state").value(value.state);
+        out.name("titleid").value(value.titleid);
+        out.name("titlename").value(value.titlename);
+        out.endObject();
+    }
+
+    @Override
+    public EnrichedPresence read(JsonReader in) throws IOException {
+        if (in.peek() == JsonToken.NULL) {
+            in.nextNull();
+            return null;
+        }
+        EnrichedPresence value = new EnrichedPresence();
+        in.beginObject();
+        while (in.hasNext()) {
+            switch (in.nextName()) {
+                case "date":
+                    value.date = InstantTypeAdapter.INSTANCE.read(in);
+                    break;
+                case "gamertag":
+                    value.gamertag = JsonFields.readString(in);
+                    break;
+                case "realName":
+                    value.realName = JsonFields.readString(in);
+                    break;
+                case "profilePicUrl":
+                    value.profilePicUrl = JsonFields.readString(in);
+                    break;
+                case "state":
+                    value.state = JsonFields.readString(in);
+                    break;
+                case "titleid":
+                    value.titleid = JsonFields.readString(in);
+                    break;
+                case "titlename":
+                    value.titlename = JsonFields.readString(in);
+                    break;
+                default:
+                    in.skipValue();
+            }
+        }
+        in.endObject();
+        return value;
+    }
+}
@@ -16,23 +16,23 @@ public class Presence {
 
     @SerializedName("date")
     @Expose
-    private Instant date;
+    Instant date;
 
     @SerializedName("userid")
     @Expose
-    private String userid;
+    String userid;
 
     @SerializedName("state")
     @Expose
-    private String state;
+    String state;
 
     @SerializedName("titleid")
     @Expose
-    private String titleid;
+    String titleid;
 
     @SerializedName("titlename")
     @Expose
-    private String titlename;
+    String titlename;
 
 
 
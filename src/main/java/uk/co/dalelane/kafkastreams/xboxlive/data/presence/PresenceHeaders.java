@@ -0,0 +1,100 @@
+package uk.co.dalelane.kafkastreams.xboxlive.data.presence;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import org.apache.kafka.common.header.Header;
+import org.apache.kafka.common.header.Headers;
+import org.apache.kafka.common.header.internals.RecordHeaders;
+
+import uk.co.dalelane.kafkastreams.xboxlive.data.games.TitleCatalog;
+import uk.co.dalelane.kafkastreams.xboxlive.data.games.TitleIdInfo;
+
+/**
+ * Headers added to enriched presence events, so that they can be
+ *  routed without deserializing the event.
+ */
+public class PresenceHeaders {
+
+    /** type of the title in the event - not set if the event has no title id */
+    public static final String TITLE_TYPE = "xbox.title.type";
+    /** "true" if the user is online, "false" if they are offline or away */
+    public static final String ONLINE = "xbox.online";
+
+    private static final byte[] GAME         = bytes(TitleIdInfo.GAME);
+    private static final byte[] MEDIA_PLAYER = bytes(TitleIdInfo.MEDIA_PLAYER);
+    private static final byte[] APP          = bytes(TitleIdInfo.APP);
+
+    private static final byte[] TRUE  = bytes("true");
+    private static final byte[] FALSE = bytes("false");
+
+
+
+    /**
+     * Returns a copy of the given headers, with the title type
+     *  and online state for the given presence event.
+     */
+    public static Headers stamp(Headers headers, EnrichedPresence presence, TitleCatalog titles) {
+        final String titleType = presence.getTitleId().isEmpty() ? null : titles.getTitleType(presence.getTitleId());
+        return stamp(headers, titleType, !presence.userOffline());
+    }
+
+    /**
+     * Returns a copy of the given headers, with the title type
+     *  and online state for a presence event.
+     *
+     * @param titleType - type of the title, or null if there is no title
+     */
+    public static Headers stamp(Headers headers, String titleType, boolean online) {
+        Headers stamped = new RecordHeaders(headers.toArray());
+        stamped.remove(TITLE_TYPE);
+        stamped.remove(ONLINE);
+        if (titleType != null) {
+            stamped.add(TITLE_TYPE, bytes(titleType));
+        }
+        stamped.add(ONLINE, online ? TRUE : FALSE);
+        return stamped;
+    }
+
+
+    /**
+     * Returns true if the headers include the online state, which
+     *  means that they were stamped by the enricher.
+     */
+    public static boolean isStamped(Headers headers) {
+        return headers.lastHeader(ONLINE) != null;
+    }
+
+    public static boolean isOnline(Headers headers) {
+        Header online = headers.lastHeader(ONLINE);
+        return online != null && Arrays.equals(online.value(), TRUE);
+    }
+
+    /**
+     * Returns the title type from the headers, as one of the
+     *  TitleIdInfo constants, or null if there is no title.
+     */
+    public static String getTitleType(Headers headers) {
+        Header titleType = headers.lastHeader(TITLE_TYPE);
+        if (titleType == null) {
+            return null;
+        }
+        // compared as bytes, to avoid creating strings for every event
+        byte[] value = titleType.value();
+        if (Arrays.equals(value, GAME)) {
+            return TitleIdInfo.GAME;
+        }
+        if (Arrays.equals(value, MEDIA_PLAYER)) {
+            return TitleIdInfo.MEDIA_PLAYER;
+        }
+        if (Arrays.equals(value, APP)) {
+            return TitleIdInfo.APP;
+        }
+        return TitleIdInfo.getKnownType(new String(value, StandardCharsets.UTF_8));
+    }
+
+
+    private static byte[] bytes(String value) {
+        return value.getBytes(StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,66 @@
+package uk.co.dalelane.kafkastreams.xboxlive.data.presence;
+
+import java.io.IOException;
+
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+
+import uk.co.dalelane.kafkastreams.xboxlive.data.serdes.InstantTypeAdapter;
+import uk.co.dalelane.kafkastreams.xboxlive.data.serdes.JsonFields;
+
+/**
+ * Reads and writes Presence events without using reflection.
+ */
+public class PresenceJsonAdapter extends TypeAdapter<Presence> {
+
+    @Override
+    public void write(JsonWriter out, Presence value) throws IOException {
+        if (value == null) {
+            out.nullValue();
+            return;
+        }
+        out.beginObject();
+        out.name("date");
+        InstantTypeAdapter.INSTANCE.write(out, value.date);
+        out.name("userid").value(value.userid);
+        out.name("state").value(value.state);
+        out.name("titleid").value(value.titleid);
+        out.name("titlename").value(value.titlename);
+        out.endObject();
+    }
+
+    @Override
+    public Presence read(JsonReader in) throws IOException {
+        if (in.peek() == JsonToken.NULL) {
+            in.nextNull();
+            return null;
+        }
+        Presence value = new Presence();
+        in.beginObject();
+        while (in.hasNext()) {
+            switch (in.nextName()) {
+                case "date":
+                    value.date = InstantTypeAdapter.INSTANCE.read(in);
+                    break;
+                case "userid":
+                    value.userid = JsonFields.readString(in);
+                    break;
+                case "state":
+                    value.state = JsonFields.readString(in);
+                    break;
+                case "titleid":
+                    value.titleid = JsonFields.readString(in);
+                    break;
+                case "titlename":
+                    value.titlename = JsonFields.readString(in);
+                    break;
+                default:
+                    in.skipValue();
+            }
+        }
+        in.endObject();
+        return value;
+    }
+}
@@ -0,0 +1,17 @@
+package uk.co.dalelane.kafkastreams.xboxlive.data.serdes;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * Encodes an object using the compact binary format for
+ *  state stores. Codecs only write the fields - the version
+ *  byte is handled by BinaryStoreSerializer.
+ */
+public interface BinaryCodec<T> {
+
+    void write(DataOutputStream out, T value) throws IOException;
+
+    T read(ByteBuffer in);
+}
@@ -0,0 +1,126 @@
+package uk.co.dalelane.kafkastreams.xboxlive.data.serdes;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.Instant;
+
+/**
+ * Helpers for writing the fields used by the binary codecs.
+ *
+ *  Strings are written as a length-prefixed UTF-8 byte array,
+ *   with a length of -1 used for null.
+ *  Instants are written as epoch seconds followed by nanoseconds.
+ *  Durations are written as seconds followed by nanoseconds.
+ *   For both, null is written as a single Long.MIN_VALUE.
+ *  Var longs are non-negative values written seven bits at a
+ *   time, so small values only need a single byte.
+ *  Sizes of collections are written as var longs.
+ *
+ *  Reading a value that has been truncated or corrupted throws a
+ *   BufferUnderflowException or IndexOutOfBoundsException.
+ */
+public class BinaryFields {
+
+    private static final int NULL_LENGTH = -1;
+    private static final long NULL_SECONDS = Long.MIN_VALUE;
+
+
+    public static void writeString(DataOutputStream out, String value) throws IOException {
+        if (value == null) {
+            out.writeInt(NULL_LENGTH);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    public static String readString(ByteBuffer in) {
+        int length = in.getInt();
+        if (length == NULL_LENGTH) {
+            return null;
+        }
+        if (length < 0 || length > in.remaining()) {
+            throw new BufferUnderflowException();
+        }
+        String value = new String(in.array(), in.arrayOffset() + in.position(), length, StandardCharsets.UTF_8);
+        in.position(in.position() + length);
+        return value;
+    }
+
+
+    public static void writeInstant(DataOutputStream out, Instant value) throws IOException {
+        if (value == null) {
+            out.writeLong(NULL_SECONDS);
+            return;
+        }
+        out.writeLong(value.getEpochSecond());
+        out.writeInt(value.getNano());
+    }
+
+    public static Instant readInstant(ByteBuffer in) {
+        long seconds = in.getLong();
+        if (seconds == NULL_SECONDS) {
+            return null;
+        }
+        return Instant.ofEpochSecond(seconds, in.getInt());
+    }
+
+
+    public static void writeDuration(DataOutputStream out, Duration value) throws IOException {
+        if (value == null) {
+            out.writeLong(NULL_SECONDS);
+            return;
+        }
+        out.writeLong(value.getSeconds());
+        out.writeInt(value.getNano());
+    }
+
+    public static Duration readDuration(ByteBuffer in) {
+        long seconds = in.getLong();
+        if (seconds == NULL_SECONDS) {
+            return null;
+        }
+        return Duration.ofSeconds(seconds, in.getInt());
+    }
+
+
+    public static void writeVarLong(DataOutputStream out, long value) throws IOException {
+        while ((value & ~0x7FL) != 0) {
+            out.writeByte((int) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        out.writeByte((int) value);
+    }
+
+    public static long readVarLong(ByteBuffer in) {
+        long value = 0;
+        int shift = 0;
+        byte b;
+        do {
+            b = in.get();
+            value |= (long) (b & 0x7F) << shift;
+            shift += 7;
+        } while ((b & 0x80) != 0 && shift < Long.SIZE);
+        return value;
+    }
+
+
+    /**
+     * Reads the number of items in a collection. Every item takes at
+     *  least one byte, so a size larger than the number of bytes left
+     *  means the value is corrupt - this is checked before the size is
+     *  used to allocate anything.
+     */
+    public static int readSize(ByteBuffer in) {
+        long size = readVarLong(in);
+        if (size < 0 || size > in.remaining()) {
+            throw new BufferUnderflowException();
+        }
+        return (int) size;
+    }
+}
@@ -0,0 +1,39 @@
+package uk.co.dalelane.kafkastreams.xboxlive.data.serdes;
+
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+
+import org.apache.kafka.common.errors.SerializationException;
+import org.apache.kafka.common.serialization.Deserializer;
+
+/**
+ * Reads state store values that have only ever been written in
+ *  the binary format.
+ */
+public class BinaryStoreDeserializer<T> implements Deserializer<T> {
+
+    private BinaryCodec<T> codec;
+
+    public BinaryStoreDeserializer(BinaryCodec<T> binaryCodec) {
+        codec = binaryCodec;
+    }
+
+    @Override
+    public T deserialize(String topic, byte[] data) {
+        if (data == null || data.length == 0) {
+            return null;
+        }
+
+        if (data[0] != BinaryStoreSerializer.VERSION_1) {
+            throw new SerializationException("Unsupported binary format version " + data[0] + " from " + topic);
+        }
+
+        ByteBuffer in = ByteBuffer.wrap(data, 1, data.length - 1);
+        try {
+            return codec.read(in);
+        }
+        catch (BufferUnderflowException | IndexOutOfBoundsException e) {
+            throw new SerializationException("Truncated binary value from " + topic, e);
+        }
+    }
+}
@@ -0,0 +1,62 @@
+package uk.co.dalelane.kafkastreams.xboxlive.data.serdes;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+
+import org.apache.kafka.common.errors.SerializationException;
+import org.apache.kafka.common.serialization.Serializer;
+
+/**
+ * Writes state store values in the compact binary format,
+ *  prefixed with a version byte.
+ */
+public class BinaryStoreSerializer<T> implements Serializer<T> {
+
+    /**
+     * Version byte at the start of every binary value. This can
+     *  never be the first byte of a JSON document, which is how
+     *  the deserializer tells the two formats apart.
+     */
+    public static final byte VERSION_1 = 0x01;
+
+    /**
+     * Version byte for aggregates that replaced an earlier type
+     *  in the same store, so that values written with the earlier
+     *  type can be recognised and converted.
+     */
+    public static final byte VERSION_2 = 0x02;
+
+    private static final int INITIAL_BUFFER_SIZE = 128;
+
+    private BinaryCodec<T> codec;
+    private byte version;
+
+    public BinaryStoreSerializer(BinaryCodec<T> binaryCodec) {
+        this(binaryCodec, VERSION_1);
+    }
+
+    public BinaryStoreSerializer(BinaryCodec<T> binaryCodec, byte versionByte) {
+        codec = binaryCodec;
+        version = versionByte;
+    }
+
+    @Override
+    public byte[] serialize(String topic, T data) {
+        if (data == null) {
+            return null;
+        }
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(INITIAL_BUFFER_SIZE);
+        try {
+            DataOutputStream out = new DataOutputStream(bytes);
+            out.writeByte(version);
+            codec.write(out, data);
+            out.flush();
+        }
+        catch (IOException e) {
+            throw new SerializationException("Unable to serialize " + data.getClass().getSimpleName(), e);
+        }
+        return bytes.toByteArray();
+    }
+}
@@ -0,0 +1,35 @@
+package uk.co.dalelane.kafkastreams.xboxlive.data.serdes;
+
+import java.io.IOException;
+import java.time.Duration;
+
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+
+/**
+ * Reads and writes durations as a whole number of seconds.
+ */
+public class DurationTypeAdapter extends TypeAdapter<Duration> {
+
+    public static final DurationTypeAdapter INSTANCE = new DurationTypeAdapter();
+
+    @Override
+    public void write(JsonWriter out, Duration value) throws IOException {
+        if (value == null) {
+            out.nullValue();
+            return;
+        }
+        out.value(value.toSeconds());
+    }
+
+    @Override
+    public Duration read(JsonReader in) throws IOException {
+        if (in.peek() == JsonToken.NULL) {
+            in.nextNull();
+            return null;
+        }
+        return Duration.ofSeconds(in.nextLong());
+    }
+}
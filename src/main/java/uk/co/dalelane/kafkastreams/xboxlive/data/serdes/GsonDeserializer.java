@@ -1,26 +1,28 @@
 package uk.co.dalelane.kafkastreams.xboxlive.data.serdes;
 
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
 import java.nio.charset.StandardCharsets;
-import java.time.Duration;
-import java.time.Instant;
-
-import com.google.gson.Gson;
-import com.google.gson.GsonBuilder;
 
+import org.apache.kafka.common.errors.SerializationException;
 import org.apache.kafka.common.serialization.Deserializer;
 
-public class GsonDeserializer<T> implements Deserializer<T> {
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
 
-    private Class<T> target;
-    private Gson jsonParser;
+/**
+ * Reads JSON straight from a UTF-8 byte array using a
+ *  hand-written type adapter, rather than copying it into a
+ *  String for Gson's reflection-based adapters.
+ */
+public class GsonDeserializer<T> implements Deserializer<T> {
 
-    public GsonDeserializer(Class<T> targetClass) {
-        GsonBuilder gsonBuilder = new GsonBuilder();
-        gsonBuilder.registerTypeAdapter(Instant.class, new InstantDeserializer());
-        gsonBuilder.registerTypeAdapter(Duration.class, new DurationDeserializer());
+    private TypeAdapter<T> adapter;
 
-        jsonParser = gsonBuilder.create();
-        target = targetClass;
+    public GsonDeserializer(TypeAdapter<T> typeAdapter) {
+        adapter = typeAdapter;
     }
 
     @Override
@@ -29,7 +31,20 @@ public class GsonDeserializer<T> implements Deserializer<T> {
             return null;
         }
 
-        String stringData = new String(data, StandardCharsets.UTF_8);
-        return jsonParser.fromJson(stringData, target);
+        JsonReader reader = new JsonReader(new InputStreamReader(new ByteArrayInputStream(data), StandardCharsets.UTF_8));
+        // match the leniency of a default Gson instance
+        reader.setLenient(true);
+        try {
+            T value = adapter.read(reader);
+            // like Gson, reject anything after the value, such as
+            //  trailing junk or a second document
+            if (reader.peek() != JsonToken.END_DOCUMENT) {
+                throw new SerializationException("JSON document from " + topic + " was not fully consumed");
+            }
+            return value;
+        }
+        catch (IOException e) {
+            throw new SerializationException("Unable to deserialize message from " + topic, e);
+        }
     }
 }
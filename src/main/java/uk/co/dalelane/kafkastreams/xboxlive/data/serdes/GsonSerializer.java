@@ -1,29 +1,50 @@
 package uk.co.dalelane.kafkastreams.xboxlive.data.serdes;
 
-import org.apache.kafka.common.serialization.Serializer;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.nio.charset.StandardCharsets;
 
-import java.time.Duration;
-import java.time.Instant;
+import org.apache.kafka.common.errors.SerializationException;
+import org.apache.kafka.common.serialization.Serializer;
 
-import com.google.gson.Gson;
-import com.google.gson.GsonBuilder;
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonWriter;
 
+/**
+ * Writes JSON straight into a UTF-8 byte array using a
+ *  hand-written type adapter, rather than building a String
+ *  with Gson's reflection-based adapters.
+ */
 public class GsonSerializer<T> implements Serializer<T> {
 
-    private Class<T> target;
-    private Gson jsonParser;
+    private static final int INITIAL_BUFFER_SIZE = 256;
 
-    public GsonSerializer(Class<T> targetClass) {
-        GsonBuilder gsonBuilder = new GsonBuilder();
-        gsonBuilder.registerTypeAdapter(Instant.class, new InstantSerializer());
-        gsonBuilder.registerTypeAdapter(Duration.class, new DurationSerializer());
+    private TypeAdapter<T> adapter;
 
-        jsonParser = gsonBuilder.create();
-        target = targetClass;
+    public GsonSerializer(TypeAdapter<T> typeAdapter) {
+        adapter = typeAdapter;
     }
 
     @Override
     public byte[] serialize(String topic, T data) {
-        return jsonParser.toJson(data, target).getBytes();
+        if (data == null) {
+            return null;
+        }
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(INITIAL_BUFFER_SIZE);
+        try {
+            JsonWriter writer = new JsonWriter(new OutputStreamWriter(bytes, StandardCharsets.UTF_8));
+            // match the output of a default Gson instance
+            writer.setSerializeNulls(false);
+            writer.setHtmlSafe(true);
+
+            adapter.write(writer, data);
+            writer.flush();
+        }
+        catch (IOException e) {
+            throw new SerializationException("Unable to serialize " + data.getClass().getSimpleName(), e);
+        }
+        return bytes.toByteArray();
     }
 }
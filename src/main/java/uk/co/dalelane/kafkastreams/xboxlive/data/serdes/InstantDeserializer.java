@@ -1,18 +0,0 @@
-package uk.co.dalelane.kafkastreams.xboxlive.data.serdes;
-
-import java.lang.reflect.Type;
-import java.time.Instant;
-
-import com.google.gson.JsonDeserializationContext;
-import com.google.gson.JsonDeserializer;
-import com.google.gson.JsonElement;
-import com.google.gson.JsonParseException;
-
-
-public class InstantDeserializer implements JsonDeserializer<Instant> {
-
-    @Override
-    public Instant deserialize(JsonElement json, Type typeOfT, JsonDeserializationContext context) throws JsonParseException {
-        return Instant.parse(json.getAsString());
-    }
-}
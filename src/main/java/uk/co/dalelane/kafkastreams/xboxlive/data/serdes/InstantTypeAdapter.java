@@ -0,0 +1,38 @@
+package uk.co.dalelane.kafkastreams.xboxlive.data.serdes;
+
+import java.io.IOException;
+import java.time.Instant;
+
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+
+/**
+ * Reads and writes timestamps as ISO-8601 strings.
+ *
+ *  Uses IsoInstants rather than Instant.parse and Instant.toString,
+ *  as timestamps are read and written for most events.
+ */
+public class InstantTypeAdapter extends TypeAdapter<Instant> {
+
+    public static final InstantTypeAdapter INSTANCE = new InstantTypeAdapter();
+
+    @Override
+    public void write(JsonWriter out, Instant value) throws IOException {
+        if (value == null) {
+            out.nullValue();
+            return;
+        }
+        out.value(IsoInstants.format(value));
+    }
+
+    @Override
+    public Instant read(JsonReader in) throws IOException {
+        if (in.peek() == JsonToken.NULL) {
+            in.nextNull();
+            return null;
+        }
+        return IsoInstants.parse(in.nextString());
+    }
+}
@@ -0,0 +1,174 @@
+package uk.co.dalelane.kafkastreams.xboxlive.data.serdes;
+
+import java.time.Instant;
+
+/**
+ * Parses and formats timestamps in the ISO-8601 UTC form used in
+ *  Xbox events, e.g. 2023-02-04T21:43:10.123Z
+ *
+ *  The digits are read and written directly, rather than using a
+ *  DateTimeFormatter. Anything outside of the simple form (other
+ *  offsets, lowercase letters, years outside 0000-9999, leap
+ *  seconds) is handed to Instant.parse and Instant.toString, so
+ *  the results are always the same as theirs.
+ */
+public class IsoInstants {
+
+    private static final int SECONDS_PER_DAY = 86400;
+    /** days from 0000-03-01 to 1970-01-01 */
+    private static final long DAYS_0000_TO_1970 = 719468;
+
+
+
+    /**
+     * Returns the same Instant as Instant.parse(text).
+     *
+     * @throws java.time.format.DateTimeParseException if the text
+     *  can't be parsed
+     */
+    public static Instant parse(String text) {
+        final int length = text.length();
+        if (length < 20 || length > 30 ||
+            text.charAt(4) != '-' || text.charAt(7) != '-' || text.charAt(10) != 'T' ||
+            text.charAt(13) != ':' || text.charAt(16) != ':' || text.charAt(length - 1) != 'Z')
+        {
+            return Instant.parse(text);
+        }
+
+        final int year   = digits(text, 0, 4);
+        final int month  = digits(text, 5, 2);
+        final int day    = digits(text, 8, 2);
+        final int hour   = digits(text, 11, 2);
+        final int minute = digits(text, 14, 2);
+        final int second = digits(text, 17, 2);
+        if (year < 0 || month < 1 || month > 12 || day < 1 || day > daysInMonth(year, month) ||
+            hour < 0 || hour > 23 || minute < 0 || minute > 59 || second < 0 || second > 59)
+        {
+            return Instant.parse(text);
+        }
+
+        int nanos = 0;
+        if (length > 20) {
+            // a fraction of 1 to 9 digits
+            final int fractionDigits = length - 21;
+            if (text.charAt(19) != '.' || fractionDigits == 0) {
+                return Instant.parse(text);
+            }
+            nanos = digits(text, 20, fractionDigits);
+            if (nanos < 0) {
+                return Instant.parse(text);
+            }
+            for (int i = fractionDigits; i < 9; i++) {
+                nanos *= 10;
+            }
+        }
+
+        final long epochDay = toEpochDay(year, month, day);
+        final long epochSecond = epochDay * SECONDS_PER_DAY + hour * 3600 + minute * 60 + second;
+        return Instant.ofEpochSecond(epochSecond, nanos);
+    }
+
+
+    /**
+     * Returns the same String as instant.toString().
+     */
+    public static String format(Instant instant) {
+        final long epochSecond = instant.getEpochSecond();
+        final long epochDay = Math.floorDiv(epochSecond, SECONDS_PER_DAY);
+        final int secondOfDay = (int) Math.floorMod(epochSecond, SECONDS_PER_DAY);
+
+        // civil date from the days since 1970, using eras of 400 years
+        //  starting on 1st March, so the leap day is the last day
+        final long days = epochDay + DAYS_0000_TO_1970;
+        final long era = Math.floorDiv(days, 146097);
+        final int dayOfEra = (int) (days - era * 146097);
+        final int yearOfEra = (dayOfEra - dayOfEra / 1460 + dayOfEra / 36524 - dayOfEra / 146096) / 365;
+        final int dayOfYear = dayOfEra - (365 * yearOfEra + yearOfEra / 4 - yearOfEra / 100);
+        final int monthIndex = (5 * dayOfYear + 2) / 153;
+        final int day = dayOfYear - (153 * monthIndex + 2) / 5 + 1;
+        final int month = monthIndex < 10 ? monthIndex + 3 : monthIndex - 9;
+        final long year = era * 400 + yearOfEra + (month <= 2 ? 1 : 0);
+        if (year < 0 || year > 9999) {
+            return instant.toString();
+        }
+
+        final int nanos = instant.getNano();
+        final int fractionDigits = nanos == 0 ? 0 :
+                                   nanos % 1000_000 == 0 ? 3 :
+                                   nanos % 1000 == 0 ? 6 : 9;
+
+        final char[] chars = new char[fractionDigits == 0 ? 20 : 21 + fractionDigits];
+        writeDigits(chars, 0, (int) year, 4);
+        chars[4] = '-';
+        writeDigits(chars, 5, month, 2);
+        chars[7] = '-';
+        writeDigits(chars, 8, day, 2);
+        chars[10] = 'T';
+        writeDigits(chars, 11, secondOfDay / 3600, 2);
+        chars[13] = ':';
+        writeDigits(chars, 14, (secondOfDay / 60) % 60, 2);
+        chars[16] = ':';
+        writeDigits(chars, 17, secondOfDay % 60, 2);
+        if (fractionDigits > 0) {
+            chars[19] = '.';
+            int fraction = nanos;
+            for (int i = fractionDigits; i < 9; i++) {
+                fraction /= 10;
+            }
+            writeDigits(chars, 20, fraction, fractionDigits);
+        }
+        chars[chars.length - 1] = 'Z';
+        return new String(chars);
+    }
+
+
+
+    /**
+     * Reads a number from the given number of ASCII digits.
+     *
+     * @return the number, or -1 if any of the chars aren't digits
+     */
+    private static int digits(String text, int start, int count) {
+        int value = 0;
+        for (int i = start; i < start + count; i++) {
+            int digit = text.charAt(i) - '0';
+            if (digit < 0 || digit > 9) {
+                return -1;
+            }
+            value = value * 10 + digit;
+        }
+        return value;
+    }
+
+    private static void writeDigits(char[] chars, int start, int value, int count) {
+        for (int i = start + count - 1; i >= start; i--) {
+            chars[i] = (char) ('0' + value % 10);
+            value /= 10;
+        }
+    }
+
+    private static int daysInMonth(int year, int month) {
+        switch (month) {
+            case 2:
+                boolean leap = (year % 4 == 0) && (year % 100 != 0 || year % 400 == 0);
+                return leap ? 29 : 28;
+            case 4:
+            case 6:
+            case 9:
+            case 11:
+                return 30;
+            default:
+                return 31;
+        }
+    }
+
+    /** days since 1970-01-01, for a valid date in year 0 or later */
+    private static long toEpochDay(int year, int month, int day) {
+        final int y = month <= 2 ? year - 1 : year;
+        final int era = Math.floorDiv(y, 400);
+        final int yearOfEra = y - era * 400;
+        final int dayOfYear = (153 * (month > 2 ? month - 3 : month + 9) + 2) / 5 + day - 1;
+        final int dayOfEra = yearOfEra * 365 + yearOfEra / 4 - yearOfEra / 100 + dayOfYear;
+        return (long) era * 146097 + dayOfEra - DAYS_0000_TO_1970;
+    }
+}
@@ -0,0 +1,314 @@
+package uk.co.dalelane.kafkastreams.xboxlive.data.serdes;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Reads a single top-level field from a JSON object in a UTF-8
+ *  byte array, without parsing the rest of the object into
+ *  objects or strings.
+ *
+ *  Other values are skipped over, only looking at the bytes that
+ *  start and end strings, objects and arrays. Field names are
+ *  compared as bytes, and only decoded if they contain escapes.
+ *
+ *  Only strict JSON is understood. If the scanner can't read the
+ *  JSON, it throws an IllegalArgumentException, so that callers
+ *  can fall back to using a (lenient) deserializer.
+ */
+public class JsonFieldScanner {
+
+    private final byte[] fieldName;
+    private final String fieldNameString;
+
+
+    public JsonFieldScanner(String fieldName) {
+        this.fieldNameString = fieldName;
+        this.fieldName = fieldName.getBytes(StandardCharsets.UTF_8);
+    }
+
+
+    /**
+     * Returns the value of the field, read in the same way as
+     *  JsonFields.readString - numbers and booleans are returned
+     *  as text. If the field is repeated, the last value is used.
+     *
+     * @return the value, or null if the field is missing or null
+     * @throws IllegalArgumentException if the JSON can't be read,
+     *  or the value of the field is an object or array
+     */
+    public String readString(byte[] json) {
+        Cursor cursor = new Cursor(json);
+        String value = null;
+
+        cursor.skipWhitespace();
+        cursor.expect('{');
+        cursor.skipWhitespace();
+        if (cursor.peek() == '}') {
+            return null;
+        }
+        while (true) {
+            cursor.skipWhitespace();
+            boolean matches = cursor.readName(fieldName, fieldNameString);
+            cursor.skipWhitespace();
+            cursor.expect(':');
+            cursor.skipWhitespace();
+            if (matches) {
+                value = cursor.readScalar();
+            }
+            else {
+                cursor.skipValue();
+            }
+            cursor.skipWhitespace();
+            byte next = cursor.next();
+            if (next == '}') {
+                return value;
+            }
+            if (next != ',') {
+                throw cursor.error("Expected ',' or '}'");
+            }
+        }
+    }
+
+
+
+    private static class Cursor {
+
+        private final byte[] json;
+        private int pos;
+
+        Cursor(byte[] json) {
+            this.json = json;
+        }
+
+        byte peek() {
+            if (pos >= json.length) {
+                throw error("Unexpected end of JSON");
+            }
+            return json[pos];
+        }
+
+        byte next() {
+            byte b = peek();
+            pos++;
+            return b;
+        }
+
+        void expect(char c) {
+            if (next() != c) {
+                throw error("Expected '" + c + "'");
+            }
+        }
+
+        void skipWhitespace() {
+            while (pos < json.length) {
+                byte b = json[pos];
+                if (b != ' ' && b != '\n' && b != '\r' && b != '\t') {
+                    return;
+                }
+                pos++;
+            }
+        }
+
+
+        /**
+         * Reads a field name, returning true if it matches the
+         *  given name.
+         */
+        boolean readName(byte[] name, String nameString) {
+            expect('"');
+            int start = pos;
+            boolean escaped = false;
+            while (true) {
+                byte b = next();
+                if (b == '"') {
+                    break;
+                }
+                if (b == '\\') {
+                    escaped = true;
+                    next();
+                }
+            }
+            if (escaped) {
+                // rare, so just decode it and compare as a string
+                pos = start - 1;
+                return nameString.equals(readStringValue());
+            }
+            int length = pos - 1 - start;
+            if (length != name.length) {
+                return false;
+            }
+            for (int i = 0; i < length; i++) {
+                if (json[start + i] != name[i]) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+
+        /**
+         * Reads a string, number, boolean or null value as text.
+         */
+        String readScalar() {
+            byte b = peek();
+            if (b == '"') {
+                return readStringValue();
+            }
+            if (b == '{' || b == '[') {
+                throw error("Expected a string");
+            }
+            int start = pos;
+            skipLiteral();
+            String literal = new String(json, start, pos - start, StandardCharsets.UTF_8);
+            if (literal.equals("null")) {
+                return null;
+            }
+            return literal;
+        }
+
+        String readStringValue() {
+            expect('"');
+            int start = pos;
+            // fast path - no escapes, so the bytes can be decoded as-is
+            while (true) {
+                byte b = next();
+                if (b == '"') {
+                    return new String(json, start, pos - 1 - start, StandardCharsets.UTF_8);
+                }
+                if (b == '\\') {
+                    break;
+                }
+            }
+
+            pos = start;
+            StringBuilder value = new StringBuilder();
+            int runStart = pos;
+            while (true) {
+                byte b = next();
+                if (b == '"') {
+                    value.append(new String(json, runStart, pos - 1 - runStart, StandardCharsets.UTF_8));
+                    return value.toString();
+                }
+                if (b != '\\') {
+                    continue;
+                }
+                value.append(new String(json, runStart, pos - 1 - runStart, StandardCharsets.UTF_8));
+                byte escape = next();
+                switch (escape) {
+                    case '"':
+                    case '\\':
+                    case '/':
+                        value.append((char) escape);
+                        break;
+                    case 'b':
+                        value.append('\b');
+                        break;
+                    case 'f':
+                        value.append('\f');
+                        break;
+                    case 'n':
+                        value.append('\n');
+                        break;
+                    case 'r':
+                        value.append('\r');
+                        break;
+                    case 't':
+                        value.append('\t');
+                        break;
+                    case 'u':
+                        // surrogate pairs are written as two escapes, which
+                        //  are appended as two chars and so combine correctly
+                        value.append(readHexChar());
+                        break;
+                    default:
+                        throw error("Invalid escape");
+                }
+                runStart = pos;
+            }
+        }
+
+        private char readHexChar() {
+            int c = 0;
+            for (int i = 0; i < 4; i++) {
+                int digit = Character.digit(next(), 16);
+                if (digit < 0) {
+                    throw error("Invalid unicode escape");
+                }
+                c = (c << 4) | digit;
+            }
+            return (char) c;
+        }
+
+
+        void skipValue() {
+            byte b = peek();
+            if (b == '"') {
+                skipString();
+            }
+            else if (b == '{' || b == '[') {
+                skipNested();
+            }
+            else {
+                skipLiteral();
+            }
+        }
+
+        private void skipString() {
+            expect('"');
+            while (true) {
+                byte b = next();
+                if (b == '"') {
+                    return;
+                }
+                if (b == '\\') {
+                    next();
+                }
+            }
+        }
+
+        private void skipNested() {
+            int depth = 0;
+            while (true) {
+                byte b = peek();
+                if (b == '"') {
+                    skipString();
+                    continue;
+                }
+                pos++;
+                if (b == '{' || b == '[') {
+                    depth++;
+                }
+                else if (b == '}' || b == ']') {
+                    depth--;
+                    if (depth == 0) {
+                        return;
+                    }
+                }
+            }
+        }
+
+        private void skipLiteral() {
+            int start = pos;
+            while (pos < json.length) {
+                byte b = json[pos];
+                if (b == ',' || b == '}' || b == ']' ||
+                    b == ' ' || b == '\n' || b == '\r' || b == '\t')
+                {
+                    break;
+                }
+                if (b == '"' || b == '{' || b == '[' || b == ':') {
+                    throw error("Unexpected character");
+                }
+                pos++;
+            }
+            if (pos == start) {
+                throw error("Expected a value");
+            }
+        }
+
+
+        IllegalArgumentException error(String message) {
+            return new IllegalArgumentException(message + " at position " + pos);
+        }
+    }
+}
@@ -0,0 +1,15 @@
+package uk.co.dalelane.kafkastreams.xboxlive.data.serdes;
+
+/**
+ * Format used to write values to internal state stores and
+ *  their changelog topics.
+ *
+ * Values in either format can always be read back, so the
+ *  format can be changed without needing to reset state.
+ */
+public enum StateStoreFormat {
+    /** same JSON format as is used for output topics */
+    JSON,
+    /** compact versioned binary format */
+    BINARY
+}
@@ -0,0 +1,43 @@
+package uk.co.dalelane.kafkastreams.xboxlive.data.serdes;
+
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+
+import org.apache.kafka.common.errors.SerializationException;
+import org.apache.kafka.common.serialization.Deserializer;
+
+/**
+ * Reads state store values written in either the binary or
+ *  the JSON format, so that existing changelog records can
+ *  still be restored after switching format.
+ */
+public class StoreDeserializer<T> implements Deserializer<T> {
+
+    private BinaryCodec<T> codec;
+    private Deserializer<T> jsonDeserializer;
+
+    public StoreDeserializer(BinaryCodec<T> binaryCodec, Deserializer<T> json) {
+        codec = binaryCodec;
+        jsonDeserializer = json;
+    }
+
+    @Override
+    public T deserialize(String topic, byte[] data) {
+        if (data == null || data.length == 0) {
+            return null;
+        }
+
+        if (data[0] != BinaryStoreSerializer.VERSION_1) {
+            // written before the store was switched to binary
+            return jsonDeserializer.deserialize(topic, data);
+        }
+
+        ByteBuffer in = ByteBuffer.wrap(data, 1, data.length - 1);
+        try {
+            return codec.read(in);
+        }
+        catch (BufferUnderflowException | IndexOutOfBoundsException e) {
+            throw new SerializationException("Truncated binary value from " + topic, e);
+        }
+    }
+}
@@ -0,0 +1,54 @@
+package uk.co.dalelane.kafkastreams.xboxlive.data.serdes;
+
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.util.function.Function;
+
+import org.apache.kafka.common.errors.SerializationException;
+import org.apache.kafka.common.serialization.Deserializer;
+
+/**
+ * Reads state store values for an aggregate that replaced an
+ *  earlier type in the same store.
+ *
+ *  Values starting with the aggregate's version byte are read with
+ *  its binary codec. Anything else was written with the earlier type,
+ *  so is read with the earlier deserializer and then converted, which
+ *  means existing changelog records can still be restored.
+ */
+public class UpgradingStoreDeserializer<T, L> implements Deserializer<T> {
+
+    private byte version;
+    private BinaryCodec<T> codec;
+    private Deserializer<L> legacyDeserializer;
+    private Function<L, T> upgrade;
+
+    public UpgradingStoreDeserializer(byte versionByte, BinaryCodec<T> binaryCodec,
+                                      Deserializer<L> legacy, Function<L, T> converter)
+    {
+        version = versionByte;
+        codec = binaryCodec;
+        legacyDeserializer = legacy;
+        upgrade = converter;
+    }
+
+    @Override
+    public T deserialize(String topic, byte[] data) {
+        if (data == null || data.length == 0) {
+            return null;
+        }
+
+        if (data[0] != version) {
+            L legacyValue = legacyDeserializer.deserialize(topic, data);
+            return legacyValue == null ? null : upgrade.apply(legacyValue);
+        }
+
+        ByteBuffer in = ByteBuffer.wrap(data, 1, data.length - 1);
+        try {
+            return codec.read(in);
+        }
+        catch (BufferUnderflowException | IndexOutOfBoundsException e) {
+            throw new SerializationException("Truncated binary value from " + topic, e);
+        }
+    }
+}
@@ -1,34 +1,129 @@
 package uk.co.dalelane.kafkastreams.xboxlive.data.serdes;
 
+import org.apache.kafka.common.serialization.Deserializer;
 import org.apache.kafka.common.serialization.Serde;
+import org.apache.kafka.common.serialization.Serializer;
 import org.apache.kafka.common.serialization.Serdes;
 
+import com.google.gson.TypeAdapter;
+
 import uk.co.dalelane.kafkastreams.xboxlive.data.achievements.Achievement;
+import uk.co.dalelane.kafkastreams.xboxlive.data.achievements.AchievementJsonAdapter;
+import uk.co.dalelane.kafkastreams.xboxlive.data.achievements.AchievementScore;
+import uk.co.dalelane.kafkastreams.xboxlive.data.achievements.AchievementScoreJsonAdapter;
+import uk.co.dalelane.kafkastreams.xboxlive.data.achievements.Leaderboard;
+import uk.co.dalelane.kafkastreams.xboxlive.data.achievements.LeaderboardJsonAdapter;
 import uk.co.dalelane.kafkastreams.xboxlive.data.achievements.WeeklyGamerScore;
+import uk.co.dalelane.kafkastreams.xboxlive.data.achievements.WeeklyGamerScoreJsonAdapter;
+import uk.co.dalelane.kafkastreams.xboxlive.data.counts.DistinctTitles;
+import uk.co.dalelane.kafkastreams.xboxlive.data.counts.DistinctTitlesBinaryCodec;
+import uk.co.dalelane.kafkastreams.xboxlive.data.counts.HyperLogLog;
+import uk.co.dalelane.kafkastreams.xboxlive.data.counts.HyperLogLogBinaryCodec;
 import uk.co.dalelane.kafkastreams.xboxlive.data.counts.PlayerGames;
+import uk.co.dalelane.kafkastreams.xboxlive.data.counts.PlayerGamesBinaryCodec;
+import uk.co.dalelane.kafkastreams.xboxlive.data.counts.PlayerGamesJsonAdapter;
+import uk.co.dalelane.kafkastreams.xboxlive.data.counts.TitlePlayers;
+import uk.co.dalelane.kafkastreams.xboxlive.data.counts.TitlePlayersJsonAdapter;
 import uk.co.dalelane.kafkastreams.xboxlive.data.presence.EnrichedPresence;
+import uk.co.dalelane.kafkastreams.xboxlive.data.presence.EnrichedPresenceJsonAdapter;
 import uk.co.dalelane.kafkastreams.xboxlive.data.presence.Presence;
+import uk.co.dalelane.kafkastreams.xboxlive.data.presence.PresenceJsonAdapter;
 import uk.co.dalelane.kafkastreams.xboxlive.data.sessions.PlaySession;
+import uk.co.dalelane.kafkastreams.xboxlive.data.sessions.PlaySessionBinaryCodec;
+import uk.co.dalelane.kafkastreams.xboxlive.data.sessions.PlaySessionJsonAdapter;
+import uk.co.dalelane.kafkastreams.xboxlive.data.sessions.PlaySessions;
+import uk.co.dalelane.kafkastreams.xboxlive.data.sessions.PlaySessionsBinaryCodec;
+import uk.co.dalelane.kafkastreams.xboxlive.data.sessions.PlaySessionsJsonAdapter;
+import uk.co.dalelane.kafkastreams.xboxlive.data.users.XboxUserInfo;
+import uk.co.dalelane.kafkastreams.xboxlive.data.users.XboxUserInfoJsonAdapter;
 
 public class XboxSerdes {
 
-    private static <T> Serde<T> createSerdes(Class<T> clazz) {
-        GsonSerializer<T> serializer = new GsonSerializer<>(clazz);
-        GsonDeserializer<T> deserializer = new GsonDeserializer<>(clazz);
+    private static <T> Serde<T> createSerdes(TypeAdapter<T> adapter) {
+        GsonSerializer<T> serializer = new GsonSerializer<>(adapter);
+        GsonDeserializer<T> deserializer = new GsonDeserializer<>(adapter);
+        return Serdes.serdeFrom(serializer, deserializer);
+    }
+
+    /**
+     * Creates serdes for values in internal state stores. These always
+     *  read both formats, but only write using the chosen format.
+     */
+    private static <T> Serde<T> createStoreSerdes(Serde<T> jsonSerdes, BinaryCodec<T> codec, StateStoreFormat format) {
+        Serializer<T> serializer = format == StateStoreFormat.BINARY ?
+                                       new BinaryStoreSerializer<>(codec) :
+                                       jsonSerdes.serializer();
+        Deserializer<T> deserializer = new StoreDeserializer<>(codec, jsonSerdes.deserializer());
         return Serdes.serdeFrom(serializer, deserializer);
     }
 
     public static final Serde<String> GAMERTAG_SERDES = Serdes.String();
 
-    public static final Serde<Achievement> ACHIEVEMENT_SERDES = createSerdes(Achievement.class);
+    /** xbox user ids (xuids), which are used as keys where there isn't a gamertag */
+    public static final Serde<String> USERID_SERDES = Serdes.String();
+
+    public static final Serde<Achievement> ACHIEVEMENT_SERDES = createSerdes(new AchievementJsonAdapter());
+    /** reads only the gamertag and score from achievement events */
+    public static final Serde<AchievementScore> ACHIEVEMENT_SCORE_SERDES = createSerdes(new AchievementScoreJsonAdapter());
+
+    public static final Serde<Presence> PRESENCE_SERDES = createSerdes(new PresenceJsonAdapter());
+
+    public static final Serde<EnrichedPresence> ENRICHED_PRESENCE_SERDES = createSerdes(new EnrichedPresenceJsonAdapter());
+
+    public static final Serde<PlayerGames> GAME_COUNTS_SERDES = createSerdes(new PlayerGamesJsonAdapter());
+
+    public static final Serde<WeeklyGamerScore> WEEKLY_SCORE_SERDES = createSerdes(new WeeklyGamerScoreJsonAdapter());
+
+    public static final Serde<Leaderboard> LEADERBOARD_SERDES = createSerdes(new LeaderboardJsonAdapter());
+
+    public static final Serde<PlaySession> PLAY_SESSION_SERDES = createSerdes(new PlaySessionJsonAdapter());
 
-    public static final Serde<Presence> PRESENCE_SERDES = createSerdes(Presence.class);
+    public static final Serde<PlaySessions> PLAY_SESSIONS_SERDES = createSerdes(new PlaySessionsJsonAdapter());
 
-    public static final Serde<EnrichedPresence> ENRICHED_PRESENCE_SERDES = createSerdes(EnrichedPresence.class);
+    public static final Serde<XboxUserInfo> USER_INFO_SERDES = createSerdes(new XboxUserInfoJsonAdapter());
 
-    public static final Serde<PlayerGames> GAME_COUNTS_SERDES = createSerdes(PlayerGames.class);
+    public static final Serde<TitlePlayers> TITLE_PLAYERS_SERDES = createSerdes(new TitlePlayersJsonAdapter());
 
-    public static final Serde<WeeklyGamerScore> WEEKLY_SCORE_SERDES = createSerdes(WeeklyGamerScore.class);
+    /** sketches are only ever stored in the binary format */
+    public static final Serde<HyperLogLog> PLAYERS_SKETCH_STORE_SERDES = Serdes.serdeFrom(new BinaryStoreSerializer<>(new HyperLogLogBinaryCodec()),
+                                                                                          new BinaryStoreDeserializer<>(new HyperLogLogBinaryCodec()));
 
-    public static final Serde<PlaySession> PLAY_SESSION_SERDES = createSerdes(PlaySession.class);
+
+    public static Serde<PlayerGames> gameCountsStoreSerdes(StateStoreFormat format) {
+        return createStoreSerdes(GAME_COUNTS_SERDES, new PlayerGamesBinaryCodec(), format);
+    }
+
+    /**
+     * Distinct titles are always stored in the binary format, but
+     *  PlayerGames aggregates written by earlier versions (in either
+     *  format) are converted when they are read.
+     */
+    public static Serde<DistinctTitles> distinctTitlesStoreSerdes() {
+        DistinctTitlesBinaryCodec codec = new DistinctTitlesBinaryCodec();
+        Serializer<DistinctTitles> serializer = new BinaryStoreSerializer<>(codec, BinaryStoreSerializer.VERSION_2);
+        Deserializer<DistinctTitles> deserializer = new UpgradingStoreDeserializer<>(BinaryStoreSerializer.VERSION_2,
+                                                                                     codec,
+                                                                                     gameCountsStoreSerdes(StateStoreFormat.JSON).deserializer(),
+                                                                                     DistinctTitles::fromPlayerGames);
+        return Serdes.serdeFrom(serializer, deserializer);
+    }
+
+    public static Serde<PlaySession> playSessionStoreSerdes(StateStoreFormat format) {
+        return createStoreSerdes(PLAY_SESSION_SERDES, new PlaySessionBinaryCodec(), format);
+    }
+
+    /**
+     * Lists of play sessions are always stored in the binary format,
+     *  but single play sessions written by earlier versions (in either
+     *  format) are converted when they are read.
+     */
+    public static Serde<PlaySessions> playSessionsStoreSerdes() {
+        PlaySessionsBinaryCodec codec = new PlaySessionsBinaryCodec();
+        Serializer<PlaySessions> serializer = new BinaryStoreSerializer<>(codec, BinaryStoreSerializer.VERSION_2);
+        Deserializer<PlaySessions> deserializer = new UpgradingStoreDeserializer<>(BinaryStoreSerializer.VERSION_2,
+                                                                                   codec,
+                                                                                   playSessionStoreSerdes(StateStoreFormat.JSON).deserializer(),
+                                                                                   PlaySessions::fromLongest);
+        return Serdes.serdeFrom(serializer, deserializer);
+    }
 }
@@ -13,39 +13,39 @@ public class PlaySession {
 
     @SerializedName("startDate")
     @Expose
-    private Instant startDate;
+    Instant startDate;
 
     @SerializedName("endDate")
     @Expose
-    private Instant endDate;
+    Instant endDate;
 
     @SerializedName("duration")
     @Expose
-    private Duration duration;
+    Duration duration;
 
     @SerializedName("gamertag")
     @Expose
-    private String gamertag;
+    String gamertag;
 
     @SerializedName("realName")
     @Expose
-    private String realName;
+    String realName;
 
     @SerializedName("profilePicUrl")
     @Expose
-    private String profilePicUrl;
+    String profilePicUrl;
 
     @SerializedName("state")
     @Expose
-    private String state;
+    String state;
 
     @SerializedName("titleid")
     @Expose
-    private String titleid;
+    String titleid;
 
     @SerializedName("titlename")
     @Expose
-    private String titlename;
+    String titlename;
 
 
 
@@ -66,10 +66,31 @@ public class PlaySession {
         duration = Duration.between(startDate, endDate);
     }
 
+    /**
+     * Returns a copy of this session, without an end date, with the
+     *  duration of the session so far.
+     */
+    public PlaySession inProgressAt(Instant now) {
+        PlaySession session = new PlaySession();
+        session.startDate = startDate;
+        session.duration = Duration.between(startDate, now);
+        session.gamertag = gamertag;
+        session.realName = realName;
+        session.profilePicUrl = profilePicUrl;
+        session.state = state;
+        session.titleid = titleid;
+        session.titlename = titlename;
+        return session;
+    }
+
     public boolean isComplete() {
         return endDate != null && duration != null;
     }
 
+    public Instant getStartDate() {
+        return startDate;
+    }
+
     public String getTitleId() {
         return titleid;
     }
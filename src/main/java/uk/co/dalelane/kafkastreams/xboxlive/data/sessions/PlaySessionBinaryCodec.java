@@ -0,0 +1,42 @@
+package uk.co.dalelane.kafkastreams.xboxlive.data.sessions;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+import uk.co.dalelane.kafkastreams.xboxlive.data.serdes.BinaryCodec;
+import uk.co.dalelane.kafkastreams.xboxlive.data.serdes.BinaryFields;
+
+/**
+ * Compact binary encoding of PlaySession for state stores.
+ */
+public class PlaySessionBinaryCodec implements BinaryCodec<PlaySession> {
+
+    @Override
+    public void write(DataOutputStream out, PlaySession value) throws IOException {
+        BinaryFields.writeInstant(out, value.startDate);
+        BinaryFields.writeInstant(out, value.endDate);
+        BinaryFields.writeDuration(out, value.duration);
+        BinaryFields.writeString(out, value.gamertag);
+        BinaryFields.writeString(out, value.realName);
+        BinaryFields.writeString(out, value.profilePicUrl);
+        BinaryFields.writeString(out, value.state);
+        BinaryFields.writeString(out, value.titleid);
+        BinaryFields.writeString(out, value.titlename);
+    }
+
+    @Override
+    public PlaySession read(ByteBuffer in) {
+        PlaySession value = new PlaySession();
+        value.startDate = BinaryFields.readInstant(in);
+        value.endDate = BinaryFields.readInstant(in);
+        value.duration = BinaryFields.readDuration(in);
+        value.gamertag = BinaryFields.readString(in);
+        value.realName = BinaryFields.readString(in);
+        value.profilePicUrl = BinaryFields.readString(in);
+        value.state = BinaryFields.readString(in);
+        value.titleid = BinaryFields.readString(in);
+        value.titlename = BinaryFields.readString(in);
+        return value;
+    }
+}
@@ -0,0 +1,85 @@
+package uk.co.dalelane.kafkastreams.xboxlive.data.sessions;
+
+import java.io.IOException;
+
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+
+import uk.co.dalelane.kafkastreams.xboxlive.data.serdes.DurationTypeAdapter;
+import uk.co.dalelane.kafkastreams.xboxlive.data.serdes.InstantTypeAdapter;
+import uk.co.dalelane.kafkastreams.xboxlive.data.serdes.JsonFields;
+
+/**
+ * Reads and writes PlaySession events without using reflection.
+ */
+public class PlaySessionJsonAdapter extends TypeAdapter<PlaySession> {
+
+    @Override
+    public void write(JsonWriter out, PlaySession value) throws IOException {
+        if (value == null) {
+            out.nullValue();
+            return;
+        }
+        out.beginObject();
+        out.name("startDate");
+        InstantTypeAdapter.INSTANCE.write(out, value.startDate);
+        out.name("endDate");
+        InstantTypeAdapter.INSTANCE.write(out, value.endDate);
+        out.name("duration");
+        DurationTypeAdapter.INSTANCE.write(out, value.duration);
+        out.name("gamertag").value(value.gamertag);
+        out.name("realName").value(value.realName);
+        out.name("profilePicUrl").value(value.profilePicUrl);
+        out.name("state").value(value.state);
+        out.name("titleid").value(value.titleid);
+        out.name("titlename").value(value.titlename);
+        out.endObject();
+    }
+
+    @Override
+    public PlaySession read(JsonReader in) throws IOException {
+        if (in.peek() == JsonToken.NULL) {
+            in.nextNull();
+            return null;
+        }
+        PlaySession value = new PlaySession();
+        in.beginObject();
+        while (in.hasNext()) {
+            switch (in.nextName()) {
+                case "startDate":
+                    value.startDate = InstantTypeAdapter.INSTANCE.read(in);
+                    break;
+                case "endDate":
+                    value.endDate = InstantTypeAdapter.INSTANCE.read(in);
+                    break;
+                case "duration":
+                    value.duration = DurationTypeAdapter.INSTANCE.read(in);
+                    break;
+                case "gamertag":
+                    value.gamertag = JsonFields.readString(in);
+                    break;
+                case "realName":
+                    value.realName = JsonFields.readString(in);
+                    break;
+                case "profilePicUrl":
+                    value.profilePicUrl = JsonFields.readString(in);
+                    break;
+                case "state":
+                    value.state = JsonFields.readString(in);
+                    break;
+                case "titleid":
+                    value.titleid = JsonFields.readString(in);
+                    break;
+                case "titlename":
+                    value.titlename = JsonFields.readString(in);
+                    break;
+                default:
+                    in.skipValue();
+            }
+        }
+        in.endObject();
+        return value;
+    }
+}
@@ -0,0 +1,74 @@
+package uk.co.dalelane.kafkastreams.xboxlive.data.sessions;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+import com.google.gson.annotations.Expose;
+import com.google.gson.annotations.SerializedName;
+
+/**
+ * The longest play sessions for a gamer, longest first, up to a
+ *  maximum number of sessions.
+ */
+public class PlaySessions {
+
+    /** longest session first */
+    private static final Comparator<PlaySession> LONGEST_FIRST = Comparator.comparing(PlaySession::getDuration).reversed();
+
+    @SerializedName("sessions")
+    @Expose
+    List<PlaySession> sessions;
+
+    public PlaySessions() {
+        sessions = new ArrayList<>();
+    }
+
+
+    /**
+     * Adds the session if it is one of the longest sessions.
+     *
+     * @param maxSessions - maximum number of sessions to keep
+     * @return true if the session was added
+     */
+    public boolean add(PlaySession session, int maxSessions) {
+        if (sessions.size() >= maxSessions &&
+            LONGEST_FIRST.compare(session, sessions.get(sessions.size() - 1)) >= 0)
+        {
+            // not longer than any of the sessions already kept
+            return false;
+        }
+
+        int pos = 0;
+        while (pos < sessions.size() && LONGEST_FIRST.compare(session, sessions.get(pos)) >= 0) {
+            pos++;
+        }
+        sessions.add(pos, session);
+        while (sessions.size() > maxSessions) {
+            sessions.remove(sessions.size() - 1);
+        }
+        return true;
+    }
+
+    /**
+     * Returns the longest session, or null if there aren't any.
+     */
+    public PlaySession getLongest() {
+        return sessions.isEmpty() ? null : sessions.get(0);
+    }
+
+    public List<PlaySession> getSessions() {
+        return sessions;
+    }
+
+
+    /**
+     * Converts the single longest session that was stored before
+     *  more than one session was kept.
+     */
+    public static PlaySessions fromLongest(PlaySession longest) {
+        PlaySessions value = new PlaySessions();
+        value.sessions.add(longest);
+        return value;
+    }
+}
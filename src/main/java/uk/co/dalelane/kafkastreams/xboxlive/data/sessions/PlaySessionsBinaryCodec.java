@@ -0,0 +1,36 @@
+package uk.co.dalelane.kafkastreams.xboxlive.data.sessions;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+import uk.co.dalelane.kafkastreams.xboxlive.data.serdes.BinaryCodec;
+import uk.co.dalelane.kafkastreams.xboxlive.data.serdes.BinaryFields;
+
+/**
+ * Compact binary encoding of PlaySessions for state stores.
+ *
+ *  The sessions are written as a count followed by each session.
+ */
+public class PlaySessionsBinaryCodec implements BinaryCodec<PlaySessions> {
+
+    private final PlaySessionBinaryCodec sessionCodec = new PlaySessionBinaryCodec();
+
+    @Override
+    public void write(DataOutputStream out, PlaySessions value) throws IOException {
+        BinaryFields.writeVarLong(out, value.sessions.size());
+        for (PlaySession session : value.sessions) {
+            sessionCodec.write(out, session);
+        }
+    }
+
+    @Override
+    public PlaySessions read(ByteBuffer in) {
+        PlaySessions value = new PlaySessions();
+        int numSessions = BinaryFields.readSize(in);
+        for (int i = 0; i < numSessions; i++) {
+            value.sessions.add(sessionCodec.read(in));
+        }
+        return value;
+    }
+}
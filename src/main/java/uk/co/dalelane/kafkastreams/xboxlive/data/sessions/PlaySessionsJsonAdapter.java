@@ -0,0 +1,67 @@
+package uk.co.dalelane.kafkastreams.xboxlive.data.sessions;
+
+import java.io.IOException;
+
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+
+/**
+ * Reads and writes PlaySessions events without using reflection.
+ */
+public class PlaySessionsJsonAdapter extends TypeAdapter<PlaySessions> {
+
+    private final PlaySessionJsonAdapter sessionAdapter = new PlaySessionJsonAdapter();
+
+    @Override
+    public void write(JsonWriter out, PlaySessions value) throws IOException {
+        if (value == null) {
+            out.nullValue();
+            return;
+        }
+        out.beginObject();
+        out.name("sessions");
+        if (value.sessions == null) {
+            out.nullValue();
+        }
+        else {
+            out.beginArray();
+            for (PlaySession session : value.sessions) {
+                sessionAdapter.write(out, session);
+            }
+            out.endArray();
+        }
+        out.endObject();
+    }
+
+    @Override
+    public PlaySessions read(JsonReader in) throws IOException {
+        if (in.peek() == JsonToken.NULL) {
+            in.nextNull();
+            return null;
+        }
+        PlaySessions value = new PlaySessions();
+        in.beginObject();
+        while (in.hasNext()) {
+            switch (in.nextName()) {
+                case "sessions":
+                    if (in.peek() == JsonToken.NULL) {
+                        in.nextNull();
+                    }
+                    else {
+                        in.beginArray();
+                        while (in.hasNext()) {
+                            value.sessions.add(sessionAdapter.read(in));
+                        }
+                        in.endArray();
+                    }
+                    break;
+                default:
+                    in.skipValue();
+            }
+        }
+        in.endObject();
+        return value;
+    }
+}
@@ -0,0 +1,247 @@
+package uk.co.dalelane.kafkastreams.xboxlive.data.users;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.kafka.common.serialization.Deserializer;
+import org.apache.kafka.common.serialization.Serializer;
+import org.apache.kafka.common.utils.Bytes;
+import org.apache.kafka.streams.KeyValue;
+import org.apache.kafka.streams.processor.ProcessorContext;
+import org.apache.kafka.streams.processor.StateStore;
+import org.apache.kafka.streams.processor.StateStoreContext;
+import org.apache.kafka.streams.query.Position;
+import org.apache.kafka.streams.query.PositionBound;
+import org.apache.kafka.streams.query.Query;
+import org.apache.kafka.streams.query.QueryConfig;
+import org.apache.kafka.streams.query.QueryResult;
+import org.apache.kafka.streams.state.KeyValueBytesStoreSupplier;
+import org.apache.kafka.streams.state.KeyValueIterator;
+import org.apache.kafka.streams.state.KeyValueStore;
+import org.apache.kafka.streams.state.TimestampedBytesStore;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import uk.co.dalelane.kafkastreams.xboxlive.data.serdes.XboxSerdes;
+
+/**
+ * Store for the table of known users, which keeps an index of the
+ *  gamertags of the users in the store as it is updated.
+ *
+ *  The table is keyed by userid, but achievements only identify the
+ *  gamer by gamertag, so the index lets them be checked against the
+ *  table without scanning it. The users topic can only be read once
+ *  by a topology, so the index is kept with the store rather than in
+ *  a second table.
+ *
+ *  The index is rebuilt from the store when it is opened, after it
+ *  has been restored from the users topic, and is then updated by
+ *  every write to the store.
+ *
+ *  Values are stored with the timestamp of the user profile in front
+ *  of them, as they are for the store that a GlobalKTable would use
+ *  by default.
+ */
+class GamertagIndexedStore implements KeyValueStore<Bytes, byte[]>, TimestampedBytesStore {
+
+    private static Logger log = LoggerFactory.getLogger(GamertagIndexedStore.class);
+
+    private static final Deserializer<XboxUserInfo> DESERIALIZER = XboxSerdes.USER_INFO_SERDES.deserializer();
+
+    private final KeyValueStore<Bytes, byte[]> store;
+
+    // userid of each known gamertag - written by the global stream
+    //  thread, and read by the stream threads
+    private final Map<String, Bytes> useridsByGamertag;
+
+
+    GamertagIndexedStore(KeyValueStore<Bytes, byte[]> store, Map<String, Bytes> useridsByGamertag) {
+        this.store = store;
+        this.useridsByGamertag = useridsByGamertag;
+    }
+
+
+    /**
+     * Returns a supplier of stores that index the users written to the
+     *  given map.
+     */
+    static KeyValueBytesStoreSupplier supplier(KeyValueBytesStoreSupplier storeSupplier, Map<String, Bytes> useridsByGamertag) {
+        return new KeyValueBytesStoreSupplier() {
+            @Override
+            public String name() {
+                return storeSupplier.name();
+            }
+            @Override
+            public KeyValueStore<Bytes, byte[]> get() {
+                return new GamertagIndexedStore(storeSupplier.get(), useridsByGamertag);
+            }
+            @Override
+            public String metricsScope() {
+                return storeSupplier.metricsScope();
+            }
+        };
+    }
+
+
+    @Deprecated
+    @Override
+    public void init(ProcessorContext context, StateStore root) {
+        store.init(context, root);
+        rebuildIndex();
+    }
+
+    @Override
+    public void init(StateStoreContext context, StateStore root) {
+        // global stores are restored while they're being registered,
+        //  so the store is up to date once this returns
+        store.init(context, root);
+        rebuildIndex();
+    }
+
+    private void rebuildIndex() {
+        useridsByGamertag.clear();
+        try (KeyValueIterator<Bytes, byte[]> iterator = store.all()) {
+            while (iterator.hasNext()) {
+                KeyValue<Bytes, byte[]> user = iterator.next();
+                addToIndex(user.key, user.value);
+            }
+        }
+    }
+
+
+    @Override
+    public void put(Bytes key, byte[] value) {
+        removeFromIndex(key);
+        store.put(key, value);
+        addToIndex(key, value);
+    }
+
+    @Override
+    public byte[] putIfAbsent(Bytes key, byte[] value) {
+        byte[] previous = store.putIfAbsent(key, value);
+        if (previous == null) {
+            addToIndex(key, value);
+        }
+        return previous;
+    }
+
+    @Override
+    public void putAll(List<KeyValue<Bytes, byte[]>> entries) {
+        for (KeyValue<Bytes, byte[]> entry : entries) {
+            removeFromIndex(entry.key);
+        }
+        store.putAll(entries);
+        for (KeyValue<Bytes, byte[]> entry : entries) {
+            addToIndex(entry.key, entry.value);
+        }
+    }
+
+    @Override
+    public byte[] delete(Bytes key) {
+        removeFromIndex(key);
+        return store.delete(key);
+    }
+
+
+    private void addToIndex(Bytes userid, byte[] value) {
+        String gamertag = getGamertag(value);
+        if (gamertag != null) {
+            useridsByGamertag.put(gamertag, userid);
+        }
+    }
+
+    private void removeFromIndex(Bytes userid) {
+        String gamertag = getGamertag(store.get(userid));
+        if (gamertag != null) {
+            // the gamertag may have been taken by another user since
+            useridsByGamertag.remove(gamertag, userid);
+        }
+    }
+
+    private static String getGamertag(byte[] value) {
+        if (value == null || value.length <= Long.BYTES) {
+            return null;
+        }
+        try {
+            // skip the timestamp
+            XboxUserInfo user = DESERIALIZER.deserialize(null, Arrays.copyOfRange(value, Long.BYTES, value.length));
+            return user == null ? null : user.getGamertag();
+        }
+        catch (RuntimeException e) {
+            log.warn("Unable to read gamertag for known user", e);
+            return null;
+        }
+    }
+
+
+    @Override
+    public byte[] get(Bytes key) {
+        return store.get(key);
+    }
+
+    @Override
+    public KeyValueIterator<Bytes, byte[]> range(Bytes from, Bytes to) {
+        return store.range(from, to);
+    }
+
+    @Override
+    public KeyValueIterator<Bytes, byte[]> reverseRange(Bytes from, Bytes to) {
+        return store.reverseRange(from, to);
+    }
+
+    @Override
+    public KeyValueIterator<Bytes, byte[]> all() {
+        return store.all();
+    }
+
+    @Override
+    public KeyValueIterator<Bytes, byte[]> reverseAll() {
+        return store.reverseAll();
+    }
+
+    @Override
+    public <PS extends Serializer<P>, P> KeyValueIterator<Bytes, byte[]> prefixScan(P prefix, PS prefixKeySerializer) {
+        return store.prefixScan(prefix, prefixKeySerializer);
+    }
+
+    @Override
+    public long approximateNumEntries() {
+        return store.approximateNumEntries();
+    }
+
+    @Override
+    public String name() {
+        return store.name();
+    }
+
+    @Override
+    public void flush() {
+        store.flush();
+    }
+
+    @Override
+    public void close() {
+        store.close();
+    }
+
+    @Override
+    public boolean persistent() {
+        return store.persistent();
+    }
+
+    @Override
+    public boolean isOpen() {
+        return store.isOpen();
+    }
+
+    @Override
+    public Position getPosition() {
+        return store.getPosition();
+    }
+
+    @Override
+    public <R> QueryResult<R> query(Query<R> query, PositionBound positionBound, QueryConfig config) {
+        return store.query(query, positionBound, config);
+    }
+}
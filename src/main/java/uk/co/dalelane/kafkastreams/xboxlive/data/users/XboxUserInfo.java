@@ -13,23 +13,23 @@ public class XboxUserInfo {
 
     @SerializedName("xuid")
     @Expose
-    private String userid;
+    String userid;
 
     @SerializedName("displayName")
     @Expose
-    private String displayName;
+    String displayName;
 
     @SerializedName("realName")
     @Expose
-    private String realName;
+    String realName;
 
     @SerializedName("displayPicRaw")
     @Expose
-    private String profilePicUrl;
+    String profilePicUrl;
 
     @SerializedName("gamertag")
     @Expose
-    private String gamertag;
+    String gamertag;
 
 
     public void setUserId(String userid) {
@@ -0,0 +1,64 @@
+package uk.co.dalelane.kafkastreams.xboxlive.data.users;
+
+import java.io.IOException;
+
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+
+import uk.co.dalelane.kafkastreams.xboxlive.data.serdes.JsonFields;
+
+/**
+ * Reads and writes XboxUserInfo profiles without using reflection.
+ */
+public class XboxUserInfoJsonAdapter extends TypeAdapter<XboxUserInfo> {
+
+    @Override
+    public void write(JsonWriter out, XboxUserInfo value) throws IOException {
+        if (value == null) {
+            out.nullValue();
+            return;
+        }
+        out.beginObject();
+        out.name("xuid").value(value.userid);
+        out.name("displayName").value(value.displayName);
+        out.name("realName").value(value.realName);
+        out.name("displayPicRaw").value(value.profilePicUrl);
+        out.name("gamertag").value(value.gamertag);
+        out.endObject();
+    }
+
+    @Override
+    public XboxUserInfo read(JsonReader in) throws IOException {
+        if (in.peek() == JsonToken.NULL) {
+            in.nextNull();
+            return null;
+        }
+        XboxUserInfo value = new XboxUserInfo();
+        in.beginObject();
+        while (in.hasNext()) {
+            switch (in.nextName()) {
+                case "xuid":
+                    value.userid = JsonFields.readString(in);
+                    break;
+                case "displayName":
+                    value.displayName = JsonFields.readString(in);
+                    break;
+                case "realName":
+                    value.realName = JsonFields.readString(in);
+                    break;
+                case "displayPicRaw":
+                    value.profilePicUrl = JsonFields.readString(in);
+                    break;
+                case "gamertag":
+                    value.gamertag = JsonFields.readString(in);
+                    break;
+                default:
+                    in.skipValue();
+            }
+        }
+        in.endObject();
+        return value;
+    }
+}
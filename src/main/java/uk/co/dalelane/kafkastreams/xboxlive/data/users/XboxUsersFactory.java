@@ -1,17 +1,24 @@
 package uk.co.dalelane.kafkastreams.xboxlive.data.users;
 
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStreamReader;
 import java.io.Reader;
 import java.net.URI;
-import java.net.URL;
-import java.net.URLConnection;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Duration;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import com.google.gson.Gson;
+import com.google.gson.JsonParseException;
 
 public class XboxUsersFactory {
 
@@ -20,30 +27,68 @@ public class XboxUsersFactory {
 
     /**
      * Fetches a list of known Xbox users from the xbl API.
+     *
+     * @return the raw JSON response payload
      */
-    public static XboxUsers getXboxUsers(String apiKey) {
-        log.debug("Getting known Xbox users from the xbl.io API");
+    public static byte[] fetchXboxUsers(HttpClient client, URI apiUrl, String apiKey, Duration timeout) throws IOException, InterruptedException {
+        log.debug("Getting known Xbox users from {}", apiUrl);
 
-        try {
-            // URL to fetch the users info from
-            URL urlObj = URI.create("https://xbl.io/api/v2/friends").toURL();
+        // add request header with the API key required by xbl.io
+        HttpRequest request = HttpRequest.newBuilder(apiUrl)
+            .header("x-authorization", apiKey)
+            .timeout(timeout)
+            .GET()
+            .build();
 
-            // add request header with the API key required by xbl.io
-            URLConnection conn = urlObj.openConnection();
-            conn.setRequestProperty("x-authorization", apiKey);
+        HttpResponse<byte[]> response = client.send(request, HttpResponse.BodyHandlers.ofByteArray());
+        if (response.statusCode() != 200) {
+            throw new IOException("Unexpected response code " + response.statusCode() + " from " + apiUrl);
+        }
+        return response.body();
+    }
 
-            // create reader for getting API data
-            Reader reader = new InputStreamReader(conn.getInputStream(), StandardCharsets.UTF_8);
 
+    /**
+     * Parses the JSON response payload from the xbl API.
+     */
+    public static XboxUsers parseXboxUsers(byte[] json) throws IOException {
+        try (Reader reader = new InputStreamReader(new ByteArrayInputStream(json), StandardCharsets.UTF_8)) {
             // prepare parser for reading the JSON response payload
             Gson parser = new Gson();
 
-            // return API response
-            return parser.fromJson(reader, XboxUsers.class);
+            XboxUsers users = parser.fromJson(reader, XboxUsers.class);
+            if (users == null) {
+                throw new IOException("Empty list of Xbox users");
+            }
+            return users;
+        }
+        catch (JsonParseException e) {
+            throw new IOException("Unable to parse list of Xbox users", e);
+        }
+    }
+
+
+    /**
+     * Reads a list of known Xbox users saved by a previous call to writeSnapshot.
+     */
+    public static XboxUsers readSnapshot(Path snapshotFile) throws IOException {
+        return parseXboxUsers(Files.readAllBytes(snapshotFile));
+    }
+
+    /**
+     * Saves a JSON response payload from the xbl API, so it can be used
+     *  the next time the processor starts. The file is replaced atomically
+     *  so a partially-written snapshot is never read.
+     */
+    public static void writeSnapshot(Path snapshotFile, byte[] json) throws IOException {
+        Path absolute = snapshotFile.toAbsolutePath();
+        Path tempFile = Files.createTempFile(absolute.getParent(), absolute.getFileName().toString(), ".tmp");
+        try {
+            Files.write(tempFile, json);
+            Files.move(tempFile, absolute, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
         }
-        catch (IOException e) {
-            log.error("Unable to get known Xbox users from xbl.io API", e);
-            return new XboxUsers();
+        finally {
+            Files.deleteIfExists(tempFile);
         }
     }
 }
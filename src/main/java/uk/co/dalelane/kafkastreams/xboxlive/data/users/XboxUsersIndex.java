@@ -0,0 +1,120 @@
+package uk.co.dalelane.kafkastreams.xboxlive.data.users;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import uk.co.dalelane.kafkastreams.xboxlive.utils.LongKeyedIndex;
+import uk.co.dalelane.kafkastreams.xboxlive.utils.StringHashSet;
+
+/**
+ * Immutable snapshot of the known Xbox users, indexed so that
+ *  users can be looked up by userid or gamertag.
+ *
+ * Xbox userids (xuids) are numeric, so users are indexed by the
+ *  xuid as a primitive long, allowing a lookup to be done with a
+ *  single probe rather than hashing and comparing strings.
+ *
+ * Gamertags are kept in a hash set, so checking whether a gamertag
+ *  is known doesn't get slower as the number of users grows.
+ *
+ * A new index is built whenever the known users change, and
+ *  swapped in to replace the previous one, so it can be read
+ *  from any stream thread without locking.
+ */
+public class XboxUsersIndex {
+
+    private static Logger log = LoggerFactory.getLogger(XboxUsersIndex.class);
+
+    /** returned by parseXuid for a userid which isn't a valid xuid */
+    public static final long INVALID_XUID = -1;
+
+    public static final XboxUsersIndex EMPTY = new XboxUsersIndex(Collections.emptyList());
+
+    private final LongKeyedIndex<XboxUserInfo> usersById;
+    private final StringHashSet gamertags;
+
+
+    public XboxUsersIndex(final List<XboxUserInfo> users) {
+        LongKeyedIndex.Builder<XboxUserInfo> byId = new LongKeyedIndex.Builder<>(users.size());
+        List<String> knownGamertags = new ArrayList<>();
+
+        for (XboxUserInfo userInfo : users) {
+            if (userInfo == null) {
+                continue;
+            }
+            long xuid = parseXuid(userInfo.getUserId());
+            if (xuid == INVALID_XUID) {
+                log.warn("Ignoring user with invalid xuid {}", userInfo.getUserId());
+            }
+            else {
+                byId.put(xuid, userInfo);
+            }
+            if (userInfo.getGamertag() != null) {
+                knownGamertags.add(userInfo.getGamertag());
+            }
+        }
+
+        usersById = byId.build();
+        gamertags = new StringHashSet(knownGamertags);
+    }
+
+
+    /**
+     * Returns the info for the user with the given userid, or null
+     *  if the user isn't known.
+     */
+    public XboxUserInfo getUserInfo(String userid) {
+        long xuid = parseXuid(userid);
+        if (xuid == INVALID_XUID) {
+            return null;
+        }
+        return usersById.get(xuid);
+    }
+
+    /**
+     * Returns the info for the user with the given xuid, or null
+     *  if the user isn't known.
+     */
+    public XboxUserInfo getUserInfo(long xuid) {
+        return usersById.get(xuid);
+    }
+
+    public boolean isKnownGamertag(String gamertag) {
+        return gamertags.contains(gamertag);
+    }
+
+    public int size() {
+        return usersById.size();
+    }
+
+
+    /**
+     * Parses a numeric xuid, without throwing an exception for
+     *  userids which aren't valid.
+     *
+     * @return the xuid, or INVALID_XUID
+     */
+    public static long parseXuid(String userid) {
+        if (userid == null || userid.isEmpty() || userid.length() > 19) {
+            return INVALID_XUID;
+        }
+        long xuid = 0;
+        for (int i = 0; i < userid.length(); i++) {
+            int digit = userid.charAt(i) - '0';
+            if (digit < 0 || digit > 9) {
+                return INVALID_XUID;
+            }
+            xuid = xuid * 10 + digit;
+        }
+        // only 19 digit numbers can be bigger than Long.MAX_VALUE, in
+        //  which case they wrap around to be negative
+        if (xuid < 0) {
+            return INVALID_XUID;
+        }
+        return xuid;
+    }
+}
@@ -0,0 +1,205 @@
+package uk.co.dalelane.kafkastreams.xboxlive.data.users;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.Properties;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import uk.co.dalelane.kafkastreams.xboxlive.utils.Config;
+
+/**
+ * Provides the current list of known Xbox users.
+ *
+ *  At start-up, users are loaded from a local snapshot file so
+ *  that stream processing doesn't need to wait for the xbl API.
+ *  The list is then refreshed from the API in the background,
+ *  and each successful refresh is saved as the new snapshot.
+ *
+ *  If there is no snapshot that can be read (such as the first
+ *  time the app is run), start-up waits for the users to be
+ *  fetched from the API instead. Otherwise every event would be
+ *  treated as coming from an unknown user until the first fetch.
+ *  Failed attempts are logged as they happen, and start-up can
+ *  be given a maximum time to wait, after which it fails.
+ *
+ *  Each refresh builds a new XboxUsersIndex which replaces the
+ *  previous one, so readers always see a complete list.
+ */
+public class XboxUsersProvider implements AutoCloseable {
+
+    private static Logger log = LoggerFactory.getLogger(XboxUsersProvider.class);
+
+    /** how long to wait before trying again after a failed refresh */
+    private static final Duration RETRY_INTERVAL = Duration.ofMinutes(1);
+
+    private final URI apiUrl;
+    private final String apiKey;
+    private final Duration timeout;
+    private final Duration refreshInterval;
+    private final Duration maxWait;
+    private final Path snapshotFile;
+
+    private final HttpClient httpClient;
+    private final ScheduledExecutorService scheduler;
+
+    private volatile XboxUsersIndex current = XboxUsersIndex.EMPTY;
+
+
+    public XboxUsersProvider(final Properties config) {
+        apiUrl = URI.create(config.getProperty(Config.XBOX_API_URL, "https://xbl.io/api/v2/friends").trim());
+        apiKey = config.getProperty(Config.XBOX_API_KEY);
+        timeout = Duration.ofSeconds(Config.getLong(config, Config.XBOX_API_TIMEOUT_SECONDS, 30));
+        refreshInterval = Duration.ofMinutes(Config.getLong(config, Config.XBOX_USERS_REFRESH_MINUTES, 60));
+        maxWait = Duration.ofSeconds(Config.getLong(config, Config.XBOX_USERS_MAX_WAIT_SECONDS, 0));
+        snapshotFile = Paths.get(config.getProperty(Config.XBOX_USERS_SNAPSHOT_FILE, "xbox-users.json").trim());
+
+        httpClient = HttpClient.newBuilder()
+            .connectTimeout(timeout)
+            .build();
+        scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "xbox-users-refresh");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+
+    /**
+     * Loads the last saved snapshot of known users, and starts
+     *  refreshing them from the xbl API in the background.
+     *
+     *  If no snapshot can be loaded, this blocks until the users
+     *  have been fetched from the xbl API, retrying if it fails.
+     *
+     * @throws IllegalStateException if the users couldn't be fetched
+     *  within the configured maximum wait
+     */
+    public void start() {
+        boolean loaded = false;
+        if (Files.exists(snapshotFile)) {
+            try {
+                current = new XboxUsersIndex(XboxUsersFactory.readSnapshot(snapshotFile).getPeople());
+                loaded = true;
+                log.info("Loaded {} known Xbox users from {}", current.size(), snapshotFile);
+            }
+            catch (IOException e) {
+                log.error("Unable to load known Xbox users from {}", snapshotFile, e);
+            }
+        }
+        else {
+            log.info("No snapshot of known Xbox users found at {}", snapshotFile);
+        }
+
+        if (loaded) {
+            scheduler.execute(this::refresh);
+        }
+        else {
+            log.info("Waiting for known Xbox users from the xbl API");
+            waitForUsers();
+            scheduler.schedule(this::refresh, refreshInterval.toMillis(), TimeUnit.MILLISECONDS);
+        }
+    }
+
+
+    /**
+     * Returns the most recent list of known users.
+     */
+    public XboxUsersIndex getUsers() {
+        return current;
+    }
+
+
+    private void waitForUsers() {
+        final long started = System.nanoTime();
+        try {
+            int attempts = 1;
+            while (!fetchUsers()) {
+                Duration retryIn = RETRY_INTERVAL;
+                if (!maxWait.isZero()) {
+                    final Duration remaining = maxWait.minusNanos(System.nanoTime() - started);
+                    if (remaining.isNegative() || remaining.isZero()) {
+                        throw new IllegalStateException("Unable to fetch known Xbox users from the xbl API after " +
+                                                        attempts + " attempts in " + maxWait.toSeconds() + " seconds");
+                    }
+                    if (remaining.compareTo(retryIn) < 0) {
+                        retryIn = remaining;
+                    }
+                }
+
+                log.warn("Attempt {} to fetch known Xbox users from the xbl API failed - trying again in {} ms",
+                         attempts, retryIn.toMillis());
+                Thread.sleep(retryIn.toMillis());
+                attempts++;
+            }
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+
+    private void refresh() {
+        Duration nextRefresh = refreshInterval;
+        try {
+            if (!fetchUsers() && RETRY_INTERVAL.compareTo(refreshInterval) < 0) {
+                nextRefresh = RETRY_INTERVAL;
+            }
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return;
+        }
+
+        if (!scheduler.isShutdown()) {
+            scheduler.schedule(this::refresh, nextRefresh.toMillis(), TimeUnit.MILLISECONDS);
+        }
+    }
+
+
+    /**
+     * Fetches the users from the xbl API, replacing the current list.
+     *
+     * @return true if the users were fetched
+     */
+    private boolean fetchUsers() throws InterruptedException {
+        try {
+            byte[] json = XboxUsersFactory.fetchXboxUsers(httpClient, apiUrl, apiKey, timeout);
+            XboxUsersIndex updated = new XboxUsersIndex(XboxUsersFactory.parseXboxUsers(json).getPeople());
+            current = updated;
+            log.info("Refreshed {} known Xbox users from the xbl API", updated.size());
+
+            saveSnapshot(json);
+            return true;
+        }
+        catch (IOException e) {
+            log.error("Unable to refresh known Xbox users from the xbl API", e);
+            return false;
+        }
+    }
+
+
+    private void saveSnapshot(byte[] json) {
+        try {
+            XboxUsersFactory.writeSnapshot(snapshotFile, json);
+        }
+        catch (IOException e) {
+            log.error("Unable to save known Xbox users to {}", snapshotFile, e);
+        }
+    }
+
+
+    @Override
+    public void close() {
+        scheduler.shutdownNow();
+    }
+}
@@ -0,0 +1,81 @@
+package uk.co.dalelane.kafkastreams.xboxlive.data.users;
+
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.apache.kafka.common.utils.Bytes;
+import org.apache.kafka.streams.StreamsBuilder;
+import org.apache.kafka.streams.kstream.Consumed;
+import org.apache.kafka.streams.kstream.GlobalKTable;
+import org.apache.kafka.streams.kstream.Materialized;
+import org.apache.kafka.streams.state.Stores;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import uk.co.dalelane.kafkastreams.xboxlive.data.serdes.XboxSerdes;
+import uk.co.dalelane.kafkastreams.xboxlive.utils.Config;
+
+/**
+ * Known users read from a compacted topic of user profiles,
+ *  keyed by xuid, as an alternative to fetching a snapshot from
+ *  the xbl API at start-up.
+ *
+ * The table is global, so every instance has a full copy, and
+ *  new friends or profile changes are picked up as they are
+ *  written to the topic.
+ *
+ * The gamertags of the users in the table are indexed as the
+ *  table is updated, so that events which only identify gamers
+ *  by gamertag can be checked against it.
+ */
+public class XboxUsersTable {
+
+    private static Logger log = LoggerFactory.getLogger(XboxUsersTable.class);
+
+    public static final String STATE_STORE_NAME = XboxUsersTable.class.getCanonicalName();
+
+    private final GlobalKTable<String, XboxUserInfo> table;
+    private final Map<String, Bytes> useridsByGamertag;
+
+
+    private XboxUsersTable(GlobalKTable<String, XboxUserInfo> table, Map<String, Bytes> useridsByGamertag) {
+        this.table = table;
+        this.useridsByGamertag = useridsByGamertag;
+    }
+
+
+    public static XboxUsersTable create(final StreamsBuilder builder, final Properties config) {
+        final String usersTopic = Config.getUsersTopic(config);
+        log.info("Reading known users from {}", usersTopic);
+
+        final Map<String, Bytes> useridsByGamertag = new ConcurrentHashMap<>();
+
+        final GlobalKTable<String, XboxUserInfo> table = builder.globalTable(usersTopic,
+            Consumed.with(XboxSerdes.USERID_SERDES,
+                          XboxSerdes.USER_INFO_SERDES),
+            Materialized.<String, XboxUserInfo>as(
+                    GamertagIndexedStore.supplier(Stores.persistentTimestampedKeyValueStore(STATE_STORE_NAME),
+                                                  useridsByGamertag))
+                // the index is updated as users are written to the
+                //  store, so this avoids delaying that until a commit
+                .withCachingDisabled());
+
+        return new XboxUsersTable(table, useridsByGamertag);
+    }
+
+
+    /**
+     * Returns the table of known users, keyed by userid.
+     */
+    public GlobalKTable<String, XboxUserInfo> getTable() {
+        return table;
+    }
+
+    /**
+     * Returns true if a user with the given gamertag is in the table.
+     */
+    public boolean isKnownGamertag(String gamertag) {
+        return gamertag != null && useridsByGamertag.containsKey(gamertag);
+    }
+}
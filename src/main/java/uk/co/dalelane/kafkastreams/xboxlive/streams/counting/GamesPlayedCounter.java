@@ -4,18 +4,24 @@ import org.apache.kafka.common.serialization.Serde;
 import org.apache.kafka.common.serialization.Serdes;
 import org.apache.kafka.streams.KeyValue;
 import org.apache.kafka.streams.StreamsBuilder;
-import org.apache.kafka.streams.kstream.Aggregator;
 import org.apache.kafka.streams.kstream.Consumed;
-import org.apache.kafka.streams.kstream.Initializer;
-import org.apache.kafka.streams.kstream.KeyValueMapper;
-import org.apache.kafka.streams.kstream.Materialized;
+import org.apache.kafka.streams.kstream.KStream;
 import org.apache.kafka.streams.kstream.Named;
 import org.apache.kafka.streams.kstream.Produced;
+import org.apache.kafka.streams.kstream.Repartitioned;
+import org.apache.kafka.streams.processor.api.ContextualProcessor;
+import org.apache.kafka.streams.processor.api.Processor;
+import org.apache.kafka.streams.processor.api.ProcessorContext;
+import org.apache.kafka.streams.processor.api.ProcessorSupplier;
+import org.apache.kafka.streams.processor.api.Record;
+import org.apache.kafka.streams.state.KeyValueStore;
+import org.apache.kafka.streams.state.Stores;
+import org.apache.kafka.streams.state.TimestampedKeyValueStore;
+import org.apache.kafka.streams.state.ValueAndTimestamp;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import uk.co.dalelane.kafkastreams.xboxlive.data.counts.PlayerGame;
-import uk.co.dalelane.kafkastreams.xboxlive.data.counts.PlayerGames;
+import uk.co.dalelane.kafkastreams.xboxlive.data.counts.DistinctTitles;
 import uk.co.dalelane.kafkastreams.xboxlive.data.presence.EnrichedPresence;
 import uk.co.dalelane.kafkastreams.xboxlive.data.serdes.XboxSerdes;
 
@@ -38,10 +44,19 @@ import uk.co.dalelane.kafkastreams.xboxlive.data.serdes.XboxSerdes;
  *   over a stream of events, such as maintaining the min/max/avg/sum
  *   of a value in a stream.
  *
+ *   The aggregate for each gamer only stores the numeric ids of the
+ *   games they have played, to keep it small. The names of the games
+ *   are output once to a separate lookup topic instead.
+ *
+ *   The count for a gamer is only output when it changes, and the
+ *   name of each title is only output once, by the stream task that
+ *   handles that title.
+ *
  *
  *  TOPICS:
  *   Input:     XBOX.PRESENCE.GAME
  *   Output:    XBOX.GAMES.COUNTS
+ *              XBOX.GAMES.TITLES
  *
  */
 public class GamesPlayedCounter {
@@ -50,6 +65,15 @@ public class GamesPlayedCounter {
 
     private static final String INPUT_TOPIC  = "XBOX.PRESENCE.GAME";
     private static final String OUTPUT_TOPIC = "XBOX.GAMES.COUNTS";
+    private static final String TITLES_TOPIC = "XBOX.GAMES.TITLES";
+
+    private static final String TITLE_NAMES_STORE_NAME = GamesPlayedCounter.class.getCanonicalName() + ".titles";
+
+    // the name that Kafka Streams generated for the aggregate store when
+    //  it was the only stateful node in this topology - kept so that
+    //  the games each gamer has already played aren't lost, now that
+    //  the store is maintained by a processor instead
+    static final String COUNTS_STORE_NAME = "KSTREAM-AGGREGATE-STATE-STORE-0000000022";
 
 
     public static void create(final StreamsBuilder builder) {
@@ -60,63 +84,133 @@ public class GamesPlayedCounter {
         //  to read these events
         final Serde<Integer> countsSerde = Serdes.Integer();
 
-        //
-        // initialise the aggregation state
-        final Initializer<PlayerGames> initCount = new Initializer<>() {
-            @Override
-            public PlayerGames apply() {
-                return new PlayerGames();
-            }
-        };
-
-        //
-        // update the state with a new presence event
-        final Aggregator<String, EnrichedPresence, PlayerGames> updateCount = new Aggregator<>() {
-            @Override
-            public PlayerGames apply(String key, EnrichedPresence value, PlayerGames aggregate) {
-                aggregate.setGamertag(value.getGamertag());
-                aggregate.setRealname(value.getRealName());
-                if (aggregate.getGamesIndexedById().containsKey(value.getTitleId()) == false) {
-                    PlayerGame game = new PlayerGame(value.getTitleId(), value.getTitleName());
-                    aggregate.getGamesIndexedById().put(value.getTitleId(), game);
-                }
-                return aggregate;
-            }
-        };
 
-        //
-        // output the count based on the aggregation state
-        final KeyValueMapper<String, PlayerGames, KeyValue<String, Integer>> outputCount = new KeyValueMapper<> () {
-            @Override
-            public KeyValue<String, Integer> apply(String key, PlayerGames value) {
-                return KeyValue.pair(key, value.getGamesIndexedById().size());
-            }
-        };
+        // the set of game title ids for each gamer - kept in the same
+        //  format as the aggregate that Kafka Streams used to maintain
+        builder.addStateStore(
+            Stores.timestampedKeyValueStoreBuilder(
+                Stores.persistentTimestampedKeyValueStore(COUNTS_STORE_NAME),
+                XboxSerdes.GAMERTAG_SERDES,
+                XboxSerdes.distinctTitlesStoreSerdes()));
+
+        // keep the names of the titles that have been output, so that
+        //  each name only needs to be output once
+        builder.addStateStore(
+            Stores.keyValueStoreBuilder(
+                Stores.persistentKeyValueStore(TITLE_NAMES_STORE_NAME),
+                Serdes.String(),
+                Serdes.String()));
 
 
-        builder
+        final KStream<String, EnrichedPresence> games = builder
             // input the filtered stream of game-only events
             .stream(INPUT_TOPIC, Consumed.with(XboxSerdes.GAMERTAG_SERDES,
                                                XboxSerdes.ENRICHED_PRESENCE_SERDES))
             // filter out events without a known game id
-            .filterNot((gamertag, presenceEvent) -> presenceEvent.getTitleId() == null,
-                       Named.as("ignore_missing_game_titles"))
-            // group the events by the gamer to allow the state to be kept
-            //  safe for each individual gamer
-            .groupByKey()
-            // build and maintain an aggregation - storing the list of game titles
-            //  for each gamer
-            .aggregate(initCount, updateCount,
-                       Named.as("track_distinct_games_by_gamertag"),
-                       Materialized.with(XboxSerdes.GAMERTAG_SERDES,
-                                         XboxSerdes.GAME_COUNTS_SERDES))
-            // prepare an output stream that counts the number of distinct titles
-            //  for each gamer
-            .toStream()
-            .map(outputCount,
-                 Named.as("prepare_counts_output"))
+            .filterNot((gamertag, presenceEvent) -> DistinctTitles.parseTitleId(presenceEvent.getTitleId()) == DistinctTitles.INVALID_TITLE_ID,
+                       Named.as("ignore_missing_game_titles"));
+
+        games
+            // only the name of the title is needed, keyed by the title
+            .filter((gamertag, presenceEvent) -> presenceEvent.getTitleName() != null,
+                    Named.as("ignore_missing_game_title_names"))
+            .map((gamertag, presenceEvent) -> KeyValue.pair(presenceEvent.getTitleId(), presenceEvent.getTitleName()),
+                 Named.as("key_title_names_by_titleid"))
+            // make sure that all events for a title are processed by the
+            //  same stream task, so each name is only output once
+            .repartition(Repartitioned.with(Serdes.String(), Serdes.String())
+                                      .withName("title_names_by_titleid"))
+            // output the names of titles that haven't been seen before, to
+            //  a (compacted) topic of title names keyed by title id
+            .process(new TitleNamesSupplier(),
+                     Named.as("find_new_title_names"),
+                     TITLE_NAMES_STORE_NAME)
+            .to(TITLES_TOPIC, Produced.with(Serdes.String(),
+                                            Serdes.String()));
+
+        games
+            // add the game title ids to the set for each gamer, and output
+            //  the number of distinct titles when it changes - most game
+            //  events are for games that the gamer has played before
+            .process(new DistinctTitlesSupplier(),
+                     Named.as("track_distinct_games_by_gamertag"),
+                     COUNTS_STORE_NAME)
             // output the number of games played by each user
             .to(OUTPUT_TOPIC, Produced.with(XboxSerdes.GAMERTAG_SERDES,
                                             countsSerde));
     }
+
+
+
+    /**
+     * Adds the title id from each event to the set of titles for
+     *  the gamer, and emits the number of titles in the set.
+     *
+     *  Events for titles that are already in the set don't change
+     *  it, so nothing is written to the store or emitted for them.
+     */
+    static class DistinctTitlesSupplier implements ProcessorSupplier<String, EnrichedPresence, String, Integer> {
+        @Override
+        public Processor<String, EnrichedPresence, String, Integer> get() {
+
+            return new ContextualProcessor<String, EnrichedPresence, String, Integer>() {
+                private TimestampedKeyValueStore<String, DistinctTitles> titlesByGamer;
+
+                @Override
+                public void init(ProcessorContext<String, Integer> context) {
+                    super.init(context);
+                    titlesByGamer = context.getStateStore(COUNTS_STORE_NAME);
+                }
+
+                @Override
+                public void process(Record<String, EnrichedPresence> record) {
+                    if (record.key() == null) {
+                        return;
+                    }
+
+                    final ValueAndTimestamp<DistinctTitles> stored = titlesByGamer.get(record.key());
+                    final DistinctTitles titles = stored == null ? new DistinctTitles() : stored.value();
+                    if (!titles.add(DistinctTitles.parseTitleId(record.value().getTitleId()))) {
+                        return;
+                    }
+
+                    titlesByGamer.put(record.key(), ValueAndTimestamp.make(titles, record.timestamp()));
+                    context().forward(record.withValue(titles.size()));
+                }
+            };
+        }
+    }
+
+
+    /**
+     * Emits the id and name of titles whose name hasn't been emitted
+     *  before, or has changed.
+     */
+    static class TitleNamesSupplier implements ProcessorSupplier<String, String, String, String> {
+        @Override
+        public Processor<String, String, String, String> get() {
+
+            return new ContextualProcessor<String, String, String, String>() {
+                private KeyValueStore<String, String> titleNames;
+
+                @Override
+                public void init(ProcessorContext<String, String> context) {
+                    super.init(context);
+                    titleNames = context.getStateStore(TITLE_NAMES_STORE_NAME);
+                }
+
+                @Override
+                public void process(Record<String, String> record) {
+                    final String titleId = record.key();
+                    final String titleName = record.value();
+                    if (titleId == null || titleName.equals(titleNames.get(titleId))) {
+                        return;
+                    }
+
+                    titleNames.put(titleId, titleName);
+                    context().forward(record);
+                }
+            };
+        }
+    }
 }
@@ -0,0 +1,182 @@
+package uk.co.dalelane.kafkastreams.xboxlive.streams.counting;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+
+import org.apache.kafka.common.serialization.Serdes;
+import org.apache.kafka.streams.KeyValue;
+import org.apache.kafka.streams.StreamsBuilder;
+import org.apache.kafka.streams.kstream.Branched;
+import org.apache.kafka.streams.kstream.Consumed;
+import org.apache.kafka.streams.kstream.Named;
+import org.apache.kafka.streams.kstream.Produced;
+import org.apache.kafka.streams.kstream.Repartitioned;
+import org.apache.kafka.streams.processor.api.ContextualProcessor;
+import org.apache.kafka.streams.processor.api.Processor;
+import org.apache.kafka.streams.processor.api.ProcessorContext;
+import org.apache.kafka.streams.processor.api.ProcessorSupplier;
+import org.apache.kafka.streams.processor.api.Record;
+import org.apache.kafka.streams.state.KeyValueStore;
+import org.apache.kafka.streams.state.Stores;
+import org.apache.kafka.streams.state.WindowStore;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import uk.co.dalelane.kafkastreams.xboxlive.data.counts.DistinctTitles;
+import uk.co.dalelane.kafkastreams.xboxlive.data.counts.HyperLogLog;
+import uk.co.dalelane.kafkastreams.xboxlive.data.counts.TitlePlayers;
+import uk.co.dalelane.kafkastreams.xboxlive.data.serdes.XboxSerdes;
+
+/**
+ * Example of using Kafka Streams to estimate the number of distinct
+ *  things seen in a stream of events.
+ *
+ *  Use case: Counting how many different gamers have played each game,
+ *   overall and on each day
+ *
+ *  Background:
+ *   The Xbox API returns events when a user plays a game. Counting
+ *   the distinct gamers for each game exactly would mean keeping
+ *   every gamertag for every game, which would grow with the number
+ *   of gamers.
+ *
+ *   Instead, this stream processor keeps a HyperLogLog sketch for
+ *   each game - a fixed-size summary that gives a close estimate of
+ *   the number of distinct gamers added to it. The sketches are only
+ *   written to the state stores, and counts are only output, when
+ *   a gamer changes the sketch.
+ *
+ *   This is a good example of using Kafka Streams with approximate
+ *   data structures to aggregate very large numbers of values.
+ *
+ *
+ *  TOPICS:
+ *   Input:     XBOX.PRESENCE.GAME
+ *   Output:    XBOX.GAMES.PLAYERS
+ *              XBOX.GAMES.PLAYERS.DAILY
+ *
+ */
+public class TitlePlayersCounter {
+
+    private static Logger log = LoggerFactory.getLogger(TitlePlayersCounter.class);
+
+    private static final String INPUT_TOPIC  = "XBOX.PRESENCE.GAME";
+    private static final String OUTPUT_TOPIC = "XBOX.GAMES.PLAYERS";
+    private static final String DAILY_OUTPUT_TOPIC = "XBOX.GAMES.PLAYERS.DAILY";
+
+    private static final String STATE_STORE_NAME = TitlePlayersCounter.class.getCanonicalName();
+    private static final String DAILY_STATE_STORE_NAME = STATE_STORE_NAME + ".daily";
+
+    private static final Duration ONE_DAY = Duration.ofDays(1);
+    /** how long to keep the sketches for each day, to allow for late events */
+    private static final Duration DAILY_RETENTION = Duration.ofDays(2);
+
+
+    public static void create(final StreamsBuilder builder) {
+        log.info("Creating TitlePlayersCounter");
+
+        // a sketch of the players of each title
+        builder.addStateStore(
+            Stores.keyValueStoreBuilder(
+                Stores.persistentKeyValueStore(STATE_STORE_NAME),
+                Serdes.String(),
+                XboxSerdes.PLAYERS_SKETCH_STORE_SERDES));
+        // a sketch of the players of each title for each day
+        builder.addStateStore(
+            Stores.windowStoreBuilder(
+                Stores.persistentWindowStore(DAILY_STATE_STORE_NAME, DAILY_RETENTION, ONE_DAY, false),
+                Serdes.String(),
+                XboxSerdes.PLAYERS_SKETCH_STORE_SERDES));
+
+        final Produced<String, TitlePlayers> produced = Produced.with(Serdes.String(),
+                                                                      XboxSerdes.TITLE_PLAYERS_SERDES);
+
+        builder
+            // input the filtered stream of game-only events
+            .stream(INPUT_TOPIC, Consumed.with(XboxSerdes.GAMERTAG_SERDES,
+                                               XboxSerdes.ENRICHED_PRESENCE_SERDES))
+            // filter out events without a known game id
+            .filterNot((gamertag, presenceEvent) -> DistinctTitles.parseTitleId(presenceEvent.getTitleId()) == DistinctTitles.INVALID_TITLE_ID,
+                       Named.as("ignore_missing_titles_for_players"))
+            // only the gamertag is needed, keyed by the title
+            .map((gamertag, presenceEvent) -> KeyValue.pair(presenceEvent.getTitleId(), gamertag),
+                 Named.as("key_gamertags_by_titleid"))
+            // make sure that all events for a title are processed by the
+            //  same stream task, so the same sketch is used for them
+            .repartition(Repartitioned.with(Serdes.String(), XboxSerdes.GAMERTAG_SERDES)
+                                      .withName("gamertags_by_titleid"))
+            // add the gamers to the sketches, and output counts that change
+            .process(new TitlePlayersProcessorSupplier(),
+                     Named.as("count_distinct_players_by_title"),
+                     STATE_STORE_NAME, DAILY_STATE_STORE_NAME)
+            .split(Named.as("split_by_period_"))
+                // output the overall counts to the XBOX.GAMES.PLAYERS topic
+                .branch((titleid, count) -> !count.isDaily(),
+                        Branched.withConsumer(str -> str.to(OUTPUT_TOPIC, produced)))
+                // output the daily counts to the XBOX.GAMES.PLAYERS.DAILY topic
+                .defaultBranch(Branched.withConsumer(str -> str.to(DAILY_OUTPUT_TOPIC, produced)));
+    }
+
+
+
+    /**
+     * Adds gamers to the sketches for each title, keyed by title id,
+     *  and emits the new estimates for any sketches that changed.
+     */
+    static class TitlePlayersProcessorSupplier implements ProcessorSupplier<String, String, String, TitlePlayers> {
+        @Override
+        public Processor<String, String, String, TitlePlayers> get() {
+
+            return new ContextualProcessor<String, String, String, TitlePlayers>() {
+                private KeyValueStore<String, HyperLogLog> sketches;
+                private WindowStore<String, HyperLogLog> dailySketches;
+
+                @Override
+                public void init(ProcessorContext<String, TitlePlayers> context) {
+                    super.init(context);
+                    sketches = context.getStateStore(STATE_STORE_NAME);
+                    dailySketches = context.getStateStore(DAILY_STATE_STORE_NAME);
+                }
+
+                @Override
+                public void process(Record<String, String> record) {
+                    final String titleId = record.key();
+                    final String gamertag = record.value();
+                    if (gamertag == null) {
+                        return;
+                    }
+
+                    HyperLogLog sketch = sketches.get(titleId);
+                    if (sketch == null) {
+                        sketch = new HyperLogLog();
+                    }
+                    // most events are for gamers already counted, which
+                    //  don't change the sketch, so don't need storing
+                    if (sketch.add(gamertag)) {
+                        sketches.put(titleId, sketch);
+                        context().forward(record.withValue(new TitlePlayers(titleId, null, sketch.estimate())));
+                    }
+
+                    final long dayStart = record.timestamp() - (record.timestamp() % ONE_DAY.toMillis());
+                    if (dayStart <= context().currentStreamTimeMs() - DAILY_RETENTION.toMillis()) {
+                        // too late - the sketch for the day has already been
+                        //  dropped from the store, so the estimate would
+                        //  only include this gamer
+                        return;
+                    }
+                    HyperLogLog dailySketch = dailySketches.fetch(titleId, dayStart);
+                    if (dailySketch == null) {
+                        dailySketch = new HyperLogLog();
+                    }
+                    if (dailySketch.add(gamertag)) {
+                        dailySketches.put(titleId, dailySketch, dayStart);
+                        final LocalDate day = LocalDate.ofInstant(Instant.ofEpochMilli(dayStart), ZoneOffset.UTC);
+                        context().forward(record.withValue(new TitlePlayers(titleId, day, dailySketch.estimate())));
+                    }
+                }
+            };
+        }
+    }
+}
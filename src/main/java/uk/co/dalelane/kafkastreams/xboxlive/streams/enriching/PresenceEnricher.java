@@ -1,23 +1,37 @@
 package uk.co.dalelane.kafkastreams.xboxlive.streams.enriching;
 
-import java.util.HashMap;
-import java.util.Map;
+import java.time.Duration;
+import java.util.Properties;
 
-import org.apache.kafka.streams.KeyValue;
+import org.apache.kafka.common.serialization.Serdes;
 import org.apache.kafka.streams.StreamsBuilder;
+import org.apache.kafka.streams.kstream.Branched;
 import org.apache.kafka.streams.kstream.Consumed;
-import org.apache.kafka.streams.kstream.KeyValueMapper;
+import org.apache.kafka.streams.kstream.GlobalKTable;
+import org.apache.kafka.streams.kstream.KStream;
 import org.apache.kafka.streams.kstream.Named;
 import org.apache.kafka.streams.kstream.Predicate;
 import org.apache.kafka.streams.kstream.Produced;
+import org.apache.kafka.streams.kstream.Repartitioned;
+import org.apache.kafka.streams.kstream.ValueMapper;
+import org.apache.kafka.streams.processor.api.ContextualProcessor;
+import org.apache.kafka.streams.processor.api.Processor;
+import org.apache.kafka.streams.processor.api.ProcessorContext;
+import org.apache.kafka.streams.processor.api.ProcessorSupplier;
+import org.apache.kafka.streams.processor.api.Record;
+import org.apache.kafka.streams.state.KeyValueStore;
+import org.apache.kafka.streams.state.Stores;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import uk.co.dalelane.kafkastreams.xboxlive.data.games.TitleCatalogProvider;
 import uk.co.dalelane.kafkastreams.xboxlive.data.presence.EnrichedPresence;
 import uk.co.dalelane.kafkastreams.xboxlive.data.presence.Presence;
+import uk.co.dalelane.kafkastreams.xboxlive.data.presence.PresenceHeaders;
 import uk.co.dalelane.kafkastreams.xboxlive.data.serdes.XboxSerdes;
 import uk.co.dalelane.kafkastreams.xboxlive.data.users.XboxUserInfo;
-import uk.co.dalelane.kafkastreams.xboxlive.data.users.XboxUsers;
+import uk.co.dalelane.kafkastreams.xboxlive.data.users.XboxUsersProvider;
+import uk.co.dalelane.kafkastreams.xboxlive.utils.Config;
 
 
 /**
@@ -40,15 +54,32 @@ import uk.co.dalelane.kafkastreams.xboxlive.data.users.XboxUsers;
  *   stream of events that it looks up from external systems of
  *   record.
  *
+ *   The user info can either be a list that is refreshed from the
+ *   xbl API in the background, or a compacted topic of user profiles
+ *   that is joined with the stream of events as a GlobalKTable.
+ *
  *   The presence API can return duplicate events, so this stream
  *   processor also does some filtering to remove duplicates or
  *   out-of-sequence events, to make the output stream as clean as
  *   possible.
  *
+ *   Events can optionally be held back for a grace period and put
+ *   back in order, so that events that arrive slightly late aren't
+ *   thrown away as out-of-sequence.
+ *
+ *   Events from users who aren't known are keyed by their userid
+ *   so that they are spread across partitions, and can be kept,
+ *   dropped, or routed to a separate topic.
+ *
+ *   When the splitter is configured to route events without
+ *   deserializing them, the enriched events are stamped with headers
+ *   for the type of title and whether the user is online.
+ *
  *
  *  TOPICS:
  *   Input:     XBOX.PRESENCE
  *   Output:    XBOX.PRESENCE.ENRICHED
+ *              XBOX.PRESENCE.UNKNOWNUSERS
  *
  */
 public class PresenceEnricher {
@@ -57,54 +88,100 @@ public class PresenceEnricher {
 
     private static final String INPUT_TOPIC  = "XBOX.PRESENCE";
     private static final String OUTPUT_TOPIC = "XBOX.PRESENCE.ENRICHED";
+    private static final String UNKNOWN_USERS_TOPIC = "XBOX.PRESENCE.UNKNOWNUSERS";
+
+    static final String STATE_STORE_NAME = PresenceEnricher.class.getCanonicalName();
+    private static final String REORDER_STORE_NAME = STATE_STORE_NAME + ".reorder";
+
+    /** how often (in stream time) to emit events from the reorder buffer */
+    private static final Duration REORDER_FLUSH_INTERVAL = Duration.ofSeconds(1);
+
+    /** prefix for the key used for events from users that aren't known */
+    private static final String UNKNOWN_USER_PREFIX = "unknown-";
 
 
     /**
-     * @param xboxUserInfo - info for all known users - this is looked
-     *  up at start-up, and reused for the duration of the processor,
-     *  to improve performance
+     * @param xboxUserInfo - info for all known users - this is refreshed
+     *  in the background, and indexed by userid to improve performance
+     * @param titles - catalog of the types of Xbox titles, used to add
+     *  the title type to the headers of each event
+     * @param config - application config, used to choose what to do with
+     *  events from unknown users, and whether to add headers
      */
-    public static void create(final StreamsBuilder builder, final XboxUsers xboxUserInfo) {
+    public static void create(final StreamsBuilder builder, final XboxUsersProvider xboxUserInfo, final TitleCatalogProvider titles, final Properties config) {
         log.info("Creating PresenceEnricher");
 
-        //
-        // a "presence" event describes what a gamer is doing
-        //  it can identify a game they are playing, a media app they
-        //   are watching, or that they are offline
-        //
+        // maps the stream of presence events to a stream of enrichedpresence events
+        //  where an enrichedpresence event is the same as the input presence but
+        //    with additional info added about the gamer
+        final ValueMapper<Presence, EnrichedPresence> enrichPresenceEvents = new ValueMapper<>() {
+            @Override
+            public EnrichedPresence apply(Presence presence) {
+                return enrich(presence, xboxUserInfo.getUsers().getUserInfo(presence.getUserId()));
+            }
+        };
 
-        // keep the last presence event seen for each user - this will produce
-        //  a cleaner output stream by letting us identify duplicate events,
-        //   or events that are earlier than the last event seen for a user
-        final Map<String, Presence> lastPresenceCache = new HashMap<String, Presence>();
 
-        final Predicate<String, Presence> filterOutOfSequenceEvents = new Predicate<>() {
-            @Override
-            public boolean test(String key, Presence value) {
-                final String userid = value.getUserId();
+        final KStream<String, EnrichedPresence> enriched = createCleanPresenceStream(builder, config)
+            // enrich the presence events with additional info about gamers
+            .mapValues(enrichPresenceEvents,
+                       Named.as("enrich_presence_events_with_user_info"));
 
-                if (lastPresenceCache.containsKey(userid) == false) {
-                    // first presence event observed for this user
-                    lastPresenceCache.put(userid, value);
-                    return true;
-                }
+        output(enriched, titles, config);
+    }
 
-                Presence lastValue = lastPresenceCache.get(userid);
-                if (value.getDate().isBefore(lastValue.getDate())) {
-                    // this is an older event than the last one seen
-                    //  for this user
-                    return false;
-                }
 
-                // this is a newer event than the last one seen for
-                //  this user - this is okay to emit
+    /**
+     * @param knownUsers - table of info for all known users, keyed by
+     *  userid - this is kept up to date from a compacted topic, so
+     *  changes to users are used without needing a restart
+     * @param titles - catalog of the types of Xbox titles, used to add
+     *  the title type to the headers of each event
+     * @param config - application config, used to choose what to do with
+     *  events from unknown users, and whether to add headers
+     */
+    public static void create(final StreamsBuilder builder, final GlobalKTable<String, XboxUserInfo> knownUsers, final TitleCatalogProvider titles, final Properties config) {
+        log.info("Creating PresenceEnricher using a table of known users");
+
+        final KStream<String, EnrichedPresence> enriched = createCleanPresenceStream(builder, config)
+            // enrich the presence events with additional info about gamers
+            //  found by looking up the userid in the table of known users
+            .leftJoin(knownUsers,
+                      (userid, presence) -> presence.getUserId(),
+                      (presence, userInfo) -> enrich(presence, userInfo),
+                      Named.as("enrich_presence_events_with_user_info"));
 
-                // cache in case we see this again
-                lastPresenceCache.put(userid, value);
+        output(enriched, titles, config);
+    }
 
-                return true;
-            }
-        };
+
+
+    /**
+     * Creates a stream of presence events, keyed by userid, with
+     *  duplicate, out-of-sequence and incomplete events removed.
+     *
+     * @param config - application config, used to choose how long to
+     *  wait for events that arrive out of order
+     */
+    private static KStream<String, Presence> createCleanPresenceStream(final StreamsBuilder builder, final Properties config) {
+        final Duration reorderGrace = Duration.ofSeconds(Config.getLong(config, Config.PRESENCE_REORDER_GRACE_SECONDS, 0));
+
+        //
+        // a "presence" event describes what a gamer is doing
+        //  it can identify a game they are playing, a media app they
+        //   are watching, or that they are offline
+        //
+
+        // keep the timestamp of the last presence event seen for each user - this
+        //  will produce a cleaner output stream by letting us identify events
+        //   that are earlier than the last event seen for a user
+        // This is kept in a persistent store so that it is partitioned in the
+        //  same way as the events, and survives restarts and rebalances.
+        builder.addStateStore(
+            Stores.keyValueStoreBuilder(
+                Stores.persistentKeyValueStore(STATE_STORE_NAME),
+                XboxSerdes.USERID_SERDES,
+                Serdes.Long()));
 
         final Predicate<String, Presence> filterMissingData = new Predicate<>() {
             @Override
@@ -119,62 +196,209 @@ public class PresenceEnricher {
             }
         };
 
-        // to improve performance, the list of user info is inserted into a map,
-        //  so the user info can be retrieved by userid
-        final Map<String, XboxUserInfo> userInfoCache = getUserInfo(xboxUserInfo);
 
+        Consumed<String, Presence> consumed = Consumed.with(XboxSerdes.GAMERTAG_SERDES,
+                                                            XboxSerdes.PRESENCE_SERDES);
+        if (!reorderGrace.isZero()) {
+            // use the time of the presence events as stream time, so
+            //  that events are held back based on when they happened
+            consumed = consumed.withTimestampExtractor(new PresenceTimestampExtractor());
+        }
 
-        // maps the stream of presence events to a stream of enrichedpresence events
-        //  where an enrichedpresence event is the same as the input presence but
-        //    with additional info added about the gamer
-        final KeyValueMapper<String, Presence, KeyValue<String, EnrichedPresence>> enrichPresenceEvents = new KeyValueMapper<>() {
-            @Override
-            public KeyValue<String, EnrichedPresence> apply(String key, Presence presence) {
-                XboxUserInfo userInfo;
-                String gamertag = "unknown";
-                if (userInfoCache.containsKey(presence.getUserId())) {
-                    userInfo = userInfoCache.get(presence.getUserId());
-                    gamertag = userInfo.getGamertag();
-                }
-                else {
-                    userInfo = new XboxUserInfo();
-                    userInfo.setUserId(presence.getUserId());
-                }
-                EnrichedPresence enriched = new EnrichedPresence(presence, userInfo);
-                return KeyValue.pair(gamertag, enriched);
-            }
-        };
+        KStream<String, Presence> presences = builder
+            // input the presences from the topic produced to by the Kafka Connect connector
+            .stream(INPUT_TOPIC, consumed)
+            // make sure that all events for a user are processed by the same
+            //  stream task, so they can be compared with each other
+            .selectKey((key, presence) -> presence.getUserId(),
+                       Named.as("key_presence_events_by_userid"))
+            .repartition(Repartitioned.with(XboxSerdes.USERID_SERDES,
+                                            XboxSerdes.PRESENCE_SERDES)
+                                      .withName("presence_by_userid"));
 
+        if (!reorderGrace.isZero()) {
+            // Events that arrive out of order (e.g. from running multiple
+            //  connector tasks) are held back for a grace period, and put
+            //  back in order before they are compared with each other.
+            builder.addStateStore(
+                Stores.keyValueStoreBuilder(
+                    Stores.persistentKeyValueStore(REORDER_STORE_NAME),
+                    Serdes.Bytes(),
+                    XboxSerdes.PRESENCE_SERDES));
 
+            presences = presences
+                .process(new ReorderBufferSupplier(REORDER_STORE_NAME, reorderGrace, REORDER_FLUSH_INTERVAL),
+                         Named.as("reorder_presence_events"),
+                         REORDER_STORE_NAME);
+        }
 
-        builder
-            // input the presences from the topic produced to by the Kafka Connect connector
-            .stream(INPUT_TOPIC, Consumed.with(XboxSerdes.GAMERTAG_SERDES,
-                                               XboxSerdes.PRESENCE_SERDES))
+        return presences
             // filter out the noise to leave a cleaner stream
-            .filter(filterOutOfSequenceEvents,
-                    Named.as("filter_out_of_sequence_presence_events"))
+            .process(new OutOfSequenceFilterSupplier(),
+                     Named.as("filter_out_of_sequence_presence_events"),
+                     STATE_STORE_NAME)
             .filter(filterMissingData,
-                    Named.as("filter_games_with_missing_data"))
-            // enrich the presence events with additional info about gamers
-            .map(enrichPresenceEvents,
-                 Named.as("enrich_presence_events_with_user_info"))
-            // output the enriched presence events to the XBOX.PRESENCE.ENRICHED topic
-            .to(OUTPUT_TOPIC, Produced.valueSerde(XboxSerdes.ENRICHED_PRESENCE_SERDES));
+                    Named.as("filter_games_with_missing_data"));
     }
 
 
+    /**
+     * Outputs the enriched presence events, keyed by gamertag, with
+     *  headers describing the events if the splitter will use them.
+     */
+    private static void output(final KStream<String, EnrichedPresence> enriched, final TitleCatalogProvider titles, final Properties config) {
+        final Produced<String, EnrichedPresence> produced = Produced.valueSerde(XboxSerdes.ENRICHED_PRESENCE_SERDES);
+
+        final Predicate<String, EnrichedPresence> isKnownUser = (key, presence) -> presence.getGamertag() != null;
+
+        KStream<String, EnrichedPresence> keyed = enriched
+            // key the events by the gamer, for use by the downstream processors
+            //  events from unknown users are keyed by their userid, so that
+            //  they are spread across partitions rather than being treated
+            //  as a single very busy user
+            .selectKey((userid, presence) -> isKnownUser.test(userid, presence) ?
+                                                 presence.getGamertag() :
+                                                 UNKNOWN_USER_PREFIX + userid,
+                       Named.as("key_enriched_presence_events_by_gamertag"));
+
+        if (Config.getBoolean(config, Config.PRESENCE_SPLITTER_RAW, false)) {
+            keyed = keyed
+                // add headers so the events can be routed without deserializing them
+                .process(new PresenceHeadersSupplier(titles),
+                         Named.as("add_enriched_presence_headers"));
+        }
+
+        final UnknownUsersPolicy unknownUsersPolicy = Config.getUnknownUsersPolicy(config);
+
+        switch (unknownUsersPolicy) {
+            case DROP:
+                keyed
+                    // remove events from unknown users
+                    .filter(isKnownUser,
+                            Named.as("filter_out_unknown_users"))
+                    // output the enriched presence events to the XBOX.PRESENCE.ENRICHED topic
+                    .to(OUTPUT_TOPIC, produced);
+                break;
+
+            case ROUTE:
+                keyed
+                    .split(Named.as("split_by_known_users_"))
+                        // output the enriched presence events to the XBOX.PRESENCE.ENRICHED topic
+                        .branch(isKnownUser,
+                                Branched.withConsumer(str -> str.to(OUTPUT_TOPIC, produced)))
+                        // output events from unknown users to the XBOX.PRESENCE.UNKNOWNUSERS topic
+                        .defaultBranch(Branched.withConsumer(str -> str.to(UNKNOWN_USERS_TOPIC, produced)));
+                break;
+
+            case KEEP:
+            default:
+                // output the enriched presence events to the XBOX.PRESENCE.ENRICHED topic
+                keyed.to(OUTPUT_TOPIC, produced);
+        }
+    }
+
 
     /**
-     * Create a map to allow user info to be looked up by userid.
+     * Adds the user info to a presence event.
+     *
+     * @param userInfo - info for the user, or null if the user isn't known
      */
-    private static Map<String, XboxUserInfo> getUserInfo(final XboxUsers xboxUsers) {
-        Map<String, XboxUserInfo> userInfoCache = new HashMap<>();
+    private static EnrichedPresence enrich(final Presence presence, XboxUserInfo userInfo) {
+        if (userInfo == null) {
+            userInfo = new XboxUserInfo();
+            userInfo.setUserId(presence.getUserId());
+        }
+        return new EnrichedPresence(presence, userInfo);
+    }
+
 
-        for (XboxUserInfo userInfo : xboxUsers.getPeople()) {
-            userInfoCache.put(userInfo.getUserId(), userInfo);
+
+    /**
+     * Adds headers to enriched presence events, with the type of the
+     *  title and whether the user is online.
+     */
+    static class PresenceHeadersSupplier implements ProcessorSupplier<String, EnrichedPresence, String, EnrichedPresence> {
+
+        private final TitleCatalogProvider titles;
+
+        PresenceHeadersSupplier(TitleCatalogProvider titles) {
+            this.titles = titles;
+        }
+
+        @Override
+        public Processor<String, EnrichedPresence, String, EnrichedPresence> get() {
+
+            return new ContextualProcessor<String, EnrichedPresence, String, EnrichedPresence>() {
+                @Override
+                public void process(Record<String, EnrichedPresence> record) {
+                    final EnrichedPresence presence = record.value();
+                    if (presence == null) {
+                        context().forward(record);
+                        return;
+                    }
+
+                    context().forward(record.withHeaders(PresenceHeaders.stamp(record.headers(),
+                                                                               presence,
+                                                                               titles.getTitles())));
+                }
+            };
         }
+    }
+
+
+
+    /**
+     * Drops presence events that are older than the last event seen
+     *  for the same user. Records are expected to be keyed by userid.
+     */
+    static class OutOfSequenceFilterSupplier implements ProcessorSupplier<String, Presence, String, Presence> {
+        @Override
+        public Processor<String, Presence, String, Presence> get() {
+
+            return new ContextualProcessor<String, Presence, String, Presence>() {
+                private KeyValueStore<String, Long> lastPresenceTimes;
+
+                @Override
+                public void init(ProcessorContext<String, Presence> context) {
+                    super.init(context);
+                    lastPresenceTimes = context.getStateStore(STATE_STORE_NAME);
+                }
+
+
+                @Override
+                public void process(Record<String, Presence> record) {
+                    final Presence value = record.value();
+                    if (value == null || value.getDate() == null) {
+                        // nothing to compare with, so pass it on as-is
+                        context().forward(record);
+                        return;
+                    }
 
-        return userInfoCache;
+                    final String userid = record.key();
+                    if (userid == null) {
+                        // the store can't have null keys, so there is no
+                        //  way to compare this with previous events
+                        context().forward(record);
+                        return;
+                    }
+                    final long eventTime = value.getDate().toEpochMilli();
+
+                    final Long lastEventTime = lastPresenceTimes.get(userid);
+                    if (lastEventTime != null && eventTime < lastEventTime) {
+                        // this is an older event than the last one seen
+                        //  for this user
+                        return;
+                    }
+
+                    // this is the first event for this user, or a newer
+                    //  event than the last one seen - this is okay to emit
+
+                    // remember in case we see this again
+                    lastPresenceTimes.put(userid, eventTime);
+
+                    context().forward(record);
+                }
+            };
+        }
     }
 }
@@ -0,0 +1,22 @@
+package uk.co.dalelane.kafkastreams.xboxlive.streams.enriching;
+
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.streams.processor.TimestampExtractor;
+
+import uk.co.dalelane.kafkastreams.xboxlive.data.presence.Presence;
+
+/**
+ * Uses the time that the presence event happened, rather than the
+ *  time it was produced to Kafka, so that stream time follows the
+ *  events themselves even when they arrive out of order.
+ */
+class PresenceTimestampExtractor implements TimestampExtractor {
+
+    @Override
+    public long extract(ConsumerRecord<Object, Object> record, long partitionTime) {
+        if (record.value() instanceof Presence presence && presence.getDate() != null) {
+            return presence.getDate().toEpochMilli();
+        }
+        return record.timestamp();
+    }
+}
@@ -0,0 +1,126 @@
+package uk.co.dalelane.kafkastreams.xboxlive.streams.enriching;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.kafka.common.utils.Bytes;
+import org.apache.kafka.streams.KeyValue;
+import org.apache.kafka.streams.processor.PunctuationType;
+import org.apache.kafka.streams.processor.api.ContextualProcessor;
+import org.apache.kafka.streams.processor.api.Processor;
+import org.apache.kafka.streams.processor.api.ProcessorContext;
+import org.apache.kafka.streams.processor.api.ProcessorSupplier;
+import org.apache.kafka.streams.processor.api.Record;
+import org.apache.kafka.streams.processor.api.RecordMetadata;
+import org.apache.kafka.streams.state.KeyValueIterator;
+import org.apache.kafka.streams.state.KeyValueStore;
+
+import uk.co.dalelane.kafkastreams.xboxlive.data.presence.Presence;
+
+/**
+ * Holds presence events back for a grace period, and then emits
+ *  them in the order that they happened, so that events that
+ *  arrive slightly out of order aren't treated as out of sequence.
+ *
+ *  Events are kept in a state store keyed by the time of the event,
+ *  followed by the offset of the record and the key, so the store
+ *  iterates in time order and the events that are ready can be
+ *  emitted without scanning the whole buffer. Events are emitted
+ *  once stream time has moved on by more than the grace period.
+ *
+ *  Events are expected to be keyed by userid.
+ */
+class ReorderBufferSupplier implements ProcessorSupplier<String, Presence, String, Presence> {
+
+    private static final Bytes FIRST_KEY = Bytes.wrap(new byte[0]);
+
+    private final String storeName;
+    private final Duration grace;
+    private final Duration flushInterval;
+
+    /**
+     * @param grace - how long to wait for late events
+     * @param flushInterval - how often to emit events that have been
+     *  held for longer than the grace period
+     */
+    ReorderBufferSupplier(String storeName, Duration grace, Duration flushInterval) {
+        this.storeName = storeName;
+        this.grace = grace;
+        this.flushInterval = flushInterval;
+    }
+
+    @Override
+    public Processor<String, Presence, String, Presence> get() {
+
+        return new ContextualProcessor<String, Presence, String, Presence>() {
+            private KeyValueStore<Bytes, Presence> buffer;
+
+            @Override
+            public void init(ProcessorContext<String, Presence> context) {
+                super.init(context);
+                buffer = context.getStateStore(storeName);
+
+                context.schedule(flushInterval, PunctuationType.STREAM_TIME, this::flush);
+            }
+
+
+            @Override
+            public void process(Record<String, Presence> record) {
+                final Presence value = record.value();
+                if (value == null || value.getDate() == null || record.key() == null) {
+                    // can't be put in order, so pass it on as-is
+                    context().forward(record);
+                    return;
+                }
+
+                final long offset = context().recordMetadata()
+                                        .map(RecordMetadata::offset)
+                                        .orElse(-1L);
+                buffer.put(key(value.getDate().toEpochMilli(), offset, record.key()), value);
+            }
+
+
+            /**
+             * Emits, in time order, the events that are older than
+             *  stream time minus the grace period.
+             */
+            private void flush(long streamTime) {
+                final long cutoff = streamTime - grace.toMillis();
+
+                final List<KeyValue<Bytes, Presence>> ready = new ArrayList<>();
+                try (KeyValueIterator<Bytes, Presence> iterator = buffer.range(FIRST_KEY, key(cutoff, Long.MIN_VALUE, ""))) {
+                    while (iterator.hasNext()) {
+                        ready.add(iterator.next());
+                    }
+                }
+
+                for (KeyValue<Bytes, Presence> event : ready) {
+                    buffer.delete(event.key);
+                    context().forward(new Record<>(userid(event.key),
+                                                   event.value,
+                                                   event.value.getDate().toEpochMilli()));
+                }
+            }
+        };
+    }
+
+
+    private static Bytes key(long eventTime, long offset, String userid) {
+        byte[] useridBytes = userid.getBytes(StandardCharsets.UTF_8);
+        ByteBuffer key = ByteBuffer.allocate(Long.BYTES + Long.BYTES + useridBytes.length);
+        // flip the sign bits so that byte order matches numeric order
+        key.putLong(eventTime ^ Long.MIN_VALUE);
+        key.putLong(offset ^ Long.MIN_VALUE);
+        key.put(useridBytes);
+        return Bytes.wrap(key.array());
+    }
+
+    private static String userid(Bytes key) {
+        final byte[] bytes = key.get();
+        final int start = Long.BYTES + Long.BYTES;
+        return new String(bytes, start, bytes.length - start, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,14 @@
+package uk.co.dalelane.kafkastreams.xboxlive.streams.enriching;
+
+/**
+ * What to do with presence events from users that aren't in
+ *  the list of known users.
+ */
+public enum UnknownUsersPolicy {
+    /** output with the other enriched events */
+    KEEP,
+    /** don't output at all */
+    DROP,
+    /** output to a separate topic for unknown users */
+    ROUTE
+}
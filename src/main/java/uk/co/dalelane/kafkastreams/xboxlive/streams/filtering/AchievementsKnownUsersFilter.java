@@ -1,10 +1,9 @@
 package uk.co.dalelane.kafkastreams.xboxlive.streams.filtering;
 
-import java.util.ArrayList;
-import java.util.Arrays;
-import java.util.Collections;
-import java.util.List;
+import java.util.Properties;
 
+import org.apache.kafka.common.serialization.Deserializer;
+import org.apache.kafka.common.serialization.Serdes;
 import org.apache.kafka.streams.StreamsBuilder;
 import org.apache.kafka.streams.kstream.Consumed;
 import org.apache.kafka.streams.kstream.Named;
@@ -14,9 +13,11 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import uk.co.dalelane.kafkastreams.xboxlive.data.achievements.Achievement;
+import uk.co.dalelane.kafkastreams.xboxlive.data.serdes.JsonFieldScanner;
 import uk.co.dalelane.kafkastreams.xboxlive.data.serdes.XboxSerdes;
-import uk.co.dalelane.kafkastreams.xboxlive.data.users.XboxUserInfo;
-import uk.co.dalelane.kafkastreams.xboxlive.data.users.XboxUsers;
+import uk.co.dalelane.kafkastreams.xboxlive.data.users.XboxUsersProvider;
+import uk.co.dalelane.kafkastreams.xboxlive.data.users.XboxUsersTable;
+import uk.co.dalelane.kafkastreams.xboxlive.utils.Config;
 
 /**
  * Example of using Kafka Streams to filter a stream of events.
@@ -30,7 +31,13 @@ import uk.co.dalelane.kafkastreams.xboxlive.data.users.XboxUsers;
  *
  *   This stream processor creates a filtered stream of the
  *   achievements stream, matching only achievements from gamers
- *   in the known users list.
+ *   in the known users list. The filtered achievements are keyed
+ *   by gamertag, so that downstream processors can group them by
+ *   gamer without needing to repartition them.
+ *
+ *   Optionally, the achievements can be filtered without being
+ *   deserialized, by scanning the JSON for just the gamertag, and
+ *   forwarding the original bytes of the achievements that match.
  *
  *   This is a good example of using Kafka Streams to clean a
  *   noisy stream of events from an external source as part of
@@ -49,25 +56,31 @@ public class AchievementsKnownUsersFilter {
     private static final String INPUT_TOPIC  = "XBOX.ACHIEVEMENTS";
     private static final String OUTPUT_TOPIC = "XBOX.ACHIEVEMENTS.KNOWNUSERS";
 
+    private static final JsonFieldScanner GAMERTAG_SCANNER = new JsonFieldScanner("gamertag");
 
 
     /**
-     * @param knownUsers - list of users in your gaming social network. Only
-     *   achievements from one of these users will emitted.
+     * @param knownUsers - list of users in your gaming social network, which
+     *   is refreshed in the background. Only achievements from one of these
+     *   users will emitted.
+     * @param config - application config, used to choose whether to
+     *   filter achievements without deserializing them
      */
-    public static void create(final StreamsBuilder builder, final XboxUsers knownUsers) {
-        log.info("Creating AchievementsKnownUsersFilter");
+    public static void create(final StreamsBuilder builder, final XboxUsersProvider knownUsers, final Properties config) {
+        if (Config.getBoolean(config, Config.ACHIEVEMENTS_FILTER_RAW, false)) {
+            createRaw(builder, knownUsers);
+            return;
+        }
 
-        // get the gamertags from the provided list
-        //  get a sorted list so that the filtering at runtime can be a little bit
-        //  more performant
-        final String[] knownUserGamertags = getGamerTags(knownUsers);
+        log.info("Creating AchievementsKnownUsersFilter");
 
         // predicate that returns true for achievements from one of the known gamers
+        //  the latest list of known users is indexed by gamertag so that the
+        //  filtering at runtime can be a little bit more performant
         final Predicate<String, Achievement> knownUsersFilter = new Predicate<>() {
             @Override
             public boolean test(String key, Achievement value) {
-                return Arrays.binarySearch(knownUserGamertags, value.getGamertag()) >= 0;
+                return knownUsers.getUsers().isKnownGamertag(value.getGamertag());
             }
         };
 
@@ -80,7 +93,10 @@ public class AchievementsKnownUsersFilter {
             // filter out the achievement events from unknown users
             .filter(knownUsersFilter,
                     Named.as("filter_known_users_only"))
-            // output the achievement events as-is to the XBOX.ACHIEVEMENTS.KNOWNUSERS topic
+            // key the achievement events by the gamer
+            .selectKey((key, achievement) -> achievement.getGamertag(),
+                       Named.as("key_achievements_by_gamertag"))
+            // output the achievement events to the XBOX.ACHIEVEMENTS.KNOWNUSERS topic
             .to(OUTPUT_TOPIC, Produced.with(XboxSerdes.GAMERTAG_SERDES,
                                             XboxSerdes.ACHIEVEMENT_SERDES));
     }
@@ -89,18 +105,98 @@ public class AchievementsKnownUsersFilter {
 
 
     /**
-     * Gets a sorted list of gamertags from the provided list of known users.
+     * Filters the achievements as bytes, forwarding the original bytes of
+     *  achievements from known users.
      */
-    private static String[] getGamerTags(final XboxUsers knownUsers) {
-        log.debug("Getting gamertags from the list of known xbox users");
+    private static void createRaw(final StreamsBuilder builder, final XboxUsersProvider knownUsers) {
+        log.info("Creating AchievementsKnownUsersFilter without deserializing achievements");
+
+        builder
+            // input the achievements from the topic produced to by the Kafka Connect connector
+            .stream(INPUT_TOPIC, Consumed.with(XboxSerdes.GAMERTAG_SERDES,
+                                               Serdes.ByteArray()))
+            // key the achievement events by the gamer, scanned from the JSON
+            .selectKey((key, achievement) -> getGamertag(achievement),
+                       Named.as("key_achievements_by_gamertag"))
+            // filter out the achievement events from unknown users
+            .filter((gamertag, achievement) -> knownUsers.getUsers().isKnownGamertag(gamertag),
+                    Named.as("filter_known_users_only"))
+            // output the original achievement events to the XBOX.ACHIEVEMENTS.KNOWNUSERS topic
+            .to(OUTPUT_TOPIC, Produced.with(XboxSerdes.GAMERTAG_SERDES,
+                                            Serdes.ByteArray()));
+    }
+
 
-        List<String> gamertags = new ArrayList<>();
 
-        for (XboxUserInfo userInfo : knownUsers.getPeople()) {
-            gamertags.add(userInfo.getGamertag());
+
+    /**
+     * @param knownUsers - table of users in your gaming social network, kept
+     *   up to date from a compacted topic. Only achievements from one of these
+     *   users will emitted.
+     * @param config - application config, used to choose whether to filter
+     *   achievements without deserializing them
+     */
+    public static void create(final StreamsBuilder builder, final XboxUsersTable knownUsers, final Properties config) {
+        if (Config.getBoolean(config, Config.ACHIEVEMENTS_FILTER_RAW, false)) {
+            log.info("Creating AchievementsKnownUsersFilter using a table of known users, without deserializing achievements");
+
+            builder
+                // input the achievements from the topic produced to by the Kafka Connect connector
+                .stream(INPUT_TOPIC, Consumed.with(XboxSerdes.GAMERTAG_SERDES,
+                                                   Serdes.ByteArray()))
+                // key the achievement events by the gamer, scanned from the JSON
+                .selectKey((key, achievement) -> getGamertag(achievement),
+                           Named.as("key_achievements_by_gamertag"))
+                // filter out the achievement events from unknown users, by
+                //  looking up the gamertag in the table of known users
+                .filter((gamertag, achievement) -> knownUsers.isKnownGamertag(gamertag),
+                        Named.as("filter_known_users_only"))
+                // output the original achievement events to the XBOX.ACHIEVEMENTS.KNOWNUSERS topic
+                .to(OUTPUT_TOPIC, Produced.with(XboxSerdes.GAMERTAG_SERDES,
+                                                Serdes.ByteArray()));
+            return;
         }
-        Collections.sort(gamertags);
 
-        return gamertags.toArray(new String[0]);
+        log.info("Creating AchievementsKnownUsersFilter using a table of known users");
+
+        builder
+            // input the achievements from the topic produced to by the Kafka Connect connector
+            .stream(INPUT_TOPIC, Consumed.with(XboxSerdes.GAMERTAG_SERDES,
+                                               XboxSerdes.ACHIEVEMENT_SERDES))
+            // filter out the achievement events from unknown users, by
+            //  looking up the gamertag in the table of known users
+            .filter((key, achievement) -> knownUsers.isKnownGamertag(achievement.getGamertag()),
+                    Named.as("filter_known_users_only"))
+            // key the achievement events by the gamer
+            .selectKey((key, achievement) -> achievement.getGamertag(),
+                       Named.as("key_achievements_by_gamertag"))
+            // output the achievement events to the XBOX.ACHIEVEMENTS.KNOWNUSERS topic
+            .to(OUTPUT_TOPIC, Produced.with(XboxSerdes.GAMERTAG_SERDES,
+                                            XboxSerdes.ACHIEVEMENT_SERDES));
+    }
+
+
+
+
+    /**
+     * Returns the gamertag from the JSON for an achievement, without
+     *  deserializing the rest of it.
+     *
+     *  If the JSON can't be scanned (e.g. it's only accepted by a
+     *  lenient parser), it is deserialized instead.
+     */
+    private static String getGamertag(byte[] achievement) {
+        if (achievement == null || achievement.length == 0) {
+            return null;
+        }
+        try {
+            return GAMERTAG_SCANNER.readString(achievement);
+        }
+        catch (IllegalArgumentException e) {
+            log.debug("Unable to scan achievement for gamertag", e);
+            final Deserializer<Achievement> deserializer = XboxSerdes.ACHIEVEMENT_SERDES.deserializer();
+            final Achievement value = deserializer.deserialize(INPUT_TOPIC, achievement);
+            return value == null ? null : value.getGamertag();
+        }
     }
 }
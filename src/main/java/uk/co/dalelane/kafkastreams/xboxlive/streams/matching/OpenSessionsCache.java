@@ -0,0 +1,81 @@
+package uk.co.dalelane.kafkastreams.xboxlive.streams.matching;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.apache.kafka.streams.state.KeyValueStore;
+
+import uk.co.dalelane.kafkastreams.xboxlive.data.sessions.PlaySession;
+
+/**
+ * Write-through cache of decoded play sessions, in front of the
+ *  store of open sessions.
+ *
+ *  The xbl presence API repeats events, and each of these would
+ *  otherwise need the open session for the gamer to be read and
+ *  deserialized from the store, just to find that nothing has
+ *  changed.
+ *
+ *  Every change is written to the store straight away, so the
+ *  changelog topic is always kept up to date and nothing is lost
+ *  if the task is moved to another instance. The cache only saves
+ *  reads, and starts empty whenever the processor is created.
+ *
+ *  Gamers who don't have an open session are cached as well, so
+ *  that repeated offline events don't need a read either.
+ *
+ *  Sessions returned from the cache are the same objects held by
+ *  the cache, so they must not be modified without putting them
+ *  back.
+ */
+class OpenSessionsCache {
+
+    private final KeyValueStore<String, PlaySession> store;
+    private final Map<String, PlaySession> cache;
+    private final boolean enabled;
+
+    /**
+     * @param maxSize - maximum number of gamers to cache sessions for,
+     *  with the least recently used gamers removed first - if this is
+     *  0, every read goes to the store
+     */
+    OpenSessionsCache(KeyValueStore<String, PlaySession> openSessions, final int maxSize) {
+        store = openSessions;
+        enabled = maxSize > 0;
+        cache = new LinkedHashMap<>(16, 0.75f, true) {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, PlaySession> eldest) {
+                return size() > maxSize;
+            }
+        };
+    }
+
+
+    PlaySession get(String gamertag) {
+        if (!enabled) {
+            return store.get(gamertag);
+        }
+        PlaySession session = cache.get(gamertag);
+        if (session == null && !cache.containsKey(gamertag)) {
+            session = store.get(gamertag);
+            cache.put(gamertag, session);
+        }
+        return session;
+    }
+
+    void put(String gamertag, PlaySession session) {
+        store.put(gamertag, session);
+        if (enabled) {
+            cache.put(gamertag, session);
+        }
+    }
+
+    void delete(String gamertag) {
+        store.delete(gamertag);
+        if (enabled) {
+            cache.put(gamertag, null);
+        }
+    }
+}
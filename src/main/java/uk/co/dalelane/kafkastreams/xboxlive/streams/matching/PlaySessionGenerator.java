@@ -1,26 +1,37 @@
 package uk.co.dalelane.kafkastreams.xboxlive.streams.matching;
 
+import java.time.Duration;
+import java.time.Instant;
 import java.time.format.DateTimeParseException;
+import java.util.Properties;
 
+import org.apache.kafka.common.metrics.Sensor;
+import org.apache.kafka.common.serialization.Serdes;
+import org.apache.kafka.streams.KeyValue;
 import org.apache.kafka.streams.StreamsBuilder;
+import org.apache.kafka.streams.kstream.Branched;
 import org.apache.kafka.streams.kstream.Consumed;
+import org.apache.kafka.streams.kstream.KStream;
 import org.apache.kafka.streams.kstream.Named;
 import org.apache.kafka.streams.kstream.Predicate;
 import org.apache.kafka.streams.kstream.Produced;
+import org.apache.kafka.streams.processor.PunctuationType;
 import org.apache.kafka.streams.processor.api.ContextualProcessor;
 import org.apache.kafka.streams.processor.api.Processor;
 import org.apache.kafka.streams.processor.api.ProcessorContext;
 import org.apache.kafka.streams.processor.api.ProcessorSupplier;
 import org.apache.kafka.streams.processor.api.Record;
+import org.apache.kafka.streams.state.KeyValueIterator;
 import org.apache.kafka.streams.state.KeyValueStore;
 import org.apache.kafka.streams.state.Stores;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import uk.co.dalelane.kafkastreams.xboxlive.data.games.TitleIdInfo;
+import uk.co.dalelane.kafkastreams.xboxlive.data.games.TitleCatalogProvider;
 import uk.co.dalelane.kafkastreams.xboxlive.data.presence.EnrichedPresence;
 import uk.co.dalelane.kafkastreams.xboxlive.data.serdes.XboxSerdes;
 import uk.co.dalelane.kafkastreams.xboxlive.data.sessions.PlaySession;
+import uk.co.dalelane.kafkastreams.xboxlive.utils.Config;
 
 
 /**
@@ -50,10 +61,16 @@ import uk.co.dalelane.kafkastreams.xboxlive.data.sessions.PlaySession;
  *   events, by looking at the events in the context of events that
  *   come before them.
  *
+ *   Play sessions that are still in progress can optionally be
+ *   emitted to a separate topic, so that they can be seen before
+ *   they finish. Every open session is emitted at the end of each
+ *   interval, with the duration so far.
+ *
  *
  *  TOPICS:
  *   Input:     XBOX.PRESENCE.ENRICHED
  *   Output:    XBOX.PLAYSESSIONS
+ *              XBOX.PLAYSESSIONS.INPROGRESS
  *
  */
 public class PlaySessionGenerator {
@@ -62,13 +79,32 @@ public class PlaySessionGenerator {
 
     private static final String INPUT_TOPIC  = "XBOX.PRESENCE.ENRICHED";
     private static final String OUTPUT_TOPIC = "XBOX.PLAYSESSIONS";
+    private static final String IN_PROGRESS_TOPIC = "XBOX.PLAYSESSIONS.INPROGRESS";
 
     private static final String STATE_STORE_NAME = PlaySessionGenerator.class.getCanonicalName();
+    private static final String INDEX_STORE_NAME = STATE_STORE_NAME + ".bystart";
 
 
-    public static void create(final StreamsBuilder builder) {
+    /**
+     * @param titles - catalog of the types of Xbox titles, which is
+     *  refreshed in the background. Only play sessions for games
+     *  will be emitted.
+     * @param config - application config, used to choose the format
+     *  for storing open play sessions, and when to give up on them
+     */
+    public static void create(final StreamsBuilder builder, final TitleCatalogProvider titles, final Properties config) {
         log.info("Creating PlaySessionGenerator");
 
+        // sessions longer than this (in whole hours) are assumed to be
+        //  caused by missing events
+        final Duration maxSessionLength = Duration.ofHours(Config.getLong(config, Config.SESSIONS_MAX_LENGTH_HOURS, 8));
+        // how often to look for open sessions that have been open for too long
+        final Duration expiryInterval = Duration.ofMinutes(Config.getLong(config, Config.SESSIONS_EXPIRY_INTERVAL_MINUTES, 10));
+        // how many decoded open sessions to keep in memory (0 to disable)
+        final int cacheSize = (int) Config.getLong(config, Config.SESSIONS_CACHE_SIZE, 0);
+        // how often to emit updates for sessions that are in progress (0 to disable)
+        final Duration inProgressInterval = Duration.ofSeconds(Config.getLong(config, Config.SESSIONS_IN_PROGRESS_INTERVAL_SECONDS, 0));
+
         // This is a stateful stream processor, so that events
         //  can be compared with previous events. This means
         //  we need to create a persistent store to maintain state.
@@ -76,48 +112,112 @@ public class PlaySessionGenerator {
             Stores.keyValueStoreBuilder(
                 Stores.persistentKeyValueStore(STATE_STORE_NAME),
                 XboxSerdes.GAMERTAG_SERDES,
-                XboxSerdes.PLAY_SESSION_SERDES));
+                XboxSerdes.playSessionStoreSerdes(Config.getStateStoreFormat(config))));
+        // The open sessions are also indexed by the time they started, so
+        //  that sessions which have been open for too long can be found.
+        builder.addStateStore(
+            Stores.keyValueStoreBuilder(
+                Stores.persistentKeyValueStore(INDEX_STORE_NAME),
+                Serdes.Bytes(),
+                XboxSerdes.GAMERTAG_SERDES));
 
         // we're only emitting play sessions for games, so this
         //  filters out completed sessions for using a media player or app
         final Predicate<String, PlaySession> filterOutNonGameSessions = new Predicate<>() {
             @Override
             public boolean test(String key, PlaySession value) {
-                return TitleIdInfo.GAME.equals(TitleIdInfo.getTitleType(value.getTitleId()));
+                return titles.getTitles().isGame(value.getTitleId());
             }
         };
 
 
-        builder
+        final Produced<String, PlaySession> produced = Produced.with(XboxSerdes.GAMERTAG_SERDES,
+                                                                     XboxSerdes.PLAY_SESSION_SERDES);
+
+        final KStream<String, PlaySession> sessions = builder
             // input the enriched presences (with additional info about users)
             .stream(INPUT_TOPIC, Consumed.with(XboxSerdes.GAMERTAG_SERDES,
                                                XboxSerdes.ENRICHED_PRESENCE_SERDES))
             // pair the raw events into logical events representing completed play sessions
-            .process(new PresenceProcessorSupplier(),
+            .process(new PresenceProcessorSupplier(maxSessionLength, expiryInterval, cacheSize, inProgressInterval),
                      Named.as("pair_start_and_stop_presences"),
-                     STATE_STORE_NAME)
+                     STATE_STORE_NAME, INDEX_STORE_NAME)
             // filter out completed sessions using media players or other non-game apps
             .filter(filterOutNonGameSessions,
-                    Named.as("filter_out_non_game_sessions"))
+                    Named.as("filter_out_non_game_sessions"));
+
+        if (inProgressInterval.isZero()) {
             // output to a topic for logical play session events
-            .to(OUTPUT_TOPIC, Produced.with(XboxSerdes.GAMERTAG_SERDES,
-                                            XboxSerdes.PLAY_SESSION_SERDES));
+            sessions.to(OUTPUT_TOPIC, produced);
+        }
+        else {
+            sessions
+                .split(Named.as("split_by_complete_"))
+                    // output to a topic for logical play session events
+                    .branch((gamertag, session) -> session.isComplete(),
+                            Branched.withConsumer(str -> str.to(OUTPUT_TOPIC, produced)))
+                    // output updates for sessions that haven't finished yet
+                    //  to a separate topic, so that consumers of completed
+                    //  sessions aren't affected
+                    .defaultBranch(Branched.withConsumer(str -> str.to(IN_PROGRESS_TOPIC, produced)));
+        }
     }
 
 
 
 
     static class PresenceProcessorSupplier implements ProcessorSupplier<String, EnrichedPresence, String, PlaySession> {
+
+        private final Duration maxSessionLength;
+        private final Duration expiryInterval;
+        private final int cacheSize;
+        private final Duration inProgressInterval;
+
+        PresenceProcessorSupplier(Duration maxSessionLength, Duration expiryInterval, int cacheSize, Duration inProgressInterval) {
+            this.maxSessionLength = maxSessionLength;
+            this.expiryInterval = expiryInterval;
+            this.cacheSize = cacheSize;
+            this.inProgressInterval = inProgressInterval;
+        }
+
         @Override
         public Processor<String, EnrichedPresence, String, PlaySession> get() {
 
             return new ContextualProcessor<String, EnrichedPresence, String, PlaySession>() {
-                private KeyValueStore<String, PlaySession> openSessions;
+                private KeyValueStore<String, PlaySession> openSessionsStore;
+                private OpenSessionsCache openSessions;
+                private SessionStartIndex openSessionsByStart;
+                private Sensor expiredSessionsSensor;
 
                 @Override
                 public void init(ProcessorContext<String, PlaySession> context) {
                     super.init(context);
-                    openSessions = context.getStateStore(STATE_STORE_NAME);
+                    openSessionsStore = context.getStateStore(STATE_STORE_NAME);
+                    openSessions = new OpenSessionsCache(openSessionsStore, cacheSize);
+                    openSessionsByStart = new SessionStartIndex(context.getStateStore(INDEX_STORE_NAME));
+
+                    if (openSessionsByStart.isEmpty()) {
+                        // sessions stored before the index was introduced
+                        //  need adding to it
+                        rebuildIndex();
+                    }
+
+                    expiredSessionsSensor = context.metrics().addRateTotalSensor("xbox-play-sessions",
+                                                                                 context.taskId().toString(),
+                                                                                 "expired-open-sessions",
+                                                                                 Sensor.RecordingLevel.INFO);
+
+                    // periodically remove sessions that are too old to be
+                    //  real, such as when the offline event for a gamer
+                    //  went missing
+                    context.schedule(expiryInterval, PunctuationType.STREAM_TIME, this::expireSessions);
+
+                    if (!inProgressInterval.isZero()) {
+                        // periodically emit the sessions that have started
+                        //  and are still in progress - one update per gamer
+                        //  for each interval, however many events they've had
+                        context.schedule(inProgressInterval, PunctuationType.STREAM_TIME, this::emitSessionsInProgress);
+                    }
                 }
 
 
@@ -137,37 +237,41 @@ public class PlaySessionGenerator {
                             }
                             else {
                                 // this is the start of a new play session
-                                openSessions.put(key, PlaySession.createFromStart(value));
+                                startSession(key, PlaySession.createFromStart(value));
                             }
 
                             // no current play session, so nothing to return yet
                         }
                         else {
 
+                            if (!value.userOffline() && value.getTitleId().equals(openSession.getTitleId())) {
+                                // looks like a duplicate event - ignore
+                                //  (checked before changing the session, as
+                                //   it may be shared with the cache)
+                                return;
+                            }
+
                             // there is a current play session - mark it as complete
                             openSession.setEnd(value.getDate());
 
 
                             if (value.userOffline()) {
                                 // this is the end of the current play session
-                                //  so need to remove it from the state by setting it to null
-                                openSessions.put(key, null);
-                            }
-                            else if (value.getTitleId().equals(openSession.getTitleId())) {
-                                // looks like a duplicate event - ignore
-                                return;
+                                //  so need to remove it from the state
+                                endSession(key, openSession);
                             }
                             else {
                                 // the user has switched from one game to another
                                 //  so we're starting a new play session
-                                openSessions.put(key, PlaySession.createFromStart(value));
+                                endSession(key, openSession);
+                                startSession(key, PlaySession.createFromStart(value));
                             }
 
                             // propogate a completed play session
-                            if (openSession.getDuration().toHours() > 8) {
+                            if (isTooLong(openSession.getDuration())) {
                                 // assume this is an error caused by missing events,
-                                //  as surely noone plays for longer than eight
-                                //  hours without a break!
+                                //  as surely noone plays for longer than the
+                                //  max session length without a break!
                                 log.error("Invalid play session detected {}", openSession);
                             }
                             else {
@@ -180,6 +284,100 @@ public class PlaySessionGenerator {
                         log.error("Unparseable timestamp in input message", exc);
                     }
                 }
+
+
+                private void startSession(String key, PlaySession session) {
+                    openSessions.put(key, session);
+                    openSessionsByStart.add(session.getStartDate(), key);
+                }
+
+                private void endSession(String key, PlaySession session) {
+                    openSessions.delete(key);
+                    openSessionsByStart.remove(session.getStartDate(), key);
+                }
+
+
+                /**
+                 * Sessions are compared with the maximum length in whole
+                 *  hours, so with the default of 8 hours, a session of
+                 *  8h59m is still accepted.
+                 */
+                private boolean isTooLong(Duration duration) {
+                    return duration.toHours() > maxSessionLength.toHours();
+                }
+
+                /**
+                 * Removes open sessions that started too long ago to be accepted.
+                 *  These will be rejected as invalid whenever the next event for
+                 *  the gamer arrives, so there is no point in keeping them.
+                 */
+                private void expireSessions(long streamTime) {
+                    // sessions are too long once they reach an hour past the
+                    //  maximum session length
+                    final long cutoff = streamTime - maxSessionLength.plusHours(1).toMillis();
+
+                    for (KeyValue<String, Instant> expired : openSessionsByStart.startedBefore(cutoff)) {
+                        final String key = expired.key;
+                        final Instant start = expired.value;
+
+                        openSessionsByStart.remove(start, key);
+
+                        PlaySession openSession = openSessions.get(key);
+                        if (openSession != null &&
+                            openSession.getStartDate() != null &&
+                            openSession.getStartDate().toEpochMilli() == start.toEpochMilli())
+                        {
+                            log.warn("Expiring open play session {}", openSession);
+                            openSessions.delete(key);
+                            expiredSessionsSensor.record();
+                        }
+                    }
+                }
+
+                /**
+                 * Emits a copy of each session that is still open, with the
+                 *  duration of the session so far. The open sessions are
+                 *  found using the index, which is kept in the state store
+                 *  so that sessions are emitted after a restart too.
+                 */
+                private void emitSessionsInProgress(long streamTime) {
+                    final Instant now = Instant.ofEpochMilli(streamTime);
+
+                    // sessions that start after the current stream time
+                    //  will be emitted the next time this runs
+                    for (KeyValue<String, Instant> started : openSessionsByStart.startedBefore(streamTime + 1)) {
+                        final String key = started.key;
+                        final Instant start = started.value;
+
+                        final PlaySession openSession = openSessions.get(key);
+                        if (openSession == null ||
+                            openSession.getStartDate() == null ||
+                            openSession.getStartDate().toEpochMilli() != start.toEpochMilli())
+                        {
+                            // not the gamer's current session
+                            continue;
+                        }
+
+                        PlaySession inProgress = openSession.inProgressAt(now);
+                        if (isTooLong(inProgress.getDuration())) {
+                            // will be expired
+                            continue;
+                        }
+
+                        context().forward(new Record<>(key, inProgress, streamTime));
+                    }
+                }
+
+                private void rebuildIndex() {
+                    try (KeyValueIterator<String, PlaySession> iterator = openSessionsStore.all()) {
+                        while (iterator.hasNext()) {
+                            KeyValue<String, PlaySession> session = iterator.next();
+                            if (session.value != null) {
+                                openSessionsByStart.add(session.value.getStartDate(), session.key);
+                            }
+                        }
+                    }
+                }
             };
         }
     }
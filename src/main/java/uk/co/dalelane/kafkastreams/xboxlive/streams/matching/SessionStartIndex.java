@@ -0,0 +1,82 @@
+package uk.co.dalelane.kafkastreams.xboxlive.streams.matching;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.kafka.common.utils.Bytes;
+import org.apache.kafka.streams.KeyValue;
+import org.apache.kafka.streams.state.KeyValueIterator;
+import org.apache.kafka.streams.state.KeyValueStore;
+
+/**
+ * Secondary index of open play sessions, ordered by the time that
+ *  each session started.
+ *
+ *  Keys are the start time as a big-endian long followed by the
+ *  gamertag, so the store iterates in order of start time and the
+ *  oldest sessions can be found without scanning every session.
+ *  Values are the gamertag, which is the key for the session in the
+ *  open sessions store.
+ */
+class SessionStartIndex {
+
+    private static final Bytes FIRST_KEY = Bytes.wrap(new byte[0]);
+
+    private final KeyValueStore<Bytes, String> index;
+
+    SessionStartIndex(KeyValueStore<Bytes, String> indexStore) {
+        index = indexStore;
+    }
+
+
+    void add(Instant start, String gamertag) {
+        if (start != null) {
+            index.put(key(start.toEpochMilli(), gamertag), gamertag);
+        }
+    }
+
+    void remove(Instant start, String gamertag) {
+        if (start != null) {
+            index.delete(key(start.toEpochMilli(), gamertag));
+        }
+    }
+
+    boolean isEmpty() {
+        try (KeyValueIterator<Bytes, String> iterator = index.all()) {
+            return !iterator.hasNext();
+        }
+    }
+
+
+    /**
+     * Returns the gamertag and start time of every session that started
+     *  before the given time, oldest first.
+     */
+    List<KeyValue<String, Instant>> startedBefore(long cutoffMs) {
+        List<KeyValue<String, Instant>> sessions = new ArrayList<>();
+        try (KeyValueIterator<Bytes, String> iterator = index.range(FIRST_KEY, key(cutoffMs, ""))) {
+            while (iterator.hasNext()) {
+                KeyValue<Bytes, String> entry = iterator.next();
+                sessions.add(KeyValue.pair(entry.value, Instant.ofEpochMilli(startTime(entry.key))));
+            }
+        }
+        return sessions;
+    }
+
+
+    private static Bytes key(long startMs, String gamertag) {
+        byte[] gamertagBytes = gamertag.getBytes(StandardCharsets.UTF_8);
+        ByteBuffer key = ByteBuffer.allocate(Long.BYTES + gamertagBytes.length);
+        // flip the sign bit so that byte order matches numeric order
+        key.putLong(startMs ^ Long.MIN_VALUE);
+        key.put(gamertagBytes);
+        return Bytes.wrap(key.array());
+    }
+
+    private static long startTime(Bytes key) {
+        return ByteBuffer.wrap(key.get()).getLong() ^ Long.MIN_VALUE;
+    }
+}
@@ -0,0 +1,342 @@
+package uk.co.dalelane.kafkastreams.xboxlive.streams.ranking;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.TreeSet;
+
+import org.apache.kafka.common.serialization.Serdes;
+import org.apache.kafka.streams.KeyValue;
+import org.apache.kafka.streams.StreamsBuilder;
+import org.apache.kafka.streams.kstream.Consumed;
+import org.apache.kafka.streams.kstream.Named;
+import org.apache.kafka.streams.kstream.Produced;
+import org.apache.kafka.streams.kstream.Repartitioned;
+import org.apache.kafka.streams.processor.api.ContextualProcessor;
+import org.apache.kafka.streams.processor.api.Processor;
+import org.apache.kafka.streams.processor.api.ProcessorContext;
+import org.apache.kafka.streams.processor.api.ProcessorSupplier;
+import org.apache.kafka.streams.processor.api.Record;
+import org.apache.kafka.streams.state.KeyValueIterator;
+import org.apache.kafka.streams.state.KeyValueStore;
+import org.apache.kafka.streams.state.Stores;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import uk.co.dalelane.kafkastreams.xboxlive.data.achievements.Leaderboard;
+import uk.co.dalelane.kafkastreams.xboxlive.data.achievements.WeeklyGamerScore;
+import uk.co.dalelane.kafkastreams.xboxlive.data.serdes.XboxSerdes;
+import uk.co.dalelane.kafkastreams.xboxlive.utils.Config;
+import uk.co.dalelane.kafkastreams.xboxlive.utils.EmitOnChangeSupplier;
+
+
+/**
+ * Example of using Kafka Streams to rank the entities in a stream
+ *  of events.
+ *
+ *  Use case: Maintaining a leaderboard of the gamers with the highest
+ *   gamerscore in the last week
+ *
+ *  Background:
+ *   The WeeklyGamerScoreCounter stream processor emits the weekly
+ *   gamerscore for each gamer whenever it changes, spread across the
+ *   partitions of the output topic. This includes when a gamer's
+ *   score goes down because old achievements drop out of the week,
+ *   with a tombstone once a gamer has no score left, which removes
+ *   them from the leaderboard.
+ *
+ *   This stream processor ranks the gamers in two stages. First, the
+ *   top gamers from each partition are found, which only needs the
+ *   scores from that partition. These partial leaderboards are then
+ *   sent to a single partition, where they are merged into a single
+ *   leaderboard. The leaderboard is only output when the ranking
+ *   changes.
+ *
+ *   This is a good example of using Kafka Streams to aggregate across
+ *   all partitions, while doing most of the work in parallel.
+ *
+ *
+ *  TOPICS:
+ *   Input:     XBOX.GAMERSCORE.WEEK
+ *   Output:    XBOX.GAMERSCORE.LEADERBOARD
+ *
+ */
+public class GamerScoreLeaderboard {
+
+    private static Logger log = LoggerFactory.getLogger(GamerScoreLeaderboard.class);
+
+    private static final String INPUT_TOPIC  = "XBOX.GAMERSCORE.WEEK";
+    private static final String OUTPUT_TOPIC = "XBOX.GAMERSCORE.LEADERBOARD";
+
+    /** key used for the leaderboard in the output topic */
+    private static final String LEADERBOARD_KEY = "weekly";
+
+    private static final String SCORES_STORE_NAME = GamerScoreLeaderboard.class.getCanonicalName() + ".scores";
+    private static final String PARTIALS_STORE_NAME = GamerScoreLeaderboard.class.getCanonicalName() + ".partials";
+    private static final String PARTIALS_EMITTED_STORE_NAME = PARTIALS_STORE_NAME + ".emitted";
+    private static final String EMITTED_STORE_NAME = GamerScoreLeaderboard.class.getCanonicalName() + ".emitted";
+
+
+    /**
+     * @param config - application config, used to choose how many
+     *  gamers to include in the leaderboard
+     */
+    public static void create(final StreamsBuilder builder, final Properties config) {
+        log.info("Creating GamerScoreLeaderboard");
+
+        final int leaderboardSize = (int) Config.getLong(config, Config.LEADERBOARD_SIZE, 10);
+
+        // the latest score for each gamer in a partition, so that the top
+        //  gamers can be found again if one of them drops out - gamers
+        //  are removed when a tombstone for their score is received
+        builder.addStateStore(
+            Stores.keyValueStoreBuilder(
+                Stores.persistentKeyValueStore(SCORES_STORE_NAME),
+                XboxSerdes.GAMERTAG_SERDES,
+                Serdes.Integer()));
+        // the latest partial leaderboard from each partition
+        builder.addStateStore(
+            Stores.keyValueStoreBuilder(
+                Stores.persistentKeyValueStore(PARTIALS_STORE_NAME),
+                Serdes.String(),
+                XboxSerdes.LEADERBOARD_SERDES));
+        builder.addStateStore(EmitOnChangeSupplier.storeBuilder(PARTIALS_EMITTED_STORE_NAME, Serdes.String()));
+        builder.addStateStore(EmitOnChangeSupplier.storeBuilder(EMITTED_STORE_NAME, Serdes.String()));
+
+
+        builder
+            // input the weekly gamerscores
+            .stream(INPUT_TOPIC, Consumed.with(XboxSerdes.GAMERTAG_SERDES,
+                                               XboxSerdes.WEEKLY_SCORE_SERDES))
+            // find the top gamers for each partition, keyed by the
+            //  stream task that found them
+            .process(new PartitionTopGamersSupplier(leaderboardSize),
+                     Named.as("find_top_gamers_in_partition"),
+                     SCORES_STORE_NAME)
+            // only send on partial leaderboards that have changed
+            .process(new EmitOnChangeSupplier<String, Leaderboard>(PARTIALS_EMITTED_STORE_NAME, Leaderboard::fingerprint),
+                     Named.as("emit_partial_leaderboard_on_change"),
+                     PARTIALS_EMITTED_STORE_NAME)
+            // bring the partial leaderboards together in a single partition
+            //  so that they can be merged
+            .repartition(Repartitioned.with(Serdes.String(), XboxSerdes.LEADERBOARD_SERDES)
+                                      .withName("partial_leaderboards")
+                                      .withNumberOfPartitions(1))
+            // merge the partial leaderboards into a single leaderboard
+            .process(new MergeLeaderboardsSupplier(leaderboardSize),
+                     Named.as("merge_partial_leaderboards"),
+                     PARTIALS_STORE_NAME)
+            // only output the leaderboard when the ranking changes
+            .process(new EmitOnChangeSupplier<String, Leaderboard>(EMITTED_STORE_NAME, Leaderboard::fingerprint),
+                     Named.as("emit_leaderboard_on_change"),
+                     EMITTED_STORE_NAME)
+            // output to the XBOX.GAMERSCORE.LEADERBOARD topic
+            .to(OUTPUT_TOPIC, Produced.with(Serdes.String(),
+                                            XboxSerdes.LEADERBOARD_SERDES));
+    }
+
+
+
+
+    /**
+     * Keeps the top gamers for the partition, and emits them when a
+     *  gamer in the top gamers has a new score, or a gamer joins them.
+     *
+     *  A reserve of the next highest gamers is kept as well, so that
+     *  when a top gamer's score goes down, or they are removed, the
+     *  gamer who replaces them is usually already known. The store of
+     *  scores is only scanned again when the reserve has run out.
+     */
+    static class PartitionTopGamersSupplier implements ProcessorSupplier<String, WeeklyGamerScore, String, Leaderboard> {
+
+        private final int size;
+        /** the number of top gamers plus the reserve */
+        private final int capacity;
+
+        PartitionTopGamersSupplier(int size) {
+            this.size = size;
+            this.capacity = size * 2;
+        }
+
+        @Override
+        public Processor<String, WeeklyGamerScore, String, Leaderboard> get() {
+
+            return new ContextualProcessor<String, WeeklyGamerScore, String, Leaderboard>() {
+                private KeyValueStore<String, Integer> scores;
+
+                // the top gamers and the reserve, in ranked order, and
+                //  indexed by gamertag
+                private TreeSet<WeeklyGamerScore> topGamers;
+                private Map<String, WeeklyGamerScore> topGamersIndex;
+                // true if there may be gamers in the store who aren't in
+                //  the top gamers - they are all ranked below the last one
+                private boolean truncated;
+
+                @Override
+                public void init(ProcessorContext<String, Leaderboard> context) {
+                    super.init(context);
+                    scores = context.getStateStore(SCORES_STORE_NAME);
+                    findTopGamers();
+                }
+
+                @Override
+                public void process(Record<String, WeeklyGamerScore> record) {
+                    final String gamertag = record.key();
+                    if (gamertag == null) {
+                        return;
+                    }
+                    // a tombstone means that the gamer has no score left
+                    //  in the week
+                    final Integer score = record.value() == null ? null : record.value().getScore();
+
+                    if (score == null) {
+                        scores.delete(gamertag);
+                    }
+                    else {
+                        scores.put(gamertag, score);
+                    }
+
+                    final WeeklyGamerScore previous = topGamersIndex.get(gamertag);
+                    final WeeklyGamerScore latest = score == null ? null : new WeeklyGamerScore(gamertag, score);
+                    final boolean wasTopGamer = previous != null && isTopGamer(previous);
+
+                    if (previous != null) {
+                        remove(previous);
+                    }
+
+                    boolean added = false;
+                    if (latest != null) {
+                        // gamers outside of the top gamers are all ranked below
+                        //  the last one, so a lower score could be in the wrong
+                        //  place if it was added
+                        if (!truncated || (!topGamers.isEmpty() && Leaderboard.RANKING.compare(latest, topGamers.last()) < 0)) {
+                            add(latest);
+                            added = true;
+                            if (topGamers.size() > capacity) {
+                                remove(topGamers.last());
+                                truncated = true;
+                            }
+                        }
+                        else {
+                            truncated = true;
+                        }
+                    }
+
+                    if (truncated && topGamers.size() < size) {
+                        // the reserve has run out
+                        findTopGamers();
+                    }
+                    else if (!wasTopGamer && !(added && isTopGamer(latest))) {
+                        // no change to the top gamers to emit
+                        return;
+                    }
+
+                    final List<WeeklyGamerScore> leaderboard = new ArrayList<>(size);
+                    for (WeeklyGamerScore gamer : topGamers) {
+                        if (leaderboard.size() == size) {
+                            break;
+                        }
+                        leaderboard.add(gamer);
+                    }
+                    context().forward(new Record<>(context().taskId().toString(),
+                                                   new Leaderboard(leaderboard),
+                                                   record.timestamp()));
+                }
+
+
+                private boolean isTopGamer(WeeklyGamerScore gamer) {
+                    return topGamers.headSet(gamer).size() < size;
+                }
+
+                private void add(WeeklyGamerScore gamer) {
+                    topGamers.add(gamer);
+                    topGamersIndex.put(gamer.getGamer(), gamer);
+                }
+
+                private void remove(WeeklyGamerScore gamer) {
+                    topGamers.remove(gamer);
+                    topGamersIndex.remove(gamer.getGamer());
+                }
+
+                private void findTopGamers() {
+                    topGamers = new TreeSet<>(Leaderboard.RANKING);
+                    topGamersIndex = new HashMap<>();
+                    truncated = false;
+                    try (KeyValueIterator<String, Integer> iterator = scores.all()) {
+                        while (iterator.hasNext()) {
+                            KeyValue<String, Integer> score = iterator.next();
+                            if (score.value == null) {
+                                continue;
+                            }
+                            WeeklyGamerScore gamer = new WeeklyGamerScore(score.key, score.value);
+                            if (topGamers.size() < capacity || Leaderboard.RANKING.compare(gamer, topGamers.last()) < 0) {
+                                add(gamer);
+                                if (topGamers.size() > capacity) {
+                                    remove(topGamers.last());
+                                    truncated = true;
+                                }
+                            }
+                            else {
+                                truncated = true;
+                            }
+                        }
+                    }
+                }
+            };
+        }
+    }
+
+
+
+    /**
+     * Merges the latest partial leaderboards from every partition
+     *  into a single leaderboard.
+     */
+    static class MergeLeaderboardsSupplier implements ProcessorSupplier<String, Leaderboard, String, Leaderboard> {
+
+        private final int size;
+
+        MergeLeaderboardsSupplier(int size) {
+            this.size = size;
+        }
+
+        @Override
+        public Processor<String, Leaderboard, String, Leaderboard> get() {
+
+            return new ContextualProcessor<String, Leaderboard, String, Leaderboard>() {
+                private KeyValueStore<String, Leaderboard> partials;
+
+                @Override
+                public void init(ProcessorContext<String, Leaderboard> context) {
+                    super.init(context);
+                    partials = context.getStateStore(PARTIALS_STORE_NAME);
+                }
+
+                @Override
+                public void process(Record<String, Leaderboard> record) {
+                    partials.put(record.key(), record.value());
+
+                    // there is a partial leaderboard for each input partition,
+                    //  so this is a small number of short lists
+                    final List<WeeklyGamerScore> gamers = new ArrayList<>();
+                    try (KeyValueIterator<String, Leaderboard> iterator = partials.all()) {
+                        while (iterator.hasNext()) {
+                            Leaderboard partial = iterator.next().value;
+                            if (partial != null) {
+                                gamers.addAll(partial.getGamers());
+                            }
+                        }
+                    }
+                    gamers.sort(Leaderboard.RANKING);
+
+                    final List<WeeklyGamerScore> leaderboard = new ArrayList<>(gamers.subList(0, Math.min(size, gamers.size())));
+                    context().forward(new Record<>(LEADERBOARD_KEY,
+                                                   new Leaderboard(leaderboard),
+                                                   record.timestamp()));
+                }
+            };
+        }
+    }
+}
@@ -1,14 +1,28 @@
 package uk.co.dalelane.kafkastreams.xboxlive.streams.splitting;
 
+import java.util.Properties;
+
+import org.apache.kafka.common.serialization.Deserializer;
+import org.apache.kafka.common.serialization.Serdes;
 import org.apache.kafka.streams.StreamsBuilder;
-import org.apache.kafka.streams.kstream.Branched;
 import org.apache.kafka.streams.kstream.Consumed;
 import org.apache.kafka.streams.kstream.Named;
+import org.apache.kafka.streams.kstream.Produced;
+import org.apache.kafka.streams.processor.RecordContext;
+import org.apache.kafka.streams.processor.TopicNameExtractor;
+import org.apache.kafka.streams.processor.api.ContextualProcessor;
+import org.apache.kafka.streams.processor.api.Processor;
+import org.apache.kafka.streams.processor.api.ProcessorSupplier;
+import org.apache.kafka.streams.processor.api.Record;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import uk.co.dalelane.kafkastreams.xboxlive.data.games.TitleCatalogProvider;
 import uk.co.dalelane.kafkastreams.xboxlive.data.games.TitleIdInfo;
+import uk.co.dalelane.kafkastreams.xboxlive.data.presence.EnrichedPresence;
+import uk.co.dalelane.kafkastreams.xboxlive.data.presence.PresenceHeaders;
 import uk.co.dalelane.kafkastreams.xboxlive.data.serdes.XboxSerdes;
+import uk.co.dalelane.kafkastreams.xboxlive.utils.Config;
 
 
 /**
@@ -24,7 +38,13 @@ import uk.co.dalelane.kafkastreams.xboxlive.data.serdes.XboxSerdes;
  *   and using other apps.
  *
  *   This stream processor splits the single presence stream
- *   into a separate stream for each type of activity.
+ *   into a separate stream for each type of activity. Each event
+ *   is classified once, by looking up the title in a catalog of
+ *   title types, and the type is used to choose the output topic.
+ *
+ *   Alternatively, events can be routed using the headers added by
+ *   the PresenceEnricher, forwarding the original bytes of each event
+ *   without deserializing or serializing it.
  *
  *   This is a good example of using Kafka Streams to split a
  *   stream of events with multiple unrelated events into
@@ -50,7 +70,18 @@ public class PresenceSplitter {
 
 
 
-    public static void create(final StreamsBuilder builder) {
+    /**
+     * @param titles - catalog of the types of Xbox titles, which is
+     *   refreshed in the background
+     * @param config - application config, used to choose whether to
+     *   route events using their headers
+     */
+    public static void create(final StreamsBuilder builder, final TitleCatalogProvider titles, final Properties config) {
+        if (Config.getBoolean(config, Config.PRESENCE_SPLITTER_RAW, false)) {
+            createRaw(builder, titles);
+            return;
+        }
+
         log.info("Creating PresenceSplitter");
 
 
@@ -64,16 +95,122 @@ public class PresenceSplitter {
             //    wont fit into any of the output topics
             .filterNot((gamertag, presenceEvent) -> presenceEvent.userOffline(),
                        Named.as("ignore_offline_events"))
-            // split the stream into three branches - one for each type of xbox title
-            .split()
-                // games
-                .branch((key, presence) -> TitleIdInfo.GAME.equals(TitleIdInfo.getTitleType(presence.getTitleId())),
-                        Branched.withConsumer(str -> str.to(OUTPUT_TOPIC_GAME)))
-                // media
-                .branch((key, presence) -> TitleIdInfo.MEDIA_PLAYER.equals(TitleIdInfo.getTitleType(presence.getTitleId())),
-                        Branched.withConsumer(str -> str.to(OUTPUT_TOPIC_MEDIA)))
-                // apps
-                .branch((key, presence) -> TitleIdInfo.APP.equals(TitleIdInfo.getTitleType(presence.getTitleId())),
-                        Branched.withConsumer(str -> str.to(OUTPUT_TOPIC_APP)));
+            // filter out events without a title, as they can't be classified
+            .filterNot((gamertag, presenceEvent) -> presenceEvent.getTitleId().isEmpty(),
+                    Named.as("ignore_events_without_titles"))
+            // split the stream into three topics - one for each type of xbox title
+            .to(new TitleTypeTopicExtractor(titles),
+                Produced.with(XboxSerdes.GAMERTAG_SERDES,
+                              XboxSerdes.ENRICHED_PRESENCE_SERDES));
+    }
+
+
+    /**
+     * Routes the events using the headers added by the PresenceEnricher,
+     *  without deserializing them.
+     *
+     * @param titles - catalog of the types of Xbox titles, only used
+     *   for events without headers
+     */
+    private static void createRaw(final StreamsBuilder builder, final TitleCatalogProvider titles) {
+        log.info("Creating PresenceSplitter using event headers");
+
+        builder
+            // input the enriched presence events, as the bytes from the topic
+            .stream(INPUT_TOPIC, Consumed.with(XboxSerdes.GAMERTAG_SERDES,
+                                               Serdes.ByteArray()))
+            // filter out events recording when a user goes offline, or
+            //  without a title, as they wont fit into any of the output topics
+            .process(new PresenceHeadersFilterSupplier(titles),
+                     Named.as("ignore_offline_events"))
+            // split the stream into three topics - one for each type of xbox title
+            .to((gamertag, presenceBytes, recordContext) -> topicFor(PresenceHeaders.getTitleType(recordContext.headers())),
+                Produced.with(XboxSerdes.GAMERTAG_SERDES,
+                              Serdes.ByteArray()));
+    }
+
+
+    private static String topicFor(String titleType) {
+        switch (titleType) {
+            case TitleIdInfo.MEDIA_PLAYER:
+                return OUTPUT_TOPIC_MEDIA;
+            case TitleIdInfo.APP:
+                return OUTPUT_TOPIC_APP;
+
+            default:
+                return OUTPUT_TOPIC_GAME;
+        }
+    }
+
+
+
+
+    /**
+     * Chooses the output topic for a presence event, by looking up
+     *  the type of its title in the latest title catalog.
+     */
+    static class TitleTypeTopicExtractor implements TopicNameExtractor<String, EnrichedPresence> {
+
+        private final TitleCatalogProvider titles;
+
+        TitleTypeTopicExtractor(TitleCatalogProvider titles) {
+            this.titles = titles;
+        }
+
+        @Override
+        public String extract(String gamertag, EnrichedPresence presence, RecordContext recordContext) {
+            return topicFor(titles.getTitles().getTitleType(presence.getTitleId()));
+        }
+    }
+
+
+
+    /**
+     * Only forwards events for users who are online, with a title,
+     *  using the headers added by the PresenceEnricher.
+     *
+     *  Events without headers (e.g. written by an older version of
+     *  the enricher) are deserialized so that the headers can be
+     *  added to them.
+     */
+    static class PresenceHeadersFilterSupplier implements ProcessorSupplier<String, byte[], String, byte[]> {
+
+        private final TitleCatalogProvider titles;
+
+        PresenceHeadersFilterSupplier(TitleCatalogProvider titles) {
+            this.titles = titles;
+        }
+
+        @Override
+        public Processor<String, byte[], String, byte[]> get() {
+
+            return new ContextualProcessor<String, byte[], String, byte[]>() {
+                private final Deserializer<EnrichedPresence> deserializer = XboxSerdes.ENRICHED_PRESENCE_SERDES.deserializer();
+
+                @Override
+                public void process(Record<String, byte[]> record) {
+                    if (record.value() == null) {
+                        return;
+                    }
+
+                    Record<String, byte[]> stamped = record;
+                    if (!PresenceHeaders.isStamped(record.headers())) {
+                        final EnrichedPresence presence = deserializer.deserialize(INPUT_TOPIC, record.value());
+                        if (presence == null) {
+                            return;
+                        }
+                        stamped = record.withHeaders(PresenceHeaders.stamp(record.headers(),
+                                                                           presence,
+                                                                           titles.getTitles()));
+                    }
+
+                    if (PresenceHeaders.isOnline(stamped.headers()) &&
+                        PresenceHeaders.getTitleType(stamped.headers()) != null)
+                    {
+                        context().forward(stamped);
+                    }
+                }
+            };
+        }
     }
 }
@@ -1,23 +1,43 @@
 package uk.co.dalelane.kafkastreams.xboxlive.streams.summing;
 
 import java.time.Duration;
+import java.util.LinkedHashSet;
+import java.util.Properties;
+import java.util.Set;
 
 import org.apache.kafka.common.serialization.Serdes;
-import org.apache.kafka.streams.KeyValue;
+import org.apache.kafka.common.utils.Bytes;
 import org.apache.kafka.streams.StreamsBuilder;
+import org.apache.kafka.streams.kstream.Aggregator;
 import org.apache.kafka.streams.kstream.Consumed;
 import org.apache.kafka.streams.kstream.Grouped;
-import org.apache.kafka.streams.kstream.KeyValueMapper;
+import org.apache.kafka.streams.kstream.KTable;
+import org.apache.kafka.streams.kstream.Materialized;
 import org.apache.kafka.streams.kstream.Named;
+import org.apache.kafka.streams.kstream.Predicate;
 import org.apache.kafka.streams.kstream.Produced;
+import org.apache.kafka.streams.kstream.Suppressed;
+import org.apache.kafka.streams.kstream.Suppressed.BufferConfig;
 import org.apache.kafka.streams.kstream.TimeWindows;
 import org.apache.kafka.streams.kstream.Windowed;
+import org.apache.kafka.streams.processor.PunctuationType;
+import org.apache.kafka.streams.processor.api.ContextualProcessor;
+import org.apache.kafka.streams.processor.api.Processor;
+import org.apache.kafka.streams.processor.api.ProcessorContext;
+import org.apache.kafka.streams.processor.api.ProcessorSupplier;
+import org.apache.kafka.streams.processor.api.Record;
+import org.apache.kafka.streams.state.KeyValueIterator;
+import org.apache.kafka.streams.state.TimestampedWindowStore;
+import org.apache.kafka.streams.state.ValueAndTimestamp;
+import org.apache.kafka.streams.state.WindowStore;
+import org.apache.kafka.streams.state.WindowStoreIterator;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import uk.co.dalelane.kafkastreams.xboxlive.data.achievements.Achievement;
+import uk.co.dalelane.kafkastreams.xboxlive.data.achievements.AchievementScore;
 import uk.co.dalelane.kafkastreams.xboxlive.data.achievements.WeeklyGamerScore;
 import uk.co.dalelane.kafkastreams.xboxlive.data.serdes.XboxSerdes;
+import uk.co.dalelane.kafkastreams.xboxlive.utils.Config;
 
 
 /**
@@ -31,11 +51,28 @@ import uk.co.dalelane.kafkastreams.xboxlive.data.serdes.XboxSerdes;
  *   Achievements earned by gamers each include a score, based on
  *   how hard the achievement is to earn and how rare it is.
  *
- *   This stream processor maintains a seven-day window and emits
- *   the total gamerscore of all achievements earned by each
- *   gamer in the last week. This output stream of events represents
- *   a league table for the most successful gamers in the last
- *   week.
+ *   This stream processor emits the total gamerscore of all
+ *   achievements earned by each gamer in the last seven days. This
+ *   output stream of events represents a league table for the most
+ *   successful gamers in the last week.
+ *
+ *   Scores are summed in one-day windows, and the last seven of
+ *   these are added together when a gamer's score changes. This
+ *   gives a rolling seven-day score, rather than one that resets
+ *   each week, while only storing each achievement in one window.
+ *
+ *   Only the gamertag and score are read from each achievement,
+ *   skipping the rest of the event, and scores are added straight
+ *   into the daily sums.
+ *
+ *   By default, the score is output every time it changes. It can
+ *   instead be output once for each gamer at the end of each day,
+ *   when no more achievements for the day can arrive.
+ *
+ *   Scores are also output when a day drops out of the week, so
+ *   that gamers who stop earning achievements don't keep their old
+ *   score. A gamer with no score left in the week is output as a
+ *   tombstone (a null score).
  *
  *   This is a good example of using Kafka Streams to maintain
  *   aggregations over a time window.
@@ -53,51 +90,239 @@ public class WeeklyGamerScoreCounter {
     private static final String INPUT_TOPIC  = "XBOX.ACHIEVEMENTS.KNOWNUSERS";
     private static final String OUTPUT_TOPIC = "XBOX.GAMERSCORE.WEEK";
 
-    /** time window for the counter */
-    private static final TimeWindows ONE_WEEK = TimeWindows.ofSizeWithNoGrace(Duration.ofDays(7));
+    private static final String STATE_STORE_NAME = WeeklyGamerScoreCounter.class.getCanonicalName();
 
+    /** size of the windows that scores are summed in */
+    private static final Duration ONE_DAY = Duration.ofDays(1);
+    /** number of days that are added together for the output */
+    private static final int DAYS_IN_WEEK = 7;
+    /** number of days that daily sums are kept after leaving the week */
+    private static final int EXPIRED_DAYS_KEPT = 2;
+    /** how often to check for days that have dropped out of the week */
+    private static final Duration EXPIRY_INTERVAL = Duration.ofHours(1);
 
-    public static void create(final StreamsBuilder builder) {
+
+    /**
+     * @param config - application config, used to choose how long to
+     *  wait for late achievements, and whether to output only final
+     *  scores
+     */
+    public static void create(final StreamsBuilder builder, final Properties config) {
         log.info("Creating WeeklyGamerScoreCounter");
 
-        /** emits the score for a single achievement event */
-        final KeyValueMapper<String, Achievement, KeyValue<String, Integer>> getGamerscoreKeyedByGamertag = new KeyValueMapper<>() {
+        // achievements that arrive later than this after the end of the
+        //  day they were earned on are ignored
+        final Duration grace = Duration.ofHours(Config.getLong(config, Config.GAMERSCORE_GRACE_HOURS, 1));
+
+        // time window for the counter
+        final TimeWindows oneDay = TimeWindows.ofSizeAndGrace(ONE_DAY, grace);
+
+        // only output scores once each day is complete
+        final boolean finalResultsOnly = Config.getBoolean(config, Config.GAMERSCORE_FINAL_ONLY, false);
+
+        /**
+         * checks that the achievement event is keyed by the gamer who
+         *  earned it - the input topic should already be keyed this way,
+         *  so that it doesn't need to be repartitioned before grouping
+         */
+        final Predicate<String, AchievementScore> isKeyedByGamertag = new Predicate<>() {
             @Override
-            public KeyValue<String, Integer> apply(String key, Achievement value) {
-                return new KeyValue<String, Integer>(value.getGamertag(), value.getGamerScore());
+            public boolean test(String key, AchievementScore value) {
+                if (key == null || !key.equals(value.getGamertag())) {
+                    log.warn("Ignoring achievement with key {} for gamer {}", key, value.getGamertag());
+                    return false;
+                }
+                return true;
             }
         };
 
-        /** prepare a JSON representation of the output */
-        final KeyValueMapper<Windowed<String>, Integer, KeyValue<String, WeeklyGamerScore>> prepareOutput = new KeyValueMapper<>() {
+        /**
+         * adds the score for a single achievement event to the sum - the
+         *  sum is still boxed for each event, as the DSL window store
+         *  needs an object value, so this only avoids the mapping step
+         */
+        final Aggregator<String, AchievementScore, Integer> addGamerscore = new Aggregator<>() {
             @Override
-            public KeyValue<String, WeeklyGamerScore> apply(Windowed<String> window, Integer value) {
-                WeeklyGamerScore output = new WeeklyGamerScore(window.key(), value);
-                return new KeyValue<String, WeeklyGamerScore>(window.key(), output);
+            public Integer apply(String gamertag, AchievementScore value, Integer sum) {
+                return sum + value.getGamerScore();
             }
         };
 
 
-        builder
+        KTable<Windowed<String>, Integer> dailyScores = builder
             // input the filtered stream of achievement events (filtered to
             //  only include achievements from known users)
+            //  - only reading the gamertag and score from each event
             .stream(INPUT_TOPIC, Consumed.with(XboxSerdes.GAMERTAG_SERDES,
-                                               XboxSerdes.ACHIEVEMENT_SERDES))
-            // emit the score for each achievement event
-            .map(getGamerscoreKeyedByGamertag,
-                 Named.as("get_gamerscore_keyed_by_gamertag"))
+                                               XboxSerdes.ACHIEVEMENT_SCORE_SERDES))
+            // make sure the achievement events are keyed by the gamer
+            .filter(isKeyedByGamertag,
+                    Named.as("check_keyed_by_gamertag"))
+            // ignore achievement events without a score
+            .filter((gamertag, achievement) -> achievement.hasGamerScore(),
+                    Named.as("ignore_achievements_without_scores"))
             // group the scores based on the gamer who earned the achievement
-            .groupByKey(Grouped.with(XboxSerdes.GAMERTAG_SERDES, Serdes.Integer()))
-            // window over a 7-day period
-            .windowedBy(ONE_WEEK)
-            // sum the scores within the window
-            .reduce(Integer::sum, Named.as("sum_weekly_gamerscore"))
-            // prepare the output
-            .toStream(Named.as("output_weekly_score_stream"))
-            .map(prepareOutput,
-                 Named.as("convert_to_json_output"))
+            //  this doesn't change the key, so no repartitioning is needed
+            .groupByKey(Grouped.with(XboxSerdes.GAMERTAG_SERDES, XboxSerdes.ACHIEVEMENT_SCORE_SERDES))
+            // window over a 1-day period
+            .windowedBy(oneDay)
+            // sum the scores within the window - the daily sums are kept
+            //  for long enough to be added together for a week, and for
+            //  two more days, so that the gamers whose scores were in a
+            //  day can be found once the day has dropped out of the week
+            .aggregate(() -> 0, addGamerscore,
+                       Named.as("sum_daily_gamerscore"),
+                       Materialized.<String, Integer, WindowStore<Bytes, byte[]>>as(STATE_STORE_NAME)
+                           .withKeySerde(XboxSerdes.GAMERTAG_SERDES)
+                           .withValueSerde(Serdes.Integer())
+                           .withRetention(ONE_DAY.multipliedBy(DAYS_IN_WEEK + EXPIRED_DAYS_KEPT).plus(grace)));
+
+        if (finalResultsOnly) {
+            dailyScores = dailyScores
+                // hold back the updates to the daily sums until the day
+                //  (including the grace period) has finished, and then
+                //  only emit the final sum
+                .suppress(Suppressed.untilWindowCloses(BufferConfig.unbounded())
+                                    .withName("suppress_daily_gamerscore_until_day_closes"));
+        }
+
+        dailyScores
+            .toStream(Named.as("output_daily_score_stream"))
+            // add together the daily sums for the last week, and prepare
+            //  a JSON representation of the output
+            .process(new WeeklyScoreSupplier(finalResultsOnly, grace),
+                     Named.as("sum_weekly_gamerscore"),
+                     STATE_STORE_NAME)
             // output to the XBOX.GAMERSCORE.WEEK topic with an event for each gamer
             .to(OUTPUT_TOPIC, Produced.with(XboxSerdes.GAMERTAG_SERDES,
                                             XboxSerdes.WEEKLY_SCORE_SERDES));
     }
+
+
+
+    /**
+     * Adds together the daily scores for the last seven days, up to
+     *  the current stream time, for a gamer whose daily score has
+     *  been updated.
+     *
+     *  Also outputs the scores of gamers who had a score on a day
+     *  that has dropped out of the week, as their weekly score will
+     *  have gone down.
+     */
+    static class WeeklyScoreSupplier implements ProcessorSupplier<Windowed<String>, Integer, String, WeeklyGamerScore> {
+
+        private final boolean finalResultsOnly;
+        private final Duration grace;
+
+        /**
+         * @param finalResultsOnly - true if the daily scores are only
+         *  received once the day has finished, in which case the week
+         *  ends with that day rather than the current stream time
+         * @param grace - how long after the end of a day that late
+         *  achievements are accepted
+         */
+        WeeklyScoreSupplier(boolean finalResultsOnly, Duration grace) {
+            this.finalResultsOnly = finalResultsOnly;
+            this.grace = grace;
+        }
+
+        @Override
+        public Processor<Windowed<String>, Integer, String, WeeklyGamerScore> get() {
+
+            return new ContextualProcessor<Windowed<String>, Integer, String, WeeklyGamerScore>() {
+                private TimestampedWindowStore<String, Integer> dailyScores;
+
+                // last day of the week when expired days were last checked
+                //  - only kept in memory, as checking a day again just
+                //  outputs the same scores again, so after a restart all
+                //  of the expired days that are still kept are checked
+                private long lastCheckedWeekEnd = -1;
+
+                @Override
+                public void init(ProcessorContext<String, WeeklyGamerScore> context) {
+                    super.init(context);
+                    dailyScores = context.getStateStore(STATE_STORE_NAME);
+
+                    // periodically output the scores of gamers who had a
+                    //  score on a day that is no longer in the week
+                    context.schedule(EXPIRY_INTERVAL, PunctuationType.STREAM_TIME, this::outputExpiredScores);
+                }
+
+                @Override
+                public void process(Record<Windowed<String>, Integer> record) {
+                    if (record.value() == null) {
+                        return;
+                    }
+                    final String gamertag = record.key().key();
+
+                    // the week ends with the latest day, which is usually the day
+                    //  that was updated, unless this was a late achievement
+                    final long streamTime = finalResultsOnly ?
+                                                record.key().window().start() :
+                                                Math.max(context().currentStreamTimeMs(), record.key().window().start());
+                    final long today = streamTime - (streamTime % ONE_DAY.toMillis());
+
+                    context().forward(new Record<>(gamertag,
+                                                   new WeeklyGamerScore(gamertag, getWeeklyScore(gamertag, today)),
+                                                   record.timestamp()));
+                }
+
+
+                private void outputExpiredScores(long streamTime) {
+                    // the last day of the week - in final results mode, this
+                    //  is the last day that can't get any more achievements
+                    final long latest = finalResultsOnly ?
+                                            streamTime - grace.toMillis() - ONE_DAY.toMillis() :
+                                            streamTime;
+                    final long weekEnd = latest - (latest % ONE_DAY.toMillis());
+                    if (weekEnd <= lastCheckedWeekEnd) {
+                        return;
+                    }
+
+                    // the days that have dropped out of the week since the
+                    //  last check
+                    final long weekLength = ONE_DAY.multipliedBy(DAYS_IN_WEEK).toMillis();
+                    final long lastExpiredDay = weekEnd - weekLength;
+                    final long firstExpiredDay = lastCheckedWeekEnd < 0 ?
+                                                     lastExpiredDay - ONE_DAY.multipliedBy(EXPIRED_DAYS_KEPT).toMillis() :
+                                                     lastCheckedWeekEnd - weekLength + ONE_DAY.toMillis();
+                    lastCheckedWeekEnd = weekEnd;
+
+                    final Set<String> gamertags = new LinkedHashSet<>();
+                    try (KeyValueIterator<Windowed<String>, ValueAndTimestamp<Integer>> expired = dailyScores.fetchAll(firstExpiredDay, lastExpiredDay)) {
+                        while (expired.hasNext()) {
+                            gamertags.add(expired.next().key.key());
+                        }
+                    }
+
+                    for (String gamertag : gamertags) {
+                        final int score = getWeeklyScore(gamertag, weekEnd);
+                        context().forward(new Record<>(gamertag,
+                                                       score == 0 ? null : new WeeklyGamerScore(gamertag, score),
+                                                       streamTime));
+                    }
+                }
+
+
+                /**
+                 * Adds together the daily scores for the week ending with
+                 *  the given day.
+                 */
+                private int getWeeklyScore(String gamertag, long lastDay) {
+                    final long firstDay = lastDay - ONE_DAY.multipliedBy(DAYS_IN_WEEK - 1).toMillis();
+
+                    int score = 0;
+                    try (WindowStoreIterator<ValueAndTimestamp<Integer>> days = dailyScores.fetch(gamertag, firstDay, lastDay)) {
+                        while (days.hasNext()) {
+                            ValueAndTimestamp<Integer> day = days.next().value;
+                            if (day != null && day.value() != null) {
+                                score += day.value();
+                            }
+                        }
+                    }
+                    return score;
+                }
+            };
+        }
+    }
 }
@@ -1,17 +1,35 @@
 package uk.co.dalelane.kafkastreams.xboxlive.streams.tracking;
 
+import java.util.Objects;
+import java.util.Properties;
+
+import org.apache.kafka.common.serialization.Serdes;
+import org.apache.kafka.common.utils.Bytes;
 import org.apache.kafka.streams.StreamsBuilder;
 import org.apache.kafka.streams.kstream.Aggregator;
 import org.apache.kafka.streams.kstream.Consumed;
+import org.apache.kafka.streams.kstream.Grouped;
 import org.apache.kafka.streams.kstream.Initializer;
+import org.apache.kafka.streams.kstream.KStream;
 import org.apache.kafka.streams.kstream.Materialized;
 import org.apache.kafka.streams.kstream.Named;
 import org.apache.kafka.streams.kstream.Produced;
+import org.apache.kafka.streams.kstream.Reducer;
+import org.apache.kafka.streams.processor.api.ContextualProcessor;
+import org.apache.kafka.streams.processor.api.Processor;
+import org.apache.kafka.streams.processor.api.ProcessorContext;
+import org.apache.kafka.streams.processor.api.ProcessorSupplier;
+import org.apache.kafka.streams.processor.api.Record;
+import org.apache.kafka.streams.state.KeyValueStore;
+import org.apache.kafka.streams.state.Stores;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import uk.co.dalelane.kafkastreams.xboxlive.data.serdes.XboxSerdes;
 import uk.co.dalelane.kafkastreams.xboxlive.data.sessions.PlaySession;
+import uk.co.dalelane.kafkastreams.xboxlive.data.sessions.PlaySessions;
+import uk.co.dalelane.kafkastreams.xboxlive.utils.Config;
+import uk.co.dalelane.kafkastreams.xboxlive.utils.EmitOnChangeSupplier;
 
 
 /**
@@ -34,11 +52,15 @@ import uk.co.dalelane.kafkastreams.xboxlive.data.sessions.PlaySession;
  *   processor.
  *
  *   This stream processor takes those play session events and
- *   tracks the longest play session for each gamer.
+ *   tracks the longest play sessions for each gamer, and the longest
+ *   play session for each game by any gamer. These are only output
+ *   when they change.
  *
  *  TOPICS:
  *   Input:     XBOX.PLAYSESSIONS
  *   Output:    XBOX.PLAYSESSIONS.LONGEST
+ *              XBOX.PLAYSESSIONS.LONGEST.TOP
+ *              XBOX.PLAYSESSIONS.LONGEST.TITLE
  *
  */
 public class LongestPlayRecordTracker {
@@ -47,28 +69,51 @@ public class LongestPlayRecordTracker {
 
     private static final String INPUT_TOPIC  = "XBOX.PLAYSESSIONS";
     private static final String OUTPUT_TOPIC = "XBOX.PLAYSESSIONS.LONGEST";
+    private static final String TOP_OUTPUT_TOPIC = "XBOX.PLAYSESSIONS.LONGEST.TOP";
+    private static final String BY_TITLE_OUTPUT_TOPIC = "XBOX.PLAYSESSIONS.LONGEST.TITLE";
+
+    private static final String EMITTED_STORE_NAME = LongestPlayRecordTracker.class.getCanonicalName() + ".emitted";
+    private static final String EMITTED_LIST_STORE_NAME = LongestPlayRecordTracker.class.getCanonicalName() + ".top.emitted";
+    private static final String BY_TITLE_STORE_NAME = LongestPlayRecordTracker.class.getCanonicalName() + ".title";
+    private static final String EMITTED_BY_TITLE_STORE_NAME = BY_TITLE_STORE_NAME + ".emitted";
+    private static final String FORWARDED_BY_TITLE_STORE_NAME = BY_TITLE_STORE_NAME + ".forwarded";
+
+    // the name that Kafka Streams generated for the per-gamer aggregate
+    //  store in earlier versions of this app - kept so that the longest
+    //  sessions that have already been seen aren't lost
+    static final String SESSIONS_STORE_NAME = "KSTREAM-AGGREGATE-STATE-STORE-0000000038";
 
 
-    public static void create(final StreamsBuilder builder) {
+    /**
+     * @param config - application config, used to choose the format
+     *  for storing the longest play sessions, and how many to keep
+     */
+    public static void create(final StreamsBuilder builder, final Properties config) {
         log.info("Creating LongestPlayRecordTracker");
 
-        final Initializer<PlaySession> initSession = new Initializer<>() {
+        // number of longest sessions to keep for each gamer
+        final int maxSessions = (int) Config.getLong(config, Config.SESSIONS_LONGEST_COUNT, 5);
+
+        final Initializer<PlaySessions> initSessions = new Initializer<>() {
             @Override
-            public PlaySession apply() {
-                return null;
+            public PlaySessions apply() {
+                return new PlaySessions();
             }
         };
 
-        final Aggregator<String, PlaySession, PlaySession> longestDuration = new Aggregator<>() {
+        final Aggregator<String, PlaySession, PlaySessions> longestDurations = new Aggregator<>() {
             @Override
-            public PlaySession apply(String key, PlaySession newSession, PlaySession longestSoFar) {
-                if (newSession == null && longestSoFar == null) {
-                    return null;
-                }
-                if (longestSoFar == null) {
-                    return newSession;
+            public PlaySessions apply(String key, PlaySession newSession, PlaySessions longestSoFar) {
+                if (newSession != null) {
+                    longestSoFar.add(newSession, maxSessions);
                 }
+                return longestSoFar;
+            }
+        };
 
+        final Reducer<PlaySession> longestDuration = new Reducer<>() {
+            @Override
+            public PlaySession apply(PlaySession longestSoFar, PlaySession newSession) {
                 if (newSession.getDuration().compareTo(longestSoFar.getDuration()) > 0) {
                     return newSession;
                 }
@@ -78,23 +123,152 @@ public class LongestPlayRecordTracker {
             }
         };
 
-        builder
+        builder.addStateStore(EmitOnChangeSupplier.storeBuilder(EMITTED_STORE_NAME, XboxSerdes.GAMERTAG_SERDES));
+        builder.addStateStore(EmitOnChangeSupplier.storeBuilder(EMITTED_LIST_STORE_NAME, XboxSerdes.GAMERTAG_SERDES));
+        builder.addStateStore(EmitOnChangeSupplier.storeBuilder(EMITTED_BY_TITLE_STORE_NAME, Serdes.String()));
+
+        // keep the duration (in milliseconds) of the longest session
+        //  forwarded for each title, so that shorter sessions don't need
+        //  to be repartitioned
+        builder.addStateStore(
+            Stores.keyValueStoreBuilder(
+                Stores.persistentKeyValueStore(FORWARDED_BY_TITLE_STORE_NAME),
+                Serdes.String(),
+                Serdes.Long()));
+
+
+        final KStream<String, PlaySession> sessions = builder
             // input the stream of play sessions - completed logical events with
             //         a start and stop time for playing a single game
             .stream(INPUT_TOPIC, Consumed.with(XboxSerdes.GAMERTAG_SERDES,
-                                               XboxSerdes.PLAY_SESSION_SERDES))
+                                               XboxSerdes.PLAY_SESSION_SERDES));
+
+        final KStream<String, PlaySessions> longestSessions = sessions
             // group by the gamer, so that events for any given gamer can
             //  be processed together
             .groupByKey()
-            // get the longest play session for each gamer
-            .aggregate(initSession, longestDuration,
+            // get the longest play sessions for each gamer
+            .aggregate(initSessions, longestDurations,
                        Named.as("get_longest_play_session"),
-                       Materialized.with(XboxSerdes.GAMERTAG_SERDES,
-                                         XboxSerdes.PLAY_SESSION_SERDES))
+                       Materialized.<String, PlaySessions, KeyValueStore<Bytes, byte[]>>as(SESSIONS_STORE_NAME)
+                           .withKeySerde(XboxSerdes.GAMERTAG_SERDES)
+                           .withValueSerde(XboxSerdes.playSessionsStoreSerdes()))
+            .toStream();
+
+        longestSessions
+            // only output the longest play sessions when they change
+            .process(new EmitOnChangeSupplier<String, PlaySessions>(EMITTED_LIST_STORE_NAME, LongestPlayRecordTracker::fingerprint),
+                     Named.as("emit_longest_play_sessions_on_change"),
+                     EMITTED_LIST_STORE_NAME)
+            // output the longest play sessions for each gamer to the
+            //  XBOX.PLAYSESSIONS.LONGEST.TOP topic
+            .to(TOP_OUTPUT_TOPIC, Produced.with(XboxSerdes.GAMERTAG_SERDES,
+                                                XboxSerdes.PLAY_SESSIONS_SERDES));
+
+        longestSessions
+            // get the single longest play session for each gamer
+            .mapValues(PlaySessions::getLongest,
+                       Named.as("get_longest_of_play_sessions"))
+            // only output the longest play session when it changes
+            .process(new EmitOnChangeSupplier<String, PlaySession>(EMITTED_STORE_NAME, LongestPlayRecordTracker::fingerprint),
+                     Named.as("emit_longest_play_session_on_change"),
+                     EMITTED_STORE_NAME)
             // output the longest play session for each gamer to the
             //  XBOX.PLAYSESSIONS.LONGEST topic
-            .toStream()
             .to(OUTPUT_TOPIC, Produced.with(XboxSerdes.GAMERTAG_SERDES,
                                             XboxSerdes.PLAY_SESSION_SERDES));
+
+        sessions
+            // key the sessions by title, dropping sessions that can't be the
+            //  longest for their title, to reduce how many are repartitioned
+            .process(new TitleRecordCandidatesSupplier(),
+                     Named.as("key_title_record_candidates_by_titleid"),
+                     FORWARDED_BY_TITLE_STORE_NAME)
+            // group by the title, so that sessions from every gamer for any
+            //  given title can be processed together
+            .groupByKey(Grouped.with(Serdes.String(), XboxSerdes.PLAY_SESSION_SERDES)
+                               .withName("play_sessions_by_titleid"))
+            // get the longest play session for each title
+            .reduce(longestDuration,
+                    Named.as("get_longest_play_session_by_title"),
+                    Materialized.<String, PlaySession, KeyValueStore<Bytes, byte[]>>as(BY_TITLE_STORE_NAME)
+                        .withKeySerde(Serdes.String())
+                        .withValueSerde(XboxSerdes.playSessionStoreSerdes(Config.getStateStoreFormat(config))))
+            .toStream()
+            // only output the longest play session when it changes
+            .process(new EmitOnChangeSupplier<String, PlaySession>(EMITTED_BY_TITLE_STORE_NAME, LongestPlayRecordTracker::fingerprint),
+                     Named.as("emit_longest_title_play_session_on_change"),
+                     EMITTED_BY_TITLE_STORE_NAME)
+            // output the longest play session for each title to the
+            //  XBOX.PLAYSESSIONS.LONGEST.TITLE topic
+            .to(BY_TITLE_OUTPUT_TOPIC, Produced.with(Serdes.String(),
+                                                     XboxSerdes.PLAY_SESSION_SERDES));
+    }
+
+
+    /**
+     * Identifies a play session, so that it is only output when a
+     *  new longest session replaces it.
+     */
+    private static long fingerprint(PlaySession session) {
+        long hash = session.getStartDate() == null ? 0 : session.getStartDate().toEpochMilli();
+        hash = 31 * hash + session.getDuration().toMillis();
+        hash = 31 * hash + Objects.hashCode(session.getTitleId());
+        return hash;
+    }
+
+    private static long fingerprint(PlaySessions sessions) {
+        long hash = sessions.getSessions().size();
+        for (PlaySession session : sessions.getSessions()) {
+            hash = 31 * hash + fingerprint(session);
+        }
+        return hash;
+    }
+
+
+
+
+    /**
+     * Re-keys play sessions by title id, only forwarding sessions that
+     *  are longer than any session already forwarded by this stream
+     *  task for the same title - shorter sessions can't be the longest
+     *  session for the title.
+     *
+     *  The longest sessions forwarded are kept in a local store, as
+     *  the store with the longest session for each title is only
+     *  available after repartitioning. There is at most one entry
+     *  for each title.
+     */
+    static class TitleRecordCandidatesSupplier implements ProcessorSupplier<String, PlaySession, String, PlaySession> {
+        @Override
+        public Processor<String, PlaySession, String, PlaySession> get() {
+
+            return new ContextualProcessor<String, PlaySession, String, PlaySession>() {
+                private KeyValueStore<String, Long> longestForwarded;
+
+                @Override
+                public void init(ProcessorContext<String, PlaySession> context) {
+                    super.init(context);
+                    longestForwarded = context.getStateStore(FORWARDED_BY_TITLE_STORE_NAME);
+                }
+
+                @Override
+                public void process(Record<String, PlaySession> record) {
+                    final PlaySession session = record.value();
+                    if (session == null || session.getTitleId() == null) {
+                        return;
+                    }
+
+                    final long duration = session.getDuration().toMillis();
+                    final Long longest = longestForwarded.get(session.getTitleId());
+                    if (longest != null && duration <= longest) {
+                        return;
+                    }
+
+                    longestForwarded.put(session.getTitleId(), duration);
+                    context().forward(record.withKey(session.getTitleId()));
+                }
+            };
+        }
     }
 }
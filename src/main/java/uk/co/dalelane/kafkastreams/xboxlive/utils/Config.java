@@ -8,11 +8,67 @@ import java.util.Properties;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import uk.co.dalelane.kafkastreams.xboxlive.data.serdes.StateStoreFormat;
+import uk.co.dalelane.kafkastreams.xboxlive.streams.enriching.UnknownUsersPolicy;
+
 public class Config {
 
     private static Logger log = LoggerFactory.getLogger(Config.class);
 
     public static final String XBOX_API_KEY = "xbl.api.key";
+    /** URL for the xbl API used to fetch known users */
+    public static final String XBOX_API_URL = "xbl.api.url";
+    /** timeout for connecting to and getting a response from the xbl API */
+    public static final String XBOX_API_TIMEOUT_SECONDS = "xbl.api.timeout.seconds";
+    /** how often the known users are refreshed from the xbl API */
+    public static final String XBOX_USERS_REFRESH_MINUTES = "xbl.users.refresh.minutes";
+    /** local file where the last list of known users is saved */
+    public static final String XBOX_USERS_SNAPSHOT_FILE = "xbl.users.snapshot.file";
+    /** how long start-up waits for known users from the xbl API if there is no snapshot - 0 to wait forever */
+    public static final String XBOX_USERS_MAX_WAIT_SECONDS = "xbl.users.max.wait.seconds";
+
+    /** format for values in internal state stores - "json" (default) or "binary" */
+    public static final String STATE_STORE_FORMAT = "xbox.state.store.format";
+
+    /** where to get known users from - "api" (default) or "topic" */
+    public static final String USERS_SOURCE = "xbox.users.source";
+    /** compacted topic with user profiles keyed by xuid, when USERS_SOURCE is "topic" */
+    public static final String USERS_TOPIC = "xbox.users.topic";
+    /** what to do with presence events from unknown users - "keep" (default), "drop" or "route" */
+    public static final String UNKNOWN_USERS_POLICY = "xbox.users.unknown.policy";
+
+    /** local file with the types of Xbox titles - the built-in catalog is used if not set */
+    public static final String TITLES_CATALOG_FILE = "xbox.titles.catalog.file";
+    /** how often the title catalog file is checked for changes */
+    public static final String TITLES_CATALOG_REFRESH_SECONDS = "xbox.titles.catalog.refresh.seconds";
+
+    /** filter achievements by scanning their JSON, without deserializing them */
+    public static final String ACHIEVEMENTS_FILTER_RAW = "xbox.achievements.filter.raw";
+
+    /** route presence events using their headers, without deserializing them */
+    public static final String PRESENCE_SPLITTER_RAW = "xbox.presence.splitter.raw";
+
+    /** how long to hold presence events back for, to put them in order - 0 to disable */
+    public static final String PRESENCE_REORDER_GRACE_SECONDS = "xbox.presence.reorder.grace.seconds";
+
+    /** how long after the end of a day to wait for late achievements */
+    public static final String GAMERSCORE_GRACE_HOURS = "xbox.gamerscore.grace.hours";
+    /** only output gamerscores once each day has finished */
+    public static final String GAMERSCORE_FINAL_ONLY = "xbox.gamerscore.final.only";
+
+    /** number of gamers to include in the gamerscore leaderboard */
+    public static final String LEADERBOARD_SIZE = "xbox.leaderboard.size";
+
+    /** play sessions longer than this are assumed to be caused by missing events */
+    public static final String SESSIONS_MAX_LENGTH_HOURS = "xbox.sessions.max.length.hours";
+    /** how often to remove open play sessions that are longer than the max length */
+    public static final String SESSIONS_EXPIRY_INTERVAL_MINUTES = "xbox.sessions.expiry.interval.minutes";
+    /** number of gamers to keep decoded open play sessions in memory for - 0 to disable */
+    public static final String SESSIONS_CACHE_SIZE = "xbox.sessions.cache.size";
+    /** number of longest play sessions to keep for each gamer */
+    public static final String SESSIONS_LONGEST_COUNT = "xbox.sessions.longest.count";
+    /** how often to emit updates for play sessions that are in progress - 0 to disable */
+    public static final String SESSIONS_IN_PROGRESS_INTERVAL_SECONDS = "xbox.sessions.inprogress.interval.seconds";
 
     public static Properties getStreamsConfiguration() {
         log.info("Reading config from app.properties");
@@ -31,11 +87,46 @@ public class Config {
 
         appProps.forEach((key, val) -> log.debug("{} = {}", key, val));
 
-        if (!appProps.containsKey(XBOX_API_KEY)) {
+        if (!isUsersTopicEnabled(appProps) && !appProps.containsKey(XBOX_API_KEY)) {
             log.error("app.properties doesn't contain required property " + XBOX_API_KEY);
             System.exit(-3);
         }
 
         return appProps;
     }
+
+
+    public static StateStoreFormat getStateStoreFormat(Properties props) {
+        String format = props.getProperty(STATE_STORE_FORMAT, StateStoreFormat.JSON.name());
+        return StateStoreFormat.valueOf(format.trim().toUpperCase());
+    }
+
+    public static boolean isUsersTopicEnabled(Properties props) {
+        return "topic".equalsIgnoreCase(props.getProperty(USERS_SOURCE, "api").trim());
+    }
+
+    public static String getUsersTopic(Properties props) {
+        return props.getProperty(USERS_TOPIC, "XBOX.USERS").trim();
+    }
+
+    public static UnknownUsersPolicy getUnknownUsersPolicy(Properties props) {
+        String policy = props.getProperty(UNKNOWN_USERS_POLICY, UnknownUsersPolicy.KEEP.name());
+        return UnknownUsersPolicy.valueOf(policy.trim().toUpperCase());
+    }
+
+    public static long getLong(Properties props, String key, long defaultValue) {
+        String value = props.getProperty(key);
+        if (value == null) {
+            return defaultValue;
+        }
+        return Long.parseLong(value.trim());
+    }
+
+    public static boolean getBoolean(Properties props, String key, boolean defaultValue) {
+        String value = props.getProperty(key);
+        if (value == null) {
+            return defaultValue;
+        }
+        return Boolean.parseBoolean(value.trim());
+    }
 }
@@ -0,0 +1,95 @@
+package uk.co.dalelane.kafkastreams.xboxlive.utils;
+
+import java.util.function.ToLongFunction;
+
+import org.apache.kafka.common.metrics.Sensor;
+import org.apache.kafka.common.serialization.Serde;
+import org.apache.kafka.common.serialization.Serdes;
+import org.apache.kafka.streams.processor.api.ContextualProcessor;
+import org.apache.kafka.streams.processor.api.Processor;
+import org.apache.kafka.streams.processor.api.ProcessorContext;
+import org.apache.kafka.streams.processor.api.ProcessorSupplier;
+import org.apache.kafka.streams.processor.api.Record;
+import org.apache.kafka.streams.state.KeyValueStore;
+import org.apache.kafka.streams.state.StoreBuilder;
+import org.apache.kafka.streams.state.Stores;
+
+/**
+ * Only forwards records whose value is different from the last
+ *  value forwarded for the same key.
+ *
+ *  Values are compared using a fingerprint - a long computed from
+ *  the fields that matter - so the previous value doesn't need to
+ *  be stored or serialized. Only the fingerprint of the last value
+ *  forwarded for each key is kept, in a state store.
+ *
+ *  The number of records that weren't forwarded is recorded in a
+ *  "suppressed-records" sensor for the stream task.
+ */
+public class EmitOnChangeSupplier<K, V> implements ProcessorSupplier<K, V, K, V> {
+
+    private final String storeName;
+    private final ToLongFunction<V> fingerprint;
+
+    /**
+     * @param storeName - name of a store created with storeBuilder
+     * @param fingerprint - computes a fingerprint for a value, which
+     *  should be different if the value has changed in a way that
+     *  needs to be forwarded
+     */
+    public EmitOnChangeSupplier(String storeName, ToLongFunction<V> fingerprint) {
+        this.storeName = storeName;
+        this.fingerprint = fingerprint;
+    }
+
+    /**
+     * Creates the store needed to keep the fingerprints.
+     */
+    public static <K> StoreBuilder<KeyValueStore<K, Long>> storeBuilder(String storeName, Serde<K> keySerde) {
+        return Stores.keyValueStoreBuilder(
+                   Stores.persistentKeyValueStore(storeName),
+                   keySerde,
+                   Serdes.Long());
+    }
+
+
+    @Override
+    public Processor<K, V, K, V> get() {
+
+        return new ContextualProcessor<K, V, K, V>() {
+            private KeyValueStore<K, Long> lastFingerprints;
+            private Sensor suppressedSensor;
+
+            @Override
+            public void init(ProcessorContext<K, V> context) {
+                super.init(context);
+                lastFingerprints = context.getStateStore(storeName);
+                suppressedSensor = context.metrics().addRateTotalSensor("xbox-emit-on-change",
+                                                                        context.taskId().toString(),
+                                                                        storeName + ".suppressed-records",
+                                                                        Sensor.RecordingLevel.INFO);
+            }
+
+            @Override
+            public void process(Record<K, V> record) {
+                if (record.value() == null) {
+                    // always pass deletes on
+                    lastFingerprints.delete(record.key());
+                    context().forward(record);
+                    return;
+                }
+
+                final long latest = fingerprint.applyAsLong(record.value());
+                final Long previous = lastFingerprints.get(record.key());
+                if (previous != null && previous == latest) {
+                    // nothing has changed since the last value
+                    suppressedSensor.record();
+                    return;
+                }
+
+                lastFingerprints.put(record.key(), latest);
+                context().forward(record);
+            }
+        };
+    }
+}
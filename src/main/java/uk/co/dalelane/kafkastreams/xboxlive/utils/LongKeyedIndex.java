@@ -0,0 +1,119 @@
+package uk.co.dalelane.kafkastreams.xboxlive.utils;
+
+import java.util.Arrays;
+
+/**
+ * Immutable lookup table keyed by a primitive long.
+ *
+ *  Uses open addressing with linear probing over parallel arrays,
+ *  so a lookup is a single hash and (usually) a single probe, with
+ *  no boxing of keys.
+ */
+public class LongKeyedIndex<V> {
+
+    private final long[] keys;
+    private final Object[] values;
+    private final int mask;
+    private final int size;
+
+
+    private LongKeyedIndex(long[] keys, Object[] values, int size) {
+        this.keys = keys;
+        this.values = values;
+        this.mask = keys.length - 1;
+        this.size = size;
+    }
+
+
+    /**
+     * Returns the value for the given key, or null if there isn't one.
+     */
+    @SuppressWarnings("unchecked")
+    public V get(long key) {
+        int slot = hash(key) & mask;
+        while (true) {
+            Object value = values[slot];
+            if (value == null) {
+                return null;
+            }
+            if (keys[slot] == key) {
+                return (V) value;
+            }
+            slot = (slot + 1) & mask;
+        }
+    }
+
+    public int size() {
+        return size;
+    }
+
+
+    private static int hash(long key) {
+        long mixed = key * 0x9E3779B97F4A7C15L;
+        return (int) (mixed ^ (mixed >>> 32));
+    }
+
+    /** smallest power of two that keeps the table at most half full */
+    private static int capacityFor(int expectedSize) {
+        int capacity = Integer.highestOneBit(Math.max(expectedSize, 1) * 2 - 1) << 1;
+        return Math.max(capacity, 2);
+    }
+
+
+
+    public static class Builder<V> {
+
+        private long[] keys;
+        private Object[] values;
+        private int size;
+
+        public Builder(int expectedSize) {
+            int capacity = capacityFor(expectedSize);
+            keys = new long[capacity];
+            values = new Object[capacity];
+        }
+
+        /**
+         * Adds a value to the index, replacing any existing value for the key.
+         */
+        public Builder<V> put(long key, V value) {
+            if (value == null) {
+                throw new IllegalArgumentException("Null values cannot be indexed");
+            }
+            if ((size + 1) * 2 > keys.length) {
+                resize();
+            }
+            int mask = keys.length - 1;
+            int slot = hash(key) & mask;
+            while (values[slot] != null && keys[slot] != key) {
+                slot = (slot + 1) & mask;
+            }
+            if (values[slot] == null) {
+                size++;
+            }
+            keys[slot] = key;
+            values[slot] = value;
+            return this;
+        }
+
+        public LongKeyedIndex<V> build() {
+            return new LongKeyedIndex<>(Arrays.copyOf(keys, keys.length),
+                                        Arrays.copyOf(values, values.length),
+                                        size);
+        }
+
+        @SuppressWarnings("unchecked")
+        private void resize() {
+            long[] oldKeys = keys;
+            Object[] oldValues = values;
+            keys = new long[oldKeys.length * 2];
+            values = new Object[oldValues.length * 2];
+            size = 0;
+            for (int i = 0; i < oldKeys.length; i++) {
+                if (oldValues[i] != null) {
+                    put(oldKeys[i], (V) oldValues[i]);
+                }
+            }
+        }
+    }
+}
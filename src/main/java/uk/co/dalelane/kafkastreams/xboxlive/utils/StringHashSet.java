@@ -0,0 +1,144 @@
+package uk.co.dalelane.kafkastreams.xboxlive.utils;
+
+import java.util.Collection;
+
+/**
+ * Immutable set of strings, for checking membership.
+ *
+ *  Uses open addressing with linear probing over parallel arrays
+ *  of the strings and their hashes, so a lookup hashes the value
+ *  once and only compares strings whose hashes match.
+ *
+ *  Large sets also have a Bloom filter in front of the table, so
+ *  that most values which aren't in the set are rejected with a
+ *  few reads from a small array, rather than probing the table.
+ */
+public class StringHashSet {
+
+    /** sets at least this big get a Bloom filter */
+    static final int BLOOM_FILTER_THRESHOLD = 100_000;
+    /** size of the Bloom filter, giving roughly a 1% false positive rate */
+    private static final int BLOOM_BITS_PER_VALUE = 10;
+    private static final int BLOOM_HASHES = 4;
+
+    private final String[] values;
+    private final int[] hashes;
+    private final int mask;
+    private final int size;
+
+    private final long[] bloomFilter;
+    private final int bloomMask;
+
+
+    public StringHashSet(final Collection<String> strings) {
+        int capacity = capacityFor(strings.size());
+        values = new String[capacity];
+        hashes = new int[capacity];
+        mask = capacity - 1;
+
+        if (strings.size() >= BLOOM_FILTER_THRESHOLD) {
+            int bloomBits = Integer.highestOneBit(strings.size() * BLOOM_BITS_PER_VALUE - 1) << 1;
+            bloomFilter = new long[bloomBits / Long.SIZE];
+            bloomMask = bloomBits - 1;
+        }
+        else {
+            bloomFilter = null;
+            bloomMask = 0;
+        }
+
+        int added = 0;
+        for (String value : strings) {
+            if (value != null && add(value)) {
+                added++;
+            }
+        }
+        size = added;
+    }
+
+
+    private boolean add(String value) {
+        final long hash = hash(value);
+        final int shortHash = (int) hash;
+        int slot = shortHash & mask;
+        while (values[slot] != null) {
+            if (hashes[slot] == shortHash && values[slot].equals(value)) {
+                return false;
+            }
+            slot = (slot + 1) & mask;
+        }
+        values[slot] = value;
+        hashes[slot] = shortHash;
+
+        if (bloomFilter != null) {
+            final int h1 = (int) (hash >>> 32);
+            final int h2 = shortHash | 1;
+            for (int i = 0; i < BLOOM_HASHES; i++) {
+                int bit = (h1 + i * h2) & bloomMask;
+                bloomFilter[bit >>> 6] |= 1L << bit;
+            }
+        }
+        return true;
+    }
+
+
+    public boolean contains(String value) {
+        if (value == null) {
+            return false;
+        }
+        final long hash = hash(value);
+        final int shortHash = (int) hash;
+
+        if (bloomFilter != null) {
+            final int h1 = (int) (hash >>> 32);
+            final int h2 = shortHash | 1;
+            for (int i = 0; i < BLOOM_HASHES; i++) {
+                int bit = (h1 + i * h2) & bloomMask;
+                if ((bloomFilter[bit >>> 6] & (1L << bit)) == 0) {
+                    return false;
+                }
+            }
+        }
+
+        int slot = shortHash & mask;
+        while (true) {
+            String candidate = values[slot];
+            if (candidate == null) {
+                return false;
+            }
+            if (hashes[slot] == shortHash && candidate.equals(value)) {
+                return true;
+            }
+            slot = (slot + 1) & mask;
+        }
+    }
+
+    public int size() {
+        return size;
+    }
+
+
+    /**
+     * 64-bit FNV-1a hash of the chars of the value, with the bits
+     *  mixed so that the high and low halves can be used separately.
+     *  Hashes the chars rather than bytes, to avoid encoding them.
+     */
+    private static long hash(String value) {
+        long hash = 0xcbf29ce484222325L;
+        for (int i = 0; i < value.length(); i++) {
+            hash ^= value.charAt(i);
+            hash *= 0x100000001b3L;
+        }
+        hash ^= (hash >>> 33);
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= (hash >>> 33);
+        hash *= 0xc4ceb9fe1a85ec53L;
+        hash ^= (hash >>> 33);
+        return hash;
+    }
+
+    /** smallest power of two that keeps the table at most half full */
+    private static int capacityFor(int expectedSize) {
+        int capacity = Integer.highestOneBit(Math.max(expectedSize, 1) * 2 - 1) << 1;
+        return Math.max(capacity, 2);
+    }
+}
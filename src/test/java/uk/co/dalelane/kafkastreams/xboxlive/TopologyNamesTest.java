@@ -0,0 +1,130 @@
+package uk.co.dalelane.kafkastreams.xboxlive;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.Properties;
+import java.util.Set;
+import java.util.TreeSet;
+
+import org.apache.kafka.streams.StreamsBuilder;
+import org.apache.kafka.streams.Topology;
+import org.apache.kafka.streams.TopologyDescription;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import uk.co.dalelane.kafkastreams.xboxlive.data.games.TitleCatalogProvider;
+import uk.co.dalelane.kafkastreams.xboxlive.data.users.XboxUsersProvider;
+import uk.co.dalelane.kafkastreams.xboxlive.data.users.XboxUsersTable;
+import uk.co.dalelane.kafkastreams.xboxlive.streams.counting.GamesPlayedCounter;
+import uk.co.dalelane.kafkastreams.xboxlive.streams.counting.TitlePlayersCounter;
+import uk.co.dalelane.kafkastreams.xboxlive.streams.enriching.PresenceEnricher;
+import uk.co.dalelane.kafkastreams.xboxlive.streams.filtering.AchievementsKnownUsersFilter;
+import uk.co.dalelane.kafkastreams.xboxlive.streams.matching.PlaySessionGenerator;
+import uk.co.dalelane.kafkastreams.xboxlive.streams.ranking.GamerScoreLeaderboard;
+import uk.co.dalelane.kafkastreams.xboxlive.streams.splitting.PresenceSplitter;
+import uk.co.dalelane.kafkastreams.xboxlive.streams.summing.WeeklyGamerScoreCounter;
+import uk.co.dalelane.kafkastreams.xboxlive.streams.tracking.LongestPlayRecordTracker;
+import uk.co.dalelane.kafkastreams.xboxlive.utils.Config;
+
+/**
+ * The names of state stores and internal topics are used to find
+ *  existing state when the app is restarted, so they mustn't change
+ *  when the topology changes.
+ *
+ *  Stores and topics added by this app have explicit names. The
+ *  only names that Kafka Streams generates are the ones from the
+ *  first version of the app, which are pinned so that existing
+ *  state is kept, whichever options are used.
+ */
+public class TopologyNamesTest {
+
+    private static final Set<String> PINNED_NAMES = Set.of(
+        "KSTREAM-AGGREGATE-STATE-STORE-0000000022",
+        "KSTREAM-AGGREGATE-STATE-STORE-0000000038");
+
+
+    /** builds the same topology as StreamProcessor */
+    private static Topology createTopology(Properties config) {
+        final StreamsBuilder builder = new StreamsBuilder();
+
+        // the providers are never started, so nothing is fetched or loaded
+        try (XboxUsersProvider xboxUsers = new XboxUsersProvider(config);
+             TitleCatalogProvider titles = new TitleCatalogProvider(config))
+        {
+            XboxUsersTable xboxUsersTable = null;
+            if (Config.isUsersTopicEnabled(config)) {
+                xboxUsersTable = XboxUsersTable.create(builder, config);
+                AchievementsKnownUsersFilter.create(builder, xboxUsersTable, config);
+            }
+            else {
+                AchievementsKnownUsersFilter.create(builder, xboxUsers, config);
+            }
+            PresenceSplitter.create(builder, titles, config);
+            if (xboxUsersTable != null) {
+                PresenceEnricher.create(builder, xboxUsersTable.getTable(), titles, config);
+            }
+            else {
+                PresenceEnricher.create(builder, xboxUsers, titles, config);
+            }
+            PlaySessionGenerator.create(builder, titles, config);
+            GamesPlayedCounter.create(builder);
+            TitlePlayersCounter.create(builder);
+            WeeklyGamerScoreCounter.create(builder, config);
+            GamerScoreLeaderboard.create(builder, config);
+            LongestPlayRecordTracker.create(builder, config);
+        }
+
+        return builder.build();
+    }
+
+    /** names of stores and topics that were generated by Kafka Streams */
+    private static Set<String> generatedNames(Topology topology) {
+        final Set<String> names = new TreeSet<>();
+        for (TopologyDescription.Subtopology subtopology : topology.describe().subtopologies()) {
+            for (TopologyDescription.Node node : subtopology.nodes()) {
+                if (node instanceof TopologyDescription.Processor) {
+                    names.addAll(((TopologyDescription.Processor) node).stores());
+                }
+                else if (node instanceof TopologyDescription.Source) {
+                    names.addAll(((TopologyDescription.Source) node).topicSet());
+                }
+                else if (node instanceof TopologyDescription.Sink) {
+                    // sinks that choose a topic for each record have no topic name
+                    String topic = ((TopologyDescription.Sink) node).topic();
+                    if (topic != null) {
+                        names.add(topic);
+                    }
+                }
+            }
+        }
+        names.removeIf(name -> !name.startsWith("KSTREAM-"));
+        return names;
+    }
+
+
+    @ParameterizedTest(name = "{0}")
+    @ValueSource(strings = {
+        "defaults",
+        "xbox.state.store.format=BINARY",
+        "xbox.users.source=topic",
+        "xbox.users.unknown.policy=route",
+        "xbox.users.source=topic,xbox.users.unknown.policy=drop",
+        "xbox.presence.reorder.grace.seconds=30",
+        "xbox.sessions.inprogress.interval.seconds=60",
+        "xbox.gamerscore.final.only=true",
+        "xbox.presence.splitter.raw=true",
+        "xbox.achievements.filter.raw=true",
+        "xbox.users.source=topic,xbox.achievements.filter.raw=true",
+    })
+    public void keepsGeneratedNamesFromFirstVersion(String options) {
+        final Properties config = new Properties();
+        for (String option : options.split(",")) {
+            String[] keyValue = option.split("=", 2);
+            if (keyValue.length == 2) {
+                config.put(keyValue[0], keyValue[1]);
+            }
+        }
+
+        assertEquals(new TreeSet<>(PINNED_NAMES), generatedNames(createTopology(config)));
+    }
+}
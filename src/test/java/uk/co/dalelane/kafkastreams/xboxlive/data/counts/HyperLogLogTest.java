@@ -0,0 +1,113 @@
+package uk.co.dalelane.kafkastreams.xboxlive.data.counts;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.apache.kafka.common.serialization.Serde;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import uk.co.dalelane.kafkastreams.xboxlive.data.serdes.XboxSerdes;
+
+/**
+ * Estimating the number of distinct gamers with HyperLogLog sketches,
+ *  and storing the sketches.
+ */
+public class HyperLogLogTest {
+
+    /** three times the standard error for 2^12 registers */
+    private static final double MAX_ERROR = 3 * 1.04 / Math.sqrt(HyperLogLog.NUM_REGISTERS);
+
+    private static final Serde<HyperLogLog> SERDES = XboxSerdes.PLAYERS_SKETCH_STORE_SERDES;
+
+
+    private static HyperLogLog sketch(String prefix, int count) {
+        HyperLogLog sketch = new HyperLogLog();
+        for (int i = 0; i < count; i++) {
+            sketch.add(prefix + i);
+        }
+        return sketch;
+    }
+
+    private static void assertEstimate(long expected, HyperLogLog sketch) {
+        long estimate = sketch.estimate();
+        assertTrue(Math.abs(estimate - expected) <= Math.max(1, expected * MAX_ERROR),
+                   "estimated " + estimate + " for " + expected + " values");
+    }
+
+    private static HyperLogLog roundTrip(HyperLogLog sketch) {
+        return SERDES.deserializer().deserialize("", SERDES.serializer().serialize("", sketch));
+    }
+
+
+    @Test
+    public void estimatesZeroForAnEmptySketch() {
+        assertEquals(0, new HyperLogLog().estimate());
+    }
+
+    @ParameterizedTest
+    @ValueSource(ints = { 1, 10, 100, 1000, 10000, 100000, 500000 })
+    public void estimatesWithinTheErrorBounds(int count) {
+        assertEstimate(count, sketch("gamer-", count));
+    }
+
+    @Test
+    public void ignoresValuesThatHaveAlreadyBeenAdded() {
+        HyperLogLog sketch = sketch("gamer-", 1000);
+        long estimate = sketch.estimate();
+        for (int i = 0; i < 1000; i++) {
+            assertFalse(sketch.add("gamer-" + i));
+        }
+        assertEquals(estimate, sketch.estimate());
+    }
+
+    @Test
+    public void mergesSketches() {
+        HyperLogLog merged = sketch("a-", 20000);
+        assertTrue(merged.merge(sketch("b-", 30000)));
+        assertEstimate(50000, merged);
+
+        // overlapping values are only counted once
+        HyperLogLog overlapping = sketch("a-", 20000);
+        overlapping.merge(sketch("a-", 10000));
+        assertArrayEquals(sketch("a-", 20000).registers, overlapping.registers);
+        assertFalse(overlapping.merge(sketch("a-", 5000)));
+    }
+
+    @Test
+    public void mergeGivesTheSameSketchAsAddingEverything() {
+        HyperLogLog merged = sketch("a-", 5000);
+        merged.merge(sketch("b-", 5000));
+
+        HyperLogLog added = sketch("a-", 5000);
+        for (int i = 0; i < 5000; i++) {
+            added.add("b-" + i);
+        }
+        assertArrayEquals(added.registers, merged.registers);
+    }
+
+
+    @ParameterizedTest
+    @ValueSource(ints = { 0, 1, 100, 1000, 100000 })
+    public void roundTripsSketches(int count) {
+        HyperLogLog sketch = sketch("gamer-", count);
+        HyperLogLog read = roundTrip(sketch);
+        assertArrayEquals(sketch.registers, read.registers);
+        assertEquals(sketch.estimate(), read.estimate());
+    }
+
+    @Test
+    public void storesSmallSketchesSparsely() {
+        byte[] empty = SERDES.serializer().serialize("", new HyperLogLog());
+        byte[] small = SERDES.serializer().serialize("", sketch("gamer-", 100));
+        byte[] large = SERDES.serializer().serialize("", sketch("gamer-", 100000));
+
+        assertTrue(empty.length < 10, "empty sketch stored in " + empty.length + " bytes");
+        assertTrue(small.length < 100 * 3 + 10, "small sketch stored in " + small.length + " bytes");
+        // version byte, format byte, and one byte per register
+        assertEquals(HyperLogLog.NUM_REGISTERS + 2, large.length);
+    }
+}
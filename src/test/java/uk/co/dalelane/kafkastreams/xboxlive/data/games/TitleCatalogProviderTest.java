@@ -0,0 +1,125 @@
+package uk.co.dalelane.kafkastreams.xboxlive.data.games;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.time.Instant;
+import java.util.Properties;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import uk.co.dalelane.kafkastreams.xboxlive.utils.Config;
+
+/**
+ * Loading the catalog of Xbox title types from a file, and
+ *  reloading it when the file changes.
+ */
+public class TitleCatalogProviderTest {
+
+    private static final String CATALOG = "{\"titles\":[{\"titleid\":\"%s\",\"type\":\"%s\"}]}";
+
+    @TempDir
+    Path tempDir;
+
+    private Path catalogFile;
+    private TitleCatalogProvider provider;
+
+
+    @BeforeEach
+    public void setup() {
+        catalogFile = tempDir.resolve("titles.json");
+    }
+
+    @AfterEach
+    public void teardown() {
+        if (provider != null) {
+            provider.close();
+        }
+    }
+
+    private TitleCatalogProvider createProvider(Path file) {
+        final Properties config = new Properties();
+        if (file != null) {
+            config.put(Config.TITLES_CATALOG_FILE, file.toString());
+        }
+        config.put(Config.TITLES_CATALOG_REFRESH_SECONDS, "1");
+        provider = new TitleCatalogProvider(config);
+        return provider;
+    }
+
+    /** writes the catalog, with a modified time that is different from the last write */
+    private void writeCatalog(String titleid, String type, int version) throws IOException {
+        Files.writeString(catalogFile, String.format(CATALOG, titleid, type));
+        Files.setLastModifiedTime(catalogFile, FileTime.from(Instant.parse("2023-01-01T00:00:00Z").plusSeconds(version)));
+    }
+
+    private void waitForType(String titleid, String type) throws InterruptedException {
+        for (int i = 0; i < 100 && !type.equals(provider.getTitles().getTitleType(titleid)); i++) {
+            Thread.sleep(50);
+        }
+    }
+
+
+    @Test
+    public void usesBuiltInCatalogWithoutAFile() {
+        createProvider(null).start();
+        assertSame(TitleCatalog.BUILT_IN, provider.getTitles());
+    }
+
+    @Test
+    public void loadsCatalogFileAtStart() throws IOException {
+        writeCatalog("1144039928", "MEDIA", 1);
+
+        createProvider(catalogFile).start();
+
+        // available as soon as start returns
+        assertEquals(1, provider.getTitles().size());
+        assertEquals(TitleIdInfo.MEDIA_PLAYER, provider.getTitles().getTitleType("1144039928"));
+        // the built-in catalog isn't used when there is a file
+        assertEquals(TitleIdInfo.GAME, provider.getTitles().getTitleType("327370029"));
+    }
+
+    @Test
+    public void reloadsCatalogWhenTheFileChanges() throws IOException, InterruptedException {
+        writeCatalog("1144039928", "MEDIA", 1);
+        createProvider(catalogFile).start();
+        final TitleCatalog first = provider.getTitles();
+
+        writeCatalog("1144039928", "APP", 2);
+        waitForType("1144039928", TitleIdInfo.APP);
+
+        assertEquals(TitleIdInfo.APP, provider.getTitles().getTitleType("1144039928"));
+        // catalogs that were already being read don't change
+        assertEquals(TitleIdInfo.MEDIA_PLAYER, first.getTitleType("1144039928"));
+    }
+
+    @Test
+    public void keepsCatalogIfTheFileCantBeLoaded() throws IOException, InterruptedException {
+        writeCatalog("1144039928", "MEDIA", 1);
+        createProvider(catalogFile).start();
+        final TitleCatalog loaded = provider.getTitles();
+
+        Files.writeString(catalogFile, "{\"titles\":[");
+        Files.setLastModifiedTime(catalogFile, FileTime.from(Instant.parse("2023-01-01T00:00:02Z")));
+        Thread.sleep(1500);
+        assertSame(loaded, provider.getTitles());
+
+        // and is loaded once the file has been fixed
+        writeCatalog("1144039928", "APP", 3);
+        waitForType("1144039928", TitleIdInfo.APP);
+        assertEquals(TitleIdInfo.APP, provider.getTitles().getTitleType("1144039928"));
+    }
+
+    @Test
+    public void usesBuiltInCatalogIfTheFileIsMissing() {
+        createProvider(catalogFile).start();
+        assertSame(TitleCatalog.BUILT_IN, provider.getTitles());
+    }
+}
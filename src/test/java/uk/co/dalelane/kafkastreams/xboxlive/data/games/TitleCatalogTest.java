@@ -0,0 +1,94 @@
+package uk.co.dalelane.kafkastreams.xboxlive.data.games;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+/**
+ * Parsing catalogs of the types of Xbox titles, and looking up
+ *  the type of a title.
+ */
+public class TitleCatalogTest {
+
+    private static TitleCatalog parse(String json) throws IOException {
+        return TitleCatalog.parse(json.getBytes(StandardCharsets.UTF_8));
+    }
+
+
+    @Test
+    public void parsesTitlesByType() throws IOException {
+        TitleCatalog catalog = parse("{\"titles\":[" +
+                                         "{\"titleid\":\"327370029\",\"type\":\"MEDIA\",\"name\":\"Netflix\"}," +
+                                         "{\"titleid\":\"750323071\",\"type\":\" app \",\"name\":\"Xbox dashboard\"}," +
+                                         "{\"titleid\":\"1144039928\",\"type\":\"game\"}]}");
+
+        assertEquals(3, catalog.size());
+        assertEquals(TitleIdInfo.MEDIA_PLAYER, catalog.getTitleType("327370029"));
+        assertEquals(TitleIdInfo.APP, catalog.getTitleType("750323071"));
+        assertEquals(TitleIdInfo.GAME, catalog.getTitleType("1144039928"));
+        assertFalse(catalog.isGame("327370029"));
+        assertTrue(catalog.isGame("1144039928"));
+    }
+
+    @Test
+    public void treatsTitlesNotInTheCatalogAsGames() throws IOException {
+        TitleCatalog catalog = parse("{\"titles\":[{\"titleid\":\"327370029\",\"type\":\"MEDIA\"}]}");
+
+        assertEquals(TitleIdInfo.GAME, catalog.getTitleType("219630713"));
+        assertEquals(TitleIdInfo.GAME, catalog.getTitleType("not-a-number"));
+        assertNull(catalog.getTitleType(null));
+        assertFalse(catalog.isGame(null));
+    }
+
+    @Test
+    public void ignoresInvalidTitles() throws IOException {
+        TitleCatalog catalog = parse("{\"titles\":[" +
+                                         "{\"titleid\":\"not-a-number\",\"type\":\"MEDIA\"}," +
+                                         "{\"titleid\":\"-5\",\"type\":\"MEDIA\"}," +
+                                         "{\"type\":\"MEDIA\"}," +
+                                         "{\"titleid\":\"327370029\",\"type\":\"TOASTER\"}," +
+                                         "{\"titleid\":\"327370029\"}," +
+                                         "null," +
+                                         "{\"titleid\":\"122001257\",\"type\":\"MEDIA\"}]}");
+
+        assertEquals(1, catalog.size());
+        assertEquals(TitleIdInfo.GAME, catalog.getTitleType("327370029"));
+        assertEquals(TitleIdInfo.MEDIA_PLAYER, catalog.getTitleType("122001257"));
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = { "{}", "{\"titles\":[]}", "{\"titles\":null}" })
+    public void parsesCatalogsWithNoTitles(String json) throws IOException {
+        assertEquals(0, parse(json).size());
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = { "", "not json", "{\"titles\":[{\"titleid\":", "{\"titles\":\"Netflix\"}" })
+    public void rejectsInvalidCatalogs(String json) {
+        assertThrows(IOException.class, () -> parse(json));
+    }
+
+    @Test
+    public void sampleCatalogMatchesTheBuiltInCatalog() throws IOException {
+        TitleCatalog sample = TitleCatalog.parse(Files.readAllBytes(Paths.get("sample-titles.json")));
+
+        assertEquals(TitleCatalog.BUILT_IN.size(), sample.size());
+        for (String titleid : new String[] { "328178078", "1864271209", "750323071", "1509068581", "1749265960",
+                                             "1824269336", "1715639942", "1826276761", "1943777318", "122001257",
+                                             "327370029", "1144039928" })
+        {
+            assertEquals(TitleCatalog.BUILT_IN.getTitleType(titleid), sample.getTitleType(titleid), titleid);
+        }
+    }
+}
@@ -0,0 +1,152 @@
+package uk.co.dalelane.kafkastreams.xboxlive.data.serdes;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Arrays;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+public class BinaryFieldsTest {
+
+    private interface Writer {
+        void write(DataOutputStream out) throws IOException;
+    }
+
+    private static ByteBuffer write(Writer writer) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        writer.write(out);
+        out.flush();
+        return ByteBuffer.wrap(bytes.toByteArray());
+    }
+
+    /** the same bytes, without the last one */
+    private static ByteBuffer truncated(ByteBuffer in) {
+        return ByteBuffer.wrap(Arrays.copyOf(in.array(), in.limit() - 1));
+    }
+
+
+    @ParameterizedTest
+    @ValueSource(strings = { "", "alice", "Finish the fight", "é ☃ 🎮", "\u0000" })
+    public void roundTripsStrings(String value) throws IOException {
+        ByteBuffer in = write(out -> BinaryFields.writeString(out, value));
+        assertEquals(value, BinaryFields.readString(in));
+        assertFalse(in.hasRemaining());
+    }
+
+    @Test
+    public void roundTripsNulls() throws IOException {
+        ByteBuffer in = write(out -> {
+            BinaryFields.writeString(out, null);
+            BinaryFields.writeInstant(out, null);
+            BinaryFields.writeDuration(out, null);
+            BinaryFields.writeString(out, "after");
+        });
+        assertEquals(null, BinaryFields.readString(in));
+        assertEquals(null, BinaryFields.readInstant(in));
+        assertEquals(null, BinaryFields.readDuration(in));
+        assertEquals("after", BinaryFields.readString(in));
+    }
+
+    @Test
+    public void roundTripsInstants() throws IOException {
+        for (Instant value : new Instant[] { Instant.EPOCH,
+                                             Instant.parse("2023-01-01T10:00:00Z"),
+                                             Instant.parse("2023-01-01T10:00:00.123456789Z"),
+                                             Instant.parse("1969-12-31T23:59:59.5Z") })
+        {
+            ByteBuffer in = write(out -> BinaryFields.writeInstant(out, value));
+            assertEquals(value, BinaryFields.readInstant(in));
+            assertFalse(in.hasRemaining());
+        }
+    }
+
+    @Test
+    public void roundTripsDurations() throws IOException {
+        for (Duration value : new Duration[] { Duration.ZERO,
+                                               Duration.ofHours(8).plusMinutes(59),
+                                               Duration.ofMillis(1500),
+                                               Duration.ofSeconds(-10) })
+        {
+            ByteBuffer in = write(out -> BinaryFields.writeDuration(out, value));
+            assertEquals(value, BinaryFields.readDuration(in));
+            assertFalse(in.hasRemaining());
+        }
+    }
+
+    @Test
+    public void roundTripsVarLongs() throws IOException {
+        long[] values = { 0, 1, 127, 128, 300, 16383, 16384, 1144039928L, Long.MAX_VALUE };
+        ByteBuffer in = write(out -> {
+            for (long value : values) {
+                BinaryFields.writeVarLong(out, value);
+            }
+        });
+        for (long value : values) {
+            assertEquals(value, BinaryFields.readVarLong(in));
+        }
+        assertFalse(in.hasRemaining());
+    }
+
+    @Test
+    public void writesSmallVarLongsInOneByte() throws IOException {
+        assertEquals(1, write(out -> BinaryFields.writeVarLong(out, 127)).limit());
+        assertEquals(2, write(out -> BinaryFields.writeVarLong(out, 128)).limit());
+    }
+
+
+    @Test
+    public void rejectsTruncatedValues() throws IOException {
+        ByteBuffer string = write(out -> BinaryFields.writeString(out, "alice"));
+        assertThrows(BufferUnderflowException.class, () -> BinaryFields.readString(truncated(string)));
+
+        ByteBuffer instant = write(out -> BinaryFields.writeInstant(out, Instant.EPOCH));
+        assertThrows(BufferUnderflowException.class, () -> BinaryFields.readInstant(truncated(instant)));
+
+        ByteBuffer duration = write(out -> BinaryFields.writeDuration(out, Duration.ZERO));
+        assertThrows(BufferUnderflowException.class, () -> BinaryFields.readDuration(truncated(duration)));
+
+        ByteBuffer varLong = write(out -> BinaryFields.writeVarLong(out, 300));
+        assertThrows(BufferUnderflowException.class, () -> BinaryFields.readVarLong(truncated(varLong)));
+    }
+
+    @Test
+    public void rejectsCorruptStringLengths() throws IOException {
+        ByteBuffer negative = write(out -> out.writeInt(-2));
+        assertThrows(BufferUnderflowException.class, () -> BinaryFields.readString(negative));
+
+        ByteBuffer tooLong = write(out -> {
+            out.writeInt(Integer.MAX_VALUE);
+            out.writeBytes("alice");
+        });
+        assertThrows(BufferUnderflowException.class, () -> BinaryFields.readString(tooLong));
+    }
+
+    @Test
+    public void rejectsSizesLargerThanTheValue() throws IOException {
+        ByteBuffer in = write(out -> {
+            BinaryFields.writeVarLong(out, 3);
+            out.writeByte(1);
+            out.writeByte(2);
+            out.writeByte(3);
+        });
+        assertEquals(3, BinaryFields.readSize(in));
+
+        ByteBuffer corrupt = write(out -> {
+            BinaryFields.writeVarLong(out, Integer.MAX_VALUE);
+            out.writeByte(1);
+        });
+        assertThrows(BufferUnderflowException.class, () -> BinaryFields.readSize(corrupt));
+    }
+}
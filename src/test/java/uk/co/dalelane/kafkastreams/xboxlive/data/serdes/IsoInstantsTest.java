@@ -0,0 +1,198 @@
+package uk.co.dalelane.kafkastreams.xboxlive.data.serdes;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.time.Instant;
+import java.time.format.DateTimeParseException;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+/**
+ * The hand-written parser and formatter should always give the
+ *  same results as Instant.parse and Instant.toString, so these
+ *  compare them for both fixed and random timestamps.
+ */
+public class IsoInstantsTest {
+
+    private static final int FUZZ_ITERATIONS = 100_000;
+
+    private static final long MIN_SECOND = Instant.parse("0000-01-01T00:00:00Z").getEpochSecond();
+    private static final long MAX_SECOND = Instant.parse("9999-12-31T23:59:59Z").getEpochSecond();
+
+
+    /**
+     * Checks that the text is parsed to the same Instant as by
+     *  Instant.parse, or is rejected by both.
+     */
+    private static void assertParsesSameAsInstant(String text) {
+        Instant expected;
+        try {
+            expected = Instant.parse(text);
+        }
+        catch (DateTimeParseException e) {
+            assertThrows(DateTimeParseException.class, () -> IsoInstants.parse(text), text);
+            return;
+        }
+        assertEquals(expected, IsoInstants.parse(text), text);
+    }
+
+    private static void assertFormatsSameAsInstant(Instant instant) {
+        assertEquals(instant.toString(), IsoInstants.format(instant));
+    }
+
+    private static Instant randomInstant(Random random, long minSecond, long maxSecond) {
+        long second = minSecond + (long) (random.nextDouble() * (maxSecond - minSecond));
+        int nanos;
+        switch (random.nextInt(4)) {
+            case 0:  nanos = 0; break;
+            case 1:  nanos = random.nextInt(1000) * 1000_000; break;
+            case 2:  nanos = random.nextInt(1000_000) * 1000; break;
+            default: nanos = random.nextInt(1000_000_000); break;
+        }
+        return Instant.ofEpochSecond(second, nanos);
+    }
+
+
+    @ParameterizedTest
+    @ValueSource(strings = {
+        "2023-02-04T21:43:10Z",
+        "2023-02-04T21:43:10.1Z",
+        "2023-02-04T21:43:10.12Z",
+        "2023-02-04T21:43:10.123Z",
+        "2023-02-04T21:43:10.1234567Z",
+        "2023-02-04T21:43:10.123456789Z",
+        "2023-02-04T21:43:10.000Z",
+        "1970-01-01T00:00:00Z",
+        "1969-12-31T23:59:59.999999999Z",
+        "0000-01-01T00:00:00Z",
+        "0000-02-29T12:00:00Z",
+        "9999-12-31T23:59:59.999999999Z",
+        "2000-02-29T00:00:00Z",
+        "2024-02-29T00:00:00Z",
+        "2024-12-31T23:59:59Z",
+    })
+    public void parsesSimpleForm(String text) {
+        assertParsesSameAsInstant(text);
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {
+        // handed to Instant.parse
+        "2023-02-04t21:43:10z",
+        "2023-02-04T21:43:10+01:00",
+        "2023-02-04T21:43:10-05:30",
+        "2016-12-31T23:59:60Z",
+        "+10000-01-01T00:00:00Z",
+        "-0001-01-01T00:00:00Z",
+        // invalid
+        "",
+        "2023-02-04",
+        "2023-02-04T21:43Z",
+        "2023-02-04T21:43:10",
+        "2023-02-04 21:43:10Z",
+        "2023-02-04T21:43:10.Z",
+        "2023-02-04T21:43:10.1234567890Z",
+        "2023-02-04T21:43:10,123Z",
+        "2023-02-04T21:43:1aZ",
+        "2023-13-01T00:00:00Z",
+        "2023-00-01T00:00:00Z",
+        "2023-02-29T00:00:00Z",
+        "1900-02-29T00:00:00Z",
+        "2023-04-31T00:00:00Z",
+        "2023-02-00T00:00:00Z",
+        "2023-02-04T24:00:00Z",
+        "2023-02-04T23:60:00Z",
+        "2023-02-04T23:59:61Z",
+        "2023-02-04T21:43:10.-12Z",
+        "2023-02-04T21:43:10.12 Z",
+        "+2023-02-04T21:43:10Z",
+        "2023-2-4T21:43:10Z",
+        "2023-02-04T21:43:10.123Z ",
+    })
+    public void parsesOtherFormsSameAsInstant(String text) {
+        assertParsesSameAsInstant(text);
+    }
+
+    @Test
+    public void formatsSameAsInstant() {
+        assertFormatsSameAsInstant(Instant.EPOCH);
+        assertFormatsSameAsInstant(Instant.ofEpochSecond(-1));
+        assertFormatsSameAsInstant(Instant.ofEpochSecond(0, 1));
+        assertFormatsSameAsInstant(Instant.ofEpochSecond(0, 100_000_000));
+        assertFormatsSameAsInstant(Instant.ofEpochSecond(0, 123_456_000));
+        assertFormatsSameAsInstant(Instant.ofEpochSecond(MIN_SECOND));
+        assertFormatsSameAsInstant(Instant.ofEpochSecond(MAX_SECOND, 999_999_999));
+        assertFormatsSameAsInstant(Instant.parse("2024-02-29T23:59:59Z"));
+
+        // outside of 0000-9999, so handed to Instant.toString
+        assertFormatsSameAsInstant(Instant.ofEpochSecond(MIN_SECOND - 1));
+        assertFormatsSameAsInstant(Instant.ofEpochSecond(MAX_SECOND + 1));
+        assertFormatsSameAsInstant(Instant.MIN);
+        assertFormatsSameAsInstant(Instant.MAX);
+    }
+
+    @Test
+    public void randomRoundTrips() {
+        Random random = new Random(42);
+        for (int i = 0; i < FUZZ_ITERATIONS; i++) {
+            Instant instant = randomInstant(random, MIN_SECOND, MAX_SECOND);
+            String text = IsoInstants.format(instant);
+            assertEquals(instant.toString(), text);
+            assertEquals(instant, IsoInstants.parse(text), text);
+        }
+    }
+
+    @Test
+    public void randomInstantsOutsideSimpleForm() {
+        Random random = new Random(42);
+        for (int i = 0; i < FUZZ_ITERATIONS / 10; i++) {
+            Instant instant = random.nextBoolean() ?
+                randomInstant(random, MAX_SECOND + 1, Instant.MAX.getEpochSecond()) :
+                randomInstant(random, Instant.MIN.getEpochSecond(), MIN_SECOND - 1);
+            String text = IsoInstants.format(instant);
+            assertEquals(instant.toString(), text);
+            assertParsesSameAsInstant(text);
+        }
+    }
+
+    @Test
+    public void randomFractionLengths() {
+        Random random = new Random(42);
+        for (int i = 0; i < FUZZ_ITERATIONS; i++) {
+            String text = IsoInstants.format(Instant.ofEpochSecond(MIN_SECOND + (long) (random.nextDouble() * (MAX_SECOND - MIN_SECOND))));
+            StringBuilder fraction = new StringBuilder(".");
+            int digits = 1 + random.nextInt(9);
+            for (int d = 0; d < digits; d++) {
+                fraction.append((char) ('0' + random.nextInt(10)));
+            }
+            assertParsesSameAsInstant(text.substring(0, 19) + fraction + "Z");
+        }
+    }
+
+    @Test
+    public void randomlyCorruptedText() {
+        final String chars = "0123456789-:.TZtz+ ,";
+        Random random = new Random(42);
+        for (int i = 0; i < FUZZ_ITERATIONS; i++) {
+            StringBuilder text = new StringBuilder(IsoInstants.format(randomInstant(random, MIN_SECOND, MAX_SECOND)));
+            int changes = 1 + random.nextInt(3);
+            for (int c = 0; c < changes; c++) {
+                int pos = random.nextInt(text.length());
+                char replacement = chars.charAt(random.nextInt(chars.length()));
+                switch (random.nextInt(3)) {
+                    case 0:  text.setCharAt(pos, replacement); break;
+                    case 1:  text.insert(pos, replacement); break;
+                    default: text.deleteCharAt(pos); break;
+                }
+                if (text.length() == 0) {
+                    break;
+                }
+            }
+            assertParsesSameAsInstant(text.toString());
+        }
+    }
+}
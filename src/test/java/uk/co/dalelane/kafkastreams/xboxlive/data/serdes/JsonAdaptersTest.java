@@ -0,0 +1,244 @@
+package uk.co.dalelane.kafkastreams.xboxlive.data.serdes;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.temporal.ChronoUnit;
+import java.util.Set;
+
+import org.apache.kafka.common.errors.SerializationException;
+import org.apache.kafka.common.serialization.Serde;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonDeserializer;
+import com.google.gson.JsonParser;
+import com.google.gson.JsonPrimitive;
+import com.google.gson.JsonSerializer;
+import com.google.gson.JsonSyntaxException;
+
+import uk.co.dalelane.kafkastreams.xboxlive.data.achievements.Achievement;
+import uk.co.dalelane.kafkastreams.xboxlive.data.achievements.AchievementScore;
+import uk.co.dalelane.kafkastreams.xboxlive.data.achievements.Leaderboard;
+import uk.co.dalelane.kafkastreams.xboxlive.data.achievements.WeeklyGamerScore;
+import uk.co.dalelane.kafkastreams.xboxlive.data.counts.PlayerGames;
+import uk.co.dalelane.kafkastreams.xboxlive.data.counts.TitlePlayers;
+import uk.co.dalelane.kafkastreams.xboxlive.data.presence.EnrichedPresence;
+import uk.co.dalelane.kafkastreams.xboxlive.data.presence.Presence;
+import uk.co.dalelane.kafkastreams.xboxlive.data.sessions.PlaySession;
+import uk.co.dalelane.kafkastreams.xboxlive.data.sessions.PlaySessions;
+import uk.co.dalelane.kafkastreams.xboxlive.data.users.XboxUserInfo;
+
+/**
+ * The hand-written type adapters should read and write the same
+ *  JSON as the reflection-based Gson serdes that they replaced.
+ *
+ *  Values parsed by each adapter are compared with values parsed
+ *  by reflective Gson by writing both out with reflective Gson, and
+ *  the adapter's output is compared with reflective Gson's output
+ *  for the same value.
+ */
+public class JsonAdaptersTest {
+
+    /** configured in the same way as the serdes that were replaced */
+    private static final Gson GSON = new GsonBuilder()
+        .registerTypeAdapter(Instant.class, (JsonSerializer<Instant>) (src, type, ctx) -> new JsonPrimitive(src.toString()))
+        .registerTypeAdapter(Instant.class, (JsonDeserializer<Instant>) (json, type, ctx) -> Instant.parse(json.getAsString()))
+        .registerTypeAdapter(Duration.class, (JsonSerializer<Duration>) (src, type, ctx) -> new JsonPrimitive(src.getSeconds()))
+        .registerTypeAdapter(Duration.class, (JsonDeserializer<Duration>) (json, type, ctx) -> Duration.of(json.getAsLong(), ChronoUnit.SECONDS))
+        .registerTypeAdapter(LocalDate.class, (JsonSerializer<LocalDate>) (src, type, ctx) -> new JsonPrimitive(src.toString()))
+        .registerTypeAdapter(LocalDate.class, (JsonDeserializer<LocalDate>) (json, type, ctx) -> LocalDate.parse(json.getAsString()))
+        .create();
+
+    private static final String ESCAPES = "quote \\\" backslash \\\\ tab \\t newline \\n html <b>&amp;</b> = ' unicode \\u00e9 \\u2603 snowman ☃";
+
+
+    private static <T> void assertMatchesGson(Class<T> type, Serde<T> serdes, String json) {
+        final byte[] bytes = json.getBytes(StandardCharsets.UTF_8);
+
+        final T fromAdapter = serdes.deserializer().deserialize("", bytes);
+        final T fromGson = GSON.fromJson(json, type);
+        assertEquals(GSON.toJson(fromGson), GSON.toJson(fromAdapter), "parsing " + json);
+
+        final String written = new String(serdes.serializer().serialize("", fromGson), StandardCharsets.UTF_8);
+        assertEquals(GSON.toJson(fromGson), written, "writing " + json);
+    }
+
+
+    @ParameterizedTest
+    @ValueSource(strings = {
+        "{\"date\":\"2023-01-01T10:00:00Z\",\"gamertag\":\"alice\",\"gamername\":\"Alice\",\"name\":\"Finish the fight\",\"description\":\"" + ESCAPES + "\"," +
+            "\"icon\":\"https://example.com/icon.png?a=1&b=2\",\"contentname\":\"Halo\",\"contentimage\":\"https://example.com/halo.png\"," +
+            "\"platform\":\"Xbox One\",\"gamerscore\":50,\"rarityscore\":12,\"raritycategory\":\"Rare\"}",
+        "{\"gamertag\":\"alice\",\"gamerscore\":null,\"name\":null}",
+        "{\"gamertag\":\"alice\"}",
+        "{\"gamertag\":\"alice\",\"unknown\":{\"a\":[1,2,{\"b\":null}]},\"gamerscore\":5}",
+        "{}"
+    })
+    public void achievements(String json) {
+        assertMatchesGson(Achievement.class, XboxSerdes.ACHIEVEMENT_SERDES, json);
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {
+        "{\"date\":\"2023-01-01T10:00:00Z\",\"gamertag\":\"" + ESCAPES + "\",\"gamername\":\"Alice\",\"name\":\"" + ESCAPES + "\",\"description\":\"" + ESCAPES + "\"," +
+            "\"icon\":\"https://example.com/icon.png?a=1&b=2\",\"gamerscore\":50,\"rarityscore\":12,\"raritycategory\":\"Rare\"}",
+        "{\"unknown\":{\"gamerscore\":1,\"gamertag\":\"bob\",\"a\":[1.5,{\"b\":null}]},\"gamerscore\":5,\"gamertag\":\"alice\",\"rarityscore\":1}",
+        "{\"gamertag\":\"alice\",\"gamerscore\":0}",
+        "{\"gamertag\":\"alice\",\"gamerscore\":null}",
+        "{\"gamertag\":\"alice\"}",
+        "{}"
+    })
+    public void achievementScores(String json) {
+        // only the gamertag and score are read, skipping everything else
+        final AchievementScore score = XboxSerdes.ACHIEVEMENT_SCORE_SERDES.deserializer().deserialize("", json.getBytes(StandardCharsets.UTF_8));
+        final Achievement fromGson = GSON.fromJson(json, Achievement.class);
+        assertEquals(fromGson.getGamertag(), score.getGamertag(), "parsing " + json);
+        assertEquals(fromGson.getGamerScore() != null, score.hasGamerScore(), "parsing " + json);
+        if (score.hasGamerScore()) {
+            assertEquals(fromGson.getGamerScore().intValue(), score.getGamerScore(), "parsing " + json);
+        }
+
+        // and written as an achievement with only the gamertag and score
+        final String written = new String(XboxSerdes.ACHIEVEMENT_SCORE_SERDES.serializer().serialize("", score), StandardCharsets.UTF_8);
+        final Achievement reread = GSON.fromJson(written, Achievement.class);
+        assertEquals(fromGson.getGamertag(), reread.getGamertag(), "writing " + json);
+        assertEquals(fromGson.getGamerScore(), reread.getGamerScore(), "writing " + json);
+        assertTrue(Set.of("gamertag", "gamerscore").containsAll(JsonParser.parseString(written).getAsJsonObject().keySet()), "writing " + json);
+    }
+
+    @Test
+    public void readsAchievementScoresWithoutAScore() {
+        final AchievementScore score = XboxSerdes.ACHIEVEMENT_SCORE_SERDES.deserializer().deserialize("", "{\"gamertag\":\"alice\",\"gamerscore\":null}".getBytes(StandardCharsets.UTF_8));
+        assertFalse(score.hasGamerScore());
+        assertEquals(0, score.getGamerScore());
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {
+        "{\"date\":\"2023-01-01T10:00:00Z\",\"userid\":\"2533274800000000\",\"state\":\"Online\",\"titleid\":\"1144039928\",\"titlename\":\"" + ESCAPES + "\"}",
+        "{\"date\":\"2023-01-01T10:00:00.123Z\",\"userid\":\"2533274800000000\",\"state\":\"Offline\",\"titleid\":null}",
+        "{\"userid\":\"2533274800000000\"}"
+    })
+    public void presence(String json) {
+        assertMatchesGson(Presence.class, XboxSerdes.PRESENCE_SERDES, json);
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {
+        "{\"date\":\"2023-01-01T10:00:00Z\",\"gamertag\":\"alice\",\"realName\":\"" + ESCAPES + "\",\"profilePicUrl\":\"https://example.com/a.png?x=1&y=2\"," +
+            "\"state\":\"Online\",\"titleid\":\"1144039928\",\"titlename\":\"Halo\"}",
+        "{\"date\":null,\"gamertag\":\"alice\",\"realName\":null}",
+        "{\"gamertag\":\"alice\",\"extra\":true}"
+    })
+    public void enrichedPresence(String json) {
+        assertMatchesGson(EnrichedPresence.class, XboxSerdes.ENRICHED_PRESENCE_SERDES, json);
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {
+        "{\"startDate\":\"2023-01-01T10:00:00Z\",\"endDate\":\"2023-01-01T11:30:00Z\",\"duration\":5400,\"gamertag\":\"alice\",\"realName\":\"" + ESCAPES + "\"," +
+            "\"profilePicUrl\":\"https://example.com/a.png\",\"state\":\"Online\",\"titleid\":\"1144039928\",\"titlename\":\"Halo\"}",
+        "{\"startDate\":\"2023-01-01T10:00:00Z\",\"endDate\":null,\"duration\":null,\"gamertag\":\"alice\"}",
+        "{\"gamertag\":\"alice\"}"
+    })
+    public void playSession(String json) {
+        assertMatchesGson(PlaySession.class, XboxSerdes.PLAY_SESSION_SERDES, json);
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {
+        "{\"sessions\":[{\"startDate\":\"2023-01-01T10:00:00Z\",\"endDate\":\"2023-01-01T11:30:00Z\",\"duration\":5400,\"gamertag\":\"alice\",\"titleid\":\"1\"}," +
+            "{\"startDate\":\"2023-01-02T10:00:00Z\",\"endDate\":\"2023-01-02T10:30:00Z\",\"duration\":1800,\"gamertag\":\"alice\",\"titlename\":\"" + ESCAPES + "\"}]}",
+        "{\"sessions\":[]}"
+    })
+    public void playSessions(String json) {
+        assertMatchesGson(PlaySessions.class, XboxSerdes.PLAY_SESSIONS_SERDES, json);
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {
+        "{\"gamertag\":\"alice\",\"realname\":\"" + ESCAPES + "\",\"games\":{\"1144039928\":{\"titleId\":\"1144039928\",\"titleName\":\"Halo <MCC>\"}," +
+            "\"219630713\":{\"titleId\":\"219630713\",\"titleName\":\"Forza\"}}}",
+        "{\"gamertag\":\"alice\",\"games\":{}}",
+        "{\"gamertag\":\"alice\",\"realname\":null,\"games\":{\"1\":{\"titleId\":\"1\"}}}"
+    })
+    public void playerGames(String json) {
+        assertMatchesGson(PlayerGames.class, XboxSerdes.GAME_COUNTS_SERDES, json);
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {
+        "{\"gamer\":\"" + ESCAPES + "\",\"score\":1234}",
+        "{\"gamer\":\"alice\",\"score\":null}",
+        "{\"gamer\":\"alice\"}"
+    })
+    public void weeklyGamerScore(String json) {
+        assertMatchesGson(WeeklyGamerScore.class, XboxSerdes.WEEKLY_SCORE_SERDES, json);
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {
+        "{\"gamers\":[{\"gamer\":\"alice\",\"score\":300},{\"gamer\":\"<bob>\",\"score\":200},{\"gamer\":\"carol\"}]}",
+        "{\"gamers\":[]}"
+    })
+    public void leaderboard(String json) {
+        assertMatchesGson(Leaderboard.class, XboxSerdes.LEADERBOARD_SERDES, json);
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {
+        "{\"xuid\":\"2533274800000000\",\"displayName\":\"Alice\",\"realName\":\"" + ESCAPES + "\",\"displayPicRaw\":\"https://example.com/a.png?a=1&b=2\",\"gamertag\":\"alice\"}",
+        "{\"xuid\":\"2533274800000000\",\"realName\":null,\"gamertag\":\"alice\",\"presenceState\":\"Online\",\"detail\":{\"bio\":\"hi\"}}",
+        "{\"xuid\":\"2533274800000000\"}"
+    })
+    public void userInfo(String json) {
+        assertMatchesGson(XboxUserInfo.class, XboxSerdes.USER_INFO_SERDES, json);
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {
+        "{\"titleid\":\"1144039928\",\"day\":\"2023-04-01\",\"players\":42}",
+        "{\"titleid\":\"" + ESCAPES + "\",\"players\":null}",
+        "{\"titleid\":\"1144039928\"}"
+    })
+    public void titlePlayers(String json) {
+        assertMatchesGson(TitlePlayers.class, XboxSerdes.TITLE_PLAYERS_SERDES, json);
+    }
+
+
+    @Test
+    public void readsNullDocumentsAsNull() {
+        assertNull(XboxSerdes.ACHIEVEMENT_SERDES.deserializer().deserialize("", "null".getBytes(StandardCharsets.UTF_8)));
+        assertNull(GSON.fromJson("null", Achievement.class));
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {
+        "{\"gamertag\":\"alice\"} junk",
+        "{\"gamertag\":\"alice\"}{\"gamertag\":\"bob\"}",
+        "{\"gamertag\":\"alice\"} {}",
+        "{\"gamertag\":\"alice\"}]"
+    })
+    public void rejectsContentAfterTheDocument(String json) {
+        assertThrows(JsonSyntaxException.class, () -> GSON.fromJson(json, Achievement.class));
+        assertThrows(SerializationException.class,
+                     () -> XboxSerdes.ACHIEVEMENT_SERDES.deserializer().deserialize("", json.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    @Test
+    public void allowsWhitespaceAfterTheDocument() {
+        final String json = "{\"gamertag\":\"alice\"}\n  ";
+        assertMatchesGson(Achievement.class, XboxSerdes.ACHIEVEMENT_SERDES, json);
+    }
+}
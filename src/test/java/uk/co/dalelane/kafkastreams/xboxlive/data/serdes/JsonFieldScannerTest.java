@@ -0,0 +1,142 @@
+package uk.co.dalelane.kafkastreams.xboxlive.data.serdes;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.nio.charset.StandardCharsets;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+/**
+ * Reading the gamertag from achievement events without parsing
+ *  the rest of the event. Wherever the scanner returns a value,
+ *  it should be the same as the gamertag read by the deserializer.
+ */
+public class JsonFieldScannerTest {
+
+    private static final JsonFieldScanner SCANNER = new JsonFieldScanner("gamertag");
+
+    private static String scan(String json) {
+        return SCANNER.readString(json.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /** checks the scanner gives the same value as the deserializer */
+    private static void assertGamertag(String expected, String json) {
+        byte[] bytes = json.getBytes(StandardCharsets.UTF_8);
+        assertEquals(expected, SCANNER.readString(bytes));
+        assertEquals(expected, XboxSerdes.ACHIEVEMENT_SERDES.deserializer().deserialize("", bytes).getGamertag());
+    }
+
+
+    @Test
+    public void readsSimpleValues() {
+        assertGamertag("alice", "{\"gamertag\":\"alice\"}");
+        assertGamertag("alice", "{\"name\":\"Finish the game\",\"gamertag\":\"alice\",\"gamerscore\":50}");
+        assertGamertag("", "{\"gamertag\":\"\"}");
+    }
+
+    @Test
+    public void readsValuesWithEscapes() {
+        assertGamertag("al\"ice", "{\"gamertag\":\"al\\\"ice\"}");
+        assertGamertag("a\\b/c", "{\"gamertag\":\"a\\\\b\\/c\"}");
+        assertGamertag("tab\there\nnew\rline\b\f", "{\"gamertag\":\"tab\\there\\nnew\\rline\\b\\f\"}");
+        assertGamertag("trailing\\", "{\"gamertag\":\"trailing\\\\\"}");
+    }
+
+    @Test
+    public void readsUnicode() {
+        assertGamertag("caf\u00e9", "{\"gamertag\":\"caf\\u00e9\"}");
+        assertGamertag("caf\u00e9", "{\"gamertag\":\"caf\u00e9\"}");
+        assertGamertag("\u00c9a\u00e9", "{\"gamertag\":\"\\u00C9a\\u00e9\"}");
+        // outside the basic plane, escaped as a surrogate pair and unescaped
+        assertGamertag("\uD83C\uDFAE gamer", "{\"gamertag\":\"\\uD83C\\uDFAE gamer\"}");
+        assertGamertag("\uD83C\uDFAE gamer", "{\"gamertag\":\"\uD83C\uDFAE gamer\"}");
+        assertGamertag("\u65E5\u672C", "{\"gamertag\":\"\u65E5\u672C\"}");
+    }
+
+    @Test
+    public void readsEscapedFieldNames() {
+        assertGamertag("alice", "{\"gamer\\u0074ag\":\"alice\"}");
+        assertGamertag("alice", "{\"name\":\"x\",\"\\u0067amertag\":\"alice\"}");
+        // not the same field, even though the bytes are the same length
+        assertEquals(null, scan("{\"gamer\\ttag\":\"alice\"}"));
+    }
+
+    @Test
+    public void skipsOtherValues() {
+        assertGamertag("alice",
+            "{\"name\":\"has \\\"gamertag\\\":\\\"bob\\\" in it\"," +
+            "\"rarity\":{\"currentCategory\":\"Rare\",\"gamertag\":\"bob\",\"nested\":[1,[2,{}],\"]}\"]}," +
+            "\"mediaAssets\":[{\"url\":\"https://example.com/{a}\"}]," +
+            "\"progress\":null,\"unlocked\":true,\"secret\":false,\"score\":-1.5e3," +
+            "\"empty\":{},\"none\":[]," +
+            "\"gamertag\":\"alice\"}");
+    }
+
+    @Test
+    public void ignoresNestedFieldsWithTheSameName() {
+        assertNull(scan("{\"user\":{\"gamertag\":\"bob\"}}"));
+        assertNull(scan("{\"users\":[{\"gamertag\":\"bob\"}]}"));
+    }
+
+    @Test
+    public void usesTheLastRepeatedField() {
+        assertGamertag("bob", "{\"gamertag\":\"alice\",\"gamertag\":\"bob\"}");
+        assertNull(scan("{\"gamertag\":\"alice\",\"gamertag\":null}"));
+    }
+
+    @Test
+    public void readsOtherScalarsAsText() {
+        assertEquals("12345", scan("{\"gamertag\":12345}"));
+        assertEquals("-1.5e3", scan("{\"gamertag\":-1.5e3}"));
+        assertEquals("true", scan("{\"gamertag\":true}"));
+        assertEquals("false", scan("{\"gamertag\":false}"));
+        assertNull(scan("{\"gamertag\":null}"));
+    }
+
+    @Test
+    public void readsMissingFieldsAsNull() {
+        assertNull(scan("{}"));
+        assertNull(scan("  { }  "));
+        assertNull(scan("{\"name\":\"alice\"}"));
+        assertNull(scan("{\"Gamertag\":\"alice\"}"));
+        assertNull(scan("{\"gamertags\":\"alice\"}"));
+    }
+
+    @Test
+    public void allowsWhitespace() {
+        assertGamertag("alice", " \n{ \"name\" : \"x\" ,\r\n\t\"gamertag\"\t:\n\"alice\" \n}\n");
+        assertGamertag("alice", "{\"score\" : 10 , \"gamertag\":\"alice\"}");
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {
+        "",
+        "   ",
+        "[]",
+        "\"alice\"",
+        "{",
+        "{\"gamertag\"",
+        "{\"gamertag\":",
+        "{\"gamertag\":\"alice",
+        "{\"gamertag\":\"alice\"",
+        "{\"gamertag\":\"alice\",}",
+        "{\"gamertag\" \"alice\"}",
+        "{\"gamertag\":\"alice\" \"name\":\"x\"}",
+        "{'gamertag':'alice'}",
+        "{gamertag:\"alice\"}",
+        "{\"gamertag\":\"a\\qb\"}",
+        "{\"gamertag\":\"\\u00g9\"}",
+        "{\"gamertag\":\"\\u00\"}",
+        "{\"gamertag\":{\"name\":\"alice\"}}",
+        "{\"gamertag\":[\"alice\"]}",
+        "{\"name\":,\"gamertag\":\"alice\"}",
+        "{\"name\":{\"a\":1,\"gamertag\":\"alice\"}",
+    })
+    public void rejectsJsonItCantRead(String json) {
+        assertThrows(IllegalArgumentException.class, () -> scan(json));
+    }
+}
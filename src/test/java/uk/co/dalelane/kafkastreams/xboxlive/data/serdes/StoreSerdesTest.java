@@ -0,0 +1,196 @@
+package uk.co.dalelane.kafkastreams.xboxlive.data.serdes;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import org.apache.kafka.common.errors.SerializationException;
+import org.apache.kafka.common.serialization.Serde;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.EnumSource;
+
+import uk.co.dalelane.kafkastreams.xboxlive.data.counts.DistinctTitles;
+import uk.co.dalelane.kafkastreams.xboxlive.data.counts.HyperLogLog;
+import uk.co.dalelane.kafkastreams.xboxlive.data.counts.PlayerGames;
+import uk.co.dalelane.kafkastreams.xboxlive.data.sessions.PlaySession;
+import uk.co.dalelane.kafkastreams.xboxlive.data.sessions.PlaySessions;
+
+/**
+ * Reading and writing state store values in the binary format, and
+ *  reading values written by earlier versions.
+ */
+public class StoreSerdesTest {
+
+    private static final String SESSION_JSON = "{\"startDate\":\"2023-01-01T10:00:00.250Z\",\"endDate\":\"2023-01-01T11:30:00Z\",\"duration\":5399," +
+                                               "\"gamertag\":\"alice\",\"realName\":\"Alice é ☃\",\"state\":\"Online\"," +
+                                               "\"titleid\":\"1144039928\",\"titlename\":\"Halo\"}";
+    private static final String SHORT_SESSION_JSON = "{\"startDate\":\"2023-01-02T10:00:00Z\",\"endDate\":\"2023-01-02T10:10:00Z\",\"duration\":600," +
+                                                     "\"gamertag\":\"alice\",\"titleid\":\"219630713\"}";
+    private static final String GAMES_JSON = "{\"gamertag\":\"alice\",\"realname\":\"Alice\",\"games\":{" +
+                                             "\"1144039928\":{\"titleId\":\"1144039928\",\"titleName\":\"Halo\"}," +
+                                             "\"219630713\":{\"titleId\":\"219630713\",\"titleName\":\"Forza\"}," +
+                                             "\"not-a-number\":{\"titleId\":\"not-a-number\",\"titleName\":\"Unknown\"}}}";
+
+
+    private static byte[] bytes(String json) {
+        return json.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static PlaySession session(String json) {
+        return XboxSerdes.PLAY_SESSION_SERDES.deserializer().deserialize("", bytes(json));
+    }
+
+    private static String json(PlaySession session) {
+        return new String(XboxSerdes.PLAY_SESSION_SERDES.serializer().serialize("", session), StandardCharsets.UTF_8);
+    }
+
+    private static String json(PlayerGames games) {
+        return new String(XboxSerdes.GAME_COUNTS_SERDES.serializer().serialize("", games), StandardCharsets.UTF_8);
+    }
+
+    private static List<String> json(PlaySessions sessions) {
+        return sessions.getSessions().stream().map(StoreSerdesTest::json).collect(Collectors.toList());
+    }
+
+    /** every shorter prefix of a binary value should be rejected */
+    private static <T> void assertRejectsTruncated(Serde<T> serdes, byte[] value) {
+        for (int length = 1; length < value.length; length++) {
+            byte[] truncated = Arrays.copyOf(value, length);
+            assertThrows(SerializationException.class,
+                         () -> serdes.deserializer().deserialize("", truncated),
+                         "truncated to " + length + " bytes");
+        }
+    }
+
+
+    @ParameterizedTest
+    @EnumSource(StateStoreFormat.class)
+    public void roundTripsPlaySessions(StateStoreFormat format) {
+        Serde<PlaySession> serdes = XboxSerdes.playSessionStoreSerdes(format);
+        byte[] stored = serdes.serializer().serialize("", session(SESSION_JSON));
+        assertEquals(json(session(SESSION_JSON)), json(serdes.deserializer().deserialize("", stored)));
+        assertNull(serdes.serializer().serialize("", null));
+        assertNull(serdes.deserializer().deserialize("", null));
+    }
+
+    @ParameterizedTest
+    @EnumSource(StateStoreFormat.class)
+    public void roundTripsGameCounts(StateStoreFormat format) {
+        Serde<PlayerGames> serdes = XboxSerdes.gameCountsStoreSerdes(format);
+        PlayerGames games = XboxSerdes.GAME_COUNTS_SERDES.deserializer().deserialize("", bytes(GAMES_JSON));
+        byte[] stored = serdes.serializer().serialize("", games);
+        assertEquals(json(games), json(serdes.deserializer().deserialize("", stored)));
+    }
+
+    @Test
+    public void writesBinaryWithVersionByte() {
+        byte[] stored = XboxSerdes.playSessionStoreSerdes(StateStoreFormat.BINARY).serializer().serialize("", session(SESSION_JSON));
+        assertEquals(BinaryStoreSerializer.VERSION_1, stored[0]);
+        byte[] titles = XboxSerdes.distinctTitlesStoreSerdes().serializer().serialize("", new DistinctTitles());
+        assertEquals(BinaryStoreSerializer.VERSION_2, titles[0]);
+    }
+
+    @Test
+    public void readsJsonWrittenBeforeSwitchingToBinary() {
+        Serde<PlaySession> serdes = XboxSerdes.playSessionStoreSerdes(StateStoreFormat.BINARY);
+        assertEquals(json(session(SESSION_JSON)), json(serdes.deserializer().deserialize("", bytes(SESSION_JSON))));
+    }
+
+
+    @Test
+    public void roundTripsDistinctTitles() {
+        Serde<DistinctTitles> serdes = XboxSerdes.distinctTitlesStoreSerdes();
+        DistinctTitles titles = new DistinctTitles();
+        titles.add(1144039928L);
+        titles.add(219630713L);
+        titles.add(0L);
+        titles.add(Long.MAX_VALUE);
+
+        DistinctTitles read = serdes.deserializer().deserialize("", serdes.serializer().serialize("", titles));
+        assertEquals(titles.toString(), read.toString());
+        assertEquals(0, serdes.deserializer().deserialize("", serdes.serializer().serialize("", new DistinctTitles())).size());
+    }
+
+    @ParameterizedTest
+    @EnumSource(StateStoreFormat.class)
+    public void upgradesGameCountsToDistinctTitles(StateStoreFormat format) {
+        PlayerGames games = XboxSerdes.GAME_COUNTS_SERDES.deserializer().deserialize("", bytes(GAMES_JSON));
+        byte[] legacy = XboxSerdes.gameCountsStoreSerdes(format).serializer().serialize("", games);
+
+        DistinctTitles titles = XboxSerdes.distinctTitlesStoreSerdes().deserializer().deserialize("", legacy);
+        // titles that don't have a numeric id are dropped
+        assertEquals("DistinctTitles [219630713, 1144039928]", titles.toString());
+    }
+
+    @Test
+    public void roundTripsListsOfPlaySessions() {
+        Serde<PlaySessions> serdes = XboxSerdes.playSessionsStoreSerdes();
+        PlaySessions sessions = new PlaySessions();
+        sessions.add(session(SESSION_JSON), 5);
+        sessions.add(session(SHORT_SESSION_JSON), 5);
+
+        PlaySessions read = serdes.deserializer().deserialize("", serdes.serializer().serialize("", sessions));
+        assertEquals(json(sessions), json(read));
+        assertEquals(List.of(), json(serdes.deserializer().deserialize("", serdes.serializer().serialize("", new PlaySessions()))));
+    }
+
+    @ParameterizedTest
+    @EnumSource(StateStoreFormat.class)
+    public void upgradesLongestPlaySessionToList(StateStoreFormat format) {
+        byte[] legacy = XboxSerdes.playSessionStoreSerdes(format).serializer().serialize("", session(SESSION_JSON));
+
+        PlaySessions sessions = XboxSerdes.playSessionsStoreSerdes().deserializer().deserialize("", legacy);
+        assertEquals(List.of(json(session(SESSION_JSON))), json(sessions));
+    }
+
+
+    @Test
+    public void rejectsTruncatedBinaryValues() {
+        assertRejectsTruncated(XboxSerdes.playSessionStoreSerdes(StateStoreFormat.BINARY),
+                               XboxSerdes.playSessionStoreSerdes(StateStoreFormat.BINARY).serializer().serialize("", session(SESSION_JSON)));
+
+        PlayerGames games = XboxSerdes.GAME_COUNTS_SERDES.deserializer().deserialize("", bytes(GAMES_JSON));
+        assertRejectsTruncated(XboxSerdes.gameCountsStoreSerdes(StateStoreFormat.BINARY),
+                               XboxSerdes.gameCountsStoreSerdes(StateStoreFormat.BINARY).serializer().serialize("", games));
+
+        DistinctTitles titles = new DistinctTitles();
+        titles.add(1144039928L);
+        titles.add(219630713L);
+        assertRejectsTruncated(XboxSerdes.distinctTitlesStoreSerdes(),
+                               XboxSerdes.distinctTitlesStoreSerdes().serializer().serialize("", titles));
+
+        PlaySessions sessions = new PlaySessions();
+        sessions.add(session(SESSION_JSON), 5);
+        sessions.add(session(SHORT_SESSION_JSON), 5);
+        assertRejectsTruncated(XboxSerdes.playSessionsStoreSerdes(),
+                               XboxSerdes.playSessionsStoreSerdes().serializer().serialize("", sessions));
+
+        HyperLogLog sketch = new HyperLogLog();
+        sketch.add("alice");
+        sketch.add("bob");
+        assertRejectsTruncated(XboxSerdes.PLAYERS_SKETCH_STORE_SERDES,
+                               XboxSerdes.PLAYERS_SKETCH_STORE_SERDES.serializer().serialize("", sketch));
+    }
+
+    @Test
+    public void rejectsCorruptSizes() {
+        // version byte, then a size far larger than the value
+        byte[] corrupt = { BinaryStoreSerializer.VERSION_2, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, 0x07, 0x01 };
+        assertThrows(SerializationException.class, () -> XboxSerdes.distinctTitlesStoreSerdes().deserializer().deserialize("", corrupt));
+        assertThrows(SerializationException.class, () -> XboxSerdes.playSessionsStoreSerdes().deserializer().deserialize("", corrupt));
+    }
+
+    @Test
+    public void rejectsUnknownVersionsForBinaryOnlyValues() {
+        byte[] sketch = XboxSerdes.PLAYERS_SKETCH_STORE_SERDES.serializer().serialize("", new HyperLogLog());
+        sketch[0] = 0x7F;
+        assertThrows(SerializationException.class, () -> XboxSerdes.PLAYERS_SKETCH_STORE_SERDES.deserializer().deserialize("", sketch));
+        assertThrows(SerializationException.class, () -> XboxSerdes.PLAYERS_SKETCH_STORE_SERDES.deserializer().deserialize("", bytes("{}")));
+    }
+}
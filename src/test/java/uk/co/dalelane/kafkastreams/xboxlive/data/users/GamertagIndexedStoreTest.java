@@ -0,0 +1,97 @@
+package uk.co.dalelane.kafkastreams.xboxlive.data.users;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+
+import org.apache.kafka.common.utils.Bytes;
+import org.apache.kafka.streams.KeyValue;
+import org.apache.kafka.streams.StreamsConfig;
+import org.apache.kafka.streams.processor.TaskId;
+import org.apache.kafka.streams.processor.api.MockProcessorContext;
+import org.apache.kafka.streams.state.Stores;
+import org.apache.kafka.streams.state.TimestampedKeyValueStore;
+import org.apache.kafka.streams.state.ValueAndTimestamp;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import uk.co.dalelane.kafkastreams.xboxlive.data.serdes.XboxSerdes;
+
+public class GamertagIndexedStoreTest {
+
+    @TempDir
+    Path stateDir;
+
+
+    private TimestampedKeyValueStore<String, XboxUserInfo> openStore(Map<String, Bytes> index) {
+        final Properties props = new Properties();
+        props.put(StreamsConfig.APPLICATION_ID_CONFIG, "test");
+        props.put(StreamsConfig.BOOTSTRAP_SERVERS_CONFIG, "dummy:9092");
+        final MockProcessorContext<String, XboxUserInfo> context = new MockProcessorContext<>(props, new TaskId(0, 0), new File(stateDir.toString()));
+
+        final TimestampedKeyValueStore<String, XboxUserInfo> store = Stores.timestampedKeyValueStoreBuilder(
+                GamertagIndexedStore.supplier(Stores.persistentTimestampedKeyValueStore("users"), index),
+                XboxSerdes.GAMERTAG_SERDES,
+                XboxSerdes.USER_INFO_SERDES)
+            .withLoggingDisabled()
+            .withCachingDisabled()
+            .build();
+        store.init(context.getStateStoreContext(), store);
+        return store;
+    }
+
+    private static ValueAndTimestamp<XboxUserInfo> user(String xuid, String gamertag) {
+        String json = "{\"xuid\":\"" + xuid + "\",\"gamertag\":\"" + gamertag + "\"}";
+        XboxUserInfo user = XboxSerdes.USER_INFO_SERDES.deserializer()
+            .deserialize("", json.getBytes(StandardCharsets.UTF_8));
+        return ValueAndTimestamp.make(user, 0L);
+    }
+
+
+    @Test
+    public void indexesGamertagsAsUsersChange() {
+        final Map<String, Bytes> index = new HashMap<>();
+        final TimestampedKeyValueStore<String, XboxUserInfo> store = openStore(index);
+
+        store.put("1001", user("1001", "alice"));
+        store.putAll(List.of(KeyValue.pair("1002", user("1002", "bob")),
+                             KeyValue.pair("1003", user("1003", "carol"))));
+        assertEquals(Map.of("alice", Bytes.wrap("1001".getBytes(StandardCharsets.UTF_8)),
+                            "bob",   Bytes.wrap("1002".getBytes(StandardCharsets.UTF_8)),
+                            "carol", Bytes.wrap("1003".getBytes(StandardCharsets.UTF_8))),
+                     index);
+
+        store.put("1001", user("1001", "alice2"));
+        store.delete("1002");
+        store.put("1003", null);
+        assertEquals(Map.of("alice2", Bytes.wrap("1001".getBytes(StandardCharsets.UTF_8))), index);
+
+        store.close();
+    }
+
+    @Test
+    public void rebuildsIndexWhenReopened() {
+        final TimestampedKeyValueStore<String, XboxUserInfo> store = openStore(new HashMap<>());
+        store.put("1001", user("1001", "alice"));
+        store.put("1002", user("1002", "bob"));
+        store.close();
+
+        final Map<String, Bytes> index = new HashMap<>();
+        index.put("stale", Bytes.wrap(new byte[0]));
+        final TimestampedKeyValueStore<String, XboxUserInfo> reopened = openStore(index);
+        assertEquals(2, index.size());
+        assertTrue(index.containsKey("alice"));
+        assertTrue(index.containsKey("bob"));
+        assertEquals("alice", reopened.get("1001").value().getGamertag());
+        assertNull(reopened.get("1003"));
+        reopened.close();
+    }
+}
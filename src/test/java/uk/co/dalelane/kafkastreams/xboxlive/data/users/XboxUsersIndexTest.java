@@ -0,0 +1,79 @@
+package uk.co.dalelane.kafkastreams.xboxlive.data.users;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+import org.junit.jupiter.api.Test;
+
+public class XboxUsersIndexTest {
+
+    private static XboxUsersIndex index(String people) throws IOException {
+        byte[] json = ("{\"people\":[" + people + "]}").getBytes(StandardCharsets.UTF_8);
+        return new XboxUsersIndex(XboxUsersFactory.parseXboxUsers(json).getPeople());
+    }
+
+
+    @Test
+    public void looksUpUsersByXuid() throws IOException {
+        XboxUsersIndex users = index("{\"xuid\":\"2535405290459756\",\"gamertag\":\"alice\"}," +
+                                     "{\"xuid\":\"2533274792465132\",\"gamertag\":\"bob\"}");
+
+        assertEquals(2, users.size());
+        assertEquals("alice", users.getUserInfo("2535405290459756").getGamertag());
+        assertEquals("bob", users.getUserInfo(2533274792465132L).getGamertag());
+        assertNull(users.getUserInfo("2533274792465133"));
+        assertNull(users.getUserInfo(0));
+    }
+
+    @Test
+    public void checksKnownGamertags() throws IOException {
+        XboxUsersIndex users = index("{\"xuid\":\"1\",\"gamertag\":\"alice\"}");
+
+        assertTrue(users.isKnownGamertag("alice"));
+        assertFalse(users.isKnownGamertag("Alice"));
+        assertFalse(users.isKnownGamertag("bob"));
+        assertFalse(users.isKnownGamertag(null));
+    }
+
+    @Test
+    public void ignoresInvalidXuids() throws IOException {
+        XboxUsersIndex users = index("{\"xuid\":\"not-a-number\",\"gamertag\":\"alice\"}," +
+                                     "{\"gamertag\":\"bob\"}," +
+                                     "{\"xuid\":\"3\",\"gamertag\":\"carol\"}");
+
+        assertEquals(1, users.size());
+        assertNull(users.getUserInfo("not-a-number"));
+        assertEquals("carol", users.getUserInfo("3").getGamertag());
+        // gamertags are still known, even without a valid xuid
+        assertTrue(users.isKnownGamertag("alice"));
+        assertTrue(users.isKnownGamertag("bob"));
+    }
+
+    @Test
+    public void parsesXuids() {
+        assertEquals(0, XboxUsersIndex.parseXuid("0"));
+        assertEquals(2535405290459756L, XboxUsersIndex.parseXuid("2535405290459756"));
+        assertEquals(Long.MAX_VALUE, XboxUsersIndex.parseXuid(Long.toString(Long.MAX_VALUE)));
+
+        assertEquals(XboxUsersIndex.INVALID_XUID, XboxUsersIndex.parseXuid(null));
+        assertEquals(XboxUsersIndex.INVALID_XUID, XboxUsersIndex.parseXuid(""));
+        assertEquals(XboxUsersIndex.INVALID_XUID, XboxUsersIndex.parseXuid("-1"));
+        assertEquals(XboxUsersIndex.INVALID_XUID, XboxUsersIndex.parseXuid("12a"));
+        assertEquals(XboxUsersIndex.INVALID_XUID, XboxUsersIndex.parseXuid(" 1"));
+        assertEquals(XboxUsersIndex.INVALID_XUID, XboxUsersIndex.parseXuid("9223372036854775808"));
+        assertEquals(XboxUsersIndex.INVALID_XUID, XboxUsersIndex.parseXuid("9999999999999999999"));
+        assertEquals(XboxUsersIndex.INVALID_XUID, XboxUsersIndex.parseXuid("12345678901234567890"));
+    }
+
+    @Test
+    public void emptyIndex() {
+        assertEquals(0, XboxUsersIndex.EMPTY.size());
+        assertNull(XboxUsersIndex.EMPTY.getUserInfo("1"));
+        assertFalse(XboxUsersIndex.EMPTY.isKnownGamertag("alice"));
+    }
+}
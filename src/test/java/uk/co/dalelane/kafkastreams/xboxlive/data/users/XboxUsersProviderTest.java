@@ -0,0 +1,165 @@
+package uk.co.dalelane.kafkastreams.xboxlive.data.users;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Properties;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import uk.co.dalelane.kafkastreams.xboxlive.utils.Config;
+
+/**
+ * Loading known users from a snapshot file, and refreshing them
+ *  from a stub of the xbl API.
+ */
+public class XboxUsersProviderTest {
+
+    private static final String API_KEY = "test-api-key";
+    private static final String USERS = "{\"people\":[{\"xuid\":\"1001\",\"gamertag\":\"%s\"}]}";
+
+    @TempDir
+    Path tempDir;
+
+    private HttpServer server;
+    private volatile String response;
+    private volatile int responseCode = 200;
+    private final AtomicInteger requests = new AtomicInteger();
+    private volatile String apiKeyReceived;
+
+    private Path snapshotFile;
+    private XboxUsersProvider provider;
+
+
+    @BeforeEach
+    public void setup() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/friends", this::handle);
+        server.start();
+
+        snapshotFile = tempDir.resolve("xbox-users.json");
+    }
+
+    @AfterEach
+    public void teardown() {
+        if (provider != null) {
+            provider.close();
+        }
+        server.stop(0);
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        requests.incrementAndGet();
+        apiKeyReceived = exchange.getRequestHeaders().getFirst("x-authorization");
+
+        byte[] body = response.getBytes(StandardCharsets.UTF_8);
+        exchange.sendResponseHeaders(responseCode, body.length);
+        exchange.getResponseBody().write(body);
+        exchange.close();
+    }
+
+    private XboxUsersProvider createProvider() {
+        return createProvider(new Properties());
+    }
+
+    private XboxUsersProvider createProvider(Properties config) {
+        config.put(Config.XBOX_API_URL, "http://127.0.0.1:" + server.getAddress().getPort() + "/friends");
+        config.put(Config.XBOX_API_KEY, API_KEY);
+        config.put(Config.XBOX_API_TIMEOUT_SECONDS, "5");
+        config.put(Config.XBOX_USERS_SNAPSHOT_FILE, snapshotFile.toString());
+        provider = new XboxUsersProvider(config);
+        return provider;
+    }
+
+    private void waitFor(String gamertag) throws InterruptedException {
+        for (int i = 0; i < 100 && !provider.getUsers().isKnownGamertag(gamertag); i++) {
+            Thread.sleep(50);
+        }
+    }
+
+
+    @Test
+    public void waitsForUsersWhenThereIsNoSnapshot() throws IOException {
+        response = String.format(USERS, "alice");
+
+        createProvider().start();
+
+        // the users are available as soon as start returns
+        assertTrue(provider.getUsers().isKnownGamertag("alice"));
+        assertEquals("alice", provider.getUsers().getUserInfo("1001").getGamertag());
+        assertEquals(1, requests.get());
+        assertEquals(API_KEY, apiKeyReceived);
+
+        // and saved for the next start
+        assertEquals(response, Files.readString(snapshotFile));
+    }
+
+    @Test
+    public void startsFromSnapshotThenRefreshesInTheBackground() throws IOException, InterruptedException {
+        Files.writeString(snapshotFile, String.format(USERS, "alice"));
+        response = String.format(USERS, "bob");
+
+        createProvider().start();
+        final XboxUsersIndex fromSnapshot = provider.getUsers();
+
+        waitFor("bob");
+        assertTrue(fromSnapshot.isKnownGamertag("alice"));
+        assertTrue(provider.getUsers().isKnownGamertag("bob"));
+        assertFalse(provider.getUsers().isKnownGamertag("alice"));
+        assertEquals(response, Files.readString(snapshotFile));
+    }
+
+    @Test
+    public void keepsSnapshotIfRefreshFails() throws IOException, InterruptedException {
+        final String snapshot = String.format(USERS, "alice");
+        Files.writeString(snapshotFile, snapshot);
+        response = "unavailable";
+        responseCode = 503;
+
+        createProvider().start();
+        for (int i = 0; i < 100 && requests.get() == 0; i++) {
+            Thread.sleep(50);
+        }
+
+        assertEquals(1, requests.get());
+        assertTrue(provider.getUsers().isKnownGamertag("alice"));
+        assertEquals(snapshot, Files.readString(snapshotFile));
+    }
+
+    @Test
+    public void fetchesUsersIfSnapshotCantBeRead() throws IOException {
+        Files.writeString(snapshotFile, "not json");
+        response = String.format(USERS, "alice");
+
+        createProvider().start();
+
+        assertTrue(provider.getUsers().isKnownGamertag("alice"));
+        assertNull(provider.getUsers().getUserInfo("2002"));
+    }
+
+    @Test
+    public void failsIfUsersCantBeFetchedWithinMaxWait() {
+        response = "unavailable";
+        responseCode = 503;
+        final Properties config = new Properties();
+        config.put(Config.XBOX_USERS_MAX_WAIT_SECONDS, "1");
+
+        assertThrows(IllegalStateException.class, () -> createProvider(config).start());
+        assertEquals(2, requests.get());
+    }
+}
@@ -0,0 +1,112 @@
+package uk.co.dalelane.kafkastreams.xboxlive.streams.counting;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Properties;
+
+import org.apache.kafka.common.serialization.IntegerDeserializer;
+import org.apache.kafka.common.serialization.StringDeserializer;
+import org.apache.kafka.common.serialization.StringSerializer;
+import org.apache.kafka.streams.KeyValue;
+import org.apache.kafka.streams.StreamsBuilder;
+import org.apache.kafka.streams.StreamsConfig;
+import org.apache.kafka.streams.TestInputTopic;
+import org.apache.kafka.streams.TestOutputTopic;
+import org.apache.kafka.streams.Topology;
+import org.apache.kafka.streams.TopologyTestDriver;
+import org.apache.kafka.streams.state.KeyValueStore;
+import org.apache.kafka.streams.state.ValueAndTimestamp;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import uk.co.dalelane.kafkastreams.xboxlive.data.counts.DistinctTitles;
+
+/**
+ * Counting the distinct games played by each gamer, and outputting
+ *  the names of the games once.
+ */
+public class GamesPlayedCounterTest {
+
+    private static final String GAME = "{\"gamertag\":\"%s\",\"state\":\"Online\",\"titleid\":\"%s\",\"titlename\":\"%s\"}";
+
+    @TempDir
+    Path stateDir;
+
+    private TopologyTestDriver driver;
+    private TestInputTopic<String, String> games;
+    private TestOutputTopic<String, Integer> counts;
+    private TestOutputTopic<String, String> titles;
+
+
+    @BeforeEach
+    public void setup() {
+        final StreamsBuilder builder = new StreamsBuilder();
+        GamesPlayedCounter.create(builder);
+
+        final Properties props = new Properties();
+        props.put(StreamsConfig.APPLICATION_ID_CONFIG, "test");
+        props.put(StreamsConfig.BOOTSTRAP_SERVERS_CONFIG, "dummy:9092");
+        props.put(StreamsConfig.STATE_DIR_CONFIG, stateDir.toString());
+        driver = new TopologyTestDriver(builder.build(), props);
+
+        games = driver.createInputTopic("XBOX.PRESENCE.GAME", new StringSerializer(), new StringSerializer());
+        counts = driver.createOutputTopic("XBOX.GAMES.COUNTS", new StringDeserializer(), new IntegerDeserializer());
+        titles = driver.createOutputTopic("XBOX.GAMES.TITLES", new StringDeserializer(), new StringDeserializer());
+    }
+
+    @AfterEach
+    public void teardown() {
+        driver.close();
+    }
+
+    private void play(String gamertag, String titleId, String titleName) {
+        games.pipeInput(gamertag, String.format(GAME, gamertag, titleId, titleName));
+    }
+
+
+    @Test
+    public void countsEachGameOncePerGamer() {
+        play("alice", "1144039928", "Halo");
+        play("alice", "1144039928", "Halo");
+        play("alice", "219630713", "Forza");
+        play("bob", "1144039928", "Halo");
+        play("alice", "not-a-number", "Unknown");
+        play("alice", "219630713", "Forza");
+
+        assertEquals(List.of(KeyValue.pair("alice", 1),
+                             KeyValue.pair("alice", 2),
+                             KeyValue.pair("bob", 1)),
+                     counts.readKeyValuesToList());
+
+        KeyValueStore<String, ValueAndTimestamp<DistinctTitles>> store = driver.getTimestampedKeyValueStore(GamesPlayedCounter.COUNTS_STORE_NAME);
+        assertEquals("DistinctTitles [219630713, 1144039928]", store.get("alice").value().toString());
+    }
+
+    @Test
+    public void outputsEachTitleNameOnce() {
+        play("alice", "1144039928", "Halo");
+        play("bob", "1144039928", "Halo");
+        play("carol", "1144039928", "Halo");
+        play("bob", "219630713", "Forza");
+        play("alice", "1144039928", "Halo: MCC");
+
+        assertEquals(List.of(KeyValue.pair("1144039928", "Halo"),
+                             KeyValue.pair("219630713", "Forza"),
+                             KeyValue.pair("1144039928", "Halo: MCC")),
+                     titles.readKeyValuesToList());
+    }
+
+    @Test
+    public void keysTitleNamesByTitleId() {
+        final StreamsBuilder builder = new StreamsBuilder();
+        GamesPlayedCounter.create(builder);
+        final Topology topology = builder.build();
+
+        assertTrue(topology.describe().toString().contains("title_names_by_titleid-repartition"));
+    }
+}
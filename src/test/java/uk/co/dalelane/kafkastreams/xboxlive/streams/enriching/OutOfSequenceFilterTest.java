@@ -0,0 +1,130 @@
+package uk.co.dalelane.kafkastreams.xboxlive.streams.enriching;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import org.apache.kafka.common.serialization.Serdes;
+import org.apache.kafka.streams.processor.api.MockProcessorContext;
+import org.apache.kafka.streams.processor.api.Processor;
+import org.apache.kafka.streams.processor.api.Record;
+import org.apache.kafka.streams.state.KeyValueStore;
+import org.apache.kafka.streams.state.Stores;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import uk.co.dalelane.kafkastreams.xboxlive.data.presence.Presence;
+import uk.co.dalelane.kafkastreams.xboxlive.data.serdes.XboxSerdes;
+
+/**
+ * Dropping presence events that are older than the last event
+ *  seen for the same user.
+ */
+public class OutOfSequenceFilterTest {
+
+    private static final String PRESENCE = "{\"userid\":\"%s\",\"state\":\"Online\",\"titleid\":\"%s\",\"date\":\"%s\"}";
+    private static final Instant START = Instant.parse("2023-01-01T10:00:00Z");
+
+    private MockProcessorContext<String, Presence> context;
+    private KeyValueStore<String, Long> store;
+    private Processor<String, Presence, String, Presence> processor;
+
+
+    @BeforeEach
+    public void setup() {
+        context = new MockProcessorContext<>();
+        store = Stores.keyValueStoreBuilder(Stores.inMemoryKeyValueStore(PresenceEnricher.STATE_STORE_NAME),
+                                            XboxSerdes.USERID_SERDES,
+                                            Serdes.Long())
+            .withLoggingDisabled()
+            .build();
+        store.init(context.getStateStoreContext(), store);
+        context.addStateStore(store);
+
+        processor = createProcessor();
+    }
+
+    @AfterEach
+    public void teardown() {
+        store.close();
+    }
+
+    private Processor<String, Presence, String, Presence> createProcessor() {
+        Processor<String, Presence, String, Presence> newProcessor = new PresenceEnricher.OutOfSequenceFilterSupplier().get();
+        newProcessor.init(context);
+        return newProcessor;
+    }
+
+    private static Presence presence(String userid, String titleid, int minutes) {
+        String json = String.format(PRESENCE, userid, titleid, START.plusSeconds(minutes * 60L));
+        return XboxSerdes.PRESENCE_SERDES.deserializer().deserialize("", json.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private void process(String userid, String titleid, int minutes) {
+        processor.process(new Record<>(userid, presence(userid, titleid, minutes), 0L));
+    }
+
+    private List<String> forwardedTitles() {
+        List<String> titles = context.forwarded().stream()
+            .map(forwarded -> forwarded.record().value().getTitleId())
+            .collect(Collectors.toList());
+        context.resetForwards();
+        return titles;
+    }
+
+
+    @Test
+    public void dropsEventsOlderThanTheLastEvent() {
+        process("1001", "a", 10);
+        process("1001", "b", 5);
+        process("1001", "c", 20);
+        process("1001", "d", 15);
+        assertEquals(List.of("a", "c"), forwardedTitles());
+    }
+
+    @Test
+    public void forwardsEventsAtTheSameTime() {
+        process("1001", "a", 10);
+        process("1001", "b", 10);
+        assertEquals(List.of("a", "b"), forwardedTitles());
+    }
+
+    @Test
+    public void comparesEachUserSeparately() {
+        process("1001", "a", 10);
+        process("1002", "b", 5);
+        process("1001", "c", 6);
+        process("1002", "d", 7);
+        assertEquals(List.of("a", "b", "d"), forwardedTitles());
+        assertEquals(10 * 60 * 1000L, store.get("1001") - START.toEpochMilli());
+        assertEquals(7 * 60 * 1000L, store.get("1002") - START.toEpochMilli());
+    }
+
+    @Test
+    public void remembersEventsInTheStore() {
+        process("1001", "a", 10);
+
+        // e.g. after a restart
+        processor = createProcessor();
+        process("1001", "b", 5);
+        process("1001", "c", 15);
+        assertEquals(List.of("a", "c"), forwardedTitles());
+    }
+
+    @Test
+    public void forwardsEventsThatCantBeCompared() {
+        processor.process(new Record<>(null, presence(null, "a", 10), 0L));
+        processor.process(new Record<>(null, presence(null, "b", 5), 0L));
+        processor.process(new Record<>("1001", presence("1001", null, 5), 0L));
+        assertEquals(3, context.forwarded().size());
+
+        Presence undated = XboxSerdes.PRESENCE_SERDES.deserializer().deserialize("", "{\"userid\":\"1001\",\"titleid\":\"x\"}".getBytes(StandardCharsets.UTF_8));
+        processor.process(new Record<>("1001", undated, 0L));
+        processor.process(new Record<>("1001", null, 0L));
+        assertEquals(5, context.forwarded().size());
+    }
+}
@@ -0,0 +1,212 @@
+package uk.co.dalelane.kafkastreams.xboxlive.streams.enriching;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.List;
+import java.util.Properties;
+import java.util.stream.Collectors;
+
+import org.apache.kafka.common.serialization.Serdes;
+import org.apache.kafka.common.serialization.StringDeserializer;
+import org.apache.kafka.common.serialization.StringSerializer;
+import org.apache.kafka.streams.KeyValue;
+import org.apache.kafka.streams.StreamsBuilder;
+import org.apache.kafka.streams.StreamsConfig;
+import org.apache.kafka.streams.TestInputTopic;
+import org.apache.kafka.streams.TestOutputTopic;
+import org.apache.kafka.streams.TopologyTestDriver;
+import org.apache.kafka.streams.test.TestRecord;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import uk.co.dalelane.kafkastreams.xboxlive.data.games.TitleCatalogProvider;
+import uk.co.dalelane.kafkastreams.xboxlive.data.presence.EnrichedPresence;
+import uk.co.dalelane.kafkastreams.xboxlive.data.presence.PresenceHeaders;
+import uk.co.dalelane.kafkastreams.xboxlive.data.serdes.XboxSerdes;
+import uk.co.dalelane.kafkastreams.xboxlive.data.users.XboxUsersTable;
+import uk.co.dalelane.kafkastreams.xboxlive.utils.Config;
+
+/**
+ * Enriching presence events using a table of known users read
+ *  from a compacted topic.
+ */
+public class PresenceEnricherTest {
+
+    private static final String PRESENCE = "{\"userid\":\"%s\",\"state\":\"%s\",\"titleid\":\"%s\",\"titlename\":\"Halo\",\"date\":\"%s\"}";
+    private static final String USER = "{\"xuid\":\"%s\",\"gamertag\":\"%s\",\"realName\":\"%s\"}";
+
+    @TempDir
+    Path stateDir;
+
+    private TitleCatalogProvider titles;
+    private TopologyTestDriver driver;
+    private TestInputTopic<String, String> users;
+    private TestInputTopic<String, String> presence;
+    private TestOutputTopic<String, EnrichedPresence> enriched;
+    private TestOutputTopic<String, EnrichedPresence> unknownUsers;
+
+
+    @BeforeEach
+    public void setup() {
+        titles = new TitleCatalogProvider(new Properties());
+        titles.start();
+    }
+
+    @AfterEach
+    public void teardown() {
+        if (driver != null) {
+            driver.close();
+        }
+        titles.close();
+    }
+
+    private void createDriver(Properties config) {
+        final StreamsBuilder builder = new StreamsBuilder();
+        PresenceEnricher.create(builder, XboxUsersTable.create(builder, config).getTable(), titles, config);
+
+        final Properties props = new Properties();
+        props.put(StreamsConfig.APPLICATION_ID_CONFIG, "test");
+        props.put(StreamsConfig.BOOTSTRAP_SERVERS_CONFIG, "dummy:9092");
+        props.put(StreamsConfig.STATE_DIR_CONFIG, stateDir.toString());
+        props.put(StreamsConfig.DEFAULT_KEY_SERDE_CLASS_CONFIG, Serdes.StringSerde.class);
+        props.put(StreamsConfig.DEFAULT_VALUE_SERDE_CLASS_CONFIG, Serdes.StringSerde.class);
+        driver = new TopologyTestDriver(builder.build(), props);
+
+        users = driver.createInputTopic(Config.getUsersTopic(config), new StringSerializer(), new StringSerializer());
+        presence = driver.createInputTopic("XBOX.PRESENCE", new StringSerializer(), new StringSerializer());
+        enriched = driver.createOutputTopic("XBOX.PRESENCE.ENRICHED", new StringDeserializer(), XboxSerdes.ENRICHED_PRESENCE_SERDES.deserializer());
+        unknownUsers = driver.createOutputTopic("XBOX.PRESENCE.UNKNOWNUSERS", new StringDeserializer(), XboxSerdes.ENRICHED_PRESENCE_SERDES.deserializer());
+    }
+
+    private void sendPresence(String userid, String state, String titleid, Instant date) {
+        presence.pipeInput(userid, String.format(PRESENCE, userid, state, titleid, date), date);
+    }
+
+
+    @Test
+    public void enrichesEventsFromKnownUsers() {
+        createDriver(new Properties());
+        users.pipeInput("1001", String.format(USER, "1001", "alice", "Alice"));
+
+        sendPresence("1001", "Online", "1144039928", Instant.parse("2023-01-01T10:00:00Z"));
+
+        KeyValue<String, EnrichedPresence> output = enriched.readKeyValue();
+        assertEquals("alice", output.key);
+        assertEquals("alice", output.value.getGamertag());
+        assertEquals("Alice", output.value.getRealName());
+        assertEquals("1144039928", output.value.getTitleId());
+        assertTrue(enriched.isEmpty());
+    }
+
+    @Test
+    public void usesChangesToUsersWithoutRestarting() {
+        createDriver(new Properties());
+        sendPresence("1001", "Online", "1144039928", Instant.parse("2023-01-01T10:00:00Z"));
+
+        KeyValue<String, EnrichedPresence> unknown = enriched.readKeyValue();
+        assertEquals("unknown-1001", unknown.key);
+        assertNull(unknown.value.getGamertag());
+
+        users.pipeInput("1001", String.format(USER, "1001", "alice", "Alice"));
+        sendPresence("1001", "Online", "219630713", Instant.parse("2023-01-01T11:00:00Z"));
+        assertEquals("alice", enriched.readKeyValue().key);
+
+        users.pipeInput("1001", String.format(USER, "1001", "alice2", "Alice"));
+        sendPresence("1001", "Online", "1144039928", Instant.parse("2023-01-01T12:00:00Z"));
+        assertEquals("alice2", enriched.readKeyValue().key);
+    }
+
+    @Test
+    public void dropsUnknownUsersIfConfigured() {
+        final Properties config = new Properties();
+        config.put(Config.UNKNOWN_USERS_POLICY, "drop");
+        createDriver(config);
+        users.pipeInput("1001", String.format(USER, "1001", "alice", "Alice"));
+
+        sendPresence("2002", "Online", "1144039928", Instant.parse("2023-01-01T10:00:00Z"));
+        sendPresence("1001", "Online", "1144039928", Instant.parse("2023-01-01T10:00:00Z"));
+
+        assertEquals("alice", enriched.readKeyValue().key);
+        assertTrue(enriched.isEmpty());
+        assertTrue(unknownUsers.isEmpty());
+    }
+
+    @Test
+    public void routesUnknownUsersIfConfigured() {
+        final Properties config = new Properties();
+        config.put(Config.UNKNOWN_USERS_POLICY, "route");
+        createDriver(config);
+        users.pipeInput("1001", String.format(USER, "1001", "alice", "Alice"));
+
+        sendPresence("2002", "Online", "1144039928", Instant.parse("2023-01-01T10:00:00Z"));
+        sendPresence("1001", "Online", "1144039928", Instant.parse("2023-01-01T10:00:00Z"));
+
+        assertEquals("alice", enriched.readKeyValue().key);
+        assertTrue(enriched.isEmpty());
+        assertEquals("unknown-2002", unknownUsers.readKeyValue().key);
+        assertTrue(unknownUsers.isEmpty());
+    }
+
+    @Test
+    public void ignoresOutOfSequenceEvents() {
+        createDriver(new Properties());
+        users.pipeInput("1001", String.format(USER, "1001", "alice", "Alice"));
+
+        sendPresence("1001", "Online", "1144039928", Instant.parse("2023-01-01T10:00:00Z"));
+        sendPresence("1001", "Online", "219630713", Instant.parse("2023-01-01T09:00:00Z"));
+
+        assertEquals(1, enriched.readValuesToList().size());
+    }
+
+    @Test
+    public void putsLateEventsBackInOrderIfConfigured() {
+        final Properties config = new Properties();
+        config.put(Config.PRESENCE_REORDER_GRACE_SECONDS, "30");
+        createDriver(config);
+        users.pipeInput("1001", String.format(USER, "1001", "alice", "Alice"));
+
+        sendPresence("1001", "Online", "219630713", Instant.parse("2023-01-01T10:00:10Z"));
+        sendPresence("1001", "Online", "1144039928", Instant.parse("2023-01-01T10:00:00Z"));
+        assertTrue(enriched.isEmpty());
+
+        // the events are held until stream time passes the grace period
+        sendPresence("1001", "Offline", "", Instant.parse("2023-01-01T10:00:41Z"));
+        assertEquals(List.of("1144039928", "219630713"),
+                     enriched.readValuesToList().stream().map(EnrichedPresence::getTitleId).collect(Collectors.toList()));
+    }
+
+    @Test
+    public void omitsHeadersUnlessSplittingRaw() {
+        createDriver(new Properties());
+        users.pipeInput("1001", String.format(USER, "1001", "alice", "Alice"));
+        sendPresence("1001", "Online", "1144039928", Instant.parse("2023-01-01T10:00:00Z"));
+
+        assertFalse(PresenceHeaders.isStamped(enriched.readRecord().headers()));
+    }
+
+    @Test
+    public void addsHeadersForRawSplitting() {
+        final Properties config = new Properties();
+        config.put(Config.PRESENCE_SPLITTER_RAW, "true");
+        createDriver(config);
+        users.pipeInput("1001", String.format(USER, "1001", "alice", "Alice"));
+        sendPresence("1001", "Online", "1144039928", Instant.parse("2023-01-01T10:00:00Z"));
+        sendPresence("1001", "Offline", "", Instant.parse("2023-01-01T11:00:00Z"));
+
+        TestRecord<String, EnrichedPresence> online = enriched.readRecord();
+        assertTrue(PresenceHeaders.isStamped(online.headers()));
+        assertTrue(PresenceHeaders.isOnline(online.headers()));
+
+        TestRecord<String, EnrichedPresence> offline = enriched.readRecord();
+        assertTrue(PresenceHeaders.isStamped(offline.headers()));
+        assertFalse(PresenceHeaders.isOnline(offline.headers()));
+        assertNull(PresenceHeaders.getTitleType(offline.headers()));
+    }
+}
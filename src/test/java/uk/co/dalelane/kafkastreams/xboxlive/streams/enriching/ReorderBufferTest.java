@@ -0,0 +1,165 @@
+package uk.co.dalelane.kafkastreams.xboxlive.streams.enriching;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import org.apache.kafka.common.serialization.Serdes;
+import org.apache.kafka.common.utils.Bytes;
+import org.apache.kafka.streams.processor.PunctuationType;
+import org.apache.kafka.streams.processor.api.MockProcessorContext;
+import org.apache.kafka.streams.processor.api.MockProcessorContext.CapturedPunctuator;
+import org.apache.kafka.streams.processor.api.Processor;
+import org.apache.kafka.streams.processor.api.Record;
+import org.apache.kafka.streams.state.KeyValueStore;
+import org.apache.kafka.streams.state.Stores;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import uk.co.dalelane.kafkastreams.xboxlive.data.presence.Presence;
+import uk.co.dalelane.kafkastreams.xboxlive.data.serdes.XboxSerdes;
+
+/**
+ * Holding presence events back for a grace period, and emitting
+ *  them in the order that they happened.
+ */
+public class ReorderBufferTest {
+
+    private static final String PRESENCE = "{\"userid\":\"%s\",\"state\":\"Online\",\"titleid\":\"%s\",\"date\":\"%s\"}";
+    private static final Instant START = Instant.parse("2023-01-01T10:00:00Z");
+
+    private static final String STORE_NAME = "reorder";
+    private static final Duration GRACE = Duration.ofSeconds(30);
+    private static final Duration FLUSH_INTERVAL = Duration.ofSeconds(1);
+
+    private MockProcessorContext<String, Presence> context;
+    private KeyValueStore<Bytes, Presence> store;
+    private Processor<String, Presence, String, Presence> processor;
+    private long offset;
+
+
+    @BeforeEach
+    public void setup() {
+        context = new MockProcessorContext<>();
+        store = Stores.keyValueStoreBuilder(Stores.inMemoryKeyValueStore(STORE_NAME),
+                                            Serdes.Bytes(),
+                                            XboxSerdes.PRESENCE_SERDES)
+            .withLoggingDisabled()
+            .build();
+        store.init(context.getStateStoreContext(), store);
+        context.addStateStore(store);
+
+        processor = new ReorderBufferSupplier(STORE_NAME, GRACE, FLUSH_INTERVAL).get();
+        processor.init(context);
+    }
+
+    @AfterEach
+    public void teardown() {
+        store.close();
+    }
+
+    private static Presence presence(String userid, String titleid, int seconds) {
+        String json = String.format(PRESENCE, userid, titleid, START.plusSeconds(seconds));
+        return XboxSerdes.PRESENCE_SERDES.deserializer().deserialize("", json.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private void process(String userid, String titleid, int seconds) {
+        context.setRecordMetadata("XBOX.PRESENCE", 0, offset++);
+        processor.process(new Record<>(userid, presence(userid, titleid, seconds), START.plusSeconds(seconds).toEpochMilli()));
+    }
+
+    /** runs the scheduled flush, as if stream time had reached the given time */
+    private void flushAt(int seconds) {
+        context.scheduledPunctuators().get(0).getPunctuator().punctuate(START.plusSeconds(seconds).toEpochMilli());
+    }
+
+    private List<String> forwardedTitles() {
+        List<String> titles = context.forwarded().stream()
+            .map(forwarded -> forwarded.record().value().getTitleId())
+            .collect(Collectors.toList());
+        context.resetForwards();
+        return titles;
+    }
+
+
+    @Test
+    public void flushesOnStreamTimeAtTheFlushInterval() {
+        assertEquals(1, context.scheduledPunctuators().size());
+        CapturedPunctuator punctuator = context.scheduledPunctuators().get(0);
+        assertEquals(PunctuationType.STREAM_TIME, punctuator.getType());
+        assertEquals(FLUSH_INTERVAL, punctuator.getInterval());
+    }
+
+    @Test
+    public void holdsEventsForTheGracePeriod() {
+        process("1001", "a", 0);
+        process("1001", "b", 10);
+        assertEquals(List.of(), forwardedTitles());
+
+        // only events older than the grace period are emitted
+        flushAt(30);
+        assertEquals(List.of(), forwardedTitles());
+        flushAt(31);
+        assertEquals(List.of("a"), forwardedTitles());
+        flushAt(39);
+        assertEquals(List.of(), forwardedTitles());
+        flushAt(41);
+        assertEquals(List.of("b"), forwardedTitles());
+
+        // and removed from the buffer once they have been emitted
+        flushAt(100);
+        assertEquals(List.of(), forwardedTitles());
+        assertEquals(0, store.approximateNumEntries());
+    }
+
+    @Test
+    public void emitsEventsInTheOrderTheyHappened() {
+        process("1001", "c", 20);
+        process("1002", "a", 5);
+        process("1001", "b", 10);
+        process("1003", "d", 25);
+        process("1002", "e", 60);
+
+        flushAt(60);
+        assertEquals(List.of("a", "b", "c", "d"), forwardedTitles());
+        flushAt(91);
+        assertEquals(List.of("e"), forwardedTitles());
+    }
+
+    @Test
+    public void emitsEventsAtTheSameTimeInTheOrderTheyArrived() {
+        process("1002", "a", 10);
+        process("1001", "b", 10);
+        process("1001", "c", 10);
+
+        flushAt(60);
+        assertEquals(List.of("a", "b", "c"), forwardedTitles());
+    }
+
+    @Test
+    public void emitsEventsWithTheirUseridAndTime() {
+        process("1001", "a", 10);
+        flushAt(60);
+
+        Record<? extends String, ? extends Presence> emitted = context.forwarded().get(0).record();
+        assertEquals("1001", emitted.key());
+        assertEquals("1001", emitted.value().getUserId());
+        assertEquals(START.plusSeconds(10).toEpochMilli(), emitted.timestamp());
+    }
+
+    @Test
+    public void passesOnEventsThatCantBeOrdered() {
+        Presence undated = XboxSerdes.PRESENCE_SERDES.deserializer().deserialize("", "{\"userid\":\"1001\",\"titleid\":\"x\"}".getBytes(StandardCharsets.UTF_8));
+        processor.process(new Record<>("1001", undated, 0L));
+        processor.process(new Record<>("1001", null, 0L));
+        processor.process(new Record<>(null, presence(null, "y", 10), 0L));
+
+        assertEquals(3, context.forwarded().size());
+        assertEquals(0, store.approximateNumEntries());
+    }
+}
@@ -0,0 +1,131 @@
+package uk.co.dalelane.kafkastreams.xboxlive.streams.filtering;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Properties;
+
+import org.apache.kafka.common.serialization.StringDeserializer;
+import org.apache.kafka.common.serialization.StringSerializer;
+import org.apache.kafka.streams.KeyValue;
+import org.apache.kafka.streams.StreamsBuilder;
+import org.apache.kafka.streams.StreamsConfig;
+import org.apache.kafka.streams.TestInputTopic;
+import org.apache.kafka.streams.TestOutputTopic;
+import org.apache.kafka.streams.TopologyTestDriver;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import uk.co.dalelane.kafkastreams.xboxlive.data.users.XboxUsersTable;
+import uk.co.dalelane.kafkastreams.xboxlive.utils.Config;
+
+/**
+ * Filtering achievements using a table of known users read from a
+ *  compacted topic.
+ */
+public class AchievementsKnownUsersFilterTest {
+
+    private static final String ACHIEVEMENT = "{\"date\":\"2023-01-01T10:00:00Z\",\"gamertag\":\"%s\",\"name\":\"Finish the fight\",\"gamerscore\":%d}";
+    private static final String USER = "{\"xuid\":\"%s\",\"gamertag\":\"%s\"}";
+
+    @TempDir
+    Path stateDir;
+
+    private TopologyTestDriver driver;
+    private TestInputTopic<String, String> users;
+    private TestInputTopic<String, String> achievements;
+    private TestOutputTopic<String, String> knownUsersAchievements;
+
+
+    @AfterEach
+    public void teardown() {
+        if (driver != null) {
+            driver.close();
+        }
+    }
+
+    private void createDriver(boolean raw) {
+        final Properties config = new Properties();
+        config.put(Config.ACHIEVEMENTS_FILTER_RAW, Boolean.toString(raw));
+
+        final StreamsBuilder builder = new StreamsBuilder();
+        AchievementsKnownUsersFilter.create(builder, XboxUsersTable.create(builder, config), config);
+
+        final Properties props = new Properties();
+        props.put(StreamsConfig.APPLICATION_ID_CONFIG, "test");
+        props.put(StreamsConfig.BOOTSTRAP_SERVERS_CONFIG, "dummy:9092");
+        props.put(StreamsConfig.STATE_DIR_CONFIG, stateDir.toString());
+        driver = new TopologyTestDriver(builder.build(), props);
+
+        users = driver.createInputTopic(Config.getUsersTopic(config), new StringSerializer(), new StringSerializer());
+        achievements = driver.createInputTopic("XBOX.ACHIEVEMENTS", new StringSerializer(), new StringSerializer());
+        knownUsersAchievements = driver.createOutputTopic("XBOX.ACHIEVEMENTS.KNOWNUSERS", new StringDeserializer(), new StringDeserializer());
+    }
+
+
+    @Test
+    public void onlyForwardsAchievementsFromKnownUsers() {
+        createDriver(false);
+        users.pipeInput("1001", String.format(USER, "1001", "alice"));
+
+        achievements.pipeInput(null, String.format(ACHIEVEMENT, "alice", 10));
+        achievements.pipeInput(null, String.format(ACHIEVEMENT, "bob", 20));
+
+        List<KeyValue<String, String>> output = knownUsersAchievements.readKeyValuesToList();
+        assertEquals(1, output.size());
+        assertEquals("alice", output.get(0).key);
+        assertTrue(output.get(0).value.contains("\"gamerscore\":10"));
+    }
+
+    @Test
+    public void usesChangesToUsersImmediately() {
+        createDriver(false);
+        achievements.pipeInput(null, String.format(ACHIEVEMENT, "alice", 10));
+        assertTrue(knownUsersAchievements.isEmpty());
+
+        users.pipeInput("1001", String.format(USER, "1001", "alice"));
+        achievements.pipeInput(null, String.format(ACHIEVEMENT, "alice", 10));
+        assertEquals("alice", knownUsersAchievements.readKeyValue().key);
+
+        // changing gamertag
+        users.pipeInput("1001", String.format(USER, "1001", "alice2"));
+        achievements.pipeInput(null, String.format(ACHIEVEMENT, "alice", 10));
+        achievements.pipeInput(null, String.format(ACHIEVEMENT, "alice2", 10));
+        assertEquals("alice2", knownUsersAchievements.readKeyValue().key);
+        assertTrue(knownUsersAchievements.isEmpty());
+
+        // removed from the table
+        users.pipeInput("1001", (String) null);
+        achievements.pipeInput(null, String.format(ACHIEVEMENT, "alice2", 10));
+        assertTrue(knownUsersAchievements.isEmpty());
+    }
+
+    @Test
+    public void keepsGamertagTakenByAnotherUser() {
+        createDriver(false);
+        users.pipeInput("1001", String.format(USER, "1001", "alice"));
+        users.pipeInput("1002", String.format(USER, "1002", "alice"));
+        // the first user's old profile is removed after the gamertag
+        //  has been given to someone else
+        users.pipeInput("1001", String.format(USER, "1001", "alice-old"));
+
+        achievements.pipeInput(null, String.format(ACHIEVEMENT, "alice", 10));
+        assertEquals("alice", knownUsersAchievements.readKeyValue().key);
+    }
+
+    @Test
+    public void forwardsOriginalBytesWhenFilteringRaw() {
+        createDriver(true);
+        users.pipeInput("1001", String.format(USER, "1001", "alice"));
+
+        final String achievement = "{ \"gamertag\" : \"alice\", \"extra\": [1, {\"a\": \"}\"}], \"gamerscore\":5 }";
+        achievements.pipeInput(null, achievement);
+        achievements.pipeInput(null, String.format(ACHIEVEMENT, "bob", 20));
+
+        List<KeyValue<String, String>> output = knownUsersAchievements.readKeyValuesToList();
+        assertEquals(List.of(KeyValue.pair("alice", achievement)), output);
+    }
+}
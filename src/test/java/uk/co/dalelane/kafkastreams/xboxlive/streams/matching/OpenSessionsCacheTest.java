@@ -0,0 +1,115 @@
+package uk.co.dalelane.kafkastreams.xboxlive.streams.matching;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+import java.nio.charset.StandardCharsets;
+
+import org.apache.kafka.streams.processor.api.MockProcessorContext;
+import org.apache.kafka.streams.state.KeyValueStore;
+import org.apache.kafka.streams.state.Stores;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import uk.co.dalelane.kafkastreams.xboxlive.data.presence.EnrichedPresence;
+import uk.co.dalelane.kafkastreams.xboxlive.data.serdes.XboxSerdes;
+import uk.co.dalelane.kafkastreams.xboxlive.data.sessions.PlaySession;
+
+public class OpenSessionsCacheTest {
+
+    private KeyValueStore<String, PlaySession> store;
+
+
+    @BeforeEach
+    public void setup() {
+        MockProcessorContext<String, PlaySession> context = new MockProcessorContext<>();
+        store = Stores.keyValueStoreBuilder(Stores.inMemoryKeyValueStore("open-sessions"),
+                                            XboxSerdes.GAMERTAG_SERDES,
+                                            XboxSerdes.PLAY_SESSION_SERDES)
+            .withLoggingDisabled()
+            .build();
+        store.init(context.getStateStoreContext(), store);
+    }
+
+    @AfterEach
+    public void teardown() {
+        store.close();
+    }
+
+    private static PlaySession session(String gamertag, String titleid) {
+        String json = "{\"date\":\"2023-01-01T10:00:00Z\",\"gamertag\":\"" + gamertag + "\"," +
+                      "\"state\":\"Online\",\"titleid\":\"" + titleid + "\",\"titlename\":\"Halo\"}";
+        EnrichedPresence start = XboxSerdes.ENRICHED_PRESENCE_SERDES.deserializer()
+            .deserialize("", json.getBytes(StandardCharsets.UTF_8));
+        return PlaySession.createFromStart(start);
+    }
+
+
+    @Test
+    public void writesThroughToTheStore() {
+        OpenSessionsCache cache = new OpenSessionsCache(store, 10);
+
+        cache.put("alice", session("alice", "1144039928"));
+        assertEquals("1144039928", store.get("alice").getTitleId());
+
+        cache.delete("alice");
+        assertNull(store.get("alice"));
+    }
+
+    @Test
+    public void readsFromTheStoreOnce() {
+        store.put("alice", session("alice", "1144039928"));
+        OpenSessionsCache cache = new OpenSessionsCache(store, 10);
+
+        PlaySession first = cache.get("alice");
+        assertEquals("1144039928", first.getTitleId());
+
+        // removed from the store behind the cache's back, so this is
+        //  only still found if the cache didn't read the store again
+        store.delete("alice");
+        assertSame(first, cache.get("alice"));
+    }
+
+    @Test
+    public void cachesGamersWithoutSessions() {
+        OpenSessionsCache cache = new OpenSessionsCache(store, 10);
+        assertNull(cache.get("alice"));
+
+        store.put("alice", session("alice", "1144039928"));
+        assertNull(cache.get("alice"));
+
+        cache.delete("bob");
+        store.put("bob", session("bob", "1144039928"));
+        assertNull(cache.get("bob"));
+    }
+
+    @Test
+    public void removesLeastRecentlyUsedGamers() {
+        store.put("alice", session("alice", "1144039928"));
+        store.put("bob", session("bob", "1144039928"));
+        OpenSessionsCache cache = new OpenSessionsCache(store, 1);
+
+        PlaySession alice = cache.get("alice");
+        cache.get("bob");
+
+        // alice was evicted by bob, so is read from the store again
+        PlaySession aliceAgain = cache.get("alice");
+        assertNotNull(aliceAgain);
+        assertNotSame(alice, aliceAgain);
+    }
+
+    @Test
+    public void disabledCacheAlwaysReadsTheStore() {
+        store.put("alice", session("alice", "1144039928"));
+        OpenSessionsCache cache = new OpenSessionsCache(store, 0);
+
+        assertNotSame(cache.get("alice"), cache.get("alice"));
+
+        store.delete("alice");
+        assertNull(cache.get("alice"));
+    }
+}
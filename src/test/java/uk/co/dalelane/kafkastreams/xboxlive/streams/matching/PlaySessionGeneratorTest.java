@@ -0,0 +1,218 @@
+package uk.co.dalelane.kafkastreams.xboxlive.streams.matching;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.Properties;
+
+import org.apache.kafka.common.serialization.StringDeserializer;
+import org.apache.kafka.common.serialization.StringSerializer;
+import org.apache.kafka.streams.KeyValue;
+import org.apache.kafka.streams.StreamsBuilder;
+import org.apache.kafka.streams.StreamsConfig;
+import org.apache.kafka.streams.TestInputTopic;
+import org.apache.kafka.streams.TestOutputTopic;
+import org.apache.kafka.streams.TopologyTestDriver;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.io.TempDir;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import uk.co.dalelane.kafkastreams.xboxlive.data.games.TitleCatalogProvider;
+import uk.co.dalelane.kafkastreams.xboxlive.data.serdes.XboxSerdes;
+import uk.co.dalelane.kafkastreams.xboxlive.data.sessions.PlaySession;
+import uk.co.dalelane.kafkastreams.xboxlive.utils.Config;
+
+/**
+ * Pairing presence events into play sessions, with and without
+ *  a cache of the open sessions. The output should be the same
+ *  either way.
+ */
+public class PlaySessionGeneratorTest {
+
+    private static final String PRESENCE = "{\"date\":\"%s\",\"gamertag\":\"%s\",\"state\":\"%s\",\"titleid\":\"%s\",\"titlename\":\"%s\"}";
+
+    private static final String HALO = "1144039928";
+    private static final String FORZA = "219630713";
+    private static final String NETFLIX = "327370029";
+
+    private static final Instant START = Instant.parse("2023-01-01T10:00:00Z");
+
+    @TempDir
+    Path stateDir;
+
+    private TitleCatalogProvider titles;
+    private TopologyTestDriver driver;
+    private TestInputTopic<String, String> presence;
+    private TestOutputTopic<String, PlaySession> sessions;
+    private TestOutputTopic<String, PlaySession> inProgress;
+
+
+    @BeforeEach
+    public void setup() {
+        titles = new TitleCatalogProvider(new Properties());
+        titles.start();
+    }
+
+    @AfterEach
+    public void teardown() {
+        if (driver != null) {
+            driver.close();
+        }
+        titles.close();
+    }
+
+    private void createDriver(int cacheSize) {
+        createDriver(cacheSize, 0);
+    }
+
+    private void createDriver(int cacheSize, int inProgressSeconds) {
+        final Properties config = new Properties();
+        config.put(Config.SESSIONS_CACHE_SIZE, Integer.toString(cacheSize));
+        config.put(Config.SESSIONS_IN_PROGRESS_INTERVAL_SECONDS, Integer.toString(inProgressSeconds));
+
+        final StreamsBuilder builder = new StreamsBuilder();
+        PlaySessionGenerator.create(builder, titles, config);
+
+        final Properties props = new Properties();
+        props.put(StreamsConfig.APPLICATION_ID_CONFIG, "test");
+        props.put(StreamsConfig.BOOTSTRAP_SERVERS_CONFIG, "dummy:9092");
+        props.put(StreamsConfig.STATE_DIR_CONFIG, stateDir.toString());
+        driver = new TopologyTestDriver(builder.build(), props);
+
+        presence = driver.createInputTopic("XBOX.PRESENCE.ENRICHED", new StringSerializer(), new StringSerializer());
+        sessions = driver.createOutputTopic("XBOX.PLAYSESSIONS", new StringDeserializer(), XboxSerdes.PLAY_SESSION_SERDES.deserializer());
+        inProgress = driver.createOutputTopic("XBOX.PLAYSESSIONS.INPROGRESS", new StringDeserializer(), XboxSerdes.PLAY_SESSION_SERDES.deserializer());
+    }
+
+    private void send(String gamertag, String state, String titleid, int minutes) {
+        Instant date = START.plus(Duration.ofMinutes(minutes));
+        presence.pipeInput(gamertag, String.format(PRESENCE, date, gamertag, state, titleid, titleid), date);
+    }
+
+    private static void assertSession(KeyValue<String, PlaySession> output, String gamertag, String titleid, int startMinutes, int endMinutes) {
+        assertEquals(gamertag, output.key);
+        assertEquals(titleid, output.value.getTitleId());
+        assertEquals(START.plus(Duration.ofMinutes(startMinutes)), output.value.getStartDate());
+        assertEquals(Duration.ofMinutes(endMinutes - startMinutes), output.value.getDuration());
+    }
+
+
+    @ParameterizedTest(name = "cache size {0}")
+    @ValueSource(ints = { 0, 1, 100 })
+    public void ignoresRepeatedEvents(int cacheSize) {
+        createDriver(cacheSize);
+
+        send("alice", "Online", HALO, 0);
+        for (int i = 1; i < 50; i++) {
+            send("alice", "Online", HALO, i);
+        }
+        send("alice", "Offline", "", 60);
+        send("alice", "Offline", "", 61);
+
+        assertSession(sessions.readKeyValue(), "alice", HALO, 0, 60);
+        assertTrue(sessions.isEmpty());
+    }
+
+    @ParameterizedTest(name = "cache size {0}")
+    @ValueSource(ints = { 0, 1, 100 })
+    public void switchingGamesEndsTheSession(int cacheSize) {
+        createDriver(cacheSize);
+
+        send("alice", "Online", HALO, 0);
+        send("alice", "Online", FORZA, 30);
+        send("alice", "Online", FORZA, 35);
+        send("alice", "Offline", "", 45);
+
+        List<KeyValue<String, PlaySession>> output = sessions.readKeyValuesToList();
+        assertEquals(2, output.size());
+        assertSession(output.get(0), "alice", HALO, 0, 30);
+        assertSession(output.get(1), "alice", FORZA, 30, 45);
+    }
+
+    @ParameterizedTest(name = "cache size {0}")
+    @ValueSource(ints = { 0, 1, 100 })
+    public void keepsGamersSeparate(int cacheSize) {
+        // with a cache size of 1, each gamer evicts the other
+        createDriver(cacheSize);
+
+        send("alice", "Online", HALO, 0);
+        send("bob", "Online", FORZA, 5);
+        send("alice", "Online", HALO, 10);
+        send("bob", "Online", FORZA, 15);
+        send("alice", "Offline", "", 20);
+        send("bob", "Offline", "", 25);
+
+        List<KeyValue<String, PlaySession>> output = sessions.readKeyValuesToList();
+        assertEquals(2, output.size());
+        assertSession(output.get(0), "alice", HALO, 0, 20);
+        assertSession(output.get(1), "bob", FORZA, 5, 25);
+    }
+
+    @ParameterizedTest(name = "cache size {0}")
+    @ValueSource(ints = { 0, 100 })
+    public void skipsSessionsThatArentGames(int cacheSize) {
+        createDriver(cacheSize);
+
+        send("alice", "Online", NETFLIX, 0);
+        send("alice", "Online", HALO, 30);
+        send("alice", "Offline", "", 40);
+
+        List<KeyValue<String, PlaySession>> output = sessions.readKeyValuesToList();
+        assertEquals(1, output.size());
+        assertSession(output.get(0), "alice", HALO, 30, 40);
+    }
+
+    @ParameterizedTest(name = "cache size {0}")
+    @ValueSource(ints = { 0, 100 })
+    public void rejectsSessionsThatAreTooLong(int cacheSize) {
+        createDriver(cacheSize);
+
+        send("alice", "Online", HALO, 0);
+        send("alice", "Offline", "", 9 * 60);
+        send("bob", "Online", HALO, 9 * 60);
+        send("bob", "Offline", "", 9 * 60 + 8 * 60 + 59);
+
+        List<KeyValue<String, PlaySession>> output = sessions.readKeyValuesToList();
+        assertEquals(1, output.size());
+        assertSession(output.get(0), "bob", HALO, 9 * 60, 9 * 60 + 8 * 60 + 59);
+    }
+
+    @ParameterizedTest(name = "cache size {0}")
+    @ValueSource(ints = { 0, 100 })
+    public void emitsOpenSessionsOnEveryInterval(int cacheSize) {
+        createDriver(cacheSize, 600);
+
+        // stream time punctuations run at 0, 10 and 20 minutes,
+        //  after the event at that time has been processed
+        send("alice", "Online", HALO, 0);
+        send("bob", "Online", FORZA, 5);
+        send("bob", "Online", FORZA, 6);
+        send("carol", "Online", HALO, 10);
+        send("bob", "Offline", "", 15);
+        send("carol", "Online", HALO, 20);
+
+        List<KeyValue<String, PlaySession>> output = inProgress.readKeyValuesToList();
+        assertEquals(6, output.size());
+        // one update for each gamer with an open session at each interval
+        assertSession(output.get(0), "alice", HALO, 0, 0);
+        assertSession(output.get(1), "alice", HALO, 0, 10);
+        assertSession(output.get(2), "bob", FORZA, 5, 10);
+        assertSession(output.get(3), "carol", HALO, 10, 10);
+        assertSession(output.get(4), "alice", HALO, 0, 20);
+        assertSession(output.get(5), "carol", HALO, 10, 20);
+        for (KeyValue<String, PlaySession> session : output) {
+            assertFalse(session.value.isComplete());
+        }
+
+        List<KeyValue<String, PlaySession>> completed = sessions.readKeyValuesToList();
+        assertEquals(1, completed.size());
+        assertSession(completed.get(0), "bob", FORZA, 5, 15);
+    }
+}
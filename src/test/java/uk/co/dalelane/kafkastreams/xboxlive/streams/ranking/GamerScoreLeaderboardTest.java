@@ -0,0 +1,238 @@
+package uk.co.dalelane.kafkastreams.xboxlive.streams.ranking;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Random;
+import java.util.stream.Collectors;
+
+import org.apache.kafka.common.serialization.Serdes;
+import org.apache.kafka.common.serialization.StringDeserializer;
+import org.apache.kafka.common.serialization.StringSerializer;
+import org.apache.kafka.streams.StreamsBuilder;
+import org.apache.kafka.streams.StreamsConfig;
+import org.apache.kafka.streams.TestInputTopic;
+import org.apache.kafka.streams.TestOutputTopic;
+import org.apache.kafka.streams.TopologyTestDriver;
+import org.apache.kafka.streams.processor.api.MockProcessorContext;
+import org.apache.kafka.streams.processor.api.Processor;
+import org.apache.kafka.streams.processor.api.Record;
+import org.apache.kafka.streams.state.KeyValueStore;
+import org.apache.kafka.streams.state.Stores;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import uk.co.dalelane.kafkastreams.xboxlive.data.achievements.Leaderboard;
+import uk.co.dalelane.kafkastreams.xboxlive.data.achievements.WeeklyGamerScore;
+import uk.co.dalelane.kafkastreams.xboxlive.data.serdes.XboxSerdes;
+import uk.co.dalelane.kafkastreams.xboxlive.utils.Config;
+
+/**
+ * Ranking the gamers with the highest weekly gamerscores, as their
+ *  scores go up, go down, and are removed.
+ */
+public class GamerScoreLeaderboardTest {
+
+    private static final int SIZE = 3;
+
+    @TempDir
+    Path stateDir;
+
+    private TopologyTestDriver driver;
+    private TestInputTopic<String, WeeklyGamerScore> scores;
+    private TestOutputTopic<String, Leaderboard> leaderboards;
+
+
+    @BeforeEach
+    public void setup() {
+        final Properties config = new Properties();
+        config.put(Config.LEADERBOARD_SIZE, Integer.toString(SIZE));
+
+        final StreamsBuilder builder = new StreamsBuilder();
+        GamerScoreLeaderboard.create(builder, config);
+
+        final Properties props = new Properties();
+        props.put(StreamsConfig.APPLICATION_ID_CONFIG, "test");
+        props.put(StreamsConfig.BOOTSTRAP_SERVERS_CONFIG, "dummy:9092");
+        props.put(StreamsConfig.STATE_DIR_CONFIG, stateDir.toString());
+        driver = new TopologyTestDriver(builder.build(), props);
+
+        scores = driver.createInputTopic("XBOX.GAMERSCORE.WEEK", new StringSerializer(), XboxSerdes.WEEKLY_SCORE_SERDES.serializer());
+        leaderboards = driver.createOutputTopic("XBOX.GAMERSCORE.LEADERBOARD", new StringDeserializer(), XboxSerdes.LEADERBOARD_SERDES.deserializer());
+    }
+
+    @AfterEach
+    public void teardown() {
+        driver.close();
+    }
+
+    private void score(String gamertag, int score) {
+        scores.pipeInput(gamertag, new WeeklyGamerScore(gamertag, score));
+    }
+
+    private void tombstone(String gamertag) {
+        scores.pipeInput(gamertag, null);
+    }
+
+    /** the leaderboards output since the last call, as "gamer=score" lists */
+    private List<List<String>> output() {
+        return leaderboards.readValuesToList().stream()
+            .map(leaderboard -> leaderboard.getGamers().stream()
+                                    .map(gamer -> gamer.getGamer() + "=" + gamer.getScore())
+                                    .collect(Collectors.toList()))
+            .collect(Collectors.toList());
+    }
+
+
+    @Test
+    public void ranksTheTopGamers() {
+        score("alice", 100);
+        score("bob", 300);
+        score("carol", 200);
+        score("dave", 50);
+        score("erin", 250);
+
+        assertEquals(List.of(List.of("alice=100"),
+                             List.of("bob=300", "alice=100"),
+                             List.of("bob=300", "carol=200", "alice=100"),
+                             List.of("bob=300", "erin=250", "carol=200")),
+                     output());
+    }
+
+    @Test
+    public void onlyOutputsChangesToTheRanking() {
+        score("alice", 100);
+        score("bob", 300);
+        score("carol", 200);
+        output();
+
+        // not high enough to be in the leaderboard
+        score("dave", 50);
+        score("dave", 60);
+        // the same score again
+        score("bob", 300);
+        assertTrue(output().isEmpty());
+    }
+
+    @Test
+    public void promotesGamersWhenATopGamerIsDemoted() {
+        score("alice", 100);
+        score("bob", 300);
+        score("carol", 200);
+        score("dave", 50);
+        score("erin", 80);
+        output();
+
+        // old achievements leave bob's week, so dave and erin are
+        //  compared with him again
+        score("bob", 70);
+        assertEquals(List.of(List.of("carol=200", "alice=100", "erin=80")), output());
+
+        // a drop that keeps bob out of the leaderboard changes nothing
+        score("bob", 60);
+        assertTrue(output().isEmpty());
+
+        // and a drop that stays in the leaderboard only reorders it
+        score("alice", 90);
+        score("carol", 85);
+        assertEquals(List.of(List.of("carol=200", "alice=90", "erin=80"),
+                             List.of("alice=90", "carol=85", "erin=80")),
+                     output());
+    }
+
+    @Test
+    public void removesGamersWithNoScoreLeft() {
+        score("alice", 100);
+        score("bob", 300);
+        score("carol", 200);
+        score("dave", 50);
+        output();
+
+        tombstone("bob");
+        assertEquals(List.of(List.of("carol=200", "alice=100", "dave=50")), output());
+
+        // tombstones for gamers outside the leaderboard, or who have
+        //  never had a score, change nothing
+        score("erin", 10);
+        tombstone("erin");
+        tombstone("frank");
+        assertTrue(output().isEmpty());
+
+        tombstone("carol");
+        tombstone("alice");
+        tombstone("dave");
+        assertEquals(List.of(List.of("alice=100", "dave=50"),
+                             List.of("dave=50"),
+                             List.of()),
+                     output());
+
+        // bob was removed, so he doesn't come back with his old score
+        score("erin", 5);
+        assertEquals(List.of(List.of("erin=5")), output());
+    }
+
+    @Test
+    public void keepsTiesInGamertagOrder() {
+        score("carol", 100);
+        score("alice", 100);
+        score("bob", 100);
+        score("aaron", 100);
+
+        List<List<String>> output = output();
+        assertEquals(List.of("aaron=100", "alice=100", "bob=100"), output.get(output.size() - 1));
+    }
+
+    @Test
+    public void findsTheSameTopGamersAsRankingEveryScore() {
+        final int size = 2;
+        final MockProcessorContext<String, Leaderboard> context = new MockProcessorContext<>();
+        final KeyValueStore<String, Integer> store = Stores.keyValueStoreBuilder(
+                Stores.inMemoryKeyValueStore(GamerScoreLeaderboard.class.getCanonicalName() + ".scores"),
+                Serdes.String(),
+                Serdes.Integer())
+            .withLoggingDisabled()
+            .build();
+        store.init(context.getStateStoreContext(), store);
+        context.addStateStore(store);
+
+        final Processor<String, WeeklyGamerScore, String, Leaderboard> processor = new GamerScoreLeaderboard.PartitionTopGamersSupplier(size).get();
+        processor.init(context);
+
+        // scores go up and down, and gamers are removed, so the reserve
+        //  of gamers below the top gamers is used up and found again
+        final Random random = new Random(42);
+        final Map<String, Integer> latestScores = new HashMap<>();
+        List<WeeklyGamerScore> emitted = List.of();
+        for (int i = 0; i < 5000; i++) {
+            final String gamertag = "gamer" + random.nextInt(20);
+            final WeeklyGamerScore score = random.nextInt(5) == 0 ? null : new WeeklyGamerScore(gamertag, random.nextInt(100));
+            if (score == null) {
+                latestScores.remove(gamertag);
+            }
+            else {
+                latestScores.put(gamertag, score.getScore());
+            }
+            processor.process(new Record<>(gamertag, score, i));
+
+            final List<WeeklyGamerScore> ranked = new ArrayList<>();
+            latestScores.forEach((gamer, value) -> ranked.add(new WeeklyGamerScore(gamer, value)));
+            ranked.sort(Leaderboard.RANKING);
+            final List<WeeklyGamerScore> top = ranked.subList(0, Math.min(size, ranked.size()));
+
+            if (!context.forwarded().isEmpty()) {
+                emitted = context.forwarded().get(context.forwarded().size() - 1).record().value().getGamers();
+                context.resetForwards();
+            }
+            assertEquals(new Leaderboard(new ArrayList<>(top)).fingerprint(), new Leaderboard(emitted).fingerprint(), "after update " + i);
+        }
+        store.close();
+    }
+}
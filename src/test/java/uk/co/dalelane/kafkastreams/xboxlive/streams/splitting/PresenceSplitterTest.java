@@ -0,0 +1,167 @@
+package uk.co.dalelane.kafkastreams.xboxlive.streams.splitting;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Properties;
+
+import org.apache.kafka.common.header.Headers;
+import org.apache.kafka.common.header.internals.RecordHeaders;
+import org.apache.kafka.common.serialization.StringDeserializer;
+import org.apache.kafka.common.serialization.StringSerializer;
+import org.apache.kafka.streams.StreamsBuilder;
+import org.apache.kafka.streams.StreamsConfig;
+import org.apache.kafka.streams.TestInputTopic;
+import org.apache.kafka.streams.TestOutputTopic;
+import org.apache.kafka.streams.TopologyTestDriver;
+import org.apache.kafka.streams.test.TestRecord;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import uk.co.dalelane.kafkastreams.xboxlive.data.games.TitleCatalogProvider;
+import uk.co.dalelane.kafkastreams.xboxlive.data.games.TitleIdInfo;
+import uk.co.dalelane.kafkastreams.xboxlive.data.presence.PresenceHeaders;
+import uk.co.dalelane.kafkastreams.xboxlive.utils.Config;
+
+/**
+ * Splitting enriched presence events into a topic for each type
+ *  of title, by deserializing them or by using their headers.
+ */
+public class PresenceSplitterTest {
+
+    private static final String PRESENCE = "{\"gamertag\":\"alice\",\"state\":\"%s\",\"titleid\":\"%s\"}";
+
+    private static final String HALO = "1144039928";
+    private static final String NETFLIX = "327370029";
+    private static final String DASHBOARD = "750323071";
+
+    @TempDir
+    Path stateDir;
+
+    private TitleCatalogProvider titles;
+    private TopologyTestDriver driver;
+    private TestInputTopic<String, String> enriched;
+    private TestOutputTopic<String, String> games;
+    private TestOutputTopic<String, String> media;
+    private TestOutputTopic<String, String> apps;
+
+
+    @BeforeEach
+    public void setup() {
+        titles = new TitleCatalogProvider(new Properties());
+        titles.start();
+    }
+
+    @AfterEach
+    public void teardown() {
+        if (driver != null) {
+            driver.close();
+        }
+        titles.close();
+    }
+
+    private void createDriver(boolean raw) {
+        final Properties config = new Properties();
+        config.put(Config.PRESENCE_SPLITTER_RAW, Boolean.toString(raw));
+
+        final StreamsBuilder builder = new StreamsBuilder();
+        PresenceSplitter.create(builder, titles, config);
+
+        final Properties props = new Properties();
+        props.put(StreamsConfig.APPLICATION_ID_CONFIG, "test");
+        props.put(StreamsConfig.BOOTSTRAP_SERVERS_CONFIG, "dummy:9092");
+        props.put(StreamsConfig.STATE_DIR_CONFIG, stateDir.toString());
+        driver = new TopologyTestDriver(builder.build(), props);
+
+        enriched = driver.createInputTopic("XBOX.PRESENCE.ENRICHED", new StringSerializer(), new StringSerializer());
+        games = driver.createOutputTopic("XBOX.PRESENCE.GAME", new StringDeserializer(), new StringDeserializer());
+        media = driver.createOutputTopic("XBOX.PRESENCE.MEDIA", new StringDeserializer(), new StringDeserializer());
+        apps = driver.createOutputTopic("XBOX.PRESENCE.APP", new StringDeserializer(), new StringDeserializer());
+    }
+
+    private static String presence(String state, String titleid) {
+        return String.format(PRESENCE, state, titleid);
+    }
+
+    private static Headers headers(String titleType, boolean online) {
+        return PresenceHeaders.stamp(new RecordHeaders(), titleType, online);
+    }
+
+
+    @ParameterizedTest
+    @ValueSource(booleans = { false, true })
+    public void splitsEventsByTitleType(boolean raw) {
+        createDriver(raw);
+
+        // events without headers are classified using the catalog,
+        //  whether or not the splitter is using headers
+        enriched.pipeInput("alice", presence("Online", HALO));
+        enriched.pipeInput("alice", presence("Online", NETFLIX));
+        enriched.pipeInput("alice", presence("Online", DASHBOARD));
+
+        assertEquals(List.of(presence("Online", HALO)), games.readValuesToList());
+        assertEquals(List.of(presence("Online", NETFLIX)), media.readValuesToList());
+        assertEquals(List.of(presence("Online", DASHBOARD)), apps.readValuesToList());
+    }
+
+    @ParameterizedTest
+    @ValueSource(booleans = { false, true })
+    public void ignoresOfflineEventsAndEventsWithoutATitle(boolean raw) {
+        createDriver(raw);
+
+        enriched.pipeInput("alice", presence("Offline", HALO));
+        enriched.pipeInput("alice", presence("Online", ""));
+
+        assertTrue(games.isEmpty());
+        assertTrue(media.isEmpty());
+        assertTrue(apps.isEmpty());
+    }
+
+    @Test
+    public void routesRawEventsUsingTheirHeaders() {
+        createDriver(true);
+
+        // the headers are used instead of the catalog or the event
+        enriched.pipeInput(new TestRecord<>("alice", presence("Online", HALO), headers(TitleIdInfo.MEDIA_PLAYER, true)));
+        enriched.pipeInput(new TestRecord<>("alice", presence("Offline", NETFLIX), headers(TitleIdInfo.APP, true)));
+        // so events that don't need to be read aren't deserialized
+        enriched.pipeInput(new TestRecord<>("bob", "not json", headers(TitleIdInfo.GAME, true)));
+
+        assertEquals(List.of(presence("Online", HALO)), media.readValuesToList());
+        assertEquals(List.of(presence("Offline", NETFLIX)), apps.readValuesToList());
+
+        TestRecord<String, String> game = games.readRecord();
+        assertEquals("bob", game.key());
+        assertEquals("not json", game.value());
+        assertTrue(games.isEmpty());
+    }
+
+    @Test
+    public void filtersRawEventsUsingTheirHeaders() {
+        createDriver(true);
+
+        enriched.pipeInput(new TestRecord<>("alice", presence("Online", HALO), headers(TitleIdInfo.GAME, false)));
+        enriched.pipeInput(new TestRecord<>("alice", presence("Online", HALO), headers(null, true)));
+
+        assertTrue(games.isEmpty());
+        assertTrue(media.isEmpty());
+        assertTrue(apps.isEmpty());
+    }
+
+    @Test
+    public void addsHeadersToRawEventsWithoutThem() {
+        createDriver(true);
+
+        enriched.pipeInput("alice", presence("Online", NETFLIX));
+
+        TestRecord<String, String> output = media.readRecord();
+        assertEquals(TitleIdInfo.MEDIA_PLAYER, PresenceHeaders.getTitleType(output.headers()));
+        assertTrue(PresenceHeaders.isOnline(output.headers()));
+    }
+}
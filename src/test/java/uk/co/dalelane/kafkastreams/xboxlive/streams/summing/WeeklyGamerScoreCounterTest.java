@@ -0,0 +1,250 @@
+package uk.co.dalelane.kafkastreams.xboxlive.streams.summing;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+
+import org.apache.kafka.common.serialization.StringDeserializer;
+import org.apache.kafka.common.serialization.StringSerializer;
+import org.apache.kafka.streams.KeyValue;
+import org.apache.kafka.streams.StreamsBuilder;
+import org.apache.kafka.streams.StreamsConfig;
+import org.apache.kafka.streams.TestInputTopic;
+import org.apache.kafka.streams.TestOutputTopic;
+import org.apache.kafka.streams.TopologyDescription;
+import org.apache.kafka.streams.TopologyTestDriver;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import uk.co.dalelane.kafkastreams.xboxlive.data.achievements.WeeklyGamerScore;
+import uk.co.dalelane.kafkastreams.xboxlive.data.serdes.XboxSerdes;
+import uk.co.dalelane.kafkastreams.xboxlive.utils.Config;
+
+/**
+ * Summing gamerscores over a rolling week, with scores output
+ *  on every change or only once each day has finished.
+ */
+public class WeeklyGamerScoreCounterTest {
+
+    private static final String ACHIEVEMENT = "{\"gamertag\":\"%s\",\"gamerscore\":%d,\"name\":\"Achievement\"}";
+
+    /** 10am on the first day of the tests */
+    private static final Instant DAY_0 = Instant.parse("2023-01-02T10:00:00Z");
+
+    @TempDir
+    Path stateDir;
+
+    private TopologyTestDriver driver;
+    private TestInputTopic<String, String> achievements;
+    private TestOutputTopic<String, WeeklyGamerScore> scores;
+
+
+    @AfterEach
+    public void teardown() {
+        if (driver != null) {
+            driver.close();
+        }
+    }
+
+    private void createDriver(boolean finalResultsOnly) {
+        final Properties config = new Properties();
+        config.put(Config.GAMERSCORE_FINAL_ONLY, Boolean.toString(finalResultsOnly));
+
+        final StreamsBuilder builder = new StreamsBuilder();
+        WeeklyGamerScoreCounter.create(builder, config);
+
+        final Properties props = new Properties();
+        props.put(StreamsConfig.APPLICATION_ID_CONFIG, "test");
+        props.put(StreamsConfig.BOOTSTRAP_SERVERS_CONFIG, "dummy:9092");
+        props.put(StreamsConfig.STATE_DIR_CONFIG, stateDir.toString());
+        driver = new TopologyTestDriver(builder.build(), props);
+
+        achievements = driver.createInputTopic("XBOX.ACHIEVEMENTS.KNOWNUSERS", new StringSerializer(), new StringSerializer());
+        scores = driver.createOutputTopic("XBOX.GAMERSCORE.WEEK", new StringDeserializer(), XboxSerdes.WEEKLY_SCORE_SERDES.deserializer());
+    }
+
+    private void send(String gamertag, int gamerscore, Duration sinceDay0) {
+        achievements.pipeInput(gamertag, String.format(ACHIEVEMENT, gamertag, gamerscore), DAY_0.plus(sinceDay0));
+    }
+
+    /** moves stream time on, using achievements from another gamer */
+    private void advanceTo(Duration sinceDay0) {
+        send("other", 1, sinceDay0);
+    }
+
+    /** the scores output for the gamer, with null for a tombstone */
+    private List<Integer> scoresFor(String gamertag) {
+        List<Integer> output = new ArrayList<>();
+        for (KeyValue<String, WeeklyGamerScore> score : scores.readKeyValuesToList()) {
+            if (score.key.equals(gamertag)) {
+                output.add(score.value == null ? null : score.value.getScore());
+            }
+        }
+        return output;
+    }
+
+
+    @Test
+    public void outputsScoreOnEveryChange() {
+        createDriver(false);
+
+        send("alice", 10, Duration.ZERO);
+        send("alice", 20, Duration.ofHours(2));
+        send("alice", 5, Duration.ofDays(3));
+
+        List<KeyValue<String, WeeklyGamerScore>> output = scores.readKeyValuesToList();
+        assertEquals(3, output.size());
+        assertEquals("alice", output.get(2).key);
+        assertEquals("alice", output.get(2).value.getGamer());
+        assertEquals(List.of(10, 30, 35), List.of(output.get(0).value.getScore(),
+                                                  output.get(1).value.getScore(),
+                                                  output.get(2).value.getScore()));
+    }
+
+    @Test
+    public void ignoresAchievementsNotKeyedByGamer() {
+        createDriver(false);
+
+        achievements.pipeInput("bob", String.format(ACHIEVEMENT, "alice", 10), DAY_0);
+        achievements.pipeInput(null, String.format(ACHIEVEMENT, "alice", 10), DAY_0);
+
+        assertTrue(scores.isEmpty());
+    }
+
+    @Test
+    public void readsScoresFromAchievementsWithEscapedText() {
+        createDriver(false);
+
+        final String gamertag = "al\"ice é ☃";
+        achievements.pipeInput(gamertag,
+                               "{\"gamertag\":\"al\\\"ice \\u00e9 ☃\",\"name\":\"quote \\\" backslash \\\\ newline \\n\"," +
+                                   "\"description\":\"{\\\"gamerscore\\\":1000}\",\"rarity\":{\"gamerscore\":1000,\"list\":[1.5,null,\"x\"]}," +
+                                   "\"gamerscore\":25}",
+                               DAY_0);
+
+        List<KeyValue<String, WeeklyGamerScore>> output = scores.readKeyValuesToList();
+        assertEquals(1, output.size());
+        assertEquals(gamertag, output.get(0).key);
+        assertEquals(gamertag, output.get(0).value.getGamer());
+        assertEquals(25, output.get(0).value.getScore());
+    }
+
+    @Test
+    public void ignoresAchievementsWithoutAScore() {
+        createDriver(false);
+
+        send("alice", 10, Duration.ZERO);
+        achievements.pipeInput("alice", "{\"gamertag\":\"alice\",\"gamerscore\":null}", DAY_0.plusSeconds(60));
+        achievements.pipeInput("alice", "{\"gamertag\":\"alice\",\"name\":\"No score\"}", DAY_0.plusSeconds(120));
+        send("alice", 5, Duration.ofHours(1));
+
+        assertEquals(List.of(10, 15), scoresFor("alice"));
+    }
+
+    @Test
+    public void outputsLowerScoresAsDaysLeaveTheWeek() {
+        createDriver(false);
+
+        send("alice", 10, Duration.ZERO);
+        send("alice", 5, Duration.ofDays(3));
+        assertEquals(List.of(10, 15), scoresFor("alice"));
+
+        // still within the week
+        advanceTo(Duration.ofDays(6).plusHours(13));
+        assertEquals(List.of(), scoresFor("alice"));
+
+        // day 0 leaves the week
+        advanceTo(Duration.ofDays(7));
+        assertEquals(List.of(5), scoresFor("alice"));
+
+        // day 3 leaves the week, so there is nothing left
+        advanceTo(Duration.ofDays(10));
+        List<Integer> expired = scoresFor("alice");
+        assertEquals(1, expired.size());
+        assertNull(expired.get(0));
+
+        // and nothing more once the days are gone
+        advanceTo(Duration.ofDays(14));
+        assertEquals(List.of(), scoresFor("alice"));
+    }
+
+    @Test
+    public void finalResultsOnlyWaitsForTheEndOfTheDay() {
+        createDriver(true);
+
+        send("alice", 10, Duration.ZERO);
+        send("alice", 20, Duration.ofHours(2));
+        assertEquals(List.of(), scoresFor("alice"));
+
+        // the day has ended, but achievements can still arrive for it
+        //  during the grace period
+        advanceTo(Duration.ofHours(14).plusMinutes(30));
+        send("alice", 5, Duration.ofHours(13));
+        assertEquals(List.of(), scoresFor("alice"));
+
+        // the grace period has finished
+        advanceTo(Duration.ofHours(15));
+        assertEquals(List.of(35), scoresFor("alice"));
+
+        // too late for day 0
+        send("alice", 100, Duration.ofHours(13));
+        advanceTo(Duration.ofDays(2));
+        assertEquals(List.of(), scoresFor("alice"));
+    }
+
+    @Test
+    public void finalResultsOnlyAddsUpFinishedDays() {
+        createDriver(true);
+
+        send("alice", 10, Duration.ZERO);
+        send("alice", 5, Duration.ofDays(2));
+        advanceTo(Duration.ofDays(3));
+
+        assertEquals(List.of(10, 15), scoresFor("alice"));
+    }
+
+    @Test
+    public void finalResultsOnlyOutputsLowerScoresAsDaysLeaveTheWeek() {
+        createDriver(true);
+
+        send("alice", 10, Duration.ZERO);
+        advanceTo(Duration.ofDays(1));
+        assertEquals(List.of(10), scoresFor("alice"));
+
+        // day 0 is still in the week that ends with the last finished day
+        advanceTo(Duration.ofDays(7).plusHours(14));
+        assertEquals(List.of(), scoresFor("alice"));
+
+        // day 7 has finished, so day 0 leaves the week
+        advanceTo(Duration.ofDays(7).plusHours(15));
+        List<Integer> expired = scoresFor("alice");
+        assertEquals(1, expired.size());
+        assertNull(expired.get(0));
+    }
+
+    @ParameterizedTest
+    @ValueSource(booleans = { false, true })
+    public void sumsWithoutRepartitioning(boolean finalResultsOnly) {
+        final Properties config = new Properties();
+        config.put(Config.GAMERSCORE_FINAL_ONLY, Boolean.toString(finalResultsOnly));
+        final StreamsBuilder builder = new StreamsBuilder();
+        WeeklyGamerScoreCounter.create(builder, config);
+
+        // the achievements are already keyed by gamer, so the sums can
+        //  be kept by the task that reads them
+        final TopologyDescription description = builder.build().describe();
+        assertEquals(1, description.subtopologies().size());
+        assertFalse(description.toString().contains("-repartition"));
+    }
+}
@@ -0,0 +1,118 @@
+package uk.co.dalelane.kafkastreams.xboxlive.utils;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import org.apache.kafka.common.Metric;
+import org.apache.kafka.common.MetricName;
+import org.apache.kafka.common.serialization.Serdes;
+import org.apache.kafka.streams.KeyValue;
+import org.apache.kafka.streams.processor.api.MockProcessorContext;
+import org.apache.kafka.streams.processor.api.Processor;
+import org.apache.kafka.streams.processor.api.Record;
+import org.apache.kafka.streams.state.KeyValueStore;
+import org.apache.kafka.streams.state.Stores;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Only forwarding values whose fingerprint has changed.
+ */
+public class EmitOnChangeSupplierTest {
+
+    private static final String STORE_NAME = "emitted";
+
+    private MockProcessorContext<String, String> context;
+    private KeyValueStore<String, Long> store;
+    private Processor<String, String, String, String> processor;
+
+
+    @BeforeEach
+    public void setup() {
+        context = new MockProcessorContext<>();
+        store = Stores.keyValueStoreBuilder(Stores.inMemoryKeyValueStore(STORE_NAME),
+                                            Serdes.String(),
+                                            Serdes.Long())
+            .withLoggingDisabled()
+            .build();
+        store.init(context.getStateStoreContext(), store);
+        context.addStateStore(store);
+
+        // only the part of the value before the first ':' matters
+        processor = new EmitOnChangeSupplier<String, String>(STORE_NAME, value -> value.split(":")[0].hashCode()).get();
+        processor.init(context);
+    }
+
+    @AfterEach
+    public void teardown() {
+        store.close();
+    }
+
+    private void process(String key, String value) {
+        processor.process(new Record<>(key, value, 0L));
+    }
+
+    private List<KeyValue<String, String>> forwarded() {
+        List<KeyValue<String, String>> output = context.forwarded().stream()
+            .map(captured -> KeyValue.pair(captured.record().key(), captured.record().value()))
+            .collect(Collectors.toList());
+        context.resetForwards();
+        return output;
+    }
+
+    private double suppressed() {
+        for (Map.Entry<MetricName, ? extends Metric> metric : context.metrics().metrics().entrySet()) {
+            if (metric.getKey().name().equals(STORE_NAME + ".suppressed-records-total")) {
+                return (Double) metric.getValue().metricValue();
+            }
+        }
+        throw new AssertionError("no suppressed-records sensor");
+    }
+
+
+    @Test
+    public void suppressesValuesWithAnUnchangedFingerprint() {
+        process("alice", "10");
+        process("alice", "10");
+        process("alice", "10:ignored");
+        process("alice", "20");
+        process("alice", "10");
+
+        assertEquals(List.of(KeyValue.pair("alice", "10"),
+                             KeyValue.pair("alice", "20"),
+                             KeyValue.pair("alice", "10")),
+                     forwarded());
+        assertEquals(2.0, suppressed());
+        assertEquals(Long.valueOf("10".hashCode()), store.get("alice"));
+    }
+
+    @Test
+    public void comparesValuesForEachKeySeparately() {
+        process("alice", "10");
+        process("bob", "10");
+        process("alice", "10");
+
+        assertEquals(List.of(KeyValue.pair("alice", "10"),
+                             KeyValue.pair("bob", "10")),
+                     forwarded());
+    }
+
+    @Test
+    public void alwaysForwardsDeletes() {
+        process("alice", "10");
+        process("alice", null);
+        process("alice", null);
+        process("alice", "10");
+
+        assertEquals(List.of(KeyValue.pair("alice", "10"),
+                             KeyValue.pair("alice", null),
+                             KeyValue.pair("alice", null),
+                             KeyValue.pair("alice", "10")),
+                     forwarded());
+        assertEquals(0.0, suppressed());
+    }
+}
@@ -0,0 +1,106 @@
+package uk.co.dalelane.kafkastreams.xboxlive.utils;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+public class LongKeyedIndexTest {
+
+    @Test
+    public void emptyIndex() {
+        LongKeyedIndex<String> index = new LongKeyedIndex.Builder<String>(0).build();
+
+        assertEquals(0, index.size());
+        assertNull(index.get(0));
+        assertNull(index.get(1));
+    }
+
+    @Test
+    public void replacesValuesForTheSameKey() {
+        LongKeyedIndex<String> index = new LongKeyedIndex.Builder<String>(2)
+            .put(1, "first")
+            .put(2, "second")
+            .put(1, "replaced")
+            .build();
+
+        assertEquals(2, index.size());
+        assertEquals("replaced", index.get(1));
+        assertEquals("second", index.get(2));
+    }
+
+    @Test
+    public void findsEdgeCaseKeys() {
+        long[] keys = { 0, -1, Long.MIN_VALUE, Long.MAX_VALUE, 2535405290459756L };
+        LongKeyedIndex.Builder<Long> builder = new LongKeyedIndex.Builder<>(keys.length);
+        for (long key : keys) {
+            builder.put(key, key);
+        }
+        LongKeyedIndex<Long> index = builder.build();
+
+        for (long key : keys) {
+            assertEquals(key, index.get(key));
+        }
+        assertNull(index.get(1));
+    }
+
+    @Test
+    public void growsPastExpectedSize() {
+        LongKeyedIndex.Builder<Integer> builder = new LongKeyedIndex.Builder<>(1);
+        for (int i = 0; i < 1000; i++) {
+            builder.put(i * 1024L, i);
+        }
+        LongKeyedIndex<Integer> index = builder.build();
+
+        assertEquals(1000, index.size());
+        for (int i = 0; i < 1000; i++) {
+            assertEquals(i, index.get(i * 1024L));
+            assertNull(index.get(i * 1024L + 1));
+        }
+    }
+
+    @Test
+    public void matchesHashMap() {
+        Random random = new Random(42);
+        Map<Long, Long> expected = new HashMap<>();
+        LongKeyedIndex.Builder<Long> builder = new LongKeyedIndex.Builder<>(10_000);
+        for (int i = 0; i < 10_000; i++) {
+            long key = random.nextLong();
+            long value = random.nextLong();
+            expected.put(key, value);
+            builder.put(key, value);
+        }
+        LongKeyedIndex<Long> index = builder.build();
+
+        assertEquals(expected.size(), index.size());
+        for (Map.Entry<Long, Long> entry : expected.entrySet()) {
+            assertEquals(entry.getValue(), index.get(entry.getKey()));
+        }
+        for (int i = 0; i < 10_000; i++) {
+            long key = random.nextLong();
+            assertEquals(expected.get(key), index.get(key));
+        }
+    }
+
+    @Test
+    public void builderCanBeReused() {
+        LongKeyedIndex.Builder<String> builder = new LongKeyedIndex.Builder<String>(1).put(1, "one");
+        LongKeyedIndex<String> before = builder.build();
+        builder.put(2, "two");
+
+        assertNull(before.get(2));
+        assertEquals(1, before.size());
+        assertEquals("two", builder.build().get(2));
+    }
+
+    @Test
+    public void rejectsNullValues() {
+        assertThrows(IllegalArgumentException.class,
+                     () -> new LongKeyedIndex.Builder<String>(1).put(1, null));
+    }
+}
@@ -0,0 +1,117 @@
+package uk.co.dalelane.kafkastreams.xboxlive.utils;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import org.junit.jupiter.api.Test;
+
+public class StringHashSetTest {
+
+    private static List<String> gamertags(Random random, int count) {
+        List<String> gamertags = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            gamertags.add("gamer" + Long.toString(random.nextLong() & Long.MAX_VALUE, 36));
+        }
+        return gamertags;
+    }
+
+
+    @Test
+    public void emptySet() {
+        StringHashSet set = new StringHashSet(Collections.emptyList());
+
+        assertEquals(0, set.size());
+        assertFalse(set.contains("alice"));
+        assertFalse(set.contains(""));
+        assertFalse(set.contains(null));
+    }
+
+    @Test
+    public void ignoresDuplicatesAndNulls() {
+        StringHashSet set = new StringHashSet(Arrays.asList("alice", "bob", "alice", null, "bob"));
+
+        assertEquals(2, set.size());
+        assertTrue(set.contains("alice"));
+        assertTrue(set.contains("bob"));
+        assertFalse(set.contains(null));
+    }
+
+    @Test
+    public void comparesWholeStrings() {
+        StringHashSet set = new StringHashSet(Arrays.asList("alice", "", "caf\u00e9", "\uD83C\uDFAE"));
+
+        assertTrue(set.contains(""));
+        assertTrue(set.contains("caf\u00e9"));
+        assertTrue(set.contains("\uD83C\uDFAE"));
+        assertTrue(set.contains(new String("alice".toCharArray())));
+        assertFalse(set.contains("Alice"));
+        assertFalse(set.contains("alic"));
+        assertFalse(set.contains("alice "));
+        assertFalse(set.contains("cafe"));
+    }
+
+    @Test
+    public void findsStringsWithTheSameJavaHashCode() {
+        // "Aa" and "BB" have the same String.hashCode
+        StringHashSet set = new StringHashSet(Arrays.asList("Aa", "AaAa"));
+
+        assertTrue(set.contains("Aa"));
+        assertTrue(set.contains("AaAa"));
+        assertFalse(set.contains("BB"));
+        assertFalse(set.contains("BBBB"));
+        assertFalse(set.contains("AaBB"));
+    }
+
+    @Test
+    public void matchesHashSet() {
+        Random random = new Random(42);
+        List<String> known = gamertags(random, 5000);
+        StringHashSet set = new StringHashSet(known);
+        Set<String> expected = new HashSet<>(known);
+
+        assertEquals(expected.size(), set.size());
+        for (String gamertag : known) {
+            assertTrue(set.contains(gamertag));
+        }
+        for (String gamertag : gamertags(random, 5000)) {
+            assertEquals(expected.contains(gamertag), set.contains(gamertag));
+        }
+    }
+
+    @Test
+    public void largeSetsUseBloomFilterWithoutFalseNegatives() {
+        Random random = new Random(42);
+        List<String> known = gamertags(random, StringHashSet.BLOOM_FILTER_THRESHOLD);
+        StringHashSet set = new StringHashSet(known);
+        Set<String> expected = new HashSet<>(known);
+
+        assertEquals(expected.size(), set.size());
+        for (String gamertag : known) {
+            assertTrue(set.contains(gamertag), gamertag);
+        }
+        for (String gamertag : gamertags(random, 100_000)) {
+            assertEquals(expected.contains(gamertag), set.contains(gamertag), gamertag);
+        }
+    }
+
+    @Test
+    public void setsJustBelowTheBloomFilterThreshold() {
+        Random random = new Random(7);
+        List<String> known = gamertags(random, StringHashSet.BLOOM_FILTER_THRESHOLD - 1);
+        StringHashSet set = new StringHashSet(known);
+
+        for (String gamertag : known) {
+            assertTrue(set.contains(gamertag), gamertag);
+        }
+        assertFalse(set.contains("not-a-gamer"));
+    }
+}